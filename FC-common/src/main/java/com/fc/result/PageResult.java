@@ -22,4 +22,6 @@ public class PageResult implements Serializable {
 
     private boolean hasNext;
     private LocalDateTime nextCursor;
+    private Long nextCursorId; //复合游标中的记录ID，与nextCursor一起作为下一页游标
+    private Integer nextOffset; //排行类列表（如热度排序）的下一页偏移量
 }
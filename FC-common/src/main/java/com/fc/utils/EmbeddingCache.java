@@ -0,0 +1,208 @@
+package com.fc.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucketAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 文本向量缓存（按内容寻址）
+ *
+ * 缓存键 = SHA-256(缓存版本 + 模型 + 规范化文本)，模型或 ollama.embedding.cache.version 变化后旧缓存自然失效
+ * - 一级：Caffeine 本地缓存
+ * - 二级：Redis，以 float32 小端字节数组存储（比 JSON 数组小约5倍，且无需解析）
+ * 命中/未命中次数记录到 embedding.cache.requests 指标
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    private static final String KEY_PREFIX = "embedding:";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Value("${ollama.embedding.cache.version:1}")
+    private String cacheVersion;
+
+    @Value("${ollama.embedding.cache.local-max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${ollama.embedding.cache.local-expire-minutes:60}")
+    private long localExpireMinutes;
+
+    @Value("${ollama.embedding.cache.redis-ttl-days:7}")
+    private long redisTtlDays;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, float[]> localCache;
+    private Counter localHitCounter;
+    private Counter redisHitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterAccess(localExpireMinutes, TimeUnit.MINUTES)
+                .build();
+        localHitCounter = requestCounter("local_hit");
+        redisHitCounter = requestCounter("redis_hit");
+        missCounter = requestCounter("miss");
+    }
+
+    /**
+     * 规范化文本：Unicode NFKC（全角转半角等）、合并空白、去除首尾空白
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * 计算缓存键（text 需已规范化）
+     */
+    public String cacheKey(String model, String text) {
+        return KEY_PREFIX + sha256(cacheVersion + "\n" + model + "\n" + text);
+    }
+
+    /**
+     * 查询单条缓存
+     * @return 未命中返回null
+     */
+    public float[] get(String key) {
+        return getAll(Collections.singletonList(key)).get(key);
+    }
+
+    /**
+     * 批量查询缓存：先查本地，本地未命中的键一次批量读取 Redis
+     * @return 命中的 键 -> 向量
+     */
+    public Map<String, float[]> getAll(Collection<String> keys) {
+        Map<String, float[]> result = new HashMap<>();
+        List<String> redisKeys = new ArrayList<>();
+        for (String key : keys) {
+            float[] vector = localCache.getIfPresent(key);
+            if (vector != null) {
+                result.put(key, vector);
+            } else {
+                redisKeys.add(key);
+            }
+        }
+        localHitCounter.increment(result.size());
+        if (redisKeys.isEmpty()) {
+            return result;
+        }
+
+        int redisHits = 0;
+        try {
+            RBatch batch = redissonClient.createBatch();
+            for (String key : redisKeys) {
+                batch.<byte[]>getBucket(key, ByteArrayCodec.INSTANCE).getAsync();
+            }
+            List<?> responses = batch.execute().getResponses();
+            for (int i = 0; i < redisKeys.size(); i++) {
+                Object bytes = responses.get(i);
+                if (bytes instanceof byte[] && ((byte[]) bytes).length > 0) {
+                    float[] vector = decode((byte[]) bytes);
+                    localCache.put(redisKeys.get(i), vector);
+                    result.put(redisKeys.get(i), vector);
+                    redisHits++;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis向量缓存失败，按未命中处理: {}", e.getMessage());
+        }
+        redisHitCounter.increment(redisHits);
+        missCounter.increment(redisKeys.size() - redisHits);
+        return result;
+    }
+
+    /**
+     * 写入缓存（本地 + Redis）
+     */
+    public void put(String key, float[] vector) {
+        putAll(Collections.singletonMap(key, vector));
+    }
+
+    /**
+     * 批量写入缓存，Redis 写入一次批量提交
+     */
+    public void putAll(Map<String, float[]> vectors) {
+        if (vectors.isEmpty()) {
+            return;
+        }
+        localCache.putAll(vectors);
+        try {
+            RBatch batch = redissonClient.createBatch();
+            Duration ttl = Duration.ofDays(redisTtlDays);
+            for (Map.Entry<String, float[]> entry : vectors.entrySet()) {
+                RBucketAsync<byte[]> bucket = batch.getBucket(entry.getKey(), ByteArrayCodec.INSTANCE);
+                bucket.setAsync(encode(entry.getValue()), ttl);
+            }
+            batch.execute();
+        } catch (Exception e) {
+            log.warn("写入Redis向量缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 向量编码为 float32 小端字节数组
+     */
+    static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    /**
+     * 字节数组解码为向量
+     */
+    static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("embedding.cache.requests")
+                .description("文本向量缓存请求次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+}
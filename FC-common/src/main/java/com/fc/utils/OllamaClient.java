@@ -0,0 +1,550 @@
+package com.fc.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fc.exception.AiServiceException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ollama 共享异步客户端（generate / embed）
+ *
+ * - 连接：JDK HttpClient，长连接复用，异步发送，不阻塞调用线程
+ * - 超时：建连超时 + 按操作区分的请求超时
+ * - 流式：generate 支持 stream=true，按行解析 Ollama 的 NDJSON 响应并逐段回调；
+ *   超过 stream-idle-timeout-seconds 没有收到新内容时取消请求，释放并发额度
+ * - 隔离：同时在途的模型请求不超过 max-concurrent，其余进入有界等待队列；
+ *   队列已满立即拒绝，排队超过 queue-timeout-ms 的请求到期即移出队列并拒绝，不再占用模型。
+ *   AI助手经 langchain4j 发送的对话请求通过 acquireAsync 申请许可，与本客户端的请求共用同一个额度和队列
+ * - 指标：ollama.client.requests（按 operation / outcome 统计耗时），ollama.client.in-flight / queued
+ */
+@Slf4j
+@Component
+public class OllamaClient {
+
+    /**
+     * 模型操作类型
+     */
+    public enum Operation {
+        GENERATE("/api/generate"),
+        EMBED("/api/embed"),
+        CHAT("/api/chat");
+
+        private final String path;
+
+        Operation(String path) {
+            this.path = path;
+        }
+    }
+
+    @Value("${ollama.api.base-url:http://localhost:11434}")
+    private String baseUrl;
+
+    @Value("${ollama.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${ollama.client.generate-timeout-seconds:120}")
+    private long generateTimeoutSeconds;
+
+    @Value("${ollama.client.embed-timeout-seconds:30}")
+    private long embedTimeoutSeconds;
+
+    @Value("${ollama.client.stream-idle-timeout-seconds:60}")
+    private long streamIdleTimeoutSeconds;
+
+    @Value("${ollama.client.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${ollama.client.max-queue:50}")
+    private int maxQueue;
+
+    @Value("${ollama.client.queue-timeout-ms:5000}")
+    private long queueTimeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentLinkedQueue<PendingRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Semaphore permits;
+    private ExecutorService callbackExecutor;
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent);
+        AtomicInteger counter = new AtomicInteger();
+        callbackExecutor = Executors.newFixedThreadPool(Math.max(2, maxConcurrent), runnable -> {
+            Thread thread = new Thread(runnable, "ollama-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(callbackExecutor)
+                .build();
+
+        Gauge.builder("ollama.client.in-flight", inFlight, AtomicInteger::get)
+                .description("Ollama在途请求数")
+                .register(meterRegistry);
+        Gauge.builder("ollama.client.queued", queued, AtomicInteger::get)
+                .description("Ollama排队请求数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        callbackExecutor.shutdownNow();
+    }
+
+    /**
+     * 异步生成文本
+     */
+    public CompletableFuture<String> generateAsync(String model, String prompt, Map<String, Object> options) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("prompt", prompt);
+        requestBody.put("stream", false);
+        if (options != null) {
+            requestBody.put("options", options);
+        }
+        return postAsync(Operation.GENERATE, requestBody)
+                .thenApply(body -> (String) body.get("response"));
+    }
+
+    /**
+     * 异步批量生成向量，返回与输入一一对应的向量
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<float[]>> embedAsync(String model, List<String> inputs) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("input", inputs);
+        return postAsync(Operation.EMBED, requestBody).thenApply(body -> {
+            // 返回格式：{"embeddings": [[0.1, 0.2, ...], [0.3, 0.4, ...]]}
+            List<List<Number>> embeddings = (List<List<Number>>) body.get("embeddings");
+            if (embeddings == null || embeddings.size() != inputs.size()) {
+                throw new AiServiceException("Ollama向量接口返回数量不一致: expected=" + inputs.size()
+                        + ", actual=" + (embeddings == null ? 0 : embeddings.size()));
+            }
+            List<float[]> vectors = new ArrayList<>(embeddings.size());
+            for (List<Number> embedding : embeddings) {
+                float[] vector = new float[embedding.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = embedding.get(i).floatValue();
+                }
+                vectors.add(vector);
+            }
+            return vectors;
+        });
+    }
+
+    /**
+     * 流式生成文本：每收到一段文本回调一次 onToken（在客户端回调线程中执行，不应阻塞），
+     * 返回的 future 在流结束后以完整文本完成
+     */
+    public CompletableFuture<String> generateStreamAsync(String model, String prompt, Map<String, Object> options,
+                                                         Consumer<String> onToken) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("prompt", prompt);
+        requestBody.put("stream", true);
+        if (options != null) {
+            requestBody.put("options", options);
+        }
+        StringBuilder text = new StringBuilder();
+        return postStreamAsync(Operation.GENERATE, requestBody, chunk -> {
+            // 每行格式：{"response": "片段", "done": false}，最后一行 done=true
+            String token = (String) chunk.get("response");
+            if (token != null && !token.isEmpty()) {
+                text.append(token);
+                onToken.accept(token);
+            }
+        }).thenApply(last -> text.toString());
+    }
+
+    /**
+     * 异步申请一个模型并发许可，供不经本客户端发送的模型请求使用（AI助手的 langchain4j 对话模型）
+     * 与普通请求按相同的规则排队和拒绝；获得许可时 future 完成（在入队或释放许可的线程中回调，不应阻塞），
+     * 请求结束后必须调用 Permit.release。调用方放弃等待（取消 future 或超时）后分配到的许可会立即归还
+     * @param operation 操作类型，用于指标
+     * @param queueTimeoutMs 最长排队时间
+     */
+    public CompletableFuture<Permit> acquireAsync(Operation operation, long queueTimeoutMs) {
+        CompletableFuture<Permit> permitFuture = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> rejection = new CompletableFuture<>();
+        rejection.whenComplete((body, error) -> {
+            if (error != null) {
+                permitFuture.completeExceptionally(error);
+            }
+        });
+
+        long now = System.nanoTime();
+        PendingRequest pending = new PendingRequest(operation, null, null, rejection, permitFuture, now,
+                now + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs));
+        enqueue(pending);
+        return permitFuture;
+    }
+
+    /**
+     * 检查 Ollama 服务是否可用（不占用模型并发额度）
+     */
+    public boolean isAvailable() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/tags"))
+                    .timeout(Duration.ofMillis(connectTimeoutMs * 2))
+                    .GET()
+                    .build();
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Ollama服务不可用: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 同步等待异步结果，最长等待排队超时加该操作的请求超时，异常统一转换为 AiServiceException
+     */
+    public <T> T await(CompletableFuture<T> future, Operation operation) {
+        long timeoutMs = queueTimeoutMs + timeoutOf(operation).toMillis();
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AiServiceException("等待Ollama响应时被中断");
+        } catch (TimeoutException e) {
+            throw new AiServiceException("等待Ollama响应超时: operation=" + operation + ", timeout=" + timeoutMs + "ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AiServiceException) {
+                throw (AiServiceException) cause;
+            }
+            throw new AiServiceException("Ollama调用失败: " + (cause != null ? cause.getMessage() : e.getMessage()));
+        }
+    }
+
+    /**
+     * 提交请求：有空闲额度时直接发送，否则进入有界队列
+     */
+    private CompletableFuture<Map<String, Object>> postAsync(Operation operation, Map<String, Object> requestBody) {
+        return postStreamAsync(operation, requestBody, null);
+    }
+
+    /**
+     * 提交请求；chunkConsumer 不为空时按行读取流式响应并逐行回调，返回的 future 以最后一行完成
+     */
+    private CompletableFuture<Map<String, Object>> postStreamAsync(Operation operation, Map<String, Object> requestBody,
+                                                                   Consumer<Map<String, Object>> chunkConsumer) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(requestBody);
+        } catch (JsonProcessingException e) {
+            future.completeExceptionally(new AiServiceException("Ollama请求序列化失败: " + e.getMessage()));
+            return future;
+        }
+
+        long now = System.nanoTime();
+        PendingRequest pending = new PendingRequest(operation, payload, chunkConsumer, future, null, now,
+                now + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs));
+        enqueue(pending);
+        return future;
+    }
+
+    private void enqueue(PendingRequest pending) {
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            reject(pending, "Ollama请求队列已满");
+            return;
+        }
+        queue.offer(pending);
+        // 到期仍在队列中的请求立即拒绝，不等到出队时才发现
+        long delayNanos = pending.queueDeadline - System.nanoTime();
+        CompletableFuture.delayedExecutor(Math.max(delayNanos, 0), TimeUnit.NANOSECONDS, callbackExecutor)
+                .execute(() -> expire(pending));
+        drain();
+    }
+
+    private void expire(PendingRequest pending) {
+        if (queue.remove(pending)) {
+            queued.decrementAndGet();
+            reject(pending, "Ollama请求排队超时");
+        }
+    }
+
+    /**
+     * 在有空闲额度时依次发送队列中的请求；入队和请求完成后都会调用，保证不会有请求滞留
+     */
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            PendingRequest pending = queue.poll();
+            if (pending == null) {
+                permits.release();
+                return;
+            }
+            queued.decrementAndGet();
+            if (System.nanoTime() > pending.queueDeadline) {
+                permits.release();
+                reject(pending, "Ollama请求排队超时");
+                continue;
+            }
+            dispatch(pending);
+        }
+    }
+
+    private void dispatch(PendingRequest pending) {
+        inFlight.incrementAndGet();
+        if (pending.permitFuture != null) {
+            Permit permit = new Permit(pending);
+            if (!pending.permitFuture.complete(permit)) {
+                // 调用方已放弃等待
+                permit.release();
+            }
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + pending.operation.path))
+                .timeout(timeoutOf(pending.operation))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(pending.payload))
+                .build();
+        if (pending.chunkConsumer != null) {
+            new StreamCall(pending).start(request);
+            return;
+        }
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                    drain();
+                    complete(pending, response, error);
+                });
+    }
+
+    private void complete(PendingRequest pending, HttpResponse<byte[]> response, Throwable error) {
+        String outcome = "success";
+        try {
+            if (error != null) {
+                outcome = outcomeOf(error);
+                pending.future.completeExceptionally(new AiServiceException(
+                        "Ollama " + pending.operation + " 调用失败: " + error.getMessage()));
+            } else if (response.statusCode() != 200) {
+                outcome = "error";
+                pending.future.completeExceptionally(new AiServiceException(
+                        "Ollama " + pending.operation + " 调用失败: HTTP " + response.statusCode()));
+            } else {
+                pending.future.complete(objectMapper.readValue(response.body(),
+                        new TypeReference<Map<String, Object>>() {}));
+            }
+        } catch (Exception e) {
+            outcome = "error";
+            pending.future.completeExceptionally(new AiServiceException(
+                    "Ollama " + pending.operation + " 响应解析失败: " + e.getMessage()));
+        }
+        record(pending, outcome);
+    }
+
+    private void reject(PendingRequest pending, String reason) {
+        log.warn("{}: operation={}, inFlight={}, queued={}", reason, pending.operation, inFlight.get(), queued.get());
+        pending.future.completeExceptionally(new AiServiceException(reason));
+        record(pending, "rejected");
+    }
+
+    private void record(PendingRequest pending, String outcome) {
+        Timer.builder("ollama.client.requests")
+                .description("Ollama请求耗时（含排队）")
+                .tag("operation", pending.operation.name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - pending.submittedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private String outcomeOf(Throwable error) {
+        return error instanceof HttpTimeoutException ? "timeout" : "error";
+    }
+
+    private Duration timeoutOf(Operation operation) {
+        switch (operation) {
+            case EMBED:
+                return Duration.ofSeconds(embedTimeoutSeconds);
+            default:
+                return Duration.ofSeconds(generateTimeoutSeconds);
+        }
+    }
+
+    /**
+     * 排队中的请求；permitFuture 不为空时只申请许可，不由本客户端发送
+     */
+    private static final class PendingRequest {
+        private final Operation operation;
+        private final byte[] payload;
+        private final Consumer<Map<String, Object>> chunkConsumer;
+        private final CompletableFuture<Map<String, Object>> future;
+        private final CompletableFuture<Permit> permitFuture;
+        private final long submittedAt;
+        private final long queueDeadline;
+
+        PendingRequest(Operation operation, byte[] payload, Consumer<Map<String, Object>> chunkConsumer,
+                       CompletableFuture<Map<String, Object>> future, CompletableFuture<Permit> permitFuture,
+                       long submittedAt, long queueDeadline) {
+            this.operation = operation;
+            this.payload = payload;
+            this.chunkConsumer = chunkConsumer;
+            this.future = future;
+            this.permitFuture = permitFuture;
+            this.submittedAt = submittedAt;
+            this.queueDeadline = queueDeadline;
+        }
+    }
+
+    /**
+     * 已分配的模型并发许可，release 只生效一次
+     */
+    public final class Permit {
+        private final PendingRequest pending;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(PendingRequest pending) {
+            this.pending = pending;
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            permits.release();
+            drain();
+            record(pending, "success");
+        }
+    }
+
+    /**
+     * 一次流式请求：逐行解析响应并回调；回调抛出异常（如客户端已断开）或响应空闲超时时取消请求，立即释放并发额度
+     */
+    private final class StreamCall implements Flow.Subscriber<String> {
+        private final PendingRequest pending;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+        private volatile Map<String, Object> lastChunk = Collections.emptyMap();
+        private volatile long lastActivity;
+
+        StreamCall(PendingRequest pending) {
+            this.pending = pending;
+        }
+
+        void start(HttpRequest request) {
+            HttpResponse.BodyHandler<Void> handler = info -> info.statusCode() == 200
+                    ? HttpResponse.BodySubscribers.fromLineSubscriber(this)
+                    : HttpResponse.BodySubscribers.replacing(null);
+            httpClient.sendAsync(request, handler).whenComplete((response, error) -> {
+                if (error != null) {
+                    finish(error);
+                } else if (response.statusCode() != 200) {
+                    finish(new AiServiceException("HTTP " + response.statusCode()));
+                } else {
+                    finish(null);
+                }
+            });
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            // 响应头到达之前由请求超时控制，之后按空闲时间控制
+            lastActivity = System.nanoTime();
+            scheduleIdleCheck(TimeUnit.SECONDS.toNanos(streamIdleTimeoutSeconds));
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onNext(String line) {
+            lastActivity = System.nanoTime();
+            if (finished.get() || line.isBlank()) {
+                return;
+            }
+            try {
+                Map<String, Object> chunk = objectMapper.readValue(line, Map.class);
+                if (chunk.get("error") != null) {
+                    throw new AiServiceException(String.valueOf(chunk.get("error")));
+                }
+                lastChunk = chunk;
+                pending.chunkConsumer.accept(chunk);
+            } catch (Exception e) {
+                subscription.cancel();
+                finish(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // 由 sendAsync 返回的 future 统一处理
+        }
+
+        @Override
+        public void onComplete() {
+            // 由 sendAsync 返回的 future 统一处理
+        }
+
+        private void scheduleIdleCheck(long delayNanos) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, callbackExecutor).execute(() -> {
+                if (finished.get()) {
+                    return;
+                }
+                long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(streamIdleTimeoutSeconds);
+                long idleNanos = System.nanoTime() - lastActivity;
+                if (idleNanos < idleTimeoutNanos) {
+                    scheduleIdleCheck(idleTimeoutNanos - idleNanos);
+                    return;
+                }
+                subscription.cancel();
+                finish(new HttpTimeoutException("流式响应超过" + streamIdleTimeoutSeconds + "秒没有新内容"));
+            });
+        }
+
+        private void finish(Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            permits.release();
+            drain();
+            if (error != null) {
+                pending.future.completeExceptionally(new AiServiceException(
+                        "Ollama " + pending.operation + " 流式调用失败: " + error.getMessage()));
+                record(pending, outcomeOf(error));
+            } else {
+                pending.future.complete(lastChunk);
+                record(pending, "success");
+            }
+        }
+    }
+}
@@ -1,106 +1,82 @@
 package com.fc.utils;
 
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
 public class OllamaUtil {
 
-    @Value("${ollama.api.base-url:http://localhost:11434}")
-    private String baseUrl;
-
     @Value("${ollama.api.model:llama2}")
     private String model;
 
     @Autowired
-    private RedissonClient redissonClient;
+    private PromptManager promptManager;
     
     @Autowired
-    private PromptManager promptManager;
+    private EmbeddingCache embeddingCache;
 
-    private final RestTemplate restTemplate;
-
-    public OllamaUtil() {
-        this.restTemplate = new RestTemplate();
-    }
+    @Autowired
+    private OllamaClient ollamaClient;
 
     /**
      * 生成电影评论AI总结
+     * 同一电影的并发生成由调用方合并（见 AiServiceImpl），此处不再加锁
      */
     public String generateMovieCommentSummary(String movieTitle, String commentSamples, Integer summaryStyle, Integer maxLength) {
-        // 创建分布式锁，锁的key包含电影标题，确保同一电影串行处理
-        String lockKey = String.format("lock:movie:summary:%s", movieTitle.hashCode());
-        RLock lock = redissonClient.getLock(lockKey);
-
-        boolean isLocked = false;
         try {
-            // 尝试获取锁，最多等待3秒，锁持有时间90秒
-            isLocked = lock.tryLock(3, 90, TimeUnit.SECONDS);
-            if (!isLocked) {
-                log.warn("获取分布式锁失败，电影《{}》的AI总结生成任务已被其他实例处理", movieTitle);
-                // 可以返回一个提示，或者抛出特定异常
-                return generateFallbackSummary(movieTitle, summaryStyle);
-            }
-
-            log.info("成功获取分布式锁，开始为电影《{}》生成AI总结", movieTitle);
-            return doGenerateMovieCommentSummary(movieTitle, commentSamples, summaryStyle, maxLength);
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("获取分布式锁时被中断，电影《{}》", movieTitle, e);
+            return ollamaClient.await(generateMovieCommentSummaryAsync(movieTitle, commentSamples, summaryStyle, maxLength),
+                    OllamaClient.Operation.GENERATE);
+        } catch (Exception e) {
+            log.error("调用Ollama API生成电影评论总结失败", e);
             return generateFallbackSummary(movieTitle, summaryStyle);
-        } finally {
-            if (isLocked && lock.isHeldByCurrentThread()) {
-                lock.unlock();
-                log.info("已释放分布式锁，电影《{}》的AI总结生成完成", movieTitle);
-            }
         }
     }
 
     /**
-     * 实际的AI总结生成逻辑（被锁保护的部分）
+     * 异步生成电影评论AI总结
+     * @return 调用失败时以 AiServiceException 结束，不返回备用总结
      */
-    private String doGenerateMovieCommentSummary(String movieTitle, String commentSamples, Integer summaryStyle, Integer maxLength) {
-        try {
-            String prompt = buildMovieSummaryPrompt(movieTitle, commentSamples, summaryStyle, maxLength);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("prompt", prompt);
-            requestBody.put("stream", false);
-            requestBody.put("options", Map.of("temperature", 0.7, "max_tokens", maxLength));
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    public CompletableFuture<String> generateMovieCommentSummaryAsync(String movieTitle, String commentSamples,
+                                                                      Integer summaryStyle, Integer maxLength) {
+        String prompt = buildMovieSummaryPrompt(movieTitle, commentSamples, summaryStyle, maxLength);
+        return ollamaClient.generateAsync(model, prompt, Map.of("temperature", 0.7, "max_tokens", maxLength));
+    }
 
-            String url = baseUrl + "/api/generate";
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
+    /**
+     * 异步增量更新电影评论AI总结：在上一版总结基础上结合新增评论生成新总结
+     * @return 调用失败时以 AiServiceException 结束，不返回备用总结
+     */
+    public CompletableFuture<String> updateMovieCommentSummaryAsync(String movieTitle, String previousSummary,
+                                                                    String newComments, int newCommentCount,
+                                                                    Integer summaryStyle, Integer maxLength) {
+        String prompt = promptManager.buildMovieCommentSummaryUpdatePrompt(movieTitle, previousSummary,
+                newComments, newCommentCount, summaryStyle, maxLength);
+        return ollamaClient.generateAsync(model, prompt, Map.of("temperature", 0.7, "max_tokens", maxLength));
+    }
 
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("response");
-            } else {
-                log.error("Ollama API调用失败: {}", response.getStatusCode());
-                return generateFallbackSummary(movieTitle, summaryStyle);
-            }
-        } catch (Exception e) {
-            log.error("调用Ollama API生成电影评论总结失败", e);
-            return generateFallbackSummary(movieTitle, summaryStyle);
-        }
+    /**
+     * 流式生成电影评论AI总结
+     * @param onToken 每收到一段文本时回调
+     * @return 流结束后以完整总结完成；调用失败时以 AiServiceException 结束
+     */
+    public CompletableFuture<String> streamMovieCommentSummary(String movieTitle, String commentSamples,
+                                                               Integer summaryStyle, Integer maxLength,
+                                                               Consumer<String> onToken) {
+        String prompt = buildMovieSummaryPrompt(movieTitle, commentSamples, summaryStyle, maxLength);
+        return ollamaClient.generateStreamAsync(model, prompt,
+                Map.of("temperature", 0.7, "max_tokens", maxLength), onToken);
     }
 
     /**
@@ -127,67 +103,93 @@ public class OllamaUtil {
      * 检查Ollama服务是否可用
      */
     public boolean testConnection() {
-        try {
-            String url = baseUrl + "/api/tags";
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (Exception e) {
-            log.warn("Ollama服务不可用: {}", e.getMessage());
-            return false;
-        }
+        return ollamaClient.isAvailable();
     }
     
     /**
      * 生成文本的向量表示
+     * 按 模型 + 规范化文本 查询向量缓存，命中时不调用 Ollama
      * @param text 输入文本
      * @return 向量表示
      */
     public List<Double> generateVector(String text) {
+        String normalized = EmbeddingCache.normalize(text);
+        String cacheKey = embeddingCache.cacheKey(model, normalized);
+        float[] cached = embeddingCache.get(cacheKey);
+        if (cached != null) {
+            return toDoubleList(cached);
+        }
+
         try {
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("prompt", text);
-            requestBody.put("stream", false);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            
-            // 使用 Ollama Embeddings API 端点
-            String url = baseUrl + "/api/embeddings";
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                // 解析真实的 Ollama API 响应获取向量
-                Map<String, Object> responseBody = response.getBody();
-                
-                // Ollama Embeddings API 返回格式：
-                // {
-                //   "embeddings": [[0.1, 0.2, 0.3, ...]]
-                // }
-                if (responseBody.containsKey("embeddings")) {
-                    List<List<Double>> embeddings = (List<List<Double>>) responseBody.get("embeddings");
-                    if (embeddings != null && !embeddings.isEmpty()) {
-                        return embeddings.get(0); // 返回第一个嵌入向量
-                    }
-                }
-                
-                // 如果响应格式不符合预期，记录警告并使用备用方案
-                log.warn("Ollama API 响应格式不符合预期: {}", responseBody);
-                return generateRandomVector();
-            } else {
-                log.error("Ollama API调用失败: {}", response.getStatusCode());
-                // 返回随机向量作为备用
-                return generateRandomVector();
-            }
+            float[] vector = requestEmbeddings(Collections.singletonList(normalized)).get(0);
+            embeddingCache.put(cacheKey, vector);
+            return toDoubleList(vector);
         } catch (Exception e) {
             log.error("调用Ollama API生成向量失败", e);
-            // 返回随机向量作为备用
+            // 返回随机向量作为备用（不写入缓存）
             return generateRandomVector();
         }
     }
     
+    /**
+     * 批量生成文本的向量表示（Ollama /api/embed，一次请求嵌入多段文本）
+     * 先批量查询向量缓存，只对未命中的文本发起请求
+     * 与 generateVector 不同，调用失败时直接抛出异常而不返回随机向量，避免批量任务把随机向量写入向量库
+     * @param texts 输入文本列表
+     * @return 与输入一一对应的向量列表
+     */
+    public List<List<Double>> generateVectors(List<String> texts) {
+        List<String> keys = new ArrayList<>(texts.size());
+        Map<String, String> missTexts = new LinkedHashMap<>();
+        for (String text : texts) {
+            String normalized = EmbeddingCache.normalize(text);
+            String key = embeddingCache.cacheKey(model, normalized);
+            keys.add(key);
+            missTexts.put(key, normalized);
+        }
+
+        Map<String, float[]> vectors = new HashMap<>(embeddingCache.getAll(missTexts.keySet()));
+        missTexts.keySet().removeAll(vectors.keySet());
+        if (!missTexts.isEmpty()) {
+            List<float[]> embeddings = requestEmbeddings(new ArrayList<>(missTexts.values()));
+            Map<String, float[]> fresh = new HashMap<>();
+            int i = 0;
+            for (String key : missTexts.keySet()) {
+                fresh.put(key, embeddings.get(i++));
+            }
+            embeddingCache.putAll(fresh);
+            vectors.putAll(fresh);
+        }
+
+        List<List<Double>> result = new ArrayList<>(texts.size());
+        for (String key : keys) {
+            result.add(toDoubleList(vectors.get(key)));
+        }
+        return result;
+    }
+
+    /**
+     * 调用 Ollama /api/embed 生成向量
+     */
+    private List<float[]> requestEmbeddings(List<String> inputs) {
+        return ollamaClient.await(ollamaClient.embedAsync(model, inputs), OllamaClient.Operation.EMBED);
+    }
+
+    private static List<Double> toDoubleList(float[] vector) {
+        List<Double> list = new ArrayList<>(vector.length);
+        for (float v : vector) {
+            list.add((double) v);
+        }
+        return list;
+    }
+
+    /**
+     * 当前使用的模型名称
+     */
+    public String getModel() {
+        return model;
+    }
+
     /**
      * 生成随机向量作为备用
      * @return 随机向量
@@ -207,32 +209,22 @@ public class OllamaUtil {
      */
     public String generateText(String prompt) {
         try {
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("prompt", prompt);
-            requestBody.put("stream", false);
-            requestBody.put("options", Map.of("temperature", 0.7, "max_tokens", 500));
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            String url = baseUrl + "/api/generate";
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("response");
-            } else {
-                log.error("Ollama API调用失败: {}", response.getStatusCode());
-                return generateFallbackText(prompt);
-            }
+            return ollamaClient.await(generateTextAsync(prompt), OllamaClient.Operation.GENERATE);
         } catch (Exception e) {
             log.error("调用Ollama API生成文本失败", e);
             return generateFallbackText(prompt);
         }
     }
     
+    /**
+     * 异步生成文本内容，不阻塞调用线程；调用失败时返回的 future 以 AiServiceException 结束
+     * @param prompt 输入提示词
+     * @return 生成的文本内容
+     */
+    public CompletableFuture<String> generateTextAsync(String prompt) {
+        return ollamaClient.generateAsync(model, prompt, Map.of("temperature", 0.7, "max_tokens", 500));
+    }
+    
     /**
      * 生成备用文本（当AI服务不可用时）
      * @param prompt 原始提示词
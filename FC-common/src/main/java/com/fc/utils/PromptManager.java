@@ -151,9 +151,53 @@ public class PromptManager {
         
         请直接给出结构化的总结内容：
         """;
-    
 
-    
+    /**
+     * 电影评论总结增量更新提示词（基于上一版总结和新增评论）
+     */
+    public static final String MOVIE_COMMENT_SUMMARY_UPDATE_PROMPT = """
+        你是一个专业的电影评论分析师。下面是电影《%s》此前的评论总结，以及此后新增的%d条用户评论。
+        请结合新增评论更新总结，生成%s的总结报告。
+
+        更新要求：
+        1. 保留原总结中仍然成立的结论
+        2. 新增评论带来新的观点、优点或槽点时补充进去
+        3. 新增评论与原结论明显矛盾时，调整相应的情感倾向和推荐程度
+        4. %s
+        5. 总结长度控制在%d字以内
+        6. 用中文回复，语言专业但不晦涩
+
+        原总结：
+        %s
+
+        新增评论：
+        %s
+
+        请直接给出更新后的结构化总结内容：
+        """;
+
+    /**
+     * 会话滚动摘要提示词（合并上一版摘要和较早的对话）
+     */
+    public static final String CONVERSATION_SUMMARY_PROMPT = """
+        下面是用户与电影推荐助手之前的对话摘要，以及此后较早的若干轮对话。
+        请把它们合并成一段新的对话摘要，供助手在后续对话中参考。
+
+        摘要要求：
+        1. 保留用户的需求、明确表达的喜好和不喜欢的内容
+        2. 保留助手已经推荐或讨论过的电影名称，避免后续重复推荐
+        3. 省略寒暄、工具调用细节和电影简介等可以重新查询的内容
+        4. 长度控制在%d字以内，用中文陈述句，不要使用列表
+
+        之前的摘要：
+        %s
+
+        较早的对话：
+        %s
+
+        请直接给出新的对话摘要：
+        """;
+
     /**
      * 构建电影评论总结提示词
      */
@@ -166,6 +210,30 @@ public class PromptManager {
         return String.format(MOVIE_COMMENT_SUMMARY_PROMPT, 
                            movieTitle, style, styleRequirement, maxLength, commentSamples);
     }
+
+    /**
+     * 构建电影评论总结增量更新提示词
+     */
+    public String buildMovieCommentSummaryUpdatePrompt(String movieTitle, String previousSummary,
+                                                       String newComments, int newCommentCount,
+                                                       Integer summaryStyle, Integer maxLength) {
+        String style = summaryStyle == 1 ? "简洁明了，突出重点" : "详细全面，包含具体例子";
+        String styleRequirement = summaryStyle == 1 ?
+            "突出重点，避免过多细节" : "包含具体例子和分析细节";
+
+        return String.format(MOVIE_COMMENT_SUMMARY_UPDATE_PROMPT,
+                           movieTitle, newCommentCount, style, styleRequirement, maxLength,
+                           previousSummary, newComments);
+    }
+    
+    /**
+     * 构建会话滚动摘要提示词
+     */
+    public String buildConversationSummaryPrompt(String previousSummary, String conversation, int maxLength) {
+        return String.format(CONVERSATION_SUMMARY_PROMPT, maxLength,
+                           previousSummary == null || previousSummary.isEmpty() ? "（无）" : previousSummary,
+                           conversation);
+    }
     
     /**
      * 构建推荐理由提示词
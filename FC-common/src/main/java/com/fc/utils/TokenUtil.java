@@ -0,0 +1,60 @@
+package com.fc.utils;
+
+/**
+ * 文本token数估算工具类
+ * 提示词预算统一按此估算：汉字、假名、韩文按每字1个token，其他字符按每4个字符1个token
+ */
+public class TokenUtil {
+
+    private TokenUtil() {
+    }
+
+    /**
+     * 估算文本token数
+     * @param text 文本（为空时返回0）
+     * @return 估算的token数
+     */
+    public static int estimateTokens(String text) {
+        if (text == null) {
+            return 0;
+        }
+        double tokens = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            tokens += tokenCost(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return (int) Math.ceil(tokens);
+    }
+
+    /**
+     * 按估算token数截断文本，截断时以省略号结尾
+     * @param text 文本
+     * @param maxTokens 最大token数
+     * @return 截断后的文本
+     */
+    public static String truncate(String text, int maxTokens) {
+        double tokens = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            tokens += tokenCost(codePoint);
+            if (tokens > maxTokens) {
+                return text.substring(0, i) + "…";
+            }
+            i += Character.charCount(codePoint);
+        }
+        return text;
+    }
+
+    private static double tokenCost(int codePoint) {
+        if (Character.isIdeographic(codePoint)) {
+            return 1.0;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        if (script == Character.UnicodeScript.HIRAGANA || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL) {
+            return 1.0;
+        }
+        return 0.25;
+    }
+}
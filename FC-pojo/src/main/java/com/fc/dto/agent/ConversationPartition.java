@@ -0,0 +1,29 @@
+package com.fc.dto.agent;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * AI Agent对话历史表分区信息DTO（来自 information_schema.PARTITIONS）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationPartition {
+
+    /**
+     * 分区名
+     */
+    private String partitionName;
+
+    /**
+     * 分区上界：TO_DAYS(create_time) 的值，最后一个分区为 MAXVALUE
+     */
+    private String lessThan;
+
+    /**
+     * 分区行数（InnoDB统计信息，为估算值）
+     */
+    private long tableRows;
+}
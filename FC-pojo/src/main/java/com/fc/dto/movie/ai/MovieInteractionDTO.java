@@ -0,0 +1,22 @@
+package com.fc.dto.movie.ai;
+
+import lombok.Data;
+
+/**
+ * 用户-电影交互记录（评分或观影标记），用于构建电影相似度矩阵
+ */
+@Data
+public class MovieInteractionDTO {
+    /** 记录主键（分批读取的游标） */
+    private Long id;
+
+    private Long userId;
+
+    private Long movieId;
+
+    /** 评分（1-5），观影标记记录为 null */
+    private Double rating;
+
+    /** 关系类型：1-想看，2-已看过，评分记录为 null */
+    private Integer relationType;
+}
@@ -11,7 +11,7 @@ public class MovieViewedDTO {
     @NotNull(message = "电影ID不能为空")
     private Long movieId;
     
-    @NotNull(message = "评分不能为空")
+    // 评分为空表示看过但未评分
     @Min(value = 1, message = "评分最小值为1")
     @Max(value = 5, message = "评分最大值为5")
     private Integer rating;
@@ -0,0 +1,61 @@
+package com.fc.dto.post;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 计算帖子热度所需的统计数据
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostHotStatDTO {
+
+    /**
+     * 帖子ID
+     */
+    private Long postId;
+
+    /**
+     * 电影ID
+     */
+    private Long movieId;
+
+    /**
+     * 帖子类型
+     */
+    private Integer postType;
+
+    /**
+     * 点赞数
+     */
+    private Integer likeCount;
+
+    /**
+     * 评论数
+     */
+    private Integer commentCount;
+
+    /**
+     * 浏览量
+     */
+    private Integer viewCount;
+
+    /**
+     * 收藏数
+     */
+    private Integer collectCount;
+
+    /**
+     * 逻辑删除标志
+     */
+    private Integer isDeleted;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
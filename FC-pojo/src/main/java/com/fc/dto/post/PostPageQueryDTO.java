@@ -12,6 +12,9 @@ public class PostPageQueryDTO {
     @Schema(description = "游标（最后一条记录的创建时间）", example = "2023-01-01T00:00:00")
     private LocalDateTime cursor;
 
+    @Schema(description = "游标记录ID（上一页返回的nextCursorId，与cursor组成复合游标）", example = "100")
+    private Long cursorId;
+
     @Schema(description = "每页记录数", example = "20")
     private Integer size = 20;
 
@@ -24,4 +27,10 @@ public class PostPageQueryDTO {
     @Schema(description = "内容形式筛选：1-图文，2-视频", example = "1")
     private Integer contentForm;
 
+    @Schema(description = "排序方式：new-最新（默认），hot-最热", example = "new")
+    private String sort;
+
+    @Schema(description = "热度排序的偏移量（上一页返回的nextOffset）", example = "0")
+    private Integer offset;
+
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.fc.dto.tag;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 电影维度的标签使用次数，用于电影热门标签排行的对账
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieTagCountDTO {
+
+    /**
+     * 电影ID
+     */
+    private Long movieId;
+
+    /**
+     * 标签ID
+     */
+    private Long tagId;
+
+    /**
+     * 该电影下使用该标签的有效帖子数量
+     */
+    private Integer usageCount;
+}
@@ -0,0 +1,24 @@
+package com.fc.dto.tag;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 帖子-标签关联行，用于标签共现图的批量构建
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostTagRelationDTO {
+
+    /**
+     * 帖子ID
+     */
+    private Long postId;
+
+    /**
+     * 标签ID
+     */
+    private Long tagId;
+}
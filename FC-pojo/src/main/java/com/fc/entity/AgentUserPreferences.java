@@ -48,6 +48,16 @@ public class AgentUserPreferences implements Serializable {
      */
     private String dislikedMovies;
 
+    /**
+     * 偏好画像（JSON格式，类型/评分/年份/人物的权重向量）
+     */
+    private String preferenceProfile;
+
+    /**
+     * 偏好画像已处理到的对话消息ID
+     */
+    private Long profileWatermark;
+
     /**
      * 创建时间
      */
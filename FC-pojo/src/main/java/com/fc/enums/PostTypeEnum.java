@@ -45,4 +45,14 @@ public enum PostTypeEnum {
         return type != null && type.spoiler;
     }
 
+    /**
+     * 判断是否为二创类型
+     * @param code
+     * @return
+     */
+    public static boolean isCreative(Integer code) {
+        PostTypeEnum type = getByCode(code);
+        return type == CREATIVE_NO_SPOILER || type == CREATIVE_SPOILER;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package com.fc.agent.cache;
+
+import com.fc.agent.memory.SessionChatMemoryStore;
+import com.fc.agent.tools.HistoryRecommendTool;
+import com.fc.agent.vector.FlatVectorStore;
+import com.fc.utils.OllamaUtil;
+import com.fc.utils.PromptManager;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * AI助手语义回复缓存
+ *
+ * 对用户消息做向量嵌入，与已缓存问题的余弦相似度不低于 similarity-threshold 时直接返回之前的回复：
+ * - 范围：只缓存会话的第一轮（有上下文的追问不适用），消息含"我的/观影历史"等个人化表述时不查不存，
+ *   生成过程中调用了 HistoryRecommendTool 的按用户推荐工具时不存
+ * - 失效：条目写入 ttl-minutes 后过期；电影信息变化时递增 Redis 中的目录版本号，各实例丢弃旧版本的条目
+ * - 命中时把本轮问答写入会话记忆，后续追问与正常对话一致
+ * 缓存条目只保存在本实例内存中；命中、未命中、跳过次数和节省的生成耗时记录到 agent.semantic-cache.* 指标；
+ * 嵌入调用失败时跳过缓存，不使用备用向量
+ */
+@Slf4j
+@Component
+public class SemanticResponseCache {
+
+    private static final String CATALOG_VERSION_KEY = "agent:semantic-cache:catalog-version";
+
+    /**
+     * 表示问题依赖当前用户自身数据的表述
+     */
+    private static final List<String> PERSONALIZED_MARKERS = List.of(
+            "我的", "我看过", "看过的", "我喜欢", "根据我", "适合我", "我的口味", "口味", "偏好",
+            "观影历史", "观影记录", "历史记录", "推荐给我");
+
+    /**
+     * 按用户数据生成结果的工具（工具名即方法名）
+     */
+    private static final Set<String> PERSONALIZED_TOOLS = Arrays.stream(HistoryRecommendTool.class.getDeclaredMethods())
+            .filter(method -> method.isAnnotationPresent(Tool.class))
+            .map(Method::getName)
+            .collect(Collectors.toUnmodifiableSet());
+
+    @Value("${agent.semantic-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.semantic-cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    @Value("${agent.semantic-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${agent.semantic-cache.max-entries:2000}")
+    private long maxEntries;
+
+    @Value("${agent.semantic-cache.max-message-chars:200}")
+    private int maxMessageChars;
+
+    @Autowired
+    private OllamaUtil ollamaUtil;
+
+    @Autowired
+    private SessionChatMemoryStore sessionChatMemoryStore;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<Long, Entry> entries;
+    private final AtomicLong entryIds = new AtomicLong();
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter bypassCounter;
+    private Timer savedTimer;
+
+    @PostConstruct
+    public void init() {
+        entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .maximumSize(maxEntries)
+                .build();
+        Gauge.builder("agent.semantic-cache.entries", entries, Cache::estimatedSize)
+                .description("语义缓存条目数")
+                .register(meterRegistry);
+        hitCounter = Counter.builder("agent.semantic-cache.hits")
+                .description("AI助手语义缓存命中次数")
+                .register(meterRegistry);
+        missCounter = Counter.builder("agent.semantic-cache.misses")
+                .description("AI助手语义缓存未命中次数")
+                .register(meterRegistry);
+        bypassCounter = Counter.builder("agent.semantic-cache.bypass")
+                .description("未使用AI助手语义缓存的请求次数（个人化问题、会话追问、嵌入失败）")
+                .register(meterRegistry);
+        savedTimer = Timer.builder("agent.semantic-cache.saved")
+                .description("AI助手语义缓存命中时节省的生成耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找语义相近问题的缓存回复，命中时同时把本轮问答写入会话记忆
+     *
+     * @param memoryId 记忆ID，见 SessionChatMemoryStore.memoryId
+     * @param message 用户消息
+     * @return 查找结果，未命中时传给 {@link #put} 以缓存新生成的回复
+     */
+    public Lookup lookup(String memoryId, String message) {
+        if (!enabled || message == null || message.length() > maxMessageChars || isPersonalized(message)) {
+            bypassCounter.increment();
+            return Lookup.BYPASS;
+        }
+        try {
+            if (hasUserTurn(sessionChatMemoryStore.getMessages(memoryId))) {
+                bypassCounter.increment();
+                return Lookup.BYPASS;
+            }
+            // generateVectors 失败时抛出异常（generateVector 会返回随机向量），由下方按跳过处理
+            float[] vector = FlatVectorStore.normalize(FlatVectorStore.toFloatArray(
+                    ollamaUtil.generateVectors(Collections.singletonList(message)).get(0)));
+            if (vector == null) {
+                bypassCounter.increment();
+                return Lookup.BYPASS;
+            }
+            long catalogVersion = catalogVersion().get();
+
+            Entry best = null;
+            double bestSimilarity = similarityThreshold;
+            for (var item : entries.asMap().entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.catalogVersion != catalogVersion) {
+                    entries.invalidate(item.getKey());
+                    continue;
+                }
+                if (entry.vector.length != vector.length) {
+                    continue;
+                }
+                double similarity = dot(vector, entry.vector);
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+
+            if (best == null) {
+                missCounter.increment();
+                return new Lookup(null, message, vector, catalogVersion);
+            }
+            sessionChatMemoryStore.updateMessages(memoryId, List.of(
+                    SystemMessage.from(PromptManager.SYSTEM_PROMPT), UserMessage.from(message), AiMessage.from(best.answer)));
+            hitCounter.increment();
+            savedTimer.record(best.generationNanos, TimeUnit.NANOSECONDS);
+            log.info("AI助手语义缓存命中，记忆ID: {}, 相似度: {}, 原问题: {}", memoryId,
+                    String.format("%.3f", bestSimilarity), best.question);
+            return new Lookup(best.answer, message, vector, catalogVersion);
+        } catch (Exception e) {
+            log.warn("AI助手语义缓存查找失败，按未命中处理，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+            bypassCounter.increment();
+            return Lookup.BYPASS;
+        }
+    }
+
+    /**
+     * 缓存新生成的回复（查找时被跳过、调用了按用户推荐工具或回复为空时不缓存）
+     *
+     * @param lookup 生成前的查找结果
+     * @param answer 生成的回复
+     * @param toolNames 生成过程中调用的工具名
+     * @param generationNanos 生成耗时，命中时记为节省的耗时
+     */
+    public void put(Lookup lookup, String answer, Collection<String> toolNames, long generationNanos) {
+        if (lookup.vector == null || lookup.hit() || answer == null || answer.isBlank()) {
+            return;
+        }
+        if (toolNames.stream().anyMatch(PERSONALIZED_TOOLS::contains)) {
+            log.debug("回复依赖用户观影数据，不写入语义缓存: {}", lookup.question);
+            return;
+        }
+        entries.put(entryIds.incrementAndGet(),
+                new Entry(lookup.question, lookup.vector, answer, lookup.catalogVersion, generationNanos));
+    }
+
+    /**
+     * 电影信息变化后调用，使所有实例的缓存回复失效
+     */
+    public void onCatalogChanged() {
+        try {
+            catalogVersion().incrementAndGet();
+        } catch (Exception e) {
+            log.warn("递增语义缓存目录版本号失败，缓存回复将在过期后失效: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isPersonalized(String message) {
+        for (String marker : PERSONALIZED_MARKERS) {
+            if (message.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasUserTurn(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private RAtomicLong catalogVersion() {
+        return redissonClient.getAtomicLong(CATALOG_VERSION_KEY);
+    }
+
+    /**
+     * 缓存查找结果
+     */
+    public static final class Lookup {
+
+        private static final Lookup BYPASS = new Lookup(null, null, null, 0);
+
+        private final String answer;
+        private final String question;
+        private final float[] vector;
+        private final long catalogVersion;
+
+        private Lookup(String answer, String question, float[] vector, long catalogVersion) {
+            this.answer = answer;
+            this.question = question;
+            this.vector = vector;
+            this.catalogVersion = catalogVersion;
+        }
+
+        public boolean hit() {
+            return answer != null;
+        }
+
+        public String answer() {
+            return answer;
+        }
+    }
+
+    private static final class Entry {
+        private final String question;
+        private final float[] vector;
+        private final String answer;
+        private final long catalogVersion;
+        private final long generationNanos;
+
+        private Entry(String question, float[] vector, String answer, long catalogVersion, long generationNanos) {
+            this.question = question;
+            this.vector = vector;
+            this.answer = answer;
+            this.catalogVersion = catalogVersion;
+            this.generationNanos = generationNanos;
+        }
+    }
+}
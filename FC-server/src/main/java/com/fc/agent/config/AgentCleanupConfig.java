@@ -37,10 +37,21 @@ public class AgentCleanupConfig {
     private int retentionCount = 1000;
     
     /**
-     * 批量删除数量
+     * 批量删除数量（每批按主键区间删除，单独提交）
      */
     private int batchSize = 1000;
     
+    /**
+     * 两批删除之间的间隔（毫秒），降低对线上写入和主从复制的影响
+     */
+    private long batchPauseMs = 100;
+    
+    /**
+     * 单次清理的最长运行时间（分钟），超出后停止，剩余记录由下次清理继续删除
+     * 需小于清理任务分布式锁的持有时间
+     */
+    private int maxRunMinutes = 25;
+    
     /**
      * 执行时间（格式：HH:mm）
      */
@@ -71,6 +82,9 @@ public class AgentCleanupConfig {
         if (batchSize <= 0) {
             return false;
         }
+        if (batchPauseMs < 0 || maxRunMinutes <= 0) {
+            return false;
+        }
         if (executionTime == null || !executionTime.matches("^([0-1]?[0-9]|2[0-3]):[0-5][0-9]$")) {
             return false;
         }
@@ -89,6 +103,8 @@ public class AgentCleanupConfig {
         config.setRetentionDays(30);
         config.setRetentionCount(1000);
         config.setBatchSize(1000);
+        config.setBatchPauseMs(100);
+        config.setMaxRunMinutes(25);
         config.setExecutionTime("04:00");
         config.setEnableStatistics(true);
         config.setLogDetails(true);
@@ -1,19 +1,30 @@
 package com.fc.agent.config;
 
 import com.fc.service.agent.AssistantService;
+import com.fc.agent.tools.AgentToolExecutionLayer;
+import com.fc.agent.tools.AgentToolExecutionLayer.ToolKind;
 import com.fc.agent.tools.HistoryRecommendTool;
 import com.fc.agent.tools.MCPToolAdapter;
 import com.fc.agent.tools.MovieSearchTool;
 import com.fc.utils.PromptManager;
-import dev.langchain4j.memory.ChatMemory;
+import com.fc.agent.memory.SessionChatMemoryStore;
+import com.fc.agent.model.ModelConcurrencyLimiter;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.tool.ToolExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * AI Agent配置类
  */
@@ -42,15 +53,16 @@ public class AgentConfig {
     }
     
     /**
-     * 配置默认聊天记忆
+     * 配置流式ChatModel Bean（用于SSE流式对话）
      * 
-     * @return ChatMemory实例
+     * @return StreamingChatModel实例
      */
     @Bean
-    public ChatMemory defaultChatMemory() {
-        log.info("初始化默认聊天记忆，保留最近10条消息");
-        return dev.langchain4j.memory.chat.MessageWindowChatMemory.builder()
-                .maxMessages(10)
+    public StreamingChatModel streamingChatModel() {
+        log.info("初始化Ollama StreamingChatModel，baseUrl: {}, modelName: {}", ollamaBaseUrl, ollamaModelName);
+        return OllamaStreamingChatModel.builder()
+                .baseUrl(ollamaBaseUrl)
+                .modelName(ollamaModelName)
                 .build();
     }
     
@@ -59,27 +71,44 @@ public class AgentConfig {
      * 使用用户上下文感知的工具类，解决用户ID传递问题
      * 
      * @param model ChatModel实例
-     * @param chatMemory 聊天记忆
+     * @param streamingModel StreamingChatModel实例（返回TokenStream的方法使用）
+     * @param chatMemoryProvider 按会话隔离的聊天记忆
+     * @param sessionChatMemoryStore 会话聊天记忆存储（本地淘汰会话时同步清理AiServices中的记忆实例）
      * @param movieSearchTool 电影搜索工具
      * @param userAwareHistoryRecommendTool 用户上下文感知的历史推荐工具
      * @param mcpToolAdapter MCP工具适配器
+     * @param toolExecutionLayer 工具执行层（并发、超时、结果缓存、调用记录）
+     * @param modelConcurrencyLimiter 模型并发限制（同步和流式请求共用许可）
      * @param promptManager 提示词管理器
      * @return AI助手实例
      */
     @Bean
-    public AssistantService movieAssistant(ChatModel model, ChatMemory chatMemory, 
+    public AssistantService movieAssistant(ChatModel model, StreamingChatModel streamingModel,
+                                   ChatMemoryProvider chatMemoryProvider,
+                                   SessionChatMemoryStore sessionChatMemoryStore,
                                    MovieSearchTool movieSearchTool, 
                                    HistoryRecommendTool userAwareHistoryRecommendTool, 
                                    MCPToolAdapter mcpToolAdapter,
+                                   AgentToolExecutionLayer toolExecutionLayer,
+                                   ModelConcurrencyLimiter modelConcurrencyLimiter,
                                    PromptManager promptManager) {
         log.info("初始化AI助手，集成用户上下文感知工具和优化提示词");
         
-        return AiServices.builder(AssistantService.class)
-                .chatModel(model)
-                .tools(movieSearchTool, userAwareHistoryRecommendTool, mcpToolAdapter)
-                .chatMemory(chatMemory)
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+        tools.putAll(toolExecutionLayer.guard(movieSearchTool, ToolKind.LOCAL));
+        tools.putAll(toolExecutionLayer.guard(userAwareHistoryRecommendTool, ToolKind.PERSONAL));
+        tools.putAll(toolExecutionLayer.guard(mcpToolAdapter, ToolKind.EXTERNAL));
+        
+        AssistantService assistant = AiServices.builder(AssistantService.class)
+                .chatModel(modelConcurrencyLimiter.limit(model))
+                .streamingChatModel(modelConcurrencyLimiter.limit(streamingModel))
+                .tools(tools)
+                .executeToolsConcurrently()
+                .chatMemoryProvider(chatMemoryProvider)
                 .systemMessage(promptManager.SYSTEM_PROMPT)
                 .build();
+        sessionChatMemoryStore.setEvictionListener(assistant::evictChatMemory);
+        return assistant;
     }
     
 
@@ -119,20 +119,4 @@ public class AgentMonitoringConfig {
                 .description("Agent对话清理任务失败次数")
                 .register(registry);
     }
-    
-    /**
-     * 待清理记录数量监控
-     * 
-     * @param registry MeterRegistry实例
-     * @return Gauge实例
-     */
-    @Bean
-    public Gauge agentCleanupPendingGauge(MeterRegistry registry) {
-        // 使用AtomicInteger来跟踪待清理记录数量
-        AtomicInteger pendingRecords = new AtomicInteger(0);
-        
-        return Gauge.builder("agent.cleanup.pending", pendingRecords, AtomicInteger::get)
-                .description("待清理的Agent对话记录数量")
-                .register(registry);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.fc.agent.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * AI Agent用户偏好画像写回线程
+ * 偏好画像在内存中更新，由 agentPreferenceScheduler 延迟合并后批量写回数据库
+ */
+@Configuration
+public class AgentPreferenceConfig {
+
+    @Bean("agentPreferenceScheduler")
+    public ThreadPoolTaskScheduler agentPreferenceScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("agent-preference-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        scheduler.initialize();
+        return scheduler;
+    }
+}
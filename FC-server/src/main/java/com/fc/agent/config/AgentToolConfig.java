@@ -0,0 +1,60 @@
+package com.fc.agent.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * AI Agent工具执行线程池
+ * 工具在 agentToolExecutor 中执行（调用线程只负责等待结果和超时），调用记录在 agentToolUsageExecutor 中异步写入
+ */
+@Slf4j
+@Configuration
+public class AgentToolConfig {
+
+    @Value("${agent.tools.executor.core-pool-size:4}")
+    private int corePoolSize;
+
+    @Value("${agent.tools.executor.max-pool-size:16}")
+    private int maxPoolSize;
+
+    @Value("${agent.tools.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${agent.tools.usage.queue-capacity:2000}")
+    private int usageQueueCapacity;
+
+    @Bean("agentToolExecutor")
+    public ThreadPoolTaskExecutor agentToolExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("agent-tool-");
+        // 线程和队列都满时在等待线程中直接执行，此时不受超时限制
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean("agentToolUsageExecutor")
+    public ThreadPoolTaskExecutor agentToolUsageExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(usageQueueCapacity);
+        executor.setThreadNamePrefix("agent-tool-usage-");
+        // 调用记录只用于统计，积压时丢弃，不影响对话
+        executor.setRejectedExecutionHandler((task, pool) -> log.warn("工具调用记录队列已满，丢弃一条记录"));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
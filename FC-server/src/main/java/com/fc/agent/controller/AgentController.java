@@ -1,5 +1,7 @@
 package com.fc.agent.controller;
 
+import com.fc.agent.cache.SemanticResponseCache;
+import com.fc.agent.memory.SessionChatMemoryStore;
 import com.fc.service.agent.AssistantService;
 import com.fc.context.BaseContext;
 import com.fc.dto.agent.AgentRequest;
@@ -15,10 +17,24 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 /**
  * AI Agent控制器
@@ -33,16 +49,29 @@ public class AgentController {
     
     private final AssistantService movieAssistant;
     private final AgentConversationService agentConversationService;
+    private final SemanticResponseCache semanticResponseCache;
+    
+    @Autowired
+    @Qualifier("modelRequestExecutor")
+    private AsyncTaskExecutor modelRequestExecutor;
+    
+    @Value("${agent.stream.timeout-ms:180000}")
+    private long streamTimeoutMs;
     
     /**
      * 与电影推荐Agent对话
+     * 在 modelRequestExecutor 中执行，不占用Tomcat线程
      * 
      * @param message 用户消息
      * @return Agent响应结果
      */
     @PostMapping("/chat")
     @Operation(summary = "与电影推荐Agent对话")
-    public Result<String> chat(@RequestParam String message) {
+    public Callable<Result<String>> chat(@RequestParam String message) {
+        return () -> doChat(message);
+    }
+    
+    private Result<String> doChat(String message) {
         Long userId = BaseContext.getCurrentId();
         String sessionId = UUID.randomUUID().toString();
         log.info("AI助手对话请求，用户ID: {}, 会话ID: {}, 消息: {}", userId, sessionId, message);
@@ -57,29 +86,10 @@ public class AgentController {
                 return Result.error("消息长度不能超过500个字符");
             }
             
-            // 保存用户消息到数据库
-            AgentConversationHistory userMessage = AgentConversationHistory.builder()
-                    .sessionId(sessionId)
-                    .userId(userId)
-                    .messageText(message)
-                    .messageRole("user")
-                    .createTime(LocalDateTime.now())
-                    .updateTime(LocalDateTime.now())
-                    .build();
-            agentConversationService.saveConversation(userMessage);
-            
-            String response = movieAssistant.chat(message);
-            
-            // 保存助手响应到数据库
-            AgentConversationHistory assistantMessage = AgentConversationHistory.builder()
-                    .sessionId(sessionId)
-                    .userId(userId)
-                    .messageText(response)
-                    .messageRole("assistant")
-                    .createTime(LocalDateTime.now())
-                    .updateTime(LocalDateTime.now())
-                    .build();
-            agentConversationService.saveConversation(assistantMessage);
+            // 模型返回后再保存本轮对话，避免会话记忆从对话历史恢复时带上本轮用户消息而重复
+            LocalDateTime requestTime = LocalDateTime.now();
+            String response = chatWithCache(userId, sessionId, message);
+            saveConversationPair(sessionId, userId, message, requestTime, response);
             
             log.info("AI助手响应完成，用户ID: {}, 会话ID: {}, 响应长度: {}", userId, sessionId, response.length());
             return Result.success(response);
@@ -100,13 +110,18 @@ public class AgentController {
     
     /**
      * 与电影推荐Agent对话（支持会话管理）
+     * 在 modelRequestExecutor 中执行，不占用Tomcat线程
      * 
      * @param request Agent请求参数
      * @return Agent响应结果
      */
     @PostMapping("/chat/session")
     @Operation(summary = "与电影推荐Agent对话（支持会话管理）")
-    public Result<AgentResponse> chatWithSession(@RequestBody AgentRequest request) {
+    public Callable<Result<AgentResponse>> chatWithSession(@RequestBody AgentRequest request) {
+        return () -> doChatWithSession(request);
+    }
+    
+    private Result<AgentResponse> doChatWithSession(AgentRequest request) {
         Long userId = BaseContext.getCurrentId();
         String sessionId = request.getSessionId();
         if (sessionId == null || sessionId.trim().isEmpty()) {
@@ -116,6 +131,7 @@ public class AgentController {
         log.info("AI助手会话对话请求，用户ID: {}, 会话ID: {}, 消息: {}", 
                 userId, sessionId, request.getMessage());
         
+        LocalDateTime requestTime = LocalDateTime.now();
         try {
             // 输入验证
             if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
@@ -126,29 +142,9 @@ public class AgentController {
                 return Result.error("消息长度不能超过500个字符");
             }
             
-            // 保存用户消息到数据库
-            AgentConversationHistory userMessage = AgentConversationHistory.builder()
-                    .sessionId(sessionId)
-                    .userId(userId)
-                    .messageText(request.getMessage())
-                    .messageRole("user")
-                    .createTime(LocalDateTime.now())
-                    .updateTime(LocalDateTime.now())
-                    .build();
-            agentConversationService.saveConversation(userMessage);
-            
-            String response = movieAssistant.chat(request.getMessage());
-            
-            // 保存助手响应到数据库
-            AgentConversationHistory assistantMessage = AgentConversationHistory.builder()
-                    .sessionId(sessionId)
-                    .userId(userId)
-                    .messageText(response)
-                    .messageRole("assistant")
-                    .createTime(LocalDateTime.now())
-                    .updateTime(LocalDateTime.now())
-                    .build();
-            agentConversationService.saveConversation(assistantMessage);
+            // 模型返回后再保存本轮对话，避免会话记忆从对话历史恢复时带上本轮用户消息而重复
+            String response = chatWithCache(userId, sessionId, request.getMessage());
+            saveConversationPair(sessionId, userId, request.getMessage(), requestTime, response);
             
             AgentResponse agentResponse = new AgentResponse();
             agentResponse.setSessionId(sessionId);
@@ -165,8 +161,8 @@ public class AgentController {
             // 分析工具调用失败的具体原因，提供更友好的错误信息
             String errorMessage = analyzeToolExecutionError(e);
             
-            // 保存友好的错误响应到数据库，避免存储工具调用参数
-            saveToolErrorResponse(sessionId, userId, null, errorMessage);
+            // 保存用户消息和友好的错误响应到数据库，避免存储工具调用参数
+            saveToolErrorResponse(sessionId, userId, request.getMessage(), requestTime, null, errorMessage);
             
             AgentResponse agentResponse = new AgentResponse();
             agentResponse.setSessionId(sessionId);
@@ -207,6 +203,177 @@ public class AgentController {
         }
     }
     
+    /**
+     * 与电影推荐Agent对话（SSE流式输出）
+     * 事件：token-回复片段；done-完整回复（AgentResponse）；error-友好的错误信息
+     * 对话只在流正常结束后保存，中途失败或客户端断开不落库
+     * 
+     * @param request Agent请求参数
+     * @return SSE事件流
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "与电影推荐Agent对话（流式输出）")
+    public SseEmitter chatStream(@RequestBody AgentRequest request) {
+        Long userId = BaseContext.getCurrentId();
+        String sessionId = request.getSessionId();
+        if (sessionId == null || sessionId.trim().isEmpty()) {
+            sessionId = UUID.randomUUID().toString();
+        }
+        final String finalSessionId = sessionId;
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        
+        log.info("AI助手流式对话请求，用户ID: {}, 会话ID: {}, 消息: {}", userId, sessionId, request.getMessage());
+        
+        // 输入验证
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            sendAndComplete(emitter, "error", "消息内容不能为空");
+            return emitter;
+        }
+        if (request.getMessage().length() > 500) {
+            sendAndComplete(emitter, "error", "消息长度不能超过500个字符");
+            return emitter;
+        }
+        
+        LocalDateTime requestTime = LocalDateTime.now();
+        try {
+            // 语义缓存查找和模型调用在 modelRequestExecutor 中进行，不占用Tomcat线程
+            modelRequestExecutor.execute(() -> startChatStream(emitter, request, userId, finalSessionId, requestTime));
+        } catch (TaskRejectedException e) {
+            log.warn("AI助手流式对话请求过多，用户ID: {}, 会话ID: {}", userId, sessionId);
+            sendAndComplete(emitter, "error", "系统繁忙，请稍后重试");
+        }
+        return emitter;
+    }
+    
+    /**
+     * 查找语义缓存，未命中时开始流式生成
+     */
+    private void startChatStream(SseEmitter emitter, AgentRequest request, Long userId,
+                                 String finalSessionId, LocalDateTime requestTime) {
+        try {
+            String memoryId = SessionChatMemoryStore.memoryId(userId, finalSessionId);
+            SemanticResponseCache.Lookup lookup = semanticResponseCache.lookup(memoryId, request.getMessage());
+            if (lookup.hit()) {
+                saveConversationPair(finalSessionId, userId, request.getMessage(), requestTime, lookup.answer());
+                AgentResponse agentResponse = new AgentResponse();
+                agentResponse.setSessionId(finalSessionId);
+                agentResponse.setResponse(lookup.answer());
+                agentResponse.setStatus("success");
+                emitter.send(SseEmitter.event().name("token").data(lookup.answer()));
+                sendAndComplete(emitter, "done", agentResponse);
+                log.info("AI助手流式响应命中语义缓存，用户ID: {}, 会话ID: {}", userId, finalSessionId);
+                return;
+            }
+            
+            long startNanos = System.nanoTime();
+            // 同一轮的多个工具可能并发回调
+            List<String> toolNames = Collections.synchronizedList(new ArrayList<>());
+            movieAssistant.chatStream(memoryId, request.getMessage())
+                    .onPartialResponse(token -> {
+                        try {
+                            emitter.send(SseEmitter.event().name("token").data(token));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("客户端已断开AI助手流", e);
+                        }
+                    })
+                    // 工具的用户上下文由 AgentToolExecutionLayer 按记忆ID设置
+                    .onToolExecuted(execution -> toolNames.add(execution.request().name()))
+                    .onCompleteResponse(chatResponse -> {
+                        String response = chatResponse.aiMessage().text();
+                        semanticResponseCache.put(lookup, response, toolNames, System.nanoTime() - startNanos);
+                        saveConversationPair(finalSessionId, userId, request.getMessage(), requestTime, response);
+                        
+                        AgentResponse agentResponse = new AgentResponse();
+                        agentResponse.setSessionId(finalSessionId);
+                        agentResponse.setResponse(response);
+                        agentResponse.setStatus("success");
+                        sendAndComplete(emitter, "done", agentResponse);
+                        
+                        log.info("AI助手流式响应完成，用户ID: {}, 会话ID: {}, 响应长度: {}",
+                                userId, finalSessionId, response != null ? response.length() : 0);
+                    })
+                    .onError(error -> {
+                        log.error("AI助手流式对话异常，用户ID: {}, 会话ID: {}, 错误: {}",
+                                userId, finalSessionId, error.getMessage(), error);
+                        String errorMessage = error instanceof AgentToolExecutionException
+                                ? analyzeToolExecutionError((AgentToolExecutionException) error)
+                                : "AI助手暂时无法处理您的请求，请稍后重试";
+                        sendAndComplete(emitter, "error", errorMessage);
+                    })
+                    .start();
+        } catch (Exception e) {
+            log.error("AI助手流式对话启动失败，用户ID: {}, 会话ID: {}, 错误: {}", userId, finalSessionId, e.getMessage(), e);
+            sendAndComplete(emitter, "error", "系统繁忙，请稍后重试");
+        }
+    }
+    
+    /**
+     * 对话（先查语义缓存，未命中时调用模型并缓存可复用的回复）
+     */
+    private String chatWithCache(Long userId, String sessionId, String message) {
+        String memoryId = SessionChatMemoryStore.memoryId(userId, sessionId);
+        SemanticResponseCache.Lookup lookup = semanticResponseCache.lookup(memoryId, message);
+        if (lookup.hit()) {
+            return lookup.answer();
+        }
+        long startNanos = System.nanoTime();
+        dev.langchain4j.service.Result<String> result = movieAssistant.chat(memoryId, message);
+        List<String> toolNames = result.toolExecutions().stream()
+                .map(execution -> execution.request().name())
+                .collect(Collectors.toList());
+        semanticResponseCache.put(lookup, result.content(), toolNames, System.nanoTime() - startNanos);
+        return result.content();
+    }
+    
+    /**
+     * 模型返回（或流结束）后保存一轮对话（用户消息 + 助手回复）
+     * 用户消息不在调用模型前写入：新会话或 Redis 未命中时 SessionChatMemoryStore 会从对话历史恢复记忆，
+     * 提前写入会使恢复出的记忆已包含本轮消息，模型请求中同一条用户消息出现两次
+     * 写入是异步批量的，响应返回后约200ms（write-behind.flush-interval-ms）才能从对话历史中查到本轮消息
+     */
+    private void saveConversationPair(String sessionId, Long userId, String message,
+                                      LocalDateTime requestTime, String response) {
+        try {
+            saveUserMessage(sessionId, userId, message, requestTime);
+            agentConversationService.appendConversation(AgentConversationHistory.builder()
+                    .sessionId(sessionId)
+                    .userId(userId)
+                    .messageText(response)
+                    .messageRole("assistant")
+                    .createTime(LocalDateTime.now())
+                    .updateTime(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            log.error("保存流式对话记录失败，会话ID: {}, 用户ID: {}, 错误: {}", sessionId, userId, e.getMessage());
+        }
+    }
+    
+    /**
+     * 保存用户消息（创建时间为收到请求的时间）
+     */
+    private void saveUserMessage(String sessionId, Long userId, String message, LocalDateTime requestTime) {
+        agentConversationService.appendConversation(AgentConversationHistory.builder()
+                .sessionId(sessionId)
+                .userId(userId)
+                .messageText(message)
+                .messageRole("user")
+                .createTime(requestTime)
+                .updateTime(requestTime)
+                .build());
+    }
+    
+    /**
+     * 发送最终事件并结束SSE
+     */
+    private void sendAndComplete(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.warn("发送AI助手事件失败，客户端可能已断开: {}", e.getMessage());
+        }
+    }
+    
     /**
      * 分析工具调用失败的具体原因，提供友好的错误信息
      * 
@@ -237,11 +404,16 @@ public class AgentController {
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID
+     * @param message 用户消息
+     * @param requestTime 收到请求的时间
      * @param originalResponse 原始响应（可能是工具调用参数）
      * @param errorMessage 友好的错误信息
      */
-    private void saveToolErrorResponse(String sessionId, Long userId, String originalResponse, String errorMessage) {
+    private void saveToolErrorResponse(String sessionId, Long userId, String message, LocalDateTime requestTime,
+                                       String originalResponse, String errorMessage) {
         try {
+            saveUserMessage(sessionId, userId, message, requestTime);
+            
             // 检查原始响应是否是工具调用参数（JSON格式）
             if (originalResponse != null && 
                 (originalResponse.contains("\"name\"") && originalResponse.contains("\"parameters\""))) {
@@ -256,7 +428,7 @@ public class AgentController {
                         .createTime(LocalDateTime.now())
                         .updateTime(LocalDateTime.now())
                         .build();
-                agentConversationService.saveConversation(assistantMessage);
+                agentConversationService.appendConversation(assistantMessage);
             } else {
                 // 正常存储响应
                 AgentConversationHistory assistantMessage = AgentConversationHistory.builder()
@@ -267,7 +439,7 @@ public class AgentController {
                         .createTime(LocalDateTime.now())
                         .updateTime(LocalDateTime.now())
                         .build();
-                agentConversationService.saveConversation(assistantMessage);
+                agentConversationService.appendConversation(assistantMessage);
             }
         } catch (Exception ex) {
             log.error("保存工具错误响应失败，会话ID: {}, 用户ID: {}, 错误: {}", sessionId, userId, ex.getMessage());
@@ -1,28 +1,94 @@
 package com.fc.agent.memory;
 
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 聊天记忆管理配置类
  */
 @Slf4j
 @Configuration
 public class ChatMemoryProvider {
-    
+
+    @Value("${agent.memory.max-messages:10}")
+    private int maxMessages;
+
     /**
-     * 配置ChatMemory Bean
-     * 
-     * @return ChatMemory实例
+     * 配置按会话隔离的ChatMemoryProvider
+     * 每个记忆ID（userId:sessionId）使用独立的消息窗口，消息保存在 SessionChatMemoryStore 中
+     * 会话有滚动摘要时，模型请求看到的系统提示词后附带摘要和已知的用户偏好
+     *
+     * @param sessionChatMemoryStore 会话聊天记忆存储
+     * @return ChatMemoryProvider实例
      */
     @Bean
-    public ChatMemory chatMemory() {
-        log.info("初始化ChatMemory，最大消息数: 10");
-        return MessageWindowChatMemory.builder()
-                .maxMessages(10)
-                .build();
+    public dev.langchain4j.memory.chat.ChatMemoryProvider sessionChatMemoryProvider(SessionChatMemoryStore sessionChatMemoryStore) {
+        log.info("初始化会话聊天记忆，每个会话保留最近{}条消息", maxMessages);
+        return memoryId -> new SummaryAwareChatMemory(MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(maxMessages)
+                .chatMemoryStore(sessionChatMemoryStore)
+                .build(), sessionChatMemoryStore);
+    }
+
+    /**
+     * 读取消息时把会话摘要拼接到系统提示词之后；摘要只出现在返回的消息中，不写回存储
+     */
+    private static final class SummaryAwareChatMemory implements ChatMemory {
+
+        private final ChatMemory delegate;
+        private final SessionChatMemoryStore store;
+
+        private SummaryAwareChatMemory(ChatMemory delegate, SessionChatMemoryStore store) {
+            this.delegate = delegate;
+            this.store = store;
+        }
+
+        @Override
+        public Object id() {
+            return delegate.id();
+        }
+
+        @Override
+        public void add(ChatMessage message) {
+            delegate.add(message);
+        }
+
+        @Override
+        public List<ChatMessage> messages() {
+            List<ChatMessage> messages = delegate.messages();
+            ConversationSummary summary = store.getSummary(id());
+            if (summary == null) {
+                return messages;
+            }
+            List<ChatMessage> result = new ArrayList<>(messages.size() + 1);
+            boolean merged = false;
+            for (ChatMessage message : messages) {
+                if (!merged && message instanceof SystemMessage) {
+                    result.add(SystemMessage.from(((SystemMessage) message).text() + "\n\n" + summary.toPromptText()));
+                    merged = true;
+                } else {
+                    result.add(message);
+                }
+            }
+            if (!merged) {
+                result.add(0, SystemMessage.from(summary.toPromptText()));
+            }
+            return result;
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package com.fc.agent.memory;
+
+import com.fc.utils.OllamaUtil;
+import com.fc.utils.PromptManager;
+import com.fc.utils.TokenUtil;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 会话滚动摘要生成器
+ *
+ * 会话的估算token数超过 token-budget，或消息数接近记忆窗口上限时，把较早的若干轮对话
+ * （保留最近 keep-recent-messages 条，从完整的一轮开始）与上一版摘要合并成新摘要：
+ * - 摘要文本由 Ollama 文本模型异步生成，不占用对话请求
+ * - 被压缩的用户消息经 PreferenceExtractor 提取偏好，作为结构化事实累加到摘要中
+ * 摘要的保存和替换见 SessionChatMemoryStore
+ */
+@Slf4j
+@Component
+public class ConversationSummarizer {
+
+    @Value("${agent.memory.summary.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.memory.summary.token-budget:1500}")
+    private int tokenBudget;
+
+    @Value("${agent.memory.summary.keep-recent-messages:4}")
+    private int keepRecentMessages;
+
+    @Value("${agent.memory.summary.max-summary-chars:400}")
+    private int maxSummaryChars;
+
+    @Value("${agent.memory.summary.max-tool-result-chars:300}")
+    private int maxToolResultChars;
+
+    @Value("${agent.memory.max-messages:10}")
+    private int maxMessages;
+
+    @Autowired
+    private OllamaUtil ollamaUtil;
+
+    @Autowired
+    private PromptManager promptManager;
+
+    @Autowired
+    private PreferenceExtractor preferenceExtractor;
+
+    /**
+     * 计算需要压缩的消息范围
+     *
+     * @param messages 会话当前的消息（一轮对话已经结束）
+     * @return 需要压缩的消息数（从第一条非系统消息算起），不需要压缩时返回0
+     */
+    public int compactableCount(List<ChatMessage> messages) {
+        if (!enabled) {
+            return 0;
+        }
+        int start = firstNonSystemIndex(messages);
+        int count = messages.size() - start;
+        if (count <= keepRecentMessages) {
+            return 0;
+        }
+        if (estimateTokens(messages) <= tokenBudget && count < maxMessages - keepRecentMessages) {
+            return 0;
+        }
+        // 保留部分从一轮对话的用户消息开始，避免把工具调用和工具结果拆开
+        int boundary = messages.size() - keepRecentMessages;
+        while (boundary > start && !(messages.get(boundary) instanceof UserMessage)) {
+            boundary--;
+        }
+        return boundary - start;
+    }
+
+    /**
+     * 把上一版摘要和较早的消息合并为新摘要
+     *
+     * @param previous 上一版摘要，没有时为 null
+     * @param older 需要压缩的消息
+     * @return 新摘要；生成失败时以异常结束
+     */
+    public CompletableFuture<ConversationSummary> summarize(ConversationSummary previous, List<ChatMessage> older) {
+        List<ChatMessage> userMessages = new ArrayList<>();
+        StringBuilder conversation = new StringBuilder();
+        for (ChatMessage message : older) {
+            if (message instanceof UserMessage && ((UserMessage) message).hasSingleText()) {
+                userMessages.add(message);
+                conversation.append("用户：").append(((UserMessage) message).singleText()).append('\n');
+            } else if (message instanceof AiMessage && ((AiMessage) message).text() != null
+                    && !((AiMessage) message).text().isBlank()) {
+                conversation.append("助手：").append(((AiMessage) message).text()).append('\n');
+            } else if (message instanceof ToolExecutionResultMessage) {
+                conversation.append("工具结果：").append(truncate(((ToolExecutionResultMessage) message).text(), maxToolResultChars)).append('\n');
+            }
+        }
+        String prompt = promptManager.buildConversationSummaryPrompt(
+                previous != null ? previous.getSummary() : null, conversation.toString(), maxSummaryChars);
+
+        return ollamaUtil.generateTextAsync(prompt).thenApply(text -> {
+            if (text == null || text.isBlank()) {
+                throw new IllegalStateException("模型返回的摘要为空");
+            }
+            ConversationSummary summary = new ConversationSummary();
+            if (previous != null) {
+                summary.setGenres(new ArrayList<>(previous.getGenres()));
+                summary.setRating(previous.getRating());
+                summary.setYearRange(previous.getYearRange());
+                summary.setDirectorPreference(previous.isDirectorPreference());
+                summary.setActorPreference(previous.isActorPreference());
+                summary.setCompactedMessages(previous.getCompactedMessages());
+            }
+            // 只从用户自己的消息中提取偏好，助手回复中提到的类型不代表用户偏好
+            if (!userMessages.isEmpty()) {
+                summary.mergePreferences(preferenceExtractor.extractFromConversation(userMessages));
+            }
+            summary.setSummary(truncate(text.trim(), maxSummaryChars * 2));
+            summary.setCompactedMessages(summary.getCompactedMessages() + older.size());
+            return summary;
+        });
+    }
+
+    /**
+     * 估算消息的token数，按 TokenUtil 的规则逐条累加（系统提示词不计入）
+     */
+    static int estimateTokens(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage && ((UserMessage) message).hasSingleText()) {
+                tokens += TokenUtil.estimateTokens(((UserMessage) message).singleText());
+            } else if (message instanceof AiMessage) {
+                AiMessage aiMessage = (AiMessage) message;
+                tokens += TokenUtil.estimateTokens(aiMessage.text());
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (var request : aiMessage.toolExecutionRequests()) {
+                        tokens += TokenUtil.estimateTokens(request.arguments());
+                    }
+                }
+            } else if (message instanceof ToolExecutionResultMessage) {
+                tokens += TokenUtil.estimateTokens(((ToolExecutionResultMessage) message).text());
+            }
+        }
+        return tokens;
+    }
+
+    static int firstNonSystemIndex(List<ChatMessage> messages) {
+        int index = 0;
+        while (index < messages.size() && messages.get(index) instanceof SystemMessage) {
+            index++;
+        }
+        return index;
+    }
+
+    private static String truncate(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() > maxChars ? text.substring(0, maxChars) + "…" : text;
+    }
+}
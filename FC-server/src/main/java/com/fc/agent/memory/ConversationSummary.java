@@ -0,0 +1,91 @@
+package com.fc.agent.memory;
+
+import com.fc.vo.user.UserPreferencesVO;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话滚动摘要
+ *
+ * 较早的对话被压缩后，以摘要文本加结构化的用户偏好保存，模型请求时拼接在系统提示词之后
+ */
+@Data
+@NoArgsConstructor
+public class ConversationSummary {
+
+    /** 此前对话的摘要文本 */
+    private String summary;
+
+    /** 用户提到过的电影类型 */
+    private List<String> genres = new ArrayList<>();
+
+    /** 评分偏好：high/medium/low */
+    private String rating;
+
+    /** 年份偏好：recent/classic */
+    private String yearRange;
+
+    /** 是否关注导演 */
+    private boolean directorPreference;
+
+    /** 是否关注演员 */
+    private boolean actorPreference;
+
+    /** 已压缩的消息总数 */
+    private int compactedMessages;
+
+    /**
+     * 合并新提取的偏好：类型累加，评分和年份以最近一次提到的为准
+     *
+     * @param preferences 从被压缩的用户消息中提取的偏好
+     */
+    public void mergePreferences(UserPreferencesVO preferences) {
+        for (String genre : preferences.getPreferredGenres()) {
+            if (!genres.contains(genre)) {
+                genres.add(genre);
+            }
+        }
+        if (preferences.getPreferredRatingRange() != null) {
+            rating = preferences.getPreferredRatingRange();
+        }
+        if (preferences.getPreferredYearRange() != null) {
+            yearRange = preferences.getPreferredYearRange();
+        }
+        directorPreference |= Boolean.TRUE.equals(preferences.getHasDirectorPreference());
+        actorPreference |= Boolean.TRUE.equals(preferences.getHasActorPreference());
+    }
+
+    /**
+     * 拼接到系统提示词之后的文本
+     */
+    public String toPromptText() {
+        StringBuilder text = new StringBuilder("【此前对话摘要】\n").append(summary);
+        List<String> facts = new ArrayList<>();
+        if (!genres.isEmpty()) {
+            facts.add("喜欢的类型：" + String.join("、", genres));
+        }
+        if (rating != null) {
+            facts.add("评分偏好：" + switch (rating) {
+                case "high" -> "高分电影";
+                case "low" -> "低分电影";
+                default -> "中等评分";
+            });
+        }
+        if (yearRange != null) {
+            facts.add("年份偏好：" + ("recent".equals(yearRange) ? "近年新片" : "经典老片"));
+        }
+        if (directorPreference) {
+            facts.add("关注导演");
+        }
+        if (actorPreference) {
+            facts.add("关注演员");
+        }
+        if (!facts.isEmpty()) {
+            text.append("\n【已知用户偏好】\n- ").append(String.join("\n- ", facts));
+        }
+        return text.toString();
+    }
+}
@@ -18,6 +18,10 @@ import java.util.List;
 @Component
 public class PreferenceExtractor {
     
+    private static final String[] GENRE_KEYWORDS = {"科幻", "动作", "喜剧", "爱情", "悬疑", "恐怖", "动画", "纪录片", "战争", "音乐"};
+    private static final String[] DIRECTOR_KEYWORDS = {"导演", "执导", "导演作品"};
+    private static final String[] ACTOR_KEYWORDS = {"主演", "演员", "出演"};
+    
     /**
      * 从对话历史中提取用户偏好
      * 
@@ -103,10 +107,8 @@ public class PreferenceExtractor {
      * 提取电影类型偏好
      */
     private void extractGenrePreferences(String conversation, UserPreferencesVO preferences) {
-        String[] genreKeywords = {"科幻", "动作", "喜剧", "爱情", "悬疑", "恐怖", "动画", "纪录片", "战争", "音乐"};
-        
-        for (String genre : genreKeywords) {
-            if (conversation.contains(genre.toLowerCase())) {
+        for (String genre : GENRE_KEYWORDS) {
+            if (conversation.contains(genre)) {
                 preferences.addPreferredGenre(genre);
             }
         }
@@ -116,13 +118,9 @@ public class PreferenceExtractor {
      * 提取评分偏好
      */
     private void extractRatingPreferences(String conversation, UserPreferencesVO preferences) {
-        // 检测评分相关关键词
-        if (conversation.contains("高分") || conversation.contains("评分高") || conversation.contains("8分以上")) {
-            preferences.setPreferredRating("high");
-        } else if (conversation.contains("低分") || conversation.contains("评分低") || conversation.contains("6分以下")) {
-            preferences.setPreferredRating("low");
-        } else if (conversation.contains("中等评分") || conversation.contains("7分左右")) {
-            preferences.setPreferredRating("medium");
+        String rating = detectRating(conversation);
+        if (rating != null) {
+            preferences.setPreferredRating(rating);
         }
     }
     
@@ -130,11 +128,9 @@ public class PreferenceExtractor {
      * 提取年份偏好
      */
     private void extractYearPreferences(String conversation, UserPreferencesVO preferences) {
-        // 检测年份相关关键词
-        if (conversation.contains("新片") || conversation.contains("最新") || conversation.contains("202") || conversation.contains("近年")) {
-            preferences.setPreferredYearRange("recent");
-        } else if (conversation.contains("经典") || conversation.contains("老片") || conversation.contains("90年代") || conversation.contains("80年代")) {
-            preferences.setPreferredYearRange("classic");
+        String yearRange = detectYearRange(conversation);
+        if (yearRange != null) {
+            preferences.setPreferredYearRange(yearRange);
         }
     }
     
@@ -144,22 +140,88 @@ public class PreferenceExtractor {
     private void extractPersonPreferences(String conversation, UserPreferencesVO preferences) {
         // 这里可以集成更复杂的NLP分析
         // 暂时实现基础的关键词检测
-        String[] directorKeywords = {"导演", "执导", "导演作品"};
-        String[] actorKeywords = {"主演", "演员", "出演"};
-        
-        for (String keyword : directorKeywords) {
-            if (conversation.contains(keyword)) {
-                preferences.setHasDirectorPreference(true);
-                break;
+        if (containsAny(conversation, DIRECTOR_KEYWORDS)) {
+            preferences.setHasDirectorPreference(true);
+        }
+        if (containsAny(conversation, ACTOR_KEYWORDS)) {
+            preferences.setHasActorPreference(true);
+        }
+    }
+    
+    /**
+     * 把单条用户消息中提到的偏好累加到偏好画像（用于增量更新，每条消息只扫描一次）
+     * 
+     * @param profile 偏好画像
+     * @param message 用户消息
+     * @param weight 本条消息的权重
+     * @return 消息中是否提到了偏好
+     */
+    public boolean accumulate(PreferenceProfile profile, String message, double weight) {
+        if (message == null || message.isBlank()) {
+            return false;
+        }
+        String text = message.toLowerCase();
+        boolean matched = false;
+        for (String genre : GENRE_KEYWORDS) {
+            if (text.contains(genre)) {
+                profile.addGenre(genre, weight);
+                matched = true;
             }
         }
-        
-        for (String keyword : actorKeywords) {
-            if (conversation.contains(keyword)) {
-                preferences.setHasActorPreference(true);
-                break;
+        String rating = detectRating(text);
+        if (rating != null) {
+            profile.addRating(rating, weight);
+            matched = true;
+        }
+        String yearRange = detectYearRange(text);
+        if (yearRange != null) {
+            profile.addYear(yearRange, weight);
+            matched = true;
+        }
+        if (containsAny(text, DIRECTOR_KEYWORDS)) {
+            profile.addPerson(PreferenceProfile.DIRECTOR, weight);
+            matched = true;
+        }
+        if (containsAny(text, ACTOR_KEYWORDS)) {
+            profile.addPerson(PreferenceProfile.ACTOR, weight);
+            matched = true;
+        }
+        return matched;
+    }
+    
+    /**
+     * 检测评分偏好：high/low/medium，未提到时返回 null
+     */
+    private String detectRating(String text) {
+        if (text.contains("高分") || text.contains("评分高") || text.contains("8分以上")) {
+            return "high";
+        } else if (text.contains("低分") || text.contains("评分低") || text.contains("6分以下")) {
+            return "low";
+        } else if (text.contains("中等评分") || text.contains("7分左右")) {
+            return "medium";
+        }
+        return null;
+    }
+    
+    /**
+     * 检测年份偏好：recent/classic，未提到时返回 null
+     */
+    private String detectYearRange(String text) {
+        if (text.contains("新片") || text.contains("最新") || text.contains("202") || text.contains("近年")) {
+            return "recent";
+        } else if (text.contains("经典") || text.contains("老片") || text.contains("90年代") || text.contains("80年代")) {
+            return "classic";
+        }
+        return null;
+    }
+    
+    private static boolean containsAny(String text, String[] keywords) {
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                return true;
             }
         }
+        return false;
     }
     
     /**
@@ -0,0 +1,194 @@
+package com.fc.agent.memory;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fc.vo.movie.ai.MovieSimpleVO;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户偏好画像
+ *
+ * 从用户的对话消息中增量提取的偏好权重：电影类型、评分（high/medium/low）、年份（recent/classic）、
+ * 人物（director/actor）。每处理一条新消息，已有权重先按衰减系数衰减，近期提到的偏好权重更高。
+ * watermark 为已处理到的对话消息ID，之后只需处理该ID之后的消息；消息ID的提交顺序可能与分配顺序不同，
+ * 处理时从水位往前回看一段，recentIds 记录回看窗口内已处理的消息，避免重复累加
+ */
+@Data
+@NoArgsConstructor
+public class PreferenceProfile {
+
+    public static final String DIRECTOR = "director";
+    public static final String ACTOR = "actor";
+
+    // 低于该值的权重视为已遗忘，从画像中移除
+    private static final double MIN_WEIGHT = 0.01;
+    // 类型、年份、评分在匹配度中的占比
+    private static final double GENRE_SHARE = 0.6;
+    private static final double YEAR_SHARE = 0.2;
+    private static final double RATING_SHARE = 0.2;
+    private static final int RECENT_YEARS = 5;
+    private static final int CLASSIC_BEFORE_YEAR = 2000;
+
+    /** 电影类型权重 */
+    private Map<String, Double> genres = new HashMap<>();
+
+    /** 评分偏好权重 */
+    private Map<String, Double> ratings = new HashMap<>();
+
+    /** 年份偏好权重 */
+    private Map<String, Double> years = new HashMap<>();
+
+    /** 人物偏好权重 */
+    private Map<String, Double> persons = new HashMap<>();
+
+    /** 已处理到的对话消息ID */
+    private long watermark;
+
+    /** 回看窗口内已处理的消息ID */
+    private Set<Long> recentIds = new HashSet<>();
+
+    /** 已处理的用户消息数 */
+    private long messageCount;
+
+    /** 最近一次增量处理的时间（只在本地使用，不写回） */
+    @JsonIgnore
+    private long refreshedAt;
+
+    public void addGenre(String genre, double weight) {
+        genres.merge(genre, weight, Double::sum);
+    }
+
+    public void addRating(String rating, double weight) {
+        ratings.merge(rating, weight, Double::sum);
+    }
+
+    public void addYear(String yearRange, double weight) {
+        years.merge(yearRange, weight, Double::sum);
+    }
+
+    public void addPerson(String person, double weight) {
+        persons.merge(person, weight, Double::sum);
+    }
+
+    /**
+     * 所有权重乘以衰减系数，移除衰减到可以忽略的权重
+     */
+    public void decay(double factor) {
+        for (Map<String, Double> weights : List.of(genres, ratings, years, persons)) {
+            weights.replaceAll((key, value) -> value * factor);
+            weights.values().removeIf(value -> value < MIN_WEIGHT);
+        }
+    }
+
+    /**
+     * 权重从高到低的前若干个类型
+     */
+    public List<String> topGenres(int limit) {
+        return genres.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * 权重最高的评分偏好，没有时返回 null
+     */
+    public String topRating() {
+        return ratings.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return genres.isEmpty() && ratings.isEmpty() && years.isEmpty();
+    }
+
+    /**
+     * 电影与画像的匹配度（0~1）：类型取电影各类型中的最高权重，年份和评分按所属区间的权重占比
+     *
+     * @param movie 电影（类型为逗号、斜杠等分隔的字符串）
+     * @return 匹配度，画像为空时为0
+     */
+    public double affinity(MovieSimpleVO movie) {
+        double score = 0;
+        double maxGenreWeight = genres.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        if (maxGenreWeight > 0 && movie.getGenres() != null) {
+            double best = 0;
+            for (String genre : movie.getGenres().split("[,，/|、\\s]+")) {
+                for (Map.Entry<String, Double> entry : genres.entrySet()) {
+                    // 电影类型可能带“片”“电影”等后缀，按包含关系匹配
+                    if (!genre.isEmpty() && genre.contains(entry.getKey())) {
+                        best = Math.max(best, entry.getValue());
+                    }
+                }
+            }
+            score += GENRE_SHARE * best / maxGenreWeight;
+        }
+        if (movie.getYear() != null) {
+            String yearRange = movie.getYear() >= Year.now().getValue() - RECENT_YEARS ? "recent"
+                    : movie.getYear() < CLASSIC_BEFORE_YEAR ? "classic" : null;
+            score += YEAR_SHARE * share(years, yearRange);
+        }
+        if (movie.getRating() != null) {
+            // 评分按10分制划分
+            String rating = movie.getRating() >= 8 ? "high" : movie.getRating() < 6 ? "low" : "medium";
+            score += RATING_SHARE * share(ratings, rating);
+        }
+        return score;
+    }
+
+    /**
+     * 复制一份画像，供调用方在不持有锁的情况下读取
+     */
+    public PreferenceProfile copy() {
+        PreferenceProfile copy = new PreferenceProfile();
+        copy.setGenres(new HashMap<>(genres));
+        copy.setRatings(new HashMap<>(ratings));
+        copy.setYears(new HashMap<>(years));
+        copy.setPersons(new HashMap<>(persons));
+        copy.setWatermark(watermark);
+        copy.setRecentIds(new HashSet<>(recentIds));
+        copy.setMessageCount(messageCount);
+        copy.setRefreshedAt(refreshedAt);
+        return copy;
+    }
+
+    /**
+     * 按画像匹配度重新排序，排序依据为原始名次得分（1 到接近0）加上 rankingWeight 倍的匹配度
+     *
+     * @param movies 按原始得分降序排列的电影
+     * @param rankingWeight 匹配度的权重
+     * @return 重新排序后的电影
+     */
+    public List<MovieSimpleVO> rank(List<MovieSimpleVO> movies, double rankingWeight) {
+        int size = movies.size();
+        double[] scores = new double[size];
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            scores[i] = (double) (size - i) / size + rankingWeight * affinity(movies.get(i));
+            order.add(i);
+        }
+        // 稳定排序，得分相同时保持原始顺序
+        order.sort((a, b) -> Double.compare(scores[b], scores[a]));
+        return order.stream().map(movies::get).toList();
+    }
+
+    private static double share(Map<String, Double> weights, String key) {
+        if (key == null || !weights.containsKey(key)) {
+            return 0;
+        }
+        double total = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+        return total > 0 ? weights.get(key) / total : 0;
+    }
+}
@@ -0,0 +1,392 @@
+package com.fc.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fc.entity.AgentConversationHistory;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dev.langchain4j.data.message.*;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 按会话隔离的聊天记忆存储
+ *
+ * 记忆ID为 "userId:sessionId"，不同用户、不同会话互不影响：
+ * - 本地：Caffeine 缓存完整消息（含本轮的工具调用），空闲超时淘汰，总字符数超过 local-max-chars 时按LRU淘汰
+ * - Redis：只保存用户消息和最终回复的精简文本（不含系统提示词和工具调用，单条截断到 max-message-chars）
+ * - 恢复：本地未命中时先读 Redis，仍未命中时从 agent_conversation_history 读取最近的消息
+ * - 摘要：一轮对话结束后按 ConversationSummarizer 的条件把较早的消息压缩为滚动摘要，摘要与消息分开保存（本地 + Redis），
+ *   由 ChatMemoryProvider 在模型请求时拼接到系统提示词之后
+ * 单个会话的字符数超过 max-session-chars 时丢弃最早的消息；会话数、字符数、恢复来源和压缩次数记录到 agent.memory.* 指标
+ */
+@Slf4j
+@Component
+public class SessionChatMemoryStore implements ChatMemoryStore {
+
+    private static final String REDIS_KEY_PREFIX = "agent:memory:";
+    private static final String SUMMARY_KEY_PREFIX = "agent:memory-summary:";
+    private static final ObjectMapper SUMMARY_MAPPER = new ObjectMapper();
+
+    @Value("${agent.memory.max-messages:10}")
+    private int maxMessages;
+
+    @Value("${agent.memory.timeout-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${agent.memory.local-max-chars:20000000}")
+    private long localMaxChars;
+
+    @Value("${agent.memory.max-session-chars:8000}")
+    private int maxSessionChars;
+
+    @Value("${agent.memory.max-message-chars:2000}")
+    private int maxMessageChars;
+
+    @Value("${agent.memory.redis-ttl-hours:24}")
+    private long redisTtlHours;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+
+    private Cache<String, List<ChatMessage>> sessions;
+    private Cache<String, Optional<ConversationSummary>> summaries;
+    // 正在生成摘要的会话，同一会话同时只压缩一次
+    private final Set<String> compacting = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<Object> evictionListener = memoryId -> { };
+    private Counter redisRestoreCounter;
+    private Counter databaseRestoreCounter;
+    private Counter emptyRestoreCounter;
+    private Counter compactionCounter;
+    private Counter compactionFailureCounter;
+
+    @PostConstruct
+    public void init() {
+        sessions = Caffeine.newBuilder()
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .maximumWeight(localMaxChars)
+                .weigher((String memoryId, List<ChatMessage> messages) -> Math.max(1, countChars(messages)))
+                .removalListener((String memoryId, List<ChatMessage> messages, RemovalCause cause) -> {
+                    if (memoryId != null && cause.wasEvicted()) {
+                        evictionListener.accept(memoryId);
+                    }
+                })
+                .build();
+        summaries = Caffeine.newBuilder()
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .build();
+
+        Gauge.builder("agent.memory.sessions", sessions, Cache::estimatedSize)
+                .description("本地缓存的聊天记忆会话数")
+                .register(meterRegistry);
+        Gauge.builder("agent.memory.chars", sessions,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .description("本地缓存的聊天记忆总字符数")
+                .register(meterRegistry);
+        redisRestoreCounter = restoreCounter("redis");
+        databaseRestoreCounter = restoreCounter("database");
+        emptyRestoreCounter = restoreCounter("empty");
+        compactionCounter = Counter.builder("agent.memory.compactions")
+                .description("聊天记忆压缩为摘要的次数")
+                .tag("result", "success")
+                .register(meterRegistry);
+        compactionFailureCounter = Counter.builder("agent.memory.compactions")
+                .description("聊天记忆压缩为摘要的次数")
+                .tag("result", "failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 本地记忆被淘汰时回调（用于同步清理 AiServices 中缓存的 ChatMemory 实例）
+     */
+    public void setEvictionListener(Consumer<Object> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * 构造记忆ID
+     */
+    public static String memoryId(Long userId, String sessionId) {
+        return userId + ":" + sessionId;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        return new ArrayList<>(sessions.get(memoryId.toString(), this::restore));
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        List<ChatMessage> capped = capSessionChars(new ArrayList<>(messages));
+        sessions.put(memoryId.toString(), capped);
+
+        // 一轮对话的中间状态（工具调用）不持久化，只在收到用户消息或最终回复时写入 Redis
+        ChatMessage last = capped.isEmpty() ? null : capped.get(capped.size() - 1);
+        if (last instanceof UserMessage || (last instanceof AiMessage && !((AiMessage) last).hasToolExecutionRequests())) {
+            persist(memoryId.toString(), capped);
+        }
+        if (last instanceof AiMessage && !((AiMessage) last).hasToolExecutionRequests()) {
+            compactIfNeeded(memoryId.toString(), capped);
+        }
+    }
+
+    /**
+     * 会话的滚动摘要
+     *
+     * @param memoryId 记忆ID
+     * @return 摘要，会话尚未压缩过时返回 null
+     */
+    public ConversationSummary getSummary(Object memoryId) {
+        return summaries.get(memoryId.toString(), this::restoreSummary).orElse(null);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        sessions.invalidate(memoryId.toString());
+        summaries.invalidate(memoryId.toString());
+        try {
+            redisBucket(memoryId.toString()).deleteAsync();
+            summaryBucket(memoryId.toString()).deleteAsync();
+        } catch (Exception e) {
+            log.warn("删除聊天记忆失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+        }
+    }
+
+    /**
+     * 本地未命中时恢复会话记忆：Redis -> 对话历史表
+     */
+    private List<ChatMessage> restore(String memoryId) {
+        try {
+            String json = redisBucket(memoryId).get();
+            if (json != null && !json.isEmpty()) {
+                redisRestoreCounter.increment();
+                return new ArrayList<>(ChatMessageDeserializer.messagesFromJson(json));
+            }
+        } catch (Exception e) {
+            log.warn("从Redis恢复聊天记忆失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+        }
+
+        int separator = memoryId.indexOf(':');
+        if (separator > 0) {
+            try {
+                Long userId = Long.valueOf(memoryId.substring(0, separator));
+                String sessionId = memoryId.substring(separator + 1);
+                List<AgentConversationHistory> history =
+                        agentConversationHistoryMapper.selectRecentBySessionIdAndUserId(sessionId, userId, maxMessages);
+                if (!history.isEmpty()) {
+                    List<ChatMessage> messages = new ArrayList<>(history.size());
+                    for (AgentConversationHistory item : history) {
+                        String text = truncate(item.getMessageText());
+                        if (text.isEmpty()) {
+                            continue;
+                        }
+                        messages.add("user".equals(item.getMessageRole()) ? UserMessage.from(text) : AiMessage.from(text));
+                    }
+                    databaseRestoreCounter.increment();
+                    log.debug("从对话历史恢复聊天记忆，记忆ID: {}, 消息数: {}", memoryId, messages.size());
+                    return capSessionChars(messages);
+                }
+            } catch (Exception e) {
+                log.warn("从对话历史恢复聊天记忆失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+            }
+        }
+        emptyRestoreCounter.increment();
+        return new ArrayList<>();
+    }
+
+    /**
+     * 异步把较早的消息压缩为摘要；生成期间会话有新消息时照常写入，
+     * 生成完成后只有被压缩的消息仍在会话开头时才替换，否则放弃本次结果等待下一轮
+     */
+    private void compactIfNeeded(String memoryId, List<ChatMessage> messages) {
+        int count = conversationSummarizer.compactableCount(messages);
+        if (count == 0 || !compacting.add(memoryId)) {
+            return;
+        }
+        int start = ConversationSummarizer.firstNonSystemIndex(messages);
+        List<ChatMessage> older = List.copyOf(messages.subList(start, start + count));
+        try {
+            conversationSummarizer.summarize(getSummary(memoryId), older).whenComplete((summary, error) -> {
+                try {
+                    if (error != null) {
+                        compactionFailureCounter.increment();
+                        log.warn("生成会话摘要失败，保留原始消息，记忆ID: {}, 错误: {}", memoryId, error.getMessage());
+                        return;
+                    }
+                    applySummary(memoryId, older, summary);
+                } finally {
+                    compacting.remove(memoryId);
+                }
+            });
+        } catch (RuntimeException e) {
+            compacting.remove(memoryId);
+            compactionFailureCounter.increment();
+            log.warn("提交会话摘要生成失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+        }
+    }
+
+    private void applySummary(String memoryId, List<ChatMessage> older, ConversationSummary summary) {
+        AtomicBoolean replaced = new AtomicBoolean();
+        List<ChatMessage> compacted = sessions.asMap().computeIfPresent(memoryId, (id, current) -> {
+            int start = ConversationSummarizer.firstNonSystemIndex(current);
+            if (current.size() - start < older.size() || !current.subList(start, start + older.size()).equals(older)) {
+                return current;
+            }
+            List<ChatMessage> remaining = new ArrayList<>(current.subList(0, start));
+            remaining.addAll(current.subList(start + older.size(), current.size()));
+            replaced.set(true);
+            return remaining;
+        });
+        if (!replaced.get()) {
+            log.debug("会话已移出本地缓存或开头的消息已变化，放弃本次摘要，记忆ID: {}", memoryId);
+            return;
+        }
+        summaries.put(memoryId, Optional.of(summary));
+        try {
+            summaryBucket(memoryId).setAsync(SUMMARY_MAPPER.writeValueAsString(summary), Duration.ofHours(redisTtlHours));
+        } catch (Exception e) {
+            log.warn("保存会话摘要到Redis失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+        }
+        persist(memoryId, compacted);
+        compactionCounter.increment();
+        log.info("会话较早的{}条消息已压缩为摘要，记忆ID: {}, 剩余消息数: {}", older.size(), memoryId, compacted.size());
+    }
+
+    private Optional<ConversationSummary> restoreSummary(String memoryId) {
+        try {
+            String json = summaryBucket(memoryId).get();
+            if (json != null && !json.isEmpty()) {
+                return Optional.of(SUMMARY_MAPPER.readValue(json, ConversationSummary.class));
+            }
+        } catch (Exception e) {
+            log.warn("从Redis恢复会话摘要失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 以精简形式写入 Redis：只保留用户消息和不含工具调用的回复文本
+     */
+    private void persist(String memoryId, List<ChatMessage> messages) {
+        List<ChatMessage> compact = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage && ((UserMessage) message).hasSingleText()) {
+                compact.add(UserMessage.from(truncate(((UserMessage) message).singleText())));
+            } else if (message instanceof AiMessage && !((AiMessage) message).hasToolExecutionRequests()
+                    && ((AiMessage) message).text() != null) {
+                compact.add(AiMessage.from(truncate(((AiMessage) message).text())));
+            }
+        }
+        try {
+            redisBucket(memoryId).setAsync(ChatMessageSerializer.messagesToJson(compact), Duration.ofHours(redisTtlHours));
+        } catch (Exception e) {
+            log.warn("保存聊天记忆到Redis失败，记忆ID: {}, 错误: {}", memoryId, e.getMessage());
+        }
+    }
+
+    /**
+     * 会话字符数超过上限时从最早的消息开始丢弃（系统提示词不计入、不丢弃），并去掉开头孤立的工具结果
+     */
+    private List<ChatMessage> capSessionChars(List<ChatMessage> messages) {
+        int chars = countChars(messages);
+        int index = 0;
+        while (chars > maxSessionChars && messages.size() - index > 1) {
+            ChatMessage message = messages.get(index);
+            if (message instanceof SystemMessage) {
+                index++;
+                continue;
+            }
+            chars -= messageChars(message);
+            messages.remove(index);
+            while (index < messages.size() && messages.get(index) instanceof ToolExecutionResultMessage) {
+                chars -= messageChars(messages.remove(index));
+            }
+        }
+        return messages;
+    }
+
+    private static int countChars(List<ChatMessage> messages) {
+        int chars = 0;
+        for (ChatMessage message : messages) {
+            chars += messageChars(message);
+        }
+        return chars;
+    }
+
+    /**
+     * 消息字符数（系统提示词各会话相同，不计入）
+     */
+    private static int messageChars(ChatMessage message) {
+        if (message instanceof UserMessage) {
+            UserMessage userMessage = (UserMessage) message;
+            return userMessage.hasSingleText() ? userMessage.singleText().length() : 0;
+        }
+        if (message instanceof AiMessage) {
+            AiMessage aiMessage = (AiMessage) message;
+            int chars = aiMessage.text() != null ? aiMessage.text().length() : 0;
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (var request : aiMessage.toolExecutionRequests()) {
+                    chars += request.arguments() != null ? request.arguments().length() : 0;
+                }
+            }
+            return chars;
+        }
+        if (message instanceof ToolExecutionResultMessage) {
+            String text = ((ToolExecutionResultMessage) message).text();
+            return text != null ? text.length() : 0;
+        }
+        return 0;
+    }
+
+    private String truncate(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() > maxMessageChars ? text.substring(0, maxMessageChars) : text;
+    }
+
+    private RBucket<String> redisBucket(String memoryId) {
+        return redissonClient.getBucket(REDIS_KEY_PREFIX + memoryId, StringCodec.INSTANCE);
+    }
+
+    private RBucket<String> summaryBucket(String memoryId) {
+        return redissonClient.getBucket(SUMMARY_KEY_PREFIX + memoryId, StringCodec.INSTANCE);
+    }
+
+    private Counter restoreCounter(String source) {
+        return Counter.builder("agent.memory.restores")
+                .description("聊天记忆恢复次数")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
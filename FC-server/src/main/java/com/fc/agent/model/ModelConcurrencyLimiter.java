@@ -0,0 +1,276 @@
+package com.fc.agent.model;
+
+import com.fc.exception.AgentServiceException;
+import com.fc.utils.OllamaClient;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AI助手模型并发限制
+ *
+ * 包装 ChatModel / StreamingChatModel，模型请求发出前向 OllamaClient 申请并发许可，
+ * 与AI总结、向量等经 OllamaClient 发送的请求共用同一个额度和等待队列（ollama.client.max-concurrent / max-queue）：
+ * - 每次模型请求单独占用许可（工具执行期间不占用），流式请求在完成或出错时释放
+ * - 同步请求在调用线程等待许可；流式请求异步等待，获得许可后再发送，不阻塞 langchain4j 的回调线程
+ *   （工具执行后的下一轮模型请求在该线程中发起）
+ * - 等待超过 acquire-timeout-ms 或队列已满时拒绝
+ * 等待耗时和拒绝次数记录到 agent.model.* 指标，在途数和排队数见 ollama.client.*
+ */
+@Slf4j
+@Component
+public class ModelConcurrencyLimiter {
+
+    @Value("${agent.model.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    @Autowired
+    private OllamaClient ollamaClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter rejectedCounter;
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        rejectedCounter = Counter.builder("agent.model.rejected")
+                .description("因模型并发已满被拒绝的请求数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("agent.model.wait")
+                .description("等待模型并发许可的耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为同步模型加上并发限制
+     */
+    public ChatModel limit(ChatModel delegate) {
+        return new LimitedChatModel(delegate);
+    }
+
+    /**
+     * 为流式模型加上并发限制
+     */
+    public StreamingChatModel limit(StreamingChatModel delegate) {
+        return new LimitedStreamingChatModel(delegate);
+    }
+
+    /**
+     * 在调用线程等待许可，最多等待 acquire-timeout-ms
+     */
+    private OllamaClient.Permit acquire() {
+        long start = System.nanoTime();
+        CompletableFuture<OllamaClient.Permit> future =
+                ollamaClient.acquireAsync(OllamaClient.Operation.CHAT, acquireTimeoutMs);
+        try {
+            return future.get(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(future);
+            throw reject("等待被中断");
+        } catch (TimeoutException e) {
+            abandon(future);
+            throw reject("等待超时");
+        } catch (ExecutionException e) {
+            throw reject(reasonOf(e.getCause()));
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 放弃等待：之后分配到的许可由 OllamaClient 立即归还；取消前恰好分配到的许可在这里归还
+     */
+    private static void abandon(CompletableFuture<OllamaClient.Permit> future) {
+        future.cancel(false);
+        future.thenAccept(OllamaClient.Permit::release);
+    }
+
+    private AgentServiceException reject(String reason) {
+        rejectedCounter.increment();
+        log.warn("AI助手模型请求被拒绝（{}）", reason);
+        return new AgentServiceException("AI助手当前请求较多，请稍后重试");
+    }
+
+    private static String reasonOf(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof TimeoutException) {
+            return "等待超时";
+        }
+        return error != null && error.getMessage() != null ? error.getMessage() : "等待许可失败";
+    }
+
+    private final class LimitedChatModel implements ChatModel {
+
+        private final ChatModel delegate;
+
+        private LimitedChatModel(ChatModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            OllamaClient.Permit permit = acquire();
+            try {
+                return delegate.chat(chatRequest);
+            } finally {
+                permit.release();
+            }
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public List<ChatModelListener> listeners() {
+            return delegate.listeners();
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return delegate.provider();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+    }
+
+    private final class LimitedStreamingChatModel implements StreamingChatModel {
+
+        private final StreamingChatModel delegate;
+
+        private LimitedStreamingChatModel(StreamingChatModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            long start = System.nanoTime();
+            ollamaClient.acquireAsync(OllamaClient.Operation.CHAT, acquireTimeoutMs)
+                    .orTimeout(acquireTimeoutMs, TimeUnit.MILLISECONDS)
+                    .whenComplete((permit, error) -> {
+                        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        if (error != null) {
+                            handler.onError(reject(reasonOf(error)));
+                            return;
+                        }
+                        ReleasingHandler releasingHandler = new ReleasingHandler(handler, permit);
+                        try {
+                            delegate.chat(chatRequest, releasingHandler);
+                        } catch (RuntimeException e) {
+                            releasingHandler.onError(e);
+                        }
+                    });
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public List<ChatModelListener> listeners() {
+            return delegate.listeners();
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return delegate.provider();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+    }
+
+    /**
+     * 流式请求完成或出错时释放许可（只释放一次），其余回调原样转发
+     */
+    private static final class ReleasingHandler implements StreamingChatResponseHandler {
+
+        private final StreamingChatResponseHandler delegate;
+        private final OllamaClient.Permit permit;
+
+        private ReleasingHandler(StreamingChatResponseHandler delegate, OllamaClient.Permit permit) {
+            this.delegate = delegate;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            delegate.onPartialResponse(partialResponse, context);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            delegate.onPartialThinking(partialThinking);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            delegate.onPartialThinking(partialThinking, context);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            delegate.onPartialToolCall(partialToolCall);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            delegate.onPartialToolCall(partialToolCall, context);
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            delegate.onCompleteToolCall(completeToolCall);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            permit.release();
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            permit.release();
+            delegate.onError(error);
+        }
+    }
+}
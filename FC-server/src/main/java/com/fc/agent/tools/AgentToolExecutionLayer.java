@@ -0,0 +1,325 @@
+package com.fc.agent.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fc.context.BaseContext;
+import com.fc.entity.AgentToolUsage;
+import com.fc.exception.AgentToolExecutionException;
+import com.fc.service.agent.AgentToolUsageService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutionResult;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * AI Agent工具执行层
+ *
+ * 为工具类中的每个 @Tool 方法生成带保护的 ToolExecutor，注册到 AiServices 后（配合 executeToolsConcurrently）：
+ * - 并发：模型一轮请求多个工具时并行执行，工具本身在 agentToolExecutor 中运行
+ * - 超时：本地工具 timeout.local-ms、外部工具 timeout.external-ms，超时后返回错误信息给模型（已开始的调用在后台结束）
+ * - 缓存：按工具名 + 规范化后的参数缓存成功结果，本地工具短期、外部API长期；同一参数并发调用只执行一次；
+ *   依赖当前用户数据的工具不缓存
+ * - 用户上下文：工具线程按记忆ID（userId:sessionId）设置 BaseContext
+ * 每次调用异步写入 agent_tool_usage，成功、失败次数计入 agent.tool.success / agent.tool.failure
+ */
+@Slf4j
+@Component
+public class AgentToolExecutionLayer {
+
+    /**
+     * 工具类型，决定缓存时间和超时时间
+     */
+    public enum ToolKind {
+        /** 查询本系统数据 */
+        LOCAL,
+        /** 调用外部API */
+        EXTERNAL,
+        /** 结果依赖当前用户数据，不缓存 */
+        PERSONAL
+    }
+
+    private static final ObjectMapper ARGUMENT_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 500;
+
+    @Value("${agent.tools.cache.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    @Value("${agent.tools.cache.external-ttl-seconds:21600}")
+    private long externalTtlSeconds;
+
+    @Value("${agent.tools.cache.max-entries:1000}")
+    private long cacheMaxEntries;
+
+    @Value("${agent.tools.timeout.local-ms:10000}")
+    private long localTimeoutMs;
+
+    @Value("${agent.tools.timeout.external-ms:20000}")
+    private long externalTimeoutMs;
+
+    @Autowired
+    @Qualifier("agentToolExecutor")
+    private Executor agentToolExecutor;
+
+    @Autowired
+    @Qualifier("agentToolUsageExecutor")
+    private Executor agentToolUsageExecutor;
+
+    @Autowired
+    private AgentToolUsageService agentToolUsageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 为工具对象的所有 @Tool 方法生成带保护的执行器
+     *
+     * @param tool 工具对象
+     * @param kind 工具类型
+     * @return 工具描述与执行器
+     */
+    public Map<ToolSpecification, ToolExecutor> guard(Object tool, ToolKind kind) {
+        Cache<String, String> cache = null;
+        if (kind != ToolKind.PERSONAL) {
+            cache = Caffeine.newBuilder()
+                    .expireAfterWrite(kind == ToolKind.EXTERNAL ? externalTtlSeconds : localTtlSeconds, TimeUnit.SECONDS)
+                    .maximumSize(cacheMaxEntries)
+                    .build();
+        }
+        long timeoutMs = kind == ToolKind.EXTERNAL ? externalTimeoutMs : localTimeoutMs;
+
+        Map<ToolSpecification, ToolExecutor> executors = new LinkedHashMap<>();
+        for (Method method : AopUtils.getTargetClass(tool).getDeclaredMethods()) {
+            if (!method.isAnnotationPresent(Tool.class)) {
+                continue;
+            }
+            DefaultToolExecutor delegate = DefaultToolExecutor.builder()
+                    .object(tool)
+                    .originalMethod(method)
+                    .methodToInvoke(method)
+                    .wrapToolArgumentsExceptions(true)
+                    .propagateToolExecutionExceptions(true)
+                    .build();
+            executors.put(ToolSpecifications.toolSpecificationFrom(method),
+                    new GuardedToolExecutor(delegate, cache, timeoutMs));
+        }
+        log.info("注册AI Agent工具: {}, 类型: {}, 方法数: {}", AopUtils.getTargetClass(tool).getSimpleName(), kind, executors.size());
+        return executors;
+    }
+
+    private final class GuardedToolExecutor implements ToolExecutor {
+
+        private final DefaultToolExecutor delegate;
+        private final Cache<String, String> cache;
+        // 正在执行的调用，相同参数的并发调用共用一次执行
+        private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+        private final long timeoutMs;
+
+        private GuardedToolExecutor(DefaultToolExecutor delegate, Cache<String, String> cache, long timeoutMs) {
+            this.delegate = delegate;
+            this.cache = cache;
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        public ToolExecutionResult executeWithContext(ToolExecutionRequest request, InvocationContext context) {
+            Object memoryId = context != null ? context.chatMemoryId() : null;
+            String result = run(request, memoryId, () -> delegate.executeWithContext(request, context).resultText());
+            return ToolExecutionResult.builder().resultText(result).build();
+        }
+
+        @Override
+        public String execute(ToolExecutionRequest request, Object memoryId) {
+            return run(request, memoryId, () -> delegate.execute(request, memoryId));
+        }
+
+        private String run(ToolExecutionRequest request, Object memoryId, Supplier<String> call) {
+            long start = System.nanoTime();
+            try {
+                String result;
+                if (cache != null) {
+                    String key = request.name() + ":" + canonicalArguments(request.arguments());
+                    result = cache.getIfPresent(key);
+                    if (result != null) {
+                        meterRegistry.counter("agent.tool.cache.hits", "tool", request.name()).increment();
+                    } else {
+                        result = await(submitShared(key, memoryId, call));
+                    }
+                } else {
+                    result = await(submit(memoryId, call));
+                }
+                record(request, memoryId, start, null);
+                return result;
+            } catch (RuntimeException e) {
+                record(request, memoryId, start, rootCause(e));
+                throw e;
+            }
+        }
+
+        /**
+         * 同一参数只执行一次，成功结果写入缓存，失败不缓存
+         */
+        private CompletableFuture<String> submitShared(String key, Object memoryId, Supplier<String> call) {
+            CompletableFuture<String> shared = new CompletableFuture<>();
+            CompletableFuture<String> existing = inFlight.putIfAbsent(key, shared);
+            if (existing != null) {
+                return existing;
+            }
+            submit(memoryId, call).whenComplete((result, error) -> {
+                if (error == null) {
+                    cache.put(key, result);
+                }
+                inFlight.remove(key, shared);
+                if (error == null) {
+                    shared.complete(result);
+                } else {
+                    shared.completeExceptionally(error);
+                }
+            });
+            return shared;
+        }
+
+        private CompletableFuture<String> submit(Object memoryId, Supplier<String> call) {
+            Long userId = userId(memoryId);
+            return CompletableFuture.supplyAsync(() -> {
+                // 线程池满时在调用线程执行，结束后恢复调用线程原有的用户上下文
+                Long previous = BaseContext.getCurrentId();
+                if (userId != null) {
+                    BaseContext.setCurrentId(userId);
+                }
+                try {
+                    return call.get();
+                } finally {
+                    if (previous != null) {
+                        BaseContext.setCurrentId(previous);
+                    } else {
+                        BaseContext.removeCurrentId();
+                    }
+                }
+            }, agentToolExecutor);
+        }
+
+        private String await(CompletableFuture<String> future) {
+            try {
+                return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new AgentToolExecutionException("工具执行超时，请稍后重试");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AgentToolExecutionException("工具执行被中断");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                        ? e.getCause().getCause() : e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new AgentToolExecutionException(cause != null ? cause.getMessage() : "工具执行失败");
+            }
+        }
+    }
+
+    /**
+     * 异步写入调用记录
+     */
+    private void record(ToolExecutionRequest request, Object memoryId, long startNanos, Throwable error) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        meterRegistry.counter(error == null ? "agent.tool.success" : "agent.tool.failure").increment();
+        if (error != null) {
+            log.warn("AI Agent工具执行失败，工具: {}, 参数: {}, 耗时: {}ms, 错误: {}",
+                    request.name(), request.arguments(), elapsedMs, error.getMessage());
+        }
+
+        String errorMessage = error != null ? String.valueOf(error.getMessage()) : null;
+        if (errorMessage != null && errorMessage.length() > MAX_ERROR_MESSAGE_LENGTH) {
+            errorMessage = errorMessage.substring(0, MAX_ERROR_MESSAGE_LENGTH);
+        }
+        AgentToolUsage usage = AgentToolUsage.builder()
+                .sessionId(sessionId(memoryId))
+                .toolName(request.name())
+                .toolParameters(request.arguments())
+                .executionTimeMs((int) Math.min(elapsedMs, Integer.MAX_VALUE))
+                .success(error == null)
+                .errorMessage(errorMessage)
+                .build();
+        agentToolUsageExecutor.execute(() -> {
+            try {
+                agentToolUsageService.recordToolUsage(usage);
+            } catch (Exception e) {
+                log.warn("写入工具调用记录失败，工具: {}, 错误: {}", usage.getToolName(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 参数JSON按键排序后作为缓存键，解析失败时使用原始字符串
+     */
+    private static String canonicalArguments(String arguments) {
+        if (arguments == null || arguments.isBlank()) {
+            return "{}";
+        }
+        try {
+            return ARGUMENT_MAPPER.writeValueAsString(ARGUMENT_MAPPER.readValue(arguments, Object.class));
+        } catch (Exception e) {
+            return arguments.trim();
+        }
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static Long userId(Object memoryId) {
+        if (memoryId == null) {
+            return null;
+        }
+        String id = memoryId.toString();
+        int separator = id.indexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return Long.valueOf(id.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String sessionId(Object memoryId) {
+        if (memoryId == null) {
+            return null;
+        }
+        String id = memoryId.toString();
+        int separator = id.indexOf(':');
+        return separator >= 0 ? id.substring(separator + 1) : id;
+    }
+}
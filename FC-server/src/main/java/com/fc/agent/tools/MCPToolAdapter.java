@@ -1,9 +1,11 @@
 package com.fc.agent.tools;
 
+import com.fc.exception.AgentToolExecutionException;
 import dev.langchain4j.agent.tool.Tool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
@@ -12,6 +14,7 @@ import java.util.Map;
 
 /**
  * MCP工具适配器
+ * 调用失败时抛出异常（提示信息原样返回给模型），避免失败结果被工具执行层缓存
  */
 @Slf4j
 @Component
@@ -22,8 +25,12 @@ public class MCPToolAdapter {
     @Value("${mcp.server.url:http://localhost:3000}")
     private String mcpServerUrl;
     
-    public MCPToolAdapter() {
-        this.restTemplate = new RestTemplate();
+    public MCPToolAdapter(@Value("${mcp.server.connect-timeout-ms:2000}") int connectTimeoutMs,
+                          @Value("${mcp.server.read-timeout-ms:15000}") int readTimeoutMs) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
     }
     
     /**
@@ -58,16 +65,18 @@ public class MCPToolAdapter {
                     return parseMCPResponse(responseBody);
                 } else if (responseBody.containsKey("error")) {
                     log.error("MCP服务器返回错误: {}", responseBody.get("error"));
-                    return "外部API服务暂时不可用，请稍后重试";
+                    throw new AgentToolExecutionException("外部API服务暂时不可用，请稍后重试");
                 }
             }
             
             log.warn("MCP服务器响应格式异常: {}", response.getBody());
-            return generateFallbackResponse(query);
+            throw new AgentToolExecutionException(generateFallbackResponse(query));
             
+        } catch (AgentToolExecutionException e) {
+            throw e;
         } catch (Exception e) {
             log.error("外部API搜索工具执行异常，查询: {}, 错误: {}", query, e.getMessage(), e);
-            return generateFallbackResponse(query);
+            throw new AgentToolExecutionException(generateFallbackResponse(query));
         }
     }
     
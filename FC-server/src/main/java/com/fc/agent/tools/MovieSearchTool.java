@@ -1,6 +1,7 @@
 package com.fc.agent.tools;
 
 import com.fc.dto.movie.admin.SearchMovieDTO;
+import com.fc.exception.AgentToolExecutionException;
 import com.fc.result.PageResult;
 import com.fc.service.api.MoviePublicService;
 import dev.langchain4j.agent.tool.Tool;
@@ -95,7 +96,7 @@ public class MovieSearchTool {
             return message.toString();
         } catch (Exception e) {
             log.error("电影搜索工具执行异常，关键词: {}, 错误: {}", keyword, e.getMessage(), e);
-            return "搜索电影时发生错误，请稍后重试";
+            throw new AgentToolExecutionException("搜索电影时发生错误，请稍后重试");
         }
     }
     
@@ -208,7 +209,7 @@ public class MovieSearchTool {
             return message.toString();
         } catch (Exception e) {
             log.error("高级电影搜索工具执行异常，参数: {}, 错误: {}", searchParams, e.getMessage(), e);
-            return "高级搜索时发生错误，请稍后重试";
+            throw new AgentToolExecutionException("高级搜索时发生错误，请稍后重试");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package com.fc.agent.vector;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内连续内存向量存储
+ * 所有向量写入时归一化，按行连续存放在同一个 float[] 中，余弦相似度退化为点积；
+ * 扫描为紧凑的原始类型循环，不产生装箱对象，也不需要网络IO。
+ * 读多写少：扫描持读锁，增删持写锁；删除时用最后一行填补空位，保持存储连续。
+ */
+public class FlatVectorStore {
+
+    /**
+     * 扫描结果回调（原始类型参数，避免装箱）
+     */
+    @FunctionalInterface
+    public interface ScoreConsumer {
+        void accept(long id, float score);
+    }
+
+    /**
+     * 遍历回调（向量为归一化后的副本）
+     */
+    @FunctionalInterface
+    public interface VectorConsumer {
+        void accept(long id, float[] vector);
+    }
+
+    private final int dimension;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+
+    private long[] ids;
+    private float[] vectors;
+    private int size;
+
+    public FlatVectorStore(int dimension, int initialCapacity) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("向量维度必须大于0");
+        }
+        int capacity = Math.max(initialCapacity, 16);
+        this.dimension = dimension;
+        this.ids = new long[capacity];
+        this.vectors = new float[capacity * dimension];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增或覆盖向量
+     * @param id 向量ID
+     * @param vector 原始向量（内部归一化后复制存储）
+     * @return 维度不一致或零向量时返回false
+     */
+    public boolean upsert(long id, float[] vector) {
+        float[] normalized = normalize(vector);
+        if (normalized == null || normalized.length != dimension) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            if (slot == null) {
+                ensureCapacity(size + 1);
+                slot = size++;
+                ids[slot] = id;
+                slotById.put(id, slot);
+            }
+            System.arraycopy(normalized, 0, vectors, slot * dimension, dimension);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除向量
+     * @return 向量不存在时返回false
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.remove(id);
+            if (slot == null) {
+                return false;
+            }
+            int last = --size;
+            if (slot != last) {
+                ids[slot] = ids[last];
+                System.arraycopy(vectors, last * dimension, vectors, slot * dimension, dimension);
+                slotById.put(ids[slot], slot);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取归一化后的向量副本
+     */
+    public float[] get(long id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            if (slot == null) {
+                return null;
+            }
+            float[] copy = new float[dimension];
+            System.arraycopy(vectors, slot * dimension, copy, 0, dimension);
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 用已归一化的查询向量扫描全部向量，逐个回调相似度（即点积）
+     */
+    public void scan(float[] normalizedQuery, ScoreConsumer consumer) {
+        if (normalizedQuery.length != dimension) {
+            throw new IllegalArgumentException("查询向量维度不一致: expected=" + dimension
+                    + ", actual=" + normalizedQuery.length);
+        }
+
+        lock.readLock().lock();
+        try {
+            for (int slot = 0, offset = 0; slot < size; slot++, offset += dimension) {
+                consumer.accept(ids[slot], dot(normalizedQuery, vectors, offset, dimension));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 逐个回调全部向量（用于从存储重建索引）
+     */
+    public void forEach(VectorConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0, offset = 0; slot < size; slot++, offset += dimension) {
+                float[] copy = new float[dimension];
+                System.arraycopy(vectors, offset, copy, 0, dimension);
+                consumer.accept(ids[slot], copy);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 点积：4路累加，减少浮点加法的依赖链
+     */
+    static float dot(float[] query, float[] data, int offset, int dimension) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (int bound = dimension - 3; i < bound; i += 4) {
+            s0 += query[i] * data[offset + i];
+            s1 += query[i + 1] * data[offset + i + 1];
+            s2 += query[i + 2] * data[offset + i + 2];
+            s3 += query[i + 3] * data[offset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += query[i] * data[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 将向量归一化为单位长度（返回新数组）
+     * @return 零向量或空向量返回null
+     */
+    public static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += (double) v * v;
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * 将嵌入接口返回的 List<Double> 转为 float[]
+     */
+    public static float[] toFloatArray(List<Double> vector) {
+        if (vector == null) {
+            return null;
+        }
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i).floatValue();
+        }
+        return array;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        long[] newIds = new long[capacity];
+        System.arraycopy(ids, 0, newIds, 0, size);
+        float[] newVectors = new float[capacity * dimension];
+        System.arraycopy(vectors, 0, newVectors, 0, size * dimension);
+        ids = newIds;
+        vectors = newVectors;
+    }
+}
@@ -0,0 +1,594 @@
+package com.fc.agent.vector;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW（分层可导航小世界图）近似最近邻索引
+ *
+ * 向量写入时归一化，相似度为点积（即余弦相似度）。
+ * - 插入：按几何分布随机分配层数，自顶层贪心下降，在每层用 efConstruction 候选集 + 启发式选择邻居
+ * - 删除：标记删除，节点仍参与图遍历但不出现在结果中；更新 = 标记旧节点删除 + 插入新节点
+ * - 持久化：二进制快照文件，附带数据版本号，重启时版本一致则直接加载，无需重建
+ * 读多写少：检索持读锁，插入/删除持写锁。
+ */
+public class HnswIndex {
+
+    private static final int FILE_MAGIC = 0x484E5357;
+    private static final int FILE_FORMAT = 1;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    private float[] vectors;
+    private long[] ids;
+    private boolean[] deleted;
+    // links[node][level] = [邻居数, 邻居1, 邻居2, ...]
+    private int[][][] links;
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param dimension 向量维度
+     * @param m 每层邻居数（第0层为2m）
+     * @param efConstruction 构建时的候选集大小
+     * @param initialCapacity 初始容量
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int initialCapacity) {
+        if (dimension <= 0 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("HNSW参数错误: dimension=" + dimension
+                    + ", m=" + m + ", efConstruction=" + efConstruction);
+        }
+        int capacity = Math.max(initialCapacity, 16);
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.vectors = new float[capacity * dimension];
+        this.ids = new long[capacity];
+        this.deleted = new boolean[capacity];
+        this.links = new int[capacity][][];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 有效（未删除）向量数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已标记删除的节点占比，过高时应重建索引
+     */
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0.0 : (double) deletedCount / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 插入或更新向量
+     * @return 维度不一致或零向量时返回false
+     */
+    public boolean insert(long id, float[] vector) {
+        float[] query = FlatVectorStore.normalize(vector);
+        if (query == null || query.length != dimension) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer oldNode = nodeById.get(id);
+            if (oldNode != null) {
+                markDeleted(oldNode);
+            }
+
+            ensureCapacity(size + 1);
+            int node = size++;
+            System.arraycopy(query, 0, vectors, node * dimension, dimension);
+            ids[node] = id;
+            nodeById.put(id, node);
+
+            int level = randomLevel();
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[maxNeighbors(l) + 1];
+            }
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return true;
+            }
+
+            int ep = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                ep = greedyClosest(query, ep, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                NodeHeap candidates = searchLayer(query, ep, efConstruction, l);
+                int count = candidates.size();
+                int[] sortedNodes = new int[count];
+                float[] sortedScores = new float[count];
+                candidates.drainDescending(sortedNodes, sortedScores);
+
+                int[] selected = selectNeighbors(sortedNodes, sortedScores, count, m);
+                int[] nodeLinks = links[node][l];
+                nodeLinks[0] = selected.length;
+                System.arraycopy(selected, 0, nodeLinks, 1, selected.length);
+                for (int neighbor : selected) {
+                    connect(neighbor, node, l);
+                }
+                ep = sortedNodes[0];
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 标记删除向量
+     * @return 向量不存在时返回false
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索最相似的k个向量
+     * @param query 查询向量（内部归一化）
+     * @param k 返回数量
+     * @param ef 检索时的候选集大小，越大召回率越高、耗时越长
+     * @return 按相似度降序排列的结果
+     */
+    public List<VectorHit> search(float[] query, int k, int ef) {
+        float[] normalized = FlatVectorStore.normalize(query);
+        if (normalized == null || normalized.length != dimension || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return Collections.emptyList();
+            }
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedyClosest(normalized, ep, l);
+            }
+            // 已删除节点会占用候选位置，按删除数量放宽候选集
+            NodeHeap results = searchLayer(normalized, ep, Math.max(ef, k) + Math.min(deletedCount, k), 0);
+            int count = results.size();
+            int[] nodes = new int[count];
+            float[] scores = new float[count];
+            results.drainDescending(nodes, scores);
+
+            List<VectorHit> hits = new ArrayList<>(Math.min(k, count));
+            for (int i = 0; i < count && hits.size() < k; i++) {
+                if (!deleted[nodes[i]]) {
+                    hits.add(new VectorHit(ids[nodes[i]], scores[i]));
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将索引写入快照文件（先写临时文件再原子替换）
+     * @param path 快照文件路径
+     * @param version 数据版本号，加载时用于校验
+     */
+    public void save(Path path, long version) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_FORMAT);
+            out.writeLong(version);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < size; node++) {
+                out.writeLong(ids[node]);
+                out.writeBoolean(deleted[node]);
+                int offset = node * dimension;
+                for (int i = 0; i < dimension; i++) {
+                    out.writeFloat(vectors[offset + i]);
+                }
+                int[][] nodeLinks = links[node];
+                out.writeInt(nodeLinks.length);
+                for (int[] levelLinks : nodeLinks) {
+                    out.writeInt(levelLinks[0]);
+                    for (int i = 1; i <= levelLinks[0]; i++) {
+                        out.writeInt(levelLinks[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从快照文件加载索引
+     * @param path 快照文件路径
+     * @param expectedVersion 期望的数据版本号
+     * @return 文件不存在、格式不符或版本不一致时返回null
+     */
+    public static HnswIndex load(Path path, long expectedVersion) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT || in.readLong() != expectedVersion) {
+                return null;
+            }
+            int dimension = in.readInt();
+            int m = in.readInt();
+            int efConstruction = in.readInt();
+            int size = in.readInt();
+
+            HnswIndex index = new HnswIndex(dimension, m, efConstruction, size);
+            index.entryPoint = in.readInt();
+            index.maxLevel = in.readInt();
+            for (int node = 0; node < size; node++) {
+                long id = in.readLong();
+                boolean isDeleted = in.readBoolean();
+                index.ids[node] = id;
+                index.deleted[node] = isDeleted;
+                if (isDeleted) {
+                    index.deletedCount++;
+                } else {
+                    index.nodeById.put(id, node);
+                }
+                int offset = node * dimension;
+                for (int i = 0; i < dimension; i++) {
+                    index.vectors[offset + i] = in.readFloat();
+                }
+                int levels = in.readInt();
+                index.links[node] = new int[levels][];
+                for (int l = 0; l < levels; l++) {
+                    int[] levelLinks = new int[index.maxNeighbors(l) + 1];
+                    levelLinks[0] = in.readInt();
+                    for (int i = 1; i <= levelLinks[0]; i++) {
+                        levelLinks[i] = in.readInt();
+                    }
+                    index.links[node][l] = levelLinks;
+                }
+            }
+            index.size = size;
+            return index;
+        }
+    }
+
+    /**
+     * 在指定层从ep出发贪心移动到与查询最相似的节点
+     */
+    private int greedyClosest(float[] query, int ep, int level) {
+        int current = ep;
+        float currentScore = score(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] levelLinks = links[current][level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int neighbor = levelLinks[i];
+                float s = score(query, neighbor);
+                if (s > currentScore) {
+                    currentScore = s;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层做best-first搜索，返回最相似的ef个节点（小顶堆）
+     */
+    private NodeHeap searchLayer(float[] query, int ep, int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(size);
+
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        NodeHeap results = new NodeHeap(ef + 1, true);
+        float epScore = score(query, ep);
+        visited.mark(ep);
+        candidates.push(ep, epScore);
+        results.push(ep, epScore);
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.peekScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.peekScore()) {
+                break;
+            }
+            int[] levelLinks = links[candidate][level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int neighbor = levelLinks[i];
+                if (!visited.mark(neighbor)) {
+                    continue;
+                }
+                float s = score(query, neighbor);
+                if (results.size() < ef || s > results.peekScore()) {
+                    candidates.push(neighbor, s);
+                    results.push(neighbor, s);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选择邻居：候选按相似度降序，只保留与已选邻居不过于相近的节点，不足时用被淘汰的候选补齐
+     */
+    private int[] selectNeighbors(int[] sortedNodes, float[] sortedScores, int count, int maxCount) {
+        if (count <= maxCount) {
+            return Arrays.copyOf(sortedNodes, count);
+        }
+        int[] selected = new int[maxCount];
+        int selectedCount = 0;
+        int[] pruned = new int[count];
+        int prunedCount = 0;
+        for (int i = 0; i < count && selectedCount < maxCount; i++) {
+            int candidate = sortedNodes[i];
+            boolean keep = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (nodeScore(candidate, selected[j]) > sortedScores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[selectedCount++] = candidate;
+            } else {
+                pruned[prunedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < prunedCount && selectedCount < maxCount; i++) {
+            selected[selectedCount++] = pruned[i];
+        }
+        return selectedCount == maxCount ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 为已有节点添加反向连接，超过上限时重新选择邻居
+     */
+    private void connect(int node, int newNeighbor, int level) {
+        int[] levelLinks = links[node][level];
+        int count = levelLinks[0];
+        int maxCount = maxNeighbors(level);
+        if (count < maxCount) {
+            levelLinks[++count] = newNeighbor;
+            levelLinks[0] = count;
+            return;
+        }
+
+        NodeHeap heap = new NodeHeap(count + 1, false);
+        for (int i = 1; i <= count; i++) {
+            heap.push(levelLinks[i], nodeScore(node, levelLinks[i]));
+        }
+        heap.push(newNeighbor, nodeScore(node, newNeighbor));
+        int total = heap.size();
+        int[] sortedNodes = new int[total];
+        float[] sortedScores = new float[total];
+        heap.drainDescending(sortedNodes, sortedScores);
+
+        int[] selected = selectNeighbors(sortedNodes, sortedScores, total, maxCount);
+        levelLinks[0] = selected.length;
+        System.arraycopy(selected, 0, levelLinks, 1, selected.length);
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private float score(float[] query, int node) {
+        return FlatVectorStore.dot(query, vectors, node * dimension, dimension);
+    }
+
+    private float nodeScore(int a, int b) {
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        ids = Arrays.copyOf(ids, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    /**
+     * 节点二叉堆（原始类型数组，避免装箱），minHeap=true时堆顶为相似度最低的节点
+     */
+    private static final class NodeHeap {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+        private final boolean minHeap;
+
+        NodeHeap(int capacity, boolean minHeap) {
+            this.nodes = new int[Math.max(capacity, 4)];
+            this.scores = new float[nodes.length];
+            this.minHeap = minHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < size && before(scores[right], scores[child])) {
+                    child = right;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        /**
+         * 取出全部元素，按相似度降序写入数组
+         */
+        void drainDescending(int[] outNodes, float[] outScores) {
+            int count = size;
+            for (int n = 0; n < count; n++) {
+                int pos = minHeap ? count - 1 - n : n;
+                outScores[pos] = scores[0];
+                outNodes[pos] = pop();
+            }
+        }
+
+        private boolean before(float a, float b) {
+            return minHeap ? a < b : a > b;
+        }
+    }
+
+    /**
+     * 按代数标记的访问集合，每次搜索只需递增代数，无需清空数组
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return 首次访问返回true
+         */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
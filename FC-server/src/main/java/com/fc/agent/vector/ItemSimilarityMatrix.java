@@ -0,0 +1,417 @@
+package com.fc.agent.vector;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 稀疏 Top-K 物品相似度矩阵（基于物品的协同过滤）
+ *
+ * CSR 格式存储：itemIds 为升序的电影ID，第 i 部电影的邻居位于 [offsets[i], offsets[i+1])，
+ * neighbors 为邻居在 itemIds 中的下标，similarities 为对应的相似度（降序），全部为基本类型数组。
+ * - 构建：由用户-电影交互权重计算余弦相似度，再按共同用户数收缩（co / (co + shrink)），
+ *   按电影分段在 ForkJoinPool 中并行计算，每部电影只保留 Top-K 邻居
+ * - 打分：用户看过的电影按权重累加邻居的相似度，再除以权重之和，分数在 0~1 之间
+ * - 序列化：二进制格式，用于在实例之间共享
+ * 构建完成后不可变，可被多个线程同时读取。
+ */
+public final class ItemSimilarityMatrix {
+
+    private static final int FORMAT_MAGIC = 0x4953494D;
+    private static final int FORMAT_VERSION = 1;
+    // 每个并行任务至少处理的电影数
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    private final long[] itemIds;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final float[] similarities;
+
+    private ItemSimilarityMatrix(long[] itemIds, int[] offsets, int[] neighbors, float[] similarities) {
+        this.itemIds = itemIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.similarities = similarities;
+    }
+
+    /**
+     * 由用户-电影交互构建相似度矩阵
+     *
+     * @param users 交互的用户ID
+     * @param items 交互的电影ID
+     * @param weights 交互权重（大于0），同一用户对同一电影有多条交互时取最大值
+     * @param count 交互数（三个数组的有效长度）
+     * @param topK 每部电影保留的邻居数
+     * @param shrink 收缩系数，共同用户少的电影对相似度打折
+     * @param maxItemsPerUser 单个用户参与计算的最多电影数（保留权重最高的），限制重度用户的计算量
+     * @param pool 并行计算使用的线程池
+     */
+    public static ItemSimilarityMatrix build(long[] users, long[] items, float[] weights, int count,
+                                             int topK, float shrink, int maxItemsPerUser, ForkJoinPool pool) {
+        if (topK <= 0 || shrink < 0 || maxItemsPerUser <= 0) {
+            throw new IllegalArgumentException("相似度矩阵参数错误: topK=" + topK
+                    + ", shrink=" + shrink + ", maxItemsPerUser=" + maxItemsPerUser);
+        }
+        return new Builder(users, items, weights, count, topK, shrink, maxItemsPerUser).build(pool);
+    }
+
+    /**
+     * 按用户的观影记录打分，返回得分最高的 k 部未看过的电影
+     *
+     * @param viewedIds 用户看过（评过分、标记过）的电影ID
+     * @param viewedWeights 对应的交互权重
+     * @param k 返回数量
+     * @return 已完成排序的选择器，分数为与观影记录的加权平均相似度
+     */
+    public TopKSelector recommend(long[] viewedIds, float[] viewedWeights, int k) {
+        TopKSelector selector = new TopKSelector(k);
+        List<Long> excluded = new ArrayList<>(viewedIds.length);
+        float[] scores = new float[itemIds.length];
+        int[] touched = new int[itemIds.length];
+        int touchedCount = 0;
+        double weightSum = 0;
+
+        for (int v = 0; v < viewedIds.length; v++) {
+            excluded.add(viewedIds[v]);
+            int item = indexOf(viewedIds[v]);
+            float weight = viewedWeights[v];
+            if (item < 0 || weight <= 0) {
+                continue;
+            }
+            weightSum += weight;
+            for (int p = offsets[item]; p < offsets[item + 1]; p++) {
+                int neighbor = neighbors[p];
+                // 相似度和权重都大于0，分数为0说明尚未访问
+                if (scores[neighbor] == 0) {
+                    touched[touchedCount++] = neighbor;
+                }
+                scores[neighbor] += weight * similarities[p];
+            }
+        }
+
+        selector.exclude(excluded);
+        for (int t = 0; t < touchedCount; t++) {
+            int item = touched[t];
+            selector.offer(itemIds[item], scores[item] / weightSum);
+        }
+        return selector.finish();
+    }
+
+    /**
+     * 电影的相似电影（按相似度降序）
+     * @return 电影不在矩阵中时返回空数组
+     */
+    public long[] neighborsOf(long itemId) {
+        int item = indexOf(itemId);
+        if (item < 0) {
+            return new long[0];
+        }
+        long[] result = new long[offsets[item + 1] - offsets[item]];
+        for (int p = offsets[item], i = 0; p < offsets[item + 1]; p++, i++) {
+            result[i] = itemIds[neighbors[p]];
+        }
+        return result;
+    }
+
+    /**
+     * 矩阵中的电影数
+     */
+    public int itemCount() {
+        return itemIds.length;
+    }
+
+    /**
+     * 保存的相似电影对数
+     */
+    public int pairCount() {
+        return neighbors.length;
+    }
+
+    /**
+     * 序列化为二进制
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                16 + itemIds.length * 12 + neighbors.length * 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(itemIds.length);
+            out.writeInt(neighbors.length);
+            for (long itemId : itemIds) {
+                out.writeLong(itemId);
+            }
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int neighbor : neighbors) {
+                out.writeInt(neighbor);
+            }
+            for (float similarity : similarities) {
+                out.writeFloat(similarity);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从二进制反序列化
+     * @return 格式不符时返回null
+     */
+    public static ItemSimilarityMatrix fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != FORMAT_MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long[] itemIds = new long[in.readInt()];
+            int[] neighbors = new int[in.readInt()];
+            int[] offsets = new int[itemIds.length + 1];
+            float[] similarities = new float[neighbors.length];
+            for (int i = 0; i < itemIds.length; i++) {
+                itemIds[i] = in.readLong();
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readInt();
+            }
+            for (int i = 0; i < neighbors.length; i++) {
+                neighbors[i] = in.readInt();
+            }
+            for (int i = 0; i < similarities.length; i++) {
+                similarities[i] = in.readFloat();
+            }
+            return new ItemSimilarityMatrix(itemIds, offsets, neighbors, similarities);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private int indexOf(long itemId) {
+        return Arrays.binarySearch(itemIds, itemId);
+    }
+
+    /**
+     * 构建过程中的中间数据：电影和用户映射为连续下标，交互按用户和按电影各存一份 CSR
+     */
+    private static final class Builder {
+
+        private final int topK;
+        private final float shrink;
+        private final long[] itemIds;
+        private final int itemCount;
+        // 用户 -> (电影下标, 权重)
+        private final int[] userOffsets;
+        private final int[] userItems;
+        private final float[] userWeights;
+        // 电影 -> (用户下标, 权重)
+        private int[] itemOffsets;
+        private int[] itemUsers;
+        private float[] itemUserWeights;
+        private float[] norms;
+        private final int[][] rowNeighbors;
+        private final float[][] rowSimilarities;
+
+        Builder(long[] users, long[] items, float[] weights, int count,
+                int topK, float shrink, int maxItemsPerUser) {
+            this.topK = topK;
+            this.shrink = shrink;
+            this.itemIds = distinctSorted(items, count);
+            this.itemCount = itemIds.length;
+            long[] userIds = distinctSorted(users, count);
+
+            // 按用户分组，每条交互打包为 (电影下标 << 32 | 权重的位)，排序后同一电影相邻
+            int[] userOf = new int[count];
+            int[] groupOffsets = new int[userIds.length + 1];
+            for (int k = 0; k < count; k++) {
+                userOf[k] = Arrays.binarySearch(userIds, users[k]);
+                groupOffsets[userOf[k] + 1]++;
+            }
+            for (int u = 0; u < userIds.length; u++) {
+                groupOffsets[u + 1] += groupOffsets[u];
+            }
+            int[] cursor = Arrays.copyOf(groupOffsets, userIds.length);
+            long[] packed = new long[count];
+            for (int k = 0; k < count; k++) {
+                int item = Arrays.binarySearch(itemIds, items[k]);
+                packed[cursor[userOf[k]]++] = ((long) item << 32) | (Float.floatToIntBits(weights[k]) & 0xFFFFFFFFL);
+            }
+
+            // 去重（取最大权重）并截断重度用户
+            this.userOffsets = new int[userIds.length + 1];
+            this.userItems = new int[count];
+            this.userWeights = new float[count];
+            int size = 0;
+            for (int u = 0; u < userIds.length; u++) {
+                Arrays.sort(packed, groupOffsets[u], groupOffsets[u + 1]);
+                int start = size;
+                for (int k = groupOffsets[u]; k < groupOffsets[u + 1]; k++) {
+                    int item = (int) (packed[k] >>> 32);
+                    float weight = Float.intBitsToFloat((int) packed[k]);
+                    if (size > start && userItems[size - 1] == item) {
+                        userWeights[size - 1] = Math.max(userWeights[size - 1], weight);
+                    } else {
+                        userItems[size] = item;
+                        userWeights[size] = weight;
+                        size++;
+                    }
+                }
+                if (size - start > maxItemsPerUser) {
+                    keepHeaviest(start, size, maxItemsPerUser);
+                    size = start + maxItemsPerUser;
+                }
+                userOffsets[u + 1] = size;
+            }
+
+            transpose(size);
+            this.rowNeighbors = new int[itemCount][];
+            this.rowSimilarities = new float[itemCount][];
+        }
+
+        ItemSimilarityMatrix build(ForkJoinPool pool) {
+            int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, itemCount / (pool.getParallelism() * 8));
+            pool.invoke(new RowTask(0, itemCount, rowsPerTask));
+
+            int[] offsets = new int[itemCount + 1];
+            for (int i = 0; i < itemCount; i++) {
+                offsets[i + 1] = offsets[i] + rowNeighbors[i].length;
+            }
+            int[] neighbors = new int[offsets[itemCount]];
+            float[] similarities = new float[offsets[itemCount]];
+            for (int i = 0; i < itemCount; i++) {
+                System.arraycopy(rowNeighbors[i], 0, neighbors, offsets[i], rowNeighbors[i].length);
+                System.arraycopy(rowSimilarities[i], 0, similarities, offsets[i], rowSimilarities[i].length);
+            }
+            return new ItemSimilarityMatrix(itemIds, offsets, neighbors, similarities);
+        }
+
+        /**
+         * 只保留 [from, to) 中权重最高的 limit 条交互
+         */
+        private void keepHeaviest(int from, int to, int limit) {
+            long[] byWeight = new long[to - from];
+            for (int k = from; k < to; k++) {
+                byWeight[k - from] = ((long) Float.floatToIntBits(userWeights[k]) << 32) | userItems[k];
+            }
+            Arrays.sort(byWeight);
+            for (int i = 0; i < limit; i++) {
+                long entry = byWeight[byWeight.length - 1 - i];
+                userItems[from + i] = (int) entry;
+                userWeights[from + i] = Float.intBitsToFloat((int) (entry >>> 32));
+            }
+        }
+
+        /**
+         * 生成电影 -> 用户的 CSR 和每部电影的向量模长
+         */
+        private void transpose(int size) {
+            itemOffsets = new int[itemCount + 1];
+            for (int k = 0; k < size; k++) {
+                itemOffsets[userItems[k] + 1]++;
+            }
+            for (int i = 0; i < itemCount; i++) {
+                itemOffsets[i + 1] += itemOffsets[i];
+            }
+            int[] cursor = Arrays.copyOf(itemOffsets, itemCount);
+            itemUsers = new int[size];
+            itemUserWeights = new float[size];
+            norms = new float[itemCount];
+            for (int u = 0; u + 1 < userOffsets.length; u++) {
+                for (int k = userOffsets[u]; k < userOffsets[u + 1]; k++) {
+                    int item = userItems[k];
+                    int position = cursor[item]++;
+                    itemUsers[position] = u;
+                    itemUserWeights[position] = userWeights[k];
+                    norms[item] += userWeights[k] * userWeights[k];
+                }
+            }
+            for (int i = 0; i < itemCount; i++) {
+                norms[i] = (float) Math.sqrt(norms[i]);
+            }
+        }
+
+        /**
+         * 计算 [from, to) 范围内电影的 Top-K 邻居，范围较大时二分后并行执行
+         */
+        private final class RowTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+            private final int to;
+            private final int rowsPerTask;
+
+            RowTask(int from, int to, int rowsPerTask) {
+                this.from = from;
+                this.to = to;
+                this.rowsPerTask = rowsPerTask;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > rowsPerTask) {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new RowTask(from, mid, rowsPerTask), new RowTask(mid, to, rowsPerTask));
+                    return;
+                }
+                // 同一任务内各行复用累加数组，计算完一行后只清零访问过的位置
+                float[] dot = new float[itemCount];
+                int[] common = new int[itemCount];
+                int[] touched = new int[itemCount];
+                for (int i = from; i < to; i++) {
+                    int touchedCount = 0;
+                    for (int p = itemOffsets[i]; p < itemOffsets[i + 1]; p++) {
+                        int user = itemUsers[p];
+                        float weight = itemUserWeights[p];
+                        for (int q = userOffsets[user]; q < userOffsets[user + 1]; q++) {
+                            int j = userItems[q];
+                            if (j == i) {
+                                continue;
+                            }
+                            if (common[j]++ == 0) {
+                                touched[touchedCount++] = j;
+                            }
+                            dot[j] += weight * userWeights[q];
+                        }
+                    }
+
+                    TopKSelector selector = new TopKSelector(topK);
+                    for (int t = 0; t < touchedCount; t++) {
+                        int j = touched[t];
+                        double cosine = dot[j] / ((double) norms[i] * norms[j]);
+                        selector.offer(j, cosine * common[j] / (common[j] + shrink));
+                        dot[j] = 0;
+                        common[j] = 0;
+                    }
+                    selector.finish();
+
+                    long[] ids = selector.ids();
+                    double[] scores = selector.scores();
+                    int[] rowNeighbor = new int[ids.length];
+                    float[] rowSimilarity = new float[ids.length];
+                    for (int n = 0; n < ids.length; n++) {
+                        rowNeighbor[n] = (int) ids[n];
+                        rowSimilarity[n] = (float) scores[n];
+                    }
+                    rowNeighbors[i] = rowNeighbor;
+                    rowSimilarities[i] = rowSimilarity;
+                }
+            }
+        }
+
+        private static long[] distinctSorted(long[] values, int count) {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int size = 0;
+            for (int k = 0; k < count; k++) {
+                if (size == 0 || sorted[size - 1] != sorted[k]) {
+                    sorted[size++] = sorted[k];
+                }
+            }
+            return Arrays.copyOf(sorted, size);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.fc.agent.vector;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 有界 Top-K 选择器（推荐排序通用）
+ *
+ * 以容量为k的小顶堆维护当前最好的k个 (id, score)，堆顶为最差者，新候选只需与堆顶比较；
+ * id 和 score 分别存放在 long[] / double[] 中，整个选择过程不产生装箱对象。
+ * 相同分数时 id 较小者优先，保证结果稳定。
+ * 可设置排除集合（如已看过的电影），排除集合排序后用二分查找判断。
+ *
+ * 用法：多次 offer 后调用 finish，再通过 ids()/scores() 取按分数降序排列的结果；实例非线程安全。
+ */
+public final class TopKSelector {
+
+    private static final long[] NO_EXCLUSIONS = new long[0];
+
+    private final int k;
+    private final long[] ids;
+    private final double[] scores;
+    private long[] excluded = NO_EXCLUSIONS;
+    private int size;
+    private boolean finished;
+
+    public TopKSelector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k必须大于0");
+        }
+        this.k = k;
+        this.ids = new long[k];
+        this.scores = new double[k];
+    }
+
+    /**
+     * 设置排除集合
+     */
+    public TopKSelector exclude(Collection<Long> excludedIds) {
+        if (excludedIds == null || excludedIds.isEmpty()) {
+            excluded = NO_EXCLUSIONS;
+            return this;
+        }
+        long[] sorted = new long[excludedIds.size()];
+        int i = 0;
+        for (Long id : excludedIds) {
+            sorted[i++] = id;
+        }
+        Arrays.sort(sorted);
+        excluded = sorted;
+        return this;
+    }
+
+    /**
+     * 提交一个候选
+     * @return 候选进入当前Top-K时返回true
+     */
+    public boolean offer(long id, double score) {
+        if (finished) {
+            throw new IllegalStateException("TopKSelector已完成排序，不能再提交候选");
+        }
+        if (Double.isNaN(score)) {
+            return false;
+        }
+        if (size == k && !better(id, score, ids[0], scores[0])) {
+            return false;
+        }
+        if (excluded.length > 0 && Arrays.binarySearch(excluded, id) >= 0) {
+            return false;
+        }
+
+        if (size < k) {
+            siftUp(size++, id, score);
+        } else {
+            siftDown(0, id, score, size);
+        }
+        return true;
+    }
+
+    /**
+     * 当前已选数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 当前Top-K中最差的分数，未满k个时返回负无穷
+     */
+    public double threshold() {
+        return size < k ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * 原地堆排序为分数降序，之后可读取结果
+     */
+    public TopKSelector finish() {
+        if (finished) {
+            return this;
+        }
+        // 依次把堆顶（最差者）换到末尾，得到降序数组
+        for (int end = size - 1; end > 0; end--) {
+            long topId = ids[0];
+            double topScore = scores[0];
+            siftDown(0, ids[end], scores[end], end);
+            ids[end] = topId;
+            scores[end] = topScore;
+        }
+        finished = true;
+        return this;
+    }
+
+    /**
+     * 按分数降序排列的id
+     */
+    public long[] ids() {
+        checkFinished();
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * 与 ids() 一一对应的分数
+     */
+    public double[] scores() {
+        checkFinished();
+        return Arrays.copyOf(scores, size);
+    }
+
+    private void siftUp(int index, long id, double score) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(ids[parent], scores[parent], id, score)) {
+                break;
+            }
+            ids[index] = ids[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index, long id, double score, int heapSize) {
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < heapSize && better(ids[child], scores[child], ids[right], scores[right])) {
+                child = right;
+            }
+            if (!better(id, score, ids[child], scores[child])) {
+                break;
+            }
+            ids[index] = ids[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    /**
+     * (idA, scoreA) 是否排在 (idB, scoreB) 之前
+     */
+    private static boolean better(long idA, double scoreA, long idB, double scoreB) {
+        return scoreA > scoreB || (scoreA == scoreB && idA < idB);
+    }
+
+    private void checkFinished() {
+        if (!finished) {
+            throw new IllegalStateException("请先调用finish完成排序");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.fc.agent.vector;
+
+/**
+ * 向量检索命中结果
+ */
+public final class VectorHit {
+
+    private final long id;
+    private final float score;
+
+    public VectorHit(long id, float score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 余弦相似度（向量已归一化，即点积）
+     */
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "VectorHit{id=" + id + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,36 @@
+package com.fc.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * AI总结生成线程池
+ * 获取分布式锁后的检查与落库在该线程池中执行，不占用Redisson和Ollama客户端的回调线程
+ */
+@Configuration
+public class AiSummaryConfig {
+
+    @Value("${ai.summary.executor.core-pool-size:2}")
+    private int corePoolSize;
+
+    @Value("${ai.summary.executor.max-pool-size:8}")
+    private int maxPoolSize;
+
+    @Value("${ai.summary.executor.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Bean("aiSummaryExecutor")
+    public ThreadPoolTaskExecutor aiSummaryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-summary-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,83 @@
+package com.fc.config;
+
+import com.fc.context.BaseContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 模型类接口（AI助手对话、AI总结、AI推荐）的请求执行线程池
+ *
+ * 这些接口返回 Callable，由 Spring MVC 异步执行：Tomcat 线程在提交后立即释放，
+ * 长时间等待模型的请求不会占满 Tomcat 线程池、拖慢帖子和评论等普通接口
+ * - 默认：有界平台线程池，线程和队列都满时拒绝（返回系统繁忙）
+ * - virtual-threads=true：JDK 21 及以上改用虚拟线程，并发数超过 max-pool-size 时拒绝；低版本JDK忽略该配置
+ * 对 Ollama 的实际并发由 OllamaClient 统一控制（AI助手对话经 ModelConcurrencyLimiter 申请同一额度）；执行时沿用提交线程的用户上下文
+ */
+@Slf4j
+@Configuration
+public class ModelRequestConfig {
+
+    @Value("${fc.model.request.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${fc.model.request.core-pool-size:16}")
+    private int corePoolSize;
+
+    @Value("${fc.model.request.max-pool-size:200}")
+    private int maxPoolSize;
+
+    @Value("${fc.model.request.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Bean("modelRequestExecutor")
+    public AsyncTaskExecutor modelRequestExecutor() {
+        if (virtualThreads) {
+            if (Runtime.version().feature() >= 21) {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("model-request-");
+                executor.setVirtualThreads(true);
+                executor.setConcurrencyLimit(maxPoolSize);
+                executor.setRejectTasksWhenLimitReached(true);
+                executor.setTaskDecorator(userContextDecorator());
+                log.info("模型类接口使用虚拟线程执行，并发上限: {}", maxPoolSize);
+                return executor;
+            }
+            log.warn("当前JDK版本 {} 不支持虚拟线程，模型类接口改用平台线程池", Runtime.version().feature());
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("model-request-");
+        executor.setTaskDecorator(userContextDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 把提交线程的用户ID带到执行线程，执行结束后清除
+     */
+    private TaskDecorator userContextDecorator() {
+        return task -> {
+            Long userId = BaseContext.getCurrentId();
+            return () -> {
+                if (userId != null) {
+                    BaseContext.setCurrentId(userId);
+                }
+                try {
+                    task.run();
+                } finally {
+                    BaseContext.removeCurrentId();
+                }
+            };
+        };
+    }
+}
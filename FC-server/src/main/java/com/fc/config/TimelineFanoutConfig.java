@@ -0,0 +1,37 @@
+package com.fc.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 个人时间线扩散写线程池
+ * 发帖只提交扩散任务，推送到粉丝时间线在该线程池中异步完成，发帖耗时不随受众规模增长
+ */
+@Configuration
+public class TimelineFanoutConfig {
+
+    @Value("${fc.timeline.fanout.core-pool-size:2}")
+    private int corePoolSize;
+
+    @Value("${fc.timeline.fanout.max-pool-size:4}")
+    private int maxPoolSize;
+
+    @Value("${fc.timeline.fanout.queue-capacity:2000}")
+    private int queueCapacity;
+
+    @Bean("timelineFanoutExecutor")
+    public ThreadPoolTaskExecutor timelineFanoutExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("timeline-fanout-");
+        // 队列满时直接拒绝，由调用方记录日志，不阻塞发帖线程
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -4,10 +4,14 @@ import com.fc.interceptor.JwtTokenInterceptor;
 import com.fc.json.JacksonObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -23,6 +27,13 @@ public class WebMvcConfiguration implements WebMvcConfigurer {
     @Autowired
     private JwtTokenInterceptor jwtTokenInterceptor;
 
+    @Autowired
+    @Qualifier("modelRequestExecutor")
+    private AsyncTaskExecutor modelRequestExecutor;
+
+    @Value("${fc.model.request.timeout-ms:180000}")
+    private long modelRequestTimeoutMs;
+
     /**
      * 注册自定义拦截器
      *
@@ -45,6 +56,17 @@ public class WebMvcConfiguration implements WebMvcConfigurer {
                 );
     }
 
+    /**
+     * 返回 Callable 的接口（模型类接口）在 modelRequestExecutor 中执行
+     *
+     * @param configurer
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(modelRequestExecutor);
+        configurer.setDefaultTimeout(modelRequestTimeoutMs);
+    }
+
     @Override
     public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
         log.info("扩展消息转化器...");
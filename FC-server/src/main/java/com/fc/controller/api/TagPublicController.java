@@ -80,6 +80,37 @@ public class TagPublicController {
         return Result.success(hotTags);
     }
 
+    /**
+     * 获取电影的热门标签
+     */
+    @GetMapping("/hot/movie/{movieId}")
+    @Operation(summary = "获取电影的热门标签")
+    public Result<List<TagVO>> getMovieHotTags(
+            @PathVariable @Parameter(description = "电影ID") Long movieId,
+            @RequestParam(required = false, defaultValue = "5")
+            @Parameter(description = "返回数量") Integer limit) {
+        log.info("获取电影热门标签: movieId={}, limit={}", movieId, limit);
+
+        List<TagVO> hotTags = tagPublicService.getMovieHotTags(movieId, limit);
+        return Result.success(hotTags);
+    }
+
+    /**
+     * 获取相关标签（经常与已选标签一起使用的标签）
+     */
+    @GetMapping("/related")
+    @Operation(summary = "获取相关标签")
+    public Result<List<TagVO>> getRelatedTags(
+            @RequestParam @Parameter(description = "已选标签ID，多个用逗号分隔") List<Long> tagIds,
+            @RequestParam(required = false) @Parameter(description = "电影ID") Long movieId,
+            @RequestParam(required = false, defaultValue = "10")
+            @Parameter(description = "返回数量") Integer limit) {
+        log.info("获取相关标签: tagIds={}, movieId={}, limit={}", tagIds, movieId, limit);
+
+        List<TagVO> relatedTags = tagPublicService.relatedTags(tagIds, movieId, limit);
+        return Result.success(relatedTags);
+    }
+
     /**
      * 根据ID获取标签详情
      */
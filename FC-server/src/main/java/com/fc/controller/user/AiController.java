@@ -10,10 +10,16 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/user/ai")
@@ -24,22 +30,26 @@ public class AiController {
     @Autowired
     private AiService aiService;
 
+    @Value("${ai.summary.stream-timeout-ms:180000}")
+    private Long streamTimeoutMs;
+
     /**
      * 根据电影ID获取AI总结信息
+     * 在 modelRequestExecutor 中执行，不占用Tomcat线程
      * @param movieId
      * @param forceRefresh
      * @return
      */
     @GetMapping("/movie/{movieId}/summary")
     @Operation(summary = "获取电影的AI总结信息")
-    public Result<MovieCommentSummaryVO> getMovieSummary(
+    public Callable<Result<MovieCommentSummaryVO>> getMovieSummary(
             @PathVariable Long movieId,
             @RequestParam(value = "postType", required = true) Integer postType,
             @RequestParam(value = "forceRefresh", required = false, defaultValue = "false") Boolean forceRefresh) {
 
         // 参数验证
         if (postType < 1 || postType > 4) {
-            return Result.error("帖子类型参数错误，可选值：1-无剧透普通，2-有剧透深度，3-二创无剧透，4-二创有剧透");
+            return () -> Result.error("帖子类型参数错误，可选值：1-无剧透普通，2-有剧透深度，3-二创无剧透，4-二创有剧透");
         }
 
         log.info("获取电影AI总结信息: movieId={}, postType={}, forceRefresh={}", movieId, postType, forceRefresh);
@@ -49,19 +59,123 @@ public class AiController {
         summaryDTO.setPostType(postType);
         summaryDTO.setForceRefresh(forceRefresh);
 
-        MovieCommentSummaryVO summaryVO = aiService.generateMovieCommentSummary(summaryDTO);
-        return Result.success(summaryVO);
+        return () -> Result.success(aiService.generateMovieCommentSummary(summaryDTO));
+    }
+
+    /**
+     * 流式获取电影的AI总结（SSE）
+     * 需要重新生成时逐段推送 token 事件，结束时推送 summary 事件；否则直接推送 summary 事件；生成失败时推送 error 事件（备用总结）
+     * 超时、完成或连接出错后不再推送，共享的生成照常完成
+     * @param movieId
+     * @param postType
+     * @param forceRefresh
+     * @return
+     */
+    @GetMapping(value = "/movie/{movieId}/summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "流式获取电影的AI总结信息")
+    public SseEmitter streamMovieSummary(
+            @PathVariable Long movieId,
+            @RequestParam(value = "postType", required = true) Integer postType,
+            @RequestParam(value = "forceRefresh", required = false, defaultValue = "false") Boolean forceRefresh) {
+
+        if (postType < 1 || postType > 4) {
+            return errorEmitter("帖子类型参数错误，可选值：1-无剧透普通，2-有剧透深度，3-二创无剧透，4-二创有剧透");
+        }
+
+        log.info("流式获取电影AI总结信息: movieId={}, postType={}, forceRefresh={}", movieId, postType, forceRefresh);
+
+        MovieCommentSummaryDTO summaryDTO = new MovieCommentSummaryDTO();
+        summaryDTO.setMovieId(movieId);
+        summaryDTO.setPostType(postType);
+        summaryDTO.setForceRefresh(forceRefresh);
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        SseSummaryListener listener = new SseSummaryListener(emitter);
+        emitter.onTimeout(() -> {
+            log.warn("AI总结流超时: movieId={}, postType={}", movieId, postType);
+            listener.detach();
+            emitter.complete();
+        });
+        emitter.onCompletion(listener::detach);
+        emitter.onError(e -> listener.detach());
+        aiService.streamMovieCommentSummary(summaryDTO, listener);
+        return emitter;
     }
 
     /**
      * 检查AI服务状态
+     * 在 modelRequestExecutor 中执行，不占用Tomcat线程
      * @return
      */
     @GetMapping("/status")
     @Operation(summary = "检查AI服务状态")
-    public Result<Boolean> checkAiServiceStatus() {
-        boolean available = aiService.checkAiServiceAvailability();
-        log.info("检查AI服务状态: {}", available ? "可用" : "不可用");
-        return Result.success(available);
+    public Callable<Result<Boolean>> checkAiServiceStatus() {
+        return () -> {
+            boolean available = aiService.checkAiServiceAvailability();
+            log.info("检查AI服务状态: {}", available ? "可用" : "不可用");
+            return Result.success(available);
+        };
+    }
+
+    /**
+     * 只包含一条 error 事件的SSE响应
+     * @param message
+     * @return
+     */
+    private SseEmitter errorEmitter(String message) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 把流式总结的回调转换为SSE事件；分离后的回调直接忽略
+     */
+    private static class SseSummaryListener implements AiService.SummaryStreamListener {
+        private final SseEmitter emitter;
+        private final AtomicBoolean detached = new AtomicBoolean(false);
+
+        SseSummaryListener(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void detach() {
+            detached.set(true);
+        }
+
+        @Override
+        public void onToken(String token) {
+            send("token", token, false);
+        }
+
+        @Override
+        public void onSummary(MovieCommentSummaryVO summary) {
+            send("summary", summary, true);
+        }
+
+        @Override
+        public void onError(String fallbackSummary) {
+            send("error", fallbackSummary, true);
+        }
+
+        private void send(String eventName, Object data, boolean last) {
+            if (detached.get()) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(data));
+                if (last) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                detach();
+                log.info("发送AI总结事件失败，客户端可能已断开: {}", e.getMessage());
+            }
+        }
     }
-}
\ No newline at end of file
+}
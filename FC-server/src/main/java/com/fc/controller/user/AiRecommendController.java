@@ -10,6 +10,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.Callable;
+
 /**
  * AI电影推荐控制器
  */
@@ -24,34 +26,40 @@ public class AiRecommendController {
     
     /**
      * 基于用户观影历史推荐电影
+     * 在 modelRequestExecutor 中执行，不占用Tomcat线程
      * @return 推荐结果
      */
     @PostMapping("/history")
     @Operation(summary = "基于观影历史推荐电影")
-    public Result<MovieRecommendVO> recommendByHistory() {
+    public Callable<Result<MovieRecommendVO>> recommendByHistory() {
         Long userId = BaseContext.getCurrentId();
         log.info("基于观影历史推荐：userId={}", userId);
         
-        MovieRecommendVO recommendVO = aiRecommendService.generateMovieRecommend(userId);
-        
-        log.info("推荐完成：userId={}, 推荐电影数量={}", userId, recommendVO.getRecommendMovies().size());
-        return Result.success(recommendVO);
+        return () -> {
+            MovieRecommendVO recommendVO = aiRecommendService.generateMovieRecommend(userId);
+            
+            log.info("推荐完成：userId={}, 推荐电影数量={}", userId, recommendVO.getRecommendMovies().size());
+            return Result.success(recommendVO);
+        };
     }
     
     /**
      * 基于自然语言描述推荐电影
+     * 在 modelRequestExecutor 中执行，不占用Tomcat线程
      * @param description 电影描述
      * @return 推荐结果
      */
     @PostMapping("/nlp")
     @Operation(summary = "基于自然语言描述推荐电影")
-    public Result<MovieRecommendVO> recommendByNlp(@RequestParam String description) {
+    public Callable<Result<MovieRecommendVO>> recommendByNlp(@RequestParam String description) {
         Long userId = BaseContext.getCurrentId();
         log.info("基于自然语言推荐：userId={}, 描述长度={}", userId, description.length());
         
-        MovieRecommendVO recommendVO = aiRecommendService.recommendByDescription(userId, description);
-        
-        log.info("推荐完成：userId={}, 推荐电影数量={}", userId, recommendVO.getRecommendMovies().size());
-        return Result.success(recommendVO);
+        return () -> {
+            MovieRecommendVO recommendVO = aiRecommendService.recommendByDescription(userId, description);
+            
+            log.info("推荐完成：userId={}, 推荐电影数量={}", userId, recommendVO.getRecommendMovies().size());
+            return Result.success(recommendVO);
+        };
     }
 }
@@ -3,9 +3,11 @@ package com.fc.controller.user;
 import com.fc.dto.post.CollectionPageQueryDTO;
 import com.fc.dto.post.PostInteractionDTO;
 import com.fc.dto.post.PostPublishDTO;
+import com.fc.dto.post.TimelinePageQueryDTO;
 import com.fc.enums.PostInteractionType;
 import com.fc.result.PageResult;
 import com.fc.result.Result;
+import com.fc.service.user.PostTimelineService;
 import com.fc.service.user.PostUserService;
 import com.fc.vo.post.PostImageUploadVO;
 import com.fc.vo.post.PostVO;
@@ -34,6 +36,9 @@ public class PostUserController {
     @Autowired
     private PostUserService postUserService;
 
+    @Autowired
+    private PostTimelineService postTimelineService;
+
     /**
      * 发布帖子
      * @param postPublishDTO 帖子发布信息
@@ -187,6 +192,23 @@ public class PostUserController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 获取个人时间线（关注电影的最新帖子，滚动分页）
+     * @param pageQueryDTO 分页参数
+     * @return 分页结果
+     */
+    @GetMapping("/timeline")
+    @Operation(summary = "获取个人时间线（滚动分页）")
+    public Result<PageResult> getTimeline(@Validated TimelinePageQueryDTO pageQueryDTO) {
+        log.info("获取个人时间线，游标: {}, 每页大小: {}",
+                pageQueryDTO.getCursor(), pageQueryDTO.getSize());
+
+        Long userId = com.fc.context.BaseContext.getCurrentId();
+
+        PageResult pageResult = postTimelineService.getTimeline(userId, pageQueryDTO);
+        return Result.success(pageResult);
+    }
+
     /**
      * 删除帖子
      * @param postId 帖子ID
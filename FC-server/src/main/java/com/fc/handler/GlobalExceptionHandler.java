@@ -5,6 +5,7 @@ import com.fc.exception.AccessDeniedException;
 import com.fc.exception.BaseException;
 import com.fc.result.Result;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -37,6 +38,14 @@ public class GlobalExceptionHandler {
         return Result.error(ex.getMessage());
     }
 
+    /**
+     * 捕获模型类接口执行线程池已满的异常
+     */
+    @ExceptionHandler
+    public Result exceptionHandler(TaskRejectedException ex){
+        log.warn("请求执行线程池已满：{}", ex.getMessage());
+        return Result.error(MessageConstant.SYSTEM_BUSY);
+    }
 
     @ExceptionHandler
     public Result exceptionHandler(SQLIntegrityConstraintViolationException ex){
@@ -0,0 +1,58 @@
+package com.fc.job;
+
+import com.fc.service.agent.AgentConversationPartitionService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class AgentConversationPartitionJob {
+
+    @Autowired
+    private AgentConversationPartitionService agentConversationPartitionService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 定时预建对话历史表的后续分区
+     * 启动后立即执行一次（新建的表只有 p_future，由此创建当前周期的分区），之后按固定间隔检查，
+     * 保证当前周期之后始终有 future-partitions 个空分区
+     * 过期分区的删除由 AgentConversationCleanupJob 执行
+     */
+    @Scheduled(initialDelayString = "${agent.conversation.partition.initial-delay-ms:0}",
+            fixedDelayString = "${agent.conversation.partition.maintain-interval-ms:86400000}")
+    public void maintainPartitions() {
+        String lockKey = "lock:job:agent:conversation:partition";
+        RLock lock = redissonClient.getLock(lockKey);
+
+        boolean isLocked = false;
+        try {
+            // 尝试获取锁，不等待，锁持有时间10分钟
+            isLocked = lock.tryLock(0, 10, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("未获取到分布式锁，对话历史分区维护任务将由其他实例执行");
+                return;
+            }
+
+            int created = agentConversationPartitionService.ensureFuturePartitions();
+            log.info("对话历史分区维护任务完成，新建 {} 个分区", created);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("对话历史分区维护任务获取分布式锁时被中断", e);
+        } catch (Exception e) {
+            log.error("对话历史分区维护任务执行失败", e);
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.fc.job;
+
+import com.fc.service.user.AiService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class AiSummaryRefreshJob {
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 定时刷新AI评论总结
+     * 读取发帖时标记的待刷新总结，新增帖子达到阈值的按访问量依次增量更新，请求路径只读取已保存的总结
+     */
+    @Scheduled(initialDelayString = "${ai.summary.refresh.initial-delay-ms:120000}",
+            fixedDelayString = "${ai.summary.refresh.interval-ms:300000}")
+    public void refreshSummaries() {
+        String lockKey = "lock:job:ai:summary:refresh";
+        RLock lock = redissonClient.getLock(lockKey);
+
+        boolean isLocked = false;
+        try {
+            // 尝试获取锁，不等待，锁持有时间30分钟
+            isLocked = lock.tryLock(0, 30, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("未获取到分布式锁，AI总结刷新任务将由其他实例执行");
+                return;
+            }
+
+            int refreshed = aiService.refreshPendingSummaries();
+            if (refreshed > 0) {
+                log.info("AI总结刷新任务完成，共刷新 {} 个总结", refreshed);
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("AI总结刷新任务获取分布式锁时被中断", e);
+        } catch (Exception e) {
+            log.error("AI总结刷新任务执行失败", e);
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.fc.job;
+
+import com.fc.service.user.MovieSimilarityService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class MovieSimilarityJob {
+
+    @Autowired
+    private MovieSimilarityService movieSimilarityService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 定时全量重建电影相似度矩阵
+     * 启动后延迟执行一次，之后按固定间隔执行，由获取到锁的实例计算并发布
+     */
+    @Scheduled(initialDelayString = "${fc.ai.recommend.movie.item-cf.initial-delay-ms:120000}",
+            fixedDelayString = "${fc.ai.recommend.movie.item-cf.rebuild-interval-ms:21600000}")
+    public void rebuildMovieSimilarity() {
+        String lockKey = "lock:job:movie:similarity";
+        RLock lock = redissonClient.getLock(lockKey);
+
+        boolean isLocked = false;
+        try {
+            // 尝试获取锁，不等待，锁持有时间30分钟
+            isLocked = lock.tryLock(0, 30, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("未获取到分布式锁，电影相似度矩阵重建任务将由其他实例执行");
+                return;
+            }
+
+            log.info("成功获取分布式锁，开始重建电影相似度矩阵...");
+            int movieCount = movieSimilarityService.rebuild();
+            log.info("电影相似度矩阵重建任务完成，共 {} 部电影", movieCount);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("电影相似度矩阵重建任务获取分布式锁时被中断", e);
+        } catch (Exception e) {
+            log.error("电影相似度矩阵重建任务执行失败", e);
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+                log.info("电影相似度矩阵重建任务分布式锁已释放");
+            }
+        }
+    }
+
+    /**
+     * 定时检查相似度矩阵版本号，加载其他实例重建的矩阵；启动后立即执行一次，完成本地矩阵的首次加载
+     * 本地矩阵是每个实例各自持有的，因此不加分布式锁
+     */
+    @Scheduled(initialDelayString = "${fc.ai.recommend.movie.item-cf.sync-initial-delay-ms:0}",
+            fixedDelayString = "${fc.ai.recommend.movie.item-cf.sync-interval-ms:60000}")
+    public void syncMovieSimilarity() {
+        try {
+            movieSimilarityService.syncIfStale();
+        } catch (Exception e) {
+            log.error("电影相似度矩阵同步任务执行失败", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.fc.job;
+
+import com.fc.service.api.MovieTagRankService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class MovieTagRankJob {
+
+    @Autowired
+    private MovieTagRankService movieTagRankService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 定时对账电影热门标签排行
+     * 启动后延迟执行一次（首次部署时初始化排行），之后按固定间隔执行，修正增量更新的偏差
+     */
+    @Scheduled(initialDelayString = "${fc.tag.movie-rank.initial-delay-ms:90000}",
+            fixedDelayString = "${fc.tag.movie-rank.reconcile-interval-ms:21600000}")
+    public void reconcileMovieTagRank() {
+        String lockKey = "lock:job:movie:tag:rank";
+        RLock lock = redissonClient.getLock(lockKey);
+
+        boolean isLocked = false;
+        try {
+            // 尝试获取锁，不等待，锁持有时间30分钟
+            isLocked = lock.tryLock(0, 30, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("未获取到分布式锁，电影热门标签对账任务将由其他实例执行");
+                return;
+            }
+
+            log.info("成功获取分布式锁，开始对账电影热门标签排行...");
+            int movieCount = movieTagRankService.reconcile();
+            log.info("电影热门标签对账任务完成，共对账 {} 部电影", movieCount);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("电影热门标签对账任务获取分布式锁时被中断", e);
+        } catch (Exception e) {
+            log.error("电影热门标签对账任务执行失败", e);
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+                log.info("电影热门标签对账任务分布式锁已释放");
+            }
+        }
+    }
+}
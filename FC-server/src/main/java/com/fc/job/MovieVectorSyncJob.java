@@ -0,0 +1,31 @@
+package com.fc.job;
+
+import com.fc.service.agent.MovieVectorService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class MovieVectorSyncJob {
+
+    @Autowired
+    private MovieVectorService movieVectorService;
+
+    /**
+     * 定时检查电影向量库版本号，同步其他实例写入的向量，并保存有变更的HNSW索引快照；
+     * 启动后立即执行一次，完成本地向量存储的首次加载（请求路径不会触发加载）
+     * 本地向量存储是每个实例各自持有的，因此不加分布式锁
+     */
+    @Scheduled(initialDelayString = "${agent.vector.sync-initial-delay-ms:0}",
+            fixedDelayString = "${agent.vector.sync-interval-ms:60000}")
+    public void syncMovieVectors() {
+        try {
+            movieVectorService.syncIfStale();
+            movieVectorService.persistIndex();
+        } catch (Exception e) {
+            log.error("电影向量库同步任务执行失败", e);
+        }
+    }
+}
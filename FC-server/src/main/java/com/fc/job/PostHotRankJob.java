@@ -0,0 +1,72 @@
+package com.fc.job;
+
+import com.fc.service.api.PostHotRankService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class PostHotRankJob {
+
+    @Autowired
+    private PostHotRankService postHotRankService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 定时重算帖子热度排行
+     * 热度随时间衰减，需按同一时刻重算才能保证排行内分数可比；同时修正增量更新的偏差
+     */
+    @Scheduled(initialDelayString = "${fc.post.hot.initial-delay-ms:30000}",
+            fixedDelayString = "${fc.post.hot.rescore-interval-ms:600000}")
+    public void rescoreHotPosts() {
+        String lockKey = "lock:job:post:hot:rank";
+        RLock lock = redissonClient.getLock(lockKey);
+
+        boolean isLocked = false;
+        try {
+            // 尝试获取锁，不等待，锁持有时间10分钟
+            isLocked = lock.tryLock(0, 10, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("未获取到分布式锁，帖子热度重算任务将由其他实例执行");
+                return;
+            }
+
+            log.info("成功获取分布式锁，开始重算帖子热度排行...");
+            int postCount = postHotRankService.rescoreAll();
+            log.info("帖子热度重算任务完成，共重算 {} 个帖子", postCount);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("帖子热度重算任务获取分布式锁时被中断", e);
+        } catch (Exception e) {
+            log.error("帖子热度重算任务执行失败", e);
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+                log.info("帖子热度重算任务分布式锁已释放");
+            }
+        }
+    }
+
+    /**
+     * 批量重算互动数据有变化的帖子
+     * 待重算集合按 SPOP 取出，多个实例同时执行也不会重复处理，无需加锁
+     */
+    @Scheduled(initialDelayString = "${fc.post.hot.initial-delay-ms:30000}",
+            fixedDelayString = "${fc.post.hot.dirty-interval-ms:5000}")
+    public void rescoreDirtyPosts() {
+        try {
+            postHotRankService.rescoreDirty();
+        } catch (Exception e) {
+            log.error("待重算帖子热度更新失败", e);
+        }
+    }
+}
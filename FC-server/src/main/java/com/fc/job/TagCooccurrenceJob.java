@@ -0,0 +1,58 @@
+package com.fc.job;
+
+import com.fc.service.api.TagCooccurrenceService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class TagCooccurrenceJob {
+
+    @Autowired
+    private TagCooccurrenceService tagCooccurrenceService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 定时全量重建标签共现图
+     * 启动后延迟执行一次，之后按固定间隔执行，修正增量更新遗漏的数据
+     */
+    @Scheduled(initialDelayString = "${fc.tag.cooccurrence.initial-delay-ms:60000}",
+            fixedDelayString = "${fc.tag.cooccurrence.rebuild-interval-ms:3600000}")
+    public void rebuildTagCooccurrence() {
+        String lockKey = "lock:job:tag:cooccurrence";
+        RLock lock = redissonClient.getLock(lockKey);
+
+        boolean isLocked = false;
+        try {
+            // 尝试获取锁，不等待，锁持有时间30分钟
+            isLocked = lock.tryLock(0, 30, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("未获取到分布式锁，标签共现图重建任务将由其他实例执行");
+                return;
+            }
+
+            log.info("成功获取分布式锁，开始重建标签共现图...");
+            int tagCount = tagCooccurrenceService.rebuild();
+            log.info("标签共现图重建任务完成，共写入 {} 个标签的邻居列表", tagCount);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("标签共现图重建任务获取分布式锁时被中断", e);
+        } catch (Exception e) {
+            log.error("标签共现图重建任务执行失败", e);
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+                log.info("标签共现图重建任务分布式锁已释放");
+            }
+        }
+    }
+}
@@ -61,6 +61,12 @@ public interface PostAdminMapper {
     })
     void batchDeletePostImages(@Param("postIds") List<Long> postIds);
 
+    /**
+     * 查询帖子关联的标签ID
+     */
+    @Select("select tag_id from post_tag where post_id = #{postId}")
+    List<Long> getTagIdsByPostId(Long postId);
+
     /**
      * 删除帖子标签关联
      */
@@ -1,6 +1,7 @@
 package com.fc.mapper.agent;
 
 import com.fc.annotation.AutoFill;
+import com.fc.dto.agent.ConversationPartition;
 import com.fc.entity.AgentConversationHistory;
 import com.fc.enumeration.OperationType;
 import org.apache.ibatis.annotations.*;
@@ -24,6 +25,12 @@ public interface AgentConversationHistoryMapper {
     @AutoFill(OperationType.INSERT)
     void insert(AgentConversationHistory conversationHistory);
 
+    /**
+     * 多行插入对话历史记录
+     * @param list 对话历史记录（需已设置创建时间和更新时间）
+     */
+    void insertBatch(@Param("list") List<AgentConversationHistory> list);
+
     /**
      * 根据会话ID查询对话历史
      * @param sessionId 会话ID
@@ -49,6 +56,20 @@ public interface AgentConversationHistoryMapper {
     @Select("SELECT * FROM agent_conversation_history WHERE session_id = #{sessionId} AND user_id = #{userId} ORDER BY create_time ASC")
     List<AgentConversationHistory> selectBySessionIdAndUserId(@Param("sessionId") String sessionId, @Param("userId") Long userId);
 
+    /**
+     * 查询会话最近的若干条对话历史（按时间升序返回，用于恢复聊天记忆）
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param limit 最多返回的消息数
+     * @return 对话历史列表
+     */
+    @Select("SELECT * FROM (SELECT * FROM agent_conversation_history " +
+            "WHERE session_id = #{sessionId} AND user_id = #{userId} " +
+            "ORDER BY create_time DESC, id DESC LIMIT #{limit}) t ORDER BY create_time ASC, id ASC")
+    List<AgentConversationHistory> selectRecentBySessionIdAndUserId(@Param("sessionId") String sessionId,
+                                                                    @Param("userId") Long userId,
+                                                                    @Param("limit") int limit);
+
     /**
      * 删除指定会话的对话历史
      * @param sessionId 会话ID
@@ -63,6 +84,19 @@ public interface AgentConversationHistoryMapper {
     @Delete("DELETE FROM agent_conversation_history WHERE user_id = #{userId}")
     void deleteByUserId(@Param("userId") Long userId);
 
+    /**
+     * 按ID顺序查询用户在指定消息之后发送的消息（用于增量提取偏好）
+     * @param userId 用户ID
+     * @param afterId 从该ID之后开始（不含）
+     * @param limit 最多返回的消息数
+     * @return 用户消息（只包含ID和消息内容）
+     */
+    @Select("SELECT id, message_text FROM agent_conversation_history " +
+            "WHERE user_id = #{userId} AND message_role = 'user' AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<AgentConversationHistory> selectUserMessagesAfterId(@Param("userId") Long userId,
+                                                             @Param("afterId") long afterId,
+                                                             @Param("limit") int limit);
+
     /**
      * 统计用户对话消息数量
      * @param userId 用户ID
@@ -80,11 +114,35 @@ public interface AgentConversationHistoryMapper {
     String getLastConversationTimeByUserId(@Param("userId") Long userId);
 
     /**
-     * 基于时间批量删除对话历史记录
+     * 按主键顺序取截止时间前的下一批记录，返回这批记录的最大ID
+     * @param cutoffTime 截止时间
+     * @param afterId 从该ID之后开始（不含）
+     * @param limit 每批记录数
+     * @return 这批记录的最大ID，没有剩余记录时返回 null
+     */
+    Long selectCleanupChunkEndId(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                 @Param("afterId") long afterId,
+                                 @Param("limit") int limit);
+
+    /**
+     * 删除主键区间 (afterId, endId] 内截止时间前的对话历史记录
+     * @param afterId 区间起点（不含）
+     * @param endId 区间终点（含）
      * @param cutoffTime 截止时间
      * @return 删除的记录数
      */
-    int deleteByCreateTimeBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
+    int deleteByIdRangeAndCreateTimeBefore(@Param("afterId") long afterId,
+                                           @Param("endId") long endId,
+                                           @Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * 按主键顺序删除指定用户的一批对话历史
+     * @param userId 用户ID
+     * @param limit 每批记录数
+     * @return 删除的记录数
+     */
+    @Delete("DELETE FROM agent_conversation_history WHERE user_id = #{userId} ORDER BY id LIMIT #{limit}")
+    int deleteByUserIdLimit(@Param("userId") Long userId, @Param("limit") int limit);
 
     /**
      * 统计截止时间前的对话历史记录数量
@@ -93,6 +151,33 @@ public interface AgentConversationHistoryMapper {
      */
     int countByCreateTimeBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
 
+    /**
+     * 统计时间区间 [fromTime, toTime) 内的对话历史记录数量（分区表上只扫描对应分区）
+     * @param fromTime 起始时间，为 null 时不限
+     * @param toTime 截止时间
+     * @return 记录数量
+     */
+    long countByCreateTimeRange(@Param("fromTime") LocalDateTime fromTime, @Param("toTime") LocalDateTime toTime);
+
+    /**
+     * 查询对话历史表的分区（未分区时返回空列表）
+     * @return 按分区顺序排列的分区信息
+     */
+    List<ConversationPartition> selectPartitions();
+
+    /**
+     * 把最后的 MAXVALUE 分区 p_future 拆分为新分区和新的 p_future
+     * @param partitions 新分区（分区名和 TO_DAYS 上界）
+     */
+    void reorganizeFuturePartition(@Param("partitions") List<ConversationPartition> partitions);
+
+    /**
+     * 删除分区
+     * @param partitionName 分区名
+     */
+    @Update("ALTER TABLE agent_conversation_history DROP PARTITION ${partitionName}")
+    void dropPartition(@Param("partitionName") String partitionName);
+
     /**
      * 分页查询截止时间前的对话历史记录
      * @param cutoffTime 截止时间
@@ -1,36 +1,18 @@
 package com.fc.mapper.agent;
 
-import com.fc.annotation.AutoFill;
 import com.fc.entity.AgentUserPreferences;
-import com.fc.enumeration.OperationType;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * AI Agent用户偏好Mapper接口
+ * favorite_genres、preferred_rating_range 由偏好画像派生，只通过 upsertProfiles 写入
  */
 @Mapper
 public interface AgentUserPreferencesMapper {
 
-    /**
-     * 插入用户偏好记录
-     * @param userPreferences 用户偏好记录
-     */
-    @Insert("INSERT INTO agent_user_preferences(user_id, favorite_genres, preferred_rating_range, disliked_movies, create_time, update_time) " +
-            "VALUES(#{userId}, #{favoriteGenres}, #{preferredRatingRange}, #{dislikedMovies}, #{createTime}, #{updateTime})")
-    @Options(useGeneratedKeys = true, keyProperty = "id")
-    @AutoFill(OperationType.INSERT)
-    void insert(AgentUserPreferences userPreferences);
-
-    /**
-     * 更新用户偏好记录
-     * @param userPreferences 用户偏好记录
-     */
-    @Update("UPDATE agent_user_preferences SET favorite_genres = #{favoriteGenres}, " +
-            "preferred_rating_range = #{preferredRatingRange}, disliked_movies = #{dislikedMovies}, " +
-            "update_time = #{updateTime} WHERE user_id = #{userId}")
-    @AutoFill(OperationType.UPDATE)
-    void update(AgentUserPreferences userPreferences);
-
     /**
      * 根据用户ID查询用户偏好
      * @param userId 用户ID
@@ -55,8 +37,18 @@ public interface AgentUserPreferencesMapper {
     boolean existsByUserId(@Param("userId") Long userId);
 
     /**
-     * 插入或更新用户偏好（upsert操作）
-     * @param userPreferences 用户偏好记录
+     * 插入或更新用户不喜欢的电影（upsert操作，不修改其他列）
+     * @param userId 用户ID
+     * @param dislikedMovies 不喜欢的电影（JSON格式）
+     * @param now 当前时间
+     */
+    void upsertDislikedMovies(@Param("userId") Long userId,
+                              @Param("dislikedMovies") String dislikedMovies,
+                              @Param("now") LocalDateTime now);
+
+    /**
+     * 批量写回偏好画像（upsert操作，不覆盖更新的画像）
+     * @param list 用户偏好记录（需已设置偏好画像、水位、创建时间和更新时间）
      */
-    void insertOrUpdate(AgentUserPreferences userPreferences);
+    void upsertProfiles(@Param("list") List<AgentUserPreferences> list);
 }
\ No newline at end of file
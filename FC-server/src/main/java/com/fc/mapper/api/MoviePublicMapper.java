@@ -93,6 +93,13 @@ public interface MoviePublicMapper {
     @Select("select * from movie where is_deleted = 0 order by movie_id")
     List<Movie> getAllMovies();
 
+    /**
+     * 按电影ID游标分批查询电影（用于向量库构建）
+     */
+    @Select("select movie_id, title, intro, poster_url, avg_rating, release_date from movie " +
+            "where is_deleted = 0 and movie_id > #{lastMovieId} order by movie_id limit #{limit}")
+    List<Movie> selectMoviesAfter(@Param("lastMovieId") Long lastMovieId, @Param("limit") Integer limit);
+
     /**
      * 根据评分范围获取电影列表
      */
@@ -1,5 +1,6 @@
 package com.fc.mapper.api;
 
+import com.fc.dto.post.PostHotStatDTO;
 import com.fc.entity.Post;
 import com.fc.vo.post.PostSearchVO;
 import org.apache.ibatis.annotations.Mapper;
@@ -7,6 +8,7 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -23,9 +25,12 @@ public interface PostPublicMapper {
     Post getByPostIdNotDeleted(Long postId);
 
     /**
-     * 游标分页查询帖子（按创建时间倒序）
+     * 游标分页查询帖子（按(创建时间, 帖子ID)倒序）
+     * @param cursor 游标创建时间
+     * @param cursorId 游标帖子ID（为空时只按创建时间翻页）
      */
     List<PostSearchVO> pageQueryPostsByCursor(@Param("cursor") LocalDateTime cursor,
+                                              @Param("cursorId") Long cursorId,
                                               @Param("size") Integer size,
                                               @Param("movieId") Long movieId,
                                               @Param("postType") Integer postType,
@@ -41,12 +46,14 @@ public interface PostPublicMapper {
     /**
      * 根据用户ID查询帖子列表
      * @param cursor 游标（时间戳）
+     * @param cursorId 游标帖子ID（为空时只按创建时间翻页）
      * @param size 每页大小
      * @param userId 用户ID
      * @return 帖子列表
      */
     List<PostSearchVO> pageQueryPostsByUserId(
             @Param("cursor") LocalDateTime cursor,
+            @Param("cursorId") Long cursorId,
             @Param("size") int size,
             @Param("userId") Long userId);
 
@@ -57,4 +64,49 @@ public interface PostPublicMapper {
      */
     @Select("select count(*) from post where user_id = #{userId} and is_deleted = 0")
     int countPostsByUserId(@Param("userId") Long userId);
-}
\ No newline at end of file
+
+    /**
+     * 根据ID批量查询帖子列表项（不保证顺序，由调用方按ID顺序重排）
+     */
+    List<PostSearchVO> selectPostsByIds(@Param("postIds") List<Long> postIds,
+                                        @Param("contentForm") Integer contentForm);
+
+    /**
+     * 查询帖子热度统计数据
+     */
+    @Select({
+            "<script>",
+            "select post_id, movie_id, post_type, like_count, comment_count, view_count, collect_count, is_deleted, create_time ",
+            "from post where post_id in ",
+            "<foreach collection='postIds' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<PostHotStatDTO> selectPostHotStats(@Param("postIds") List<Long> postIds);
+
+    /**
+     * 按帖子ID游标分批查询热度窗口内的有效帖子统计数据
+     */
+    @Select("select post_id, movie_id, post_type, like_count, comment_count, view_count, collect_count, is_deleted, create_time " +
+            "from post where create_time >= #{since} and post_id > #{lastPostId} and is_deleted = 0 " +
+            "order by post_id limit #{limit}")
+    List<PostHotStatDTO> selectHotCandidatesAfter(@Param("since") LocalDateTime since,
+                                                  @Param("lastPostId") Long lastPostId,
+                                                  @Param("limit") Integer limit);
+
+    /**
+     * 查询个人时间线候选帖子（按创建时间倒序）
+     * 想看的电影只返回无剧透帖子，已看的电影返回全部类型
+     * @param wantMovieIds 标记想看的电影ID
+     * @param watchedMovieIds 标记已看的电影ID
+     * @param cursor 游标（创建时间，可为空）
+     * @param cursorId 游标帖子ID（为空时只按创建时间翻页）
+     * @param limit 返回数量
+     */
+    List<PostSearchVO> selectTimelinePosts(@Param("wantMovieIds") Collection<Long> wantMovieIds,
+                                           @Param("watchedMovieIds") Collection<Long> watchedMovieIds,
+                                           @Param("cursor") LocalDateTime cursor,
+                                           @Param("cursorId") Long cursorId,
+                                           @Param("limit") Integer limit);
+}
@@ -1,5 +1,7 @@
 package com.fc.mapper.api;
 
+import com.fc.dto.tag.MovieTagCountDTO;
+import com.fc.dto.tag.PostTagRelationDTO;
 import com.fc.entity.CreativeTag;
 import com.fc.vo.tag.TagVO;
 import org.apache.ibatis.annotations.*;
@@ -84,4 +86,33 @@ public interface TagPublicMapper {
      */
     @Select("SELECT tag_id FROM creative_tag")
     List<Long> selectAllTagIds();
-}
\ No newline at end of file
+
+    /**
+     * 按帖子ID游标分批查询未删除的帖子ID
+     * 用于构建标签共现图
+     */
+    @Select("SELECT post_id FROM post WHERE post_id > #{lastPostId} AND is_deleted = 0 ORDER BY post_id LIMIT #{limit}")
+    List<Long> selectValidPostIdsAfter(@Param("lastPostId") Long lastPostId, @Param("limit") Integer limit);
+
+    /**
+     * 批量查询帖子的标签关联
+     */
+    List<PostTagRelationDTO> selectPostTagRelations(@Param("postIds") List<Long> postIds);
+
+    /**
+     * 根据ID批量查询标签
+     */
+    List<CreativeTag> getTagsByIds(@Param("tagIds") List<Long> tagIds);
+
+    /**
+     * 按电影ID游标分批查询存在有效二创帖（post_type 3/4）的电影ID
+     * 用于电影热门标签排行对账，走 idx_post_movie_type_feed 索引
+     */
+    @Select("SELECT DISTINCT movie_id FROM post WHERE movie_id > #{lastMovieId} AND post_type IN (3, 4) AND is_deleted = 0 ORDER BY movie_id LIMIT #{limit}")
+    List<Long> selectMovieIdsWithPostsAfter(@Param("lastMovieId") Long lastMovieId, @Param("limit") Integer limit);
+
+    /**
+     * 批量统计电影下各标签的有效二创帖数量
+     */
+    List<MovieTagCountDTO> countMovieTagUsage(@Param("movieIds") List<Long> movieIds);
+}
@@ -85,4 +85,31 @@ public interface MovieUserMapper {
                                                           @Param("relationType") Integer relationType,
                                                           @Param("cursor") LocalDateTime cursor,
                                                           @Param("size") Integer size);
-}
\ No newline at end of file
+
+    /**
+     * 统计电影的受众人数（标记想看或已看的用户）
+     * @param movieId 电影ID
+     * @param minRelationType 最小关系类型（1-想看和已看，2-仅已看）
+     * @return 去重后的用户数
+     */
+    @Select("select count(distinct user_id) from user_movie_relation " +
+            "where movie_id = #{movieId} and relation_type >= #{minRelationType}")
+    long countMovieAudience(@Param("movieId") Long movieId,
+                            @Param("minRelationType") Integer minRelationType);
+
+    /**
+     * 按用户ID游标分批查询电影的受众用户
+     * @param movieId 电影ID
+     * @param minRelationType 最小关系类型（1-想看和已看，2-仅已看）
+     * @param lastUserId 上一批最后一个用户ID
+     * @param limit 批大小
+     * @return 用户ID列表（升序）
+     */
+    @Select("select distinct user_id from user_movie_relation " +
+            "where movie_id = #{movieId} and relation_type >= #{minRelationType} and user_id > #{lastUserId} " +
+            "order by user_id limit #{limit}")
+    List<Long> selectMovieAudienceAfter(@Param("movieId") Long movieId,
+                                        @Param("minRelationType") Integer minRelationType,
+                                        @Param("lastUserId") Long lastUserId,
+                                        @Param("limit") Integer limit);
+}
@@ -166,14 +166,26 @@ public interface PostUserMapper {
 
 
     /**
-     * 获取电影的评论样本（按帖子类型和点赞数、时间排序）
+     * 获取电影的候选评论（按帖子类型和点赞数、时间排序），由采样阶段从中选出AI总结的评论样本
      */
-    @Select("SELECT p.content FROM post p " +
+    @Select("SELECT p.post_id, p.content, p.like_count, p.create_time FROM post p " +
             "WHERE p.movie_id = #{movieId} AND p.post_type = #{postType} AND p.is_deleted = 0 " +
-            "ORDER BY p.like_count DESC, p.create_time DESC LIMIT #{sampleSize}")
-    List<String> getCommentSamplesByPostType(@Param("movieId") Long movieId,
-                                             @Param("sampleSize") Integer sampleSize,
-                                             @Param("postType") Integer postType);
+            "ORDER BY p.like_count DESC, p.create_time DESC LIMIT #{limit}")
+    List<Post> getCommentCandidatesByPostType(@Param("movieId") Long movieId,
+                                              @Param("postType") Integer postType,
+                                              @Param("limit") Integer limit);
+
+    /**
+     * 获取指定时间之后新增的候选评论（用于增量更新AI总结）
+     */
+    @Select("SELECT p.post_id, p.content, p.like_count, p.create_time FROM post p " +
+            "WHERE p.movie_id = #{movieId} AND p.post_type = #{postType} AND p.is_deleted = 0 " +
+            "AND p.create_time > #{since} " +
+            "ORDER BY p.like_count DESC, p.create_time DESC LIMIT #{limit}")
+    List<Post> getCommentCandidatesSince(@Param("movieId") Long movieId,
+                                         @Param("postType") Integer postType,
+                                         @Param("since") LocalDateTime since,
+                                         @Param("limit") Integer limit);
 
     /**
      * 根据电影ID和帖子类型统计有效帖子数量
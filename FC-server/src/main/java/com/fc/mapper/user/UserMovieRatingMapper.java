@@ -3,6 +3,8 @@ package com.fc.mapper.user;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import com.fc.dto.movie.ai.MovieInteractionDTO;
 import com.fc.dto.movie.ai.MovieViewedDTO;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +45,26 @@ public interface UserMovieRatingMapper {
     @Options(timeout = 300)
     List<Map<String, Object>> getMoviesByIds(List<Long> movieIds);
     
+    /**
+     * 按主键顺序分批读取评分记录（构建电影相似度矩阵）
+     * @param afterId 从该评分ID之后开始（不含）
+     * @param limit 每批记录数
+     * @return 评分记录
+     */
+    @Select("SELECT rating_id as id, user_id as userId, movie_id as movieId, rating_value as rating FROM movie_rating " +
+            "WHERE rating_id > #{afterId} ORDER BY rating_id LIMIT #{limit}")
+    List<MovieInteractionDTO> listRatingsAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+    
+    /**
+     * 按主键顺序分批读取用户-电影关系（构建电影相似度矩阵）
+     * @param afterId 从该关系ID之后开始（不含）
+     * @param limit 每批记录数
+     * @return 关系记录
+     */
+    @Select("SELECT id, user_id as userId, movie_id as movieId, relation_type as relationType FROM user_movie_relation " +
+            "WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<MovieInteractionDTO> listRelationsAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+    
     /**
      * 统计用户评分数量
      * @param userId 用户ID
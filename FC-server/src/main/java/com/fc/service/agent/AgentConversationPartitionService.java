@@ -0,0 +1,43 @@
+package com.fc.service.agent;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI Agent对话历史分区管理服务接口
+ * 
+ * agent_conversation_history 按 create_time 做范围分区时，过期数据按分区整体删除，记录数从分区元数据统计
+ */
+public interface AgentConversationPartitionService {
+    
+    /**
+     * 对话历史表是否已按时间分区
+     * 
+     * @return 已分区返回true
+     */
+    boolean isPartitioned();
+    
+    /**
+     * 预先创建未来的分区
+     * 
+     * @return 新建的分区数
+     */
+    int ensureFuturePartitions();
+    
+    /**
+     * 删除所有记录都早于截止时间的分区
+     * 跨越截止时间的分区整体保留，按月分区时数据最长比保留期多保留一个月
+     * 
+     * @param cutoffTime 截止时间
+     * @return 删除的记录数（分区统计信息中的估算值）
+     */
+    long dropPartitionsBefore(LocalDateTime cutoffTime);
+    
+    /**
+     * 统计截止时间前的记录数
+     * 整个早于截止时间的分区使用分区统计信息，跨越截止时间的分区精确统计
+     * 
+     * @param cutoffTime 截止时间
+     * @return 记录数
+     */
+    long countBefore(LocalDateTime cutoffTime);
+}
@@ -6,6 +6,9 @@ import java.util.List;
 
 /**
  * AI Agent对话历史服务接口
+ *
+ * 对话消息通过 appendConversation 异步批量写入，历史查询是最终一致的：
+ * 追加后通常要经过 agent.conversation.write-behind.flush-interval-ms（默认约200ms）才能查到，队列积压时更久
  */
 public interface AgentConversationService {
 
@@ -15,8 +18,16 @@ public interface AgentConversationService {
      */
     void saveConversation(AgentConversationHistory conversationHistory);
 
+    /**
+     * 异步追加对话消息（批量写入，不阻塞调用线程）
+     * 返回时消息尚未写入数据库，需要立即可读时使用 saveConversation
+     * @param conversationHistory 对话历史记录
+     */
+    void appendConversation(AgentConversationHistory conversationHistory);
+
     /**
      * 根据会话ID获取对话历史
+     * 不含尚未刷盘的异步追加消息（约200ms延迟）
      * @param sessionId 会话ID
      * @return 对话历史列表
      */
@@ -24,6 +35,7 @@ public interface AgentConversationService {
 
     /**
      * 根据用户ID获取对话历史
+     * 不含尚未刷盘的异步追加消息（约200ms延迟）
      * @param userId 用户ID
      * @return 对话历史列表
      */
@@ -31,6 +43,7 @@ public interface AgentConversationService {
 
     /**
      * 根据会话ID和用户ID获取对话历史
+     * 不含尚未刷盘的异步追加消息（约200ms延迟）
      * @param sessionId 会话ID
      * @param userId 用户ID
      * @return 对话历史列表
@@ -1,18 +1,16 @@
 package com.fc.service.agent;
 
+import com.fc.agent.memory.PreferenceProfile;
 import com.fc.entity.AgentUserPreferences;
+import com.fc.vo.movie.ai.MovieSimpleVO;
+
+import java.util.List;
 
 /**
  * AI Agent用户偏好服务接口
  */
 public interface AgentPreferenceService {
 
-    /**
-     * 保存或更新用户偏好
-     * @param userPreferences 用户偏好记录
-     */
-    void saveOrUpdatePreferences(AgentUserPreferences userPreferences);
-
     /**
      * 根据用户ID获取用户偏好
      * @param userId 用户ID
@@ -34,23 +32,24 @@ public interface AgentPreferenceService {
     boolean existsPreferences(Long userId);
 
     /**
-     * 更新用户喜欢的电影类型
+     * 更新用户不喜欢的电影
      * @param userId 用户ID
-     * @param favoriteGenres 喜欢的电影类型（JSON格式）
+     * @param dislikedMovies 不喜欢的电影（JSON格式）
      */
-    void updateFavoriteGenres(Long userId, String favoriteGenres);
+    void updateDislikedMovies(Long userId, String dislikedMovies);
 
     /**
-     * 更新用户偏好评分范围
+     * 获取用户偏好画像（只增量处理上次之后的新对话消息）
      * @param userId 用户ID
-     * @param preferredRatingRange 偏好评分范围
+     * @return 偏好画像副本，获取失败时返回 null
      */
-    void updatePreferredRatingRange(Long userId, String preferredRatingRange);
+    PreferenceProfile getProfile(Long userId);
 
     /**
-     * 更新用户不喜欢的电影
+     * 按用户偏好画像对推荐结果重新排序
      * @param userId 用户ID
-     * @param dislikedMovies 不喜欢的电影（JSON格式）
+     * @param movies 按推荐得分降序排列的电影
+     * @return 重新排序后的电影，没有画像时原样返回
      */
-    void updateDislikedMovies(Long userId, String dislikedMovies);
+    List<MovieSimpleVO> rankByProfile(Long userId, List<MovieSimpleVO> movies);
 }
\ No newline at end of file
@@ -1,18 +1,35 @@
 package com.fc.service.agent;
 
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.Result;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
+
 /**
  * AI助手接口
  * 定义AI助手的能力和方法签名，用于AiServices自动生成实现
+ * 对话方法按记忆ID（userId:sessionId）使用独立的聊天记忆
  */
-public interface AssistantService {
+public interface AssistantService extends ChatMemoryAccess {
     
     /**
      * 与用户进行电影相关的智能对话
      * 
+     * @param memoryId 记忆ID，见 SessionChatMemoryStore.memoryId
+     * @param message 用户消息
+     * @return AI助手回复及本轮调用的工具（用于判断回复能否进入语义缓存）
+     */
+    Result<String> chat(@MemoryId String memoryId, @UserMessage String message);
+    
+    /**
+     * 与用户进行电影相关的智能对话（流式输出）
+     * 
+     * @param memoryId 记忆ID，见 SessionChatMemoryStore.memoryId
      * @param message 用户消息
-     * @return AI助手回复
+     * @return 逐段输出的回复流，调用 start() 后开始生成
      */
-    String chat(String message);
+    TokenStream chatStream(@MemoryId String memoryId, @UserMessage String message);
     
     /**
      * 基于用户需求推荐电影
@@ -1,5 +1,8 @@
 package com.fc.service.agent;
 
+import com.fc.agent.vector.VectorHit;
+import com.fc.entity.Movie;
+
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -44,4 +47,45 @@ public interface MovieVectorService {
      * @return 是否已初始化
      */
     boolean isInitialized();
+    
+    /**
+     * 新增或更新单部电影的向量，同时写入共享存储和本地向量存储
+     * 
+     * @param movieId 电影ID
+     * @param vector 电影向量
+     */
+    void upsertMovieVector(Long movieId, List<Double> vector);
+    
+    /**
+     * 删除单部电影的向量
+     * 
+     * @param movieId 电影ID
+     */
+    void removeMovieVector(Long movieId);
+    
+    /**
+     * 检查共享存储的版本号，其他实例有写入或索引已删除节点过多时重新加载本地向量存储
+     */
+    void syncIfStale();
+    
+    /**
+     * 生成并写入单部电影的向量
+     * 
+     * @param movie 电影信息（使用标题和简介生成向量）
+     */
+    void indexMovie(Movie movie);
+    
+    /**
+     * 检索与给定向量最相似的电影
+     * 
+     * @param vector 查询向量
+     * @param topK 返回数量
+     * @return 按相似度降序排列的电影ID与相似度
+     */
+    List<VectorHit> searchSimilarMovies(List<Double> vector, int topK);
+    
+    /**
+     * 将有变更的近似最近邻索引写入本地快照
+     */
+    void persistIndex();
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.fc.service.api;
+
+import com.fc.vo.tag.TagVO;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 电影热门标签排行服务
+ * 每部电影维护一个Redis有序集合，member为标签ID，score为该电影下使用该标签的有效二创帖数量
+ * 只统计二创帖（post_type 3/4），其他类型的帖子不计入
+ */
+public interface MovieTagRankService {
+
+    /**
+     * 帖子发布或恢复后增加标签计数
+     * @param movieId 电影ID
+     * @param postType 帖子类型，非二创帖时忽略
+     * @param tagIds 帖子关联的标签ID
+     */
+    void onPostTagsAdded(Long movieId, Integer postType, List<Long> tagIds);
+
+    /**
+     * 帖子删除后减少标签计数
+     * @param movieId 电影ID
+     * @param postType 帖子类型，非二创帖时忽略
+     * @param tagIds 帖子关联的标签ID
+     */
+    void onPostTagsRemoved(Long movieId, Integer postType, List<Long> tagIds);
+
+    /**
+     * 获取电影的热门标签
+     * @param movieId 电影ID
+     * @param limit 返回数量
+     * @return 热门标签列表，usageCount为该电影下的使用次数
+     */
+    List<TagVO> getMovieHotTags(Long movieId, int limit);
+
+    /**
+     * 获取电影下全部标签的使用次数
+     * @param movieId 电影ID
+     * @return 标签ID -> 使用次数
+     */
+    Map<Long, Double> getMovieTagScores(Long movieId);
+
+    /**
+     * 从数据库全量对账，修正增量更新的偏差
+     * @return 对账的电影数量
+     */
+    int reconcile();
+}
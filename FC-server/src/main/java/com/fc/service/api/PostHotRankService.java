@@ -0,0 +1,62 @@
+package com.fc.service.api;
+
+import com.fc.entity.Post;
+
+import java.util.List;
+
+/**
+ * 帖子热度排行服务
+ * 综合点赞、评论、收藏、浏览和发布时长计算重力衰减热度，维护全站和电影维度的Redis有序集合
+ */
+public interface PostHotRankService {
+
+    /**
+     * 帖子发布后加入排行
+     * @param post 新发布的帖子
+     */
+    void onPostPublished(Post post);
+
+    /**
+     * 帖子互动数据变化后标记为待重算，由定时任务批量重算
+     * @param postId 帖子ID
+     */
+    void markDirty(Long postId);
+
+    /**
+     * 批量重算已标记的帖子
+     * @return 重算的帖子数量
+     */
+    int rescoreDirty();
+
+    /**
+     * 帖子删除后移出排行
+     * @param postId 帖子ID
+     * @param movieId 电影ID
+     * @param postType 帖子类型
+     */
+    void removePost(Long postId, Long movieId, Integer postType);
+
+    /**
+     * 按热度分页获取帖子ID
+     * @param movieId 电影ID（为空时查询全站）
+     * @param postType 帖子类型（为空时不限类型）
+     * @param offset 偏移量
+     * @param size 数量
+     * @return 按热度降序的帖子ID
+     */
+    List<Long> pageHotPostIds(Long movieId, Integer postType, int offset, int size);
+
+    /**
+     * 统计排行中的帖子数量
+     * @param movieId 电影ID（为空时查询全站）
+     * @param postType 帖子类型（为空时不限类型）
+     * @return 帖子数量
+     */
+    long countHotPosts(Long movieId, Integer postType);
+
+    /**
+     * 按当前时间重算热度窗口内全部帖子的分数，并修正增量更新的偏差
+     * @return 参与计算的帖子数量
+     */
+    int rescoreAll();
+}
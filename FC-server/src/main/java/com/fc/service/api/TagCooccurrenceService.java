@@ -0,0 +1,33 @@
+package com.fc.service.api;
+
+import com.fc.vo.tag.TagVO;
+
+import java.util.List;
+
+/**
+ * 标签共现图服务
+ * 基于post_tag统计"经常一起使用的标签"，按标签稀疏存储Top-K邻居
+ */
+public interface TagCooccurrenceService {
+
+    /**
+     * 查询与给定标签经常共同使用的标签
+     * @param tagIds 已选标签ID
+     * @param movieId 电影ID（可选，用于按该电影的标签使用情况加权）
+     * @param limit 返回数量
+     * @return 相关标签列表，hotScore为相关度，usageCount为共现次数
+     */
+    List<TagVO> relatedTags(List<Long> tagIds, Long movieId, int limit);
+
+    /**
+     * 帖子发布后增量更新共现图
+     * @param tagIds 帖子关联的标签ID
+     */
+    void recordPostTags(List<Long> tagIds);
+
+    /**
+     * 从post_tag全量重建共现图
+     * @return 写入邻居列表的标签数量
+     */
+    int rebuild();
+}
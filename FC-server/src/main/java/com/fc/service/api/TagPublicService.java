@@ -38,4 +38,14 @@ public interface TagPublicService {
      * 根据ID获取标签详情
      */
     CreativeTag getTagById(Long tagId);
+
+    /**
+     * 获取电影的热门标签
+     */
+    List<TagVO> getMovieHotTags(Long movieId, Integer limit);
+
+    /**
+     * 获取与已选标签经常一起使用的标签
+     */
+    List<TagVO> relatedTags(List<Long> tagIds, Long movieId, Integer limit);
 }
\ No newline at end of file
@@ -9,7 +9,9 @@ import com.fc.exception.FileUploadException;
 import com.fc.exception.MovieAlreadyExistsException;
 import com.fc.exception.MovieNotFoundException;
 import com.fc.mapper.admin.MovieAdminMapper;
+import com.fc.agent.cache.SemanticResponseCache;
 import com.fc.service.admin.MovieAdminService;
+import com.fc.service.agent.MovieVectorService;
 import com.fc.utils.AliOssUtil;
 import com.fc.utils.FileSecurityValidator;
 import com.fc.vo.movie.admin.MovieVO;
@@ -25,6 +27,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @Service
@@ -37,6 +40,12 @@ public class MovieAdminServiceImpl implements MovieAdminService {
     @Autowired
     private AliOssUtil aliOssUtil;
 
+    @Autowired
+    private MovieVectorService movieVectorService;
+
+    @Autowired
+    private SemanticResponseCache semanticResponseCache;
+
     @Value("${fc.default.movie-poster-url}")
     private String defaultMoviePosterUrl;
 
@@ -72,6 +81,10 @@ public class MovieAdminServiceImpl implements MovieAdminService {
         // 插入数据库
         movieAdminMapper.insert(movie);
 
+        // 增量写入电影向量索引，AI助手缓存的回复随之失效
+        indexMovieVector(movie);
+        semanticResponseCache.onCatalogChanged();
+
         // 构建返回结果
         return MovieVO.builder()
                 .movieId(movie.getMovieId())
@@ -128,10 +141,29 @@ public class MovieAdminServiceImpl implements MovieAdminService {
         // 获取更新后的电影信息
         Movie updatedMovie = movieAdminMapper.getByMovieId(movieId);
 
+        // 标题或简介变化时更新电影向量索引
+        if (!Objects.equals(updatedMovie.getTitle(), existingMovie.getTitle())
+                || !Objects.equals(updatedMovie.getIntro(), existingMovie.getIntro())) {
+            indexMovieVector(updatedMovie);
+        }
+        semanticResponseCache.onCatalogChanged();
+
         // 构建返回结果
         return buildMovieVO(updatedMovie);
     }
 
+    /**
+     * 写入电影向量（失败不影响电影信息保存，可通过重新初始化向量库修复）
+     * @param movie
+     */
+    private void indexMovieVector(Movie movie) {
+        try {
+            movieVectorService.indexMovie(movie);
+        } catch (Exception e) {
+            log.warn("更新电影向量失败: movieId={}", movie.getMovieId(), e);
+        }
+    }
+
     /**
      * 构建MovieVO对象
      * @param movie
@@ -9,6 +9,9 @@ import com.fc.mapper.admin.CommentAdminMapper;
 import com.fc.mapper.api.AccountMapper;
 import com.fc.mapper.admin.PostAdminMapper;
 import com.fc.service.admin.PostAdminService;
+import com.fc.service.api.MovieTagRankService;
+import com.fc.service.api.PostHotRankService;
+import com.fc.utils.TransactionUtil;
 import com.fc.vo.post.PostAdminVO;
 
 import lombok.extern.slf4j.Slf4j;
@@ -41,6 +44,12 @@ public class PostAdminServiceImpl implements PostAdminService {
     @Autowired
     private RedissonClient redissonClient;
 
+    @Autowired
+    private MovieTagRankService movieTagRankService;
+
+    @Autowired
+    private PostHotRankService postHotRankService;
+
     @Value("${post.auto-cleanup.days:30}")
     private Integer autoCleanupDays;
 
@@ -71,6 +80,7 @@ public class PostAdminServiceImpl implements PostAdminService {
                 .build();
 
         postAdminMapper.update(postToUpdate);
+        syncPostRankings(post, false);
 
         Post updatedPost = postAdminMapper.getByPostId(postId);
         return buildPostAdminVO(updatedPost);
@@ -100,6 +110,7 @@ public class PostAdminServiceImpl implements PostAdminService {
                 .build();
 
         postAdminMapper.update(postToUpdate);
+        syncPostRankings(post, true);
 
         Post updatedPost = postAdminMapper.getByPostId(postId);
         return buildPostAdminVO(updatedPost);
@@ -121,6 +132,11 @@ public class PostAdminServiceImpl implements PostAdminService {
             List<Long> commentIds = commentAdminMapper.getCommentIdsByPostId(postId);
             log.info("开始物理删除帖子及相关数据: postId={}, 评论数量={}", postId, commentIds.size());
 
+            // 未经逻辑删除直接物理删除的帖子，需要在删除标签关联前扣减电影热门标签计数并移出热度排行
+            if (post.getIsDeleted() == 0) {
+                syncPostRankings(post, false);
+            }
+
             if (!commentIds.isEmpty()) {
                 // 2. 先删除评论图片
                 commentAdminMapper.batchDeleteCommentImages(commentIds);
@@ -278,6 +294,7 @@ public class PostAdminServiceImpl implements PostAdminService {
 
     /**
      * 删除单个帖子及相关数据
+     * 自动清理的帖子均已逻辑删除，电影热门标签计数和热度排行已在逻辑删除时调整，这里无需再处理
      */
     private void deleteSinglePostWithRelatedData(Long postId) {
         // 1. 查询帖子的所有评论ID
@@ -299,6 +316,43 @@ public class PostAdminServiceImpl implements PostAdminService {
     }
 
 
+    /**
+     * 同步电影热门标签计数和帖子热度排行（失败不影响主流程，定时任务会修正）
+     * 标签关联在事务内查询（物理删除会随后删除关联），Redis计数和排行在事务提交后更新，回滚时不改动
+     * @param post 帖子
+     * @param added true-帖子恢复，false-帖子删除
+     */
+    private void syncPostRankings(Post post, boolean added) {
+        try {
+            List<Long> tagIds = postAdminMapper.getTagIdsByPostId(post.getPostId());
+            TransactionUtil.afterCommit(() -> {
+                try {
+                    if (added) {
+                        movieTagRankService.onPostTagsAdded(post.getMovieId(), post.getPostType(), tagIds);
+                    } else {
+                        movieTagRankService.onPostTagsRemoved(post.getMovieId(), post.getPostType(), tagIds);
+                    }
+                } catch (Exception e) {
+                    log.warn("更新电影热门标签失败: postId={}", post.getPostId(), e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("查询帖子标签失败，电影热门标签计数由定时对账修正: postId={}", post.getPostId(), e);
+        }
+
+        TransactionUtil.afterCommit(() -> {
+            try {
+                if (added) {
+                    postHotRankService.markDirty(post.getPostId());
+                } else {
+                    postHotRankService.removePost(post.getPostId(), post.getMovieId(), post.getPostType());
+                }
+            } catch (Exception e) {
+                log.warn("更新帖子热度排行失败: postId={}", post.getPostId(), e);
+            }
+        });
+    }
+
     /**
      * 构建PostAdminVO对象
      */
@@ -1,11 +1,13 @@
 package com.fc.service.impl.agent;
 
+import com.fc.agent.config.AgentCleanupConfig;
 import com.fc.dto.agent.CleanupResult;
 import com.fc.dto.agent.CleanupStats;
 import com.fc.entity.AgentConversationHistory;
 import com.fc.enums.CleanupStrategyEnum;
 import com.fc.mapper.agent.AgentConversationHistoryMapper;
 import com.fc.service.agent.AgentConversationCleanupService;
+import com.fc.service.agent.AgentConversationPartitionService;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -13,12 +15,12 @@ import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -27,6 +29,14 @@ import java.util.concurrent.atomic.AtomicLong;
  * 
  * 负责管理AI Agent对话历史数据的清理任务，支持多种清理策略
  * 包括基于时间、基于数量、基于活跃度的清理方式
+ *
+ * 删除按主键顺序分批进行：每批先取 batch-size 条记录的ID上界，再按主键区间删除，每条 DELETE 单独提交，
+ * 批次之间间隔 batch-pause-ms；运行超过 max-run-minutes 或线程被中断时停止，
+ * 已删除的批次不会回滚，剩余记录由下次清理从最小ID继续删除
+ * 清理进度记录到 agent.cleanup.records（按批累加）和 agent.cleanup.pending（剩余待清理数）
+ *
+ * 对话历史表已按时间分区时，基于时间的清理改为删除整个过期分区（见 AgentConversationPartitionService），
+ * 过期记录数从分区统计信息获取
  */
 @Slf4j
 @Service
@@ -38,6 +48,12 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
     @Autowired
     private MeterRegistry meterRegistry;
     
+    @Autowired
+    private AgentCleanupConfig agentCleanupConfig;
+    
+    @Autowired
+    private AgentConversationPartitionService agentConversationPartitionService;
+    
     // 监控指标
     private Timer agentCleanupTimer;
     private Counter agentCleanupCounter;
@@ -45,6 +61,9 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
     private Counter agentCleanupFailureCounter;
     private Gauge agentCleanupPendingGauge;
     
+    // 当前清理剩余的待删除记录数（清理开始时统计，每删除一批递减）
+    private final AtomicLong pendingRecords = new AtomicLong(0);
+    
     // 清理统计信息
     private final AtomicInteger cleanupExecutionCount = new AtomicInteger(0);
     private final AtomicInteger cleanupSuccessCount = new AtomicInteger(0);
@@ -64,21 +83,18 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
         agentCleanupFailureCounter = meterRegistry.counter("agent.cleanup.failures");
         
         // 初始化Gauge指标
-        agentCleanupPendingGauge = Gauge.builder("agent.cleanup.pending", 
-                this, AgentConversationCleanupServiceImpl::getPendingRecordsCount)
+        agentCleanupPendingGauge = Gauge.builder("agent.cleanup.pending", pendingRecords, AtomicLong::get)
                 .description("待清理的Agent对话记录数量")
                 .register(meterRegistry);
     }
 
     @Override
-    @Transactional
     public CleanupResult executeAutoCleanup() {
         // 默认使用基于时间的清理策略，保留30天数据
         return cleanupByTime(30);
     }
 
     @Override
-    @Transactional
     public CleanupResult cleanupByTime(int retentionDays) {
         log.info("开始执行基于时间的AI Agent对话清理，保留天数: {}", retentionDays);
         
@@ -95,8 +111,11 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
         agentCleanupExecutionCounter.increment();
         
         try {
+            boolean partitioned = agentConversationPartitionService.isPartitioned();
+            
             // 统计待清理数据量
-            int pendingCount = agentConversationHistoryMapper.countByCreateTimeBefore(cutoffTime);
+            long pendingCount = countExpiredRecords(cutoffTime, partitioned);
+            pendingRecords.set(pendingCount);
             log.info("待清理的过期对话记录数量: {}", pendingCount);
             
             if (pendingCount == 0) {
@@ -106,17 +125,13 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
                 return result;
             }
             
-            // 使用Timer监控清理执行时间
-            int affectedRows = agentCleanupTimer.record(() -> {
-                return agentConversationHistoryMapper.deleteByCreateTimeBefore(cutoffTime);
-            });
+            // 使用Timer监控清理执行时间（分区表删除过期分区，否则分批删除）
+            int affectedRows = agentCleanupTimer.record(
+                    () -> partitioned ? dropExpiredPartitions(cutoffTime) : deleteInChunks(cutoffTime));
             
             result.setAffectedRows(affectedRows);
             result.complete();
             
-            // 记录清理记录数量
-            agentCleanupCounter.increment(affectedRows);
-            
             log.info("基于时间清理完成，保留天数: {}, 清理记录数: {}, 耗时: {}ms", 
                     retentionDays, affectedRows, result.getDuration());
             
@@ -138,7 +153,6 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
     }
 
     @Override
-    @Transactional
     public CleanupResult cleanupByCount(int retentionCount) {
         log.info("开始执行基于数量的AI Agent对话清理，保留记录数: {}", retentionCount);
         
@@ -167,6 +181,7 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
             
             // 计算需要删除的记录数
             int recordsToDelete = totalCount - retentionCount;
+            pendingRecords.set(recordsToDelete);
             log.info("需要清理的记录数: {}", recordsToDelete);
             
             // 获取最早的记录时间作为截止时间
@@ -179,16 +194,11 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
             }
             
             // 使用Timer监控清理执行时间
-            int affectedRows = agentCleanupTimer.record(() -> {
-                return agentConversationHistoryMapper.deleteByCreateTimeBefore(cutoffTime);
-            });
+            int affectedRows = agentCleanupTimer.record(() -> deleteInChunks(cutoffTime));
             
             result.setAffectedRows(affectedRows);
             result.complete();
             
-            // 记录清理记录数量
-            agentCleanupCounter.increment(affectedRows);
-            
             log.info("基于数量清理完成，保留记录数: {}, 清理记录数: {}, 耗时: {}ms", 
                     retentionCount, affectedRows, result.getDuration());
             
@@ -210,7 +220,6 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
     }
 
     @Override
-    @Transactional
     public CleanupResult cleanupByActivity(int inactiveDays) {
         log.info("开始执行基于活跃度的AI Agent对话清理，非活跃天数: {}", inactiveDays);
         
@@ -240,11 +249,17 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
             
             // 使用Timer监控清理执行时间
             int totalAffectedRows = agentCleanupTimer.record(() -> {
+                long deadline = runDeadline();
                 int affectedRows = 0;
                 for (Long userId : inactiveUserIds) {
+                    if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+                        log.warn("基于活跃度清理达到最长运行时间或被中断，剩余用户下次继续清理");
+                        break;
+                    }
                     try {
-                        affectedRows += deleteConversationHistoryByUserId(userId);
-                        log.debug("清理用户 {} 的对话记录，删除记录数: {}", userId, affectedRows);
+                        int userRows = deleteConversationHistoryByUserId(userId, deadline);
+                        affectedRows += userRows;
+                        log.debug("清理用户 {} 的对话记录，删除记录数: {}", userId, userRows);
                     } catch (Exception e) {
                         log.warn("清理用户 {} 的对话记录失败: {}", userId, e.getMessage());
                     }
@@ -255,9 +270,6 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
             result.setAffectedRows(totalAffectedRows);
             result.complete();
             
-            // 记录清理记录数量
-            agentCleanupCounter.increment(totalAffectedRows);
-            
             log.info("基于活跃度清理完成，非活跃天数: {}, 清理用户数: {}, 清理记录数: {}, 耗时: {}ms", 
                     inactiveDays, inactiveUserIds.size(), totalAffectedRows, result.getDuration());
             
@@ -279,7 +291,6 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
     }
 
     @Override
-    @Transactional
     public CleanupResult manualCleanup(CleanupStrategyEnum strategy, Object param) {
         log.info("开始执行手动清理，策略: {}, 参数: {}", strategy, param);
         
@@ -323,7 +334,7 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
         
         // 获取过期记录数（默认保留30天）
         LocalDateTime cutoffTime = LocalDateTime.now().minusDays(30);
-        stats.setExpiredRecords(agentConversationHistoryMapper.countByCreateTimeBefore(cutoffTime));
+        stats.setExpiredRecords(countExpiredRecords(cutoffTime, agentConversationPartitionService.isPartitioned()));
         
         // 设置清理统计信息
         stats.setLastCleanupTime(lastCleanupTime);
@@ -353,7 +364,7 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
         
         // 获取过期记录数（默认保留30天）
         LocalDateTime cutoffTime = LocalDateTime.now().minusDays(30);
-        stats.setExpiredRecords(agentConversationHistoryMapper.countByCreateTimeBefore(cutoffTime));
+        stats.setExpiredRecords(countExpiredRecords(cutoffTime, agentConversationPartitionService.isPartitioned()));
         
         return stats;
     }
@@ -421,34 +432,104 @@ public class AgentConversationCleanupServiceImpl implements AgentConversationCle
     }
 
     /**
-     * 删除指定用户的对话历史
+     * 分批删除指定用户的对话历史
      */
-    private int deleteConversationHistoryByUserId(Long userId) {
+    private int deleteConversationHistoryByUserId(Long userId, long deadline) {
+        int batchSize = agentCleanupConfig.getBatchSize();
+        int affectedRows = 0;
         try {
-            agentConversationHistoryMapper.deleteByUserId(userId);
-            // 由于deleteByUserId方法没有返回影响行数，这里需要统计删除前的记录数
-            int countBefore = agentConversationHistoryMapper.countByUserId(userId);
-            return countBefore; // 返回删除前的记录数作为影响行数
+            while (true) {
+                int deleted = agentConversationHistoryMapper.deleteByUserIdLimit(userId, batchSize);
+                affectedRows += deleted;
+                agentCleanupCounter.increment(deleted);
+                if (deleted < batchSize || System.nanoTime() > deadline || !pauseBetweenChunks()) {
+                    return affectedRows;
+                }
+            }
         } catch (Exception e) {
-            log.error("删除用户 {} 的对话历史失败: {}", userId, e.getMessage(), e);
-            return 0;
+            log.error("删除用户 {} 的对话历史失败，已删除: {}, 错误: {}", userId, affectedRows, e.getMessage(), e);
+            return affectedRows;
         }
     }
 
     /**
-     * 获取待清理记录数量
+     * 统计截止时间前的记录数（分区表从分区统计信息获取）
      */
-    private int getPendingRecordsCount() {
+    private long countExpiredRecords(LocalDateTime cutoffTime, boolean partitioned) {
+        return partitioned ? agentConversationPartitionService.countBefore(cutoffTime)
+                : agentConversationHistoryMapper.countByCreateTimeBefore(cutoffTime);
+    }
+
+    /**
+     * 删除所有记录都早于截止时间的分区；截止时间所在分区的记录等整个分区过期后再删除
+     */
+    private int dropExpiredPartitions(LocalDateTime cutoffTime) {
+        long droppedRows = agentConversationPartitionService.dropPartitionsBefore(cutoffTime);
+        agentCleanupCounter.increment(droppedRows);
+        pendingRecords.updateAndGet(pending -> Math.max(0, pending - droppedRows));
+        return (int) Math.min(droppedRows, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 按主键顺序分批删除截止时间前的记录
+     * 每批先取下一批记录的ID上界，再按主键区间删除，每条 DELETE 单独提交；
+     * 达到最长运行时间或线程被中断时停止，返回已删除的记录数
+     */
+    private int deleteInChunks(LocalDateTime cutoffTime) {
+        int batchSize = agentCleanupConfig.getBatchSize();
+        long deadline = runDeadline();
+        long afterId = 0;
+        int affectedRows = 0;
+        int chunks = 0;
+        while (true) {
+            Long endId = agentConversationHistoryMapper.selectCleanupChunkEndId(cutoffTime, afterId, batchSize);
+            if (endId == null) {
+                break;
+            }
+            int deleted = agentConversationHistoryMapper.deleteByIdRangeAndCreateTimeBefore(afterId, endId, cutoffTime);
+            afterId = endId;
+            affectedRows += deleted;
+            chunks++;
+            agentCleanupCounter.increment(deleted);
+            pendingRecords.updateAndGet(pending -> Math.max(0, pending - deleted));
+            if (agentCleanupConfig.isLogDetails() && chunks % 100 == 0) {
+                log.info("对话清理进度：已删除 {} 批，共 {} 条，当前ID上界: {}", chunks, affectedRows, endId);
+            }
+            if (System.nanoTime() > deadline) {
+                log.warn("对话清理达到最长运行时间 {} 分钟，已删除 {} 条，剩余记录下次继续清理",
+                        agentCleanupConfig.getMaxRunMinutes(), affectedRows);
+                return affectedRows;
+            }
+            if (!pauseBetweenChunks()) {
+                log.warn("对话清理被中断，已删除 {} 条，剩余记录下次继续清理", affectedRows);
+                return affectedRows;
+            }
+        }
+        pendingRecords.set(0);
+        return affectedRows;
+    }
+
+    /**
+     * 两批删除之间暂停，线程被中断时返回 false
+     */
+    private boolean pauseBetweenChunks() {
+        long pauseMs = agentCleanupConfig.getBatchPauseMs();
+        if (pauseMs <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
         try {
-            // 默认保留30天，统计过期记录数量
-            LocalDateTime cutoffTime = LocalDateTime.now().minusDays(30);
-            return agentConversationHistoryMapper.countByCreateTimeBefore(cutoffTime);
-        } catch (Exception e) {
-            log.error("获取待清理记录数量失败: {}", e.getMessage(), e);
-            return 0;
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
+    private long runDeadline() {
+        return System.nanoTime() + TimeUnit.MINUTES.toNanos(agentCleanupConfig.getMaxRunMinutes());
+    }
+
     /**
      * 更新清理统计信息
      */
@@ -0,0 +1,171 @@
+package com.fc.service.impl.agent;
+
+import com.fc.dto.agent.ConversationPartition;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import com.fc.service.agent.AgentConversationPartitionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * AI Agent对话历史分区管理服务实现类
+ *
+ * 分区方式：RANGE (TO_DAYS(create_time))，按月（pYYYYMM）或按天（pYYYYMMDD）分区，最后是 MAXVALUE 分区 p_future
+ * - 预建：把 p_future 拆分出未来 future-partitions 个周期的分区，p_future 通常为空，拆分只修改元数据；
+ *   新建的表只有 p_future，启动后由 AgentConversationPartitionJob 创建当前周期及之后的分区
+ * - 删除：上界不晚于截止日期的分区整体 DROP，不产生逐行删除和 undo 日志。只删除整个分区，
+ *   数据实际保留时间为保留期加一个分区周期：按月分区、保留30天时，某月1日的数据要到该月结束后再过30天
+ *   才随整月分区删除，最长约保留61天；需要更接近保留期时使用按天分区（granularity: DAY）
+ * 表未分区时（未执行 sql/agent_conversation_history_partition.sql）isPartitioned 返回false，清理回退为分批删除
+ */
+@Slf4j
+@Service
+public class AgentConversationPartitionServiceImpl implements AgentConversationPartitionService {
+
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final String MAXVALUE = "MAXVALUE";
+    // TO_DAYS('1970-01-01')
+    private static final long TO_DAYS_EPOCH_OFFSET = 719528;
+    private static final Pattern PARTITION_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter DAY_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    @Value("${agent.conversation.partition.granularity:MONTH}")
+    private String granularity;
+
+    @Value("${agent.conversation.partition.future-partitions:3}")
+    private int futurePartitions;
+
+    @Autowired
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    @Override
+    public boolean isPartitioned() {
+        try {
+            return !agentConversationHistoryMapper.selectPartitions().isEmpty();
+        } catch (Exception e) {
+            log.warn("查询对话历史表分区信息失败，按未分区处理: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public int ensureFuturePartitions() {
+        return ensureFuturePartitions(LocalDate.now());
+    }
+
+    int ensureFuturePartitions(LocalDate today) {
+        List<ConversationPartition> partitions = agentConversationHistoryMapper.selectPartitions();
+        if (partitions.isEmpty()) {
+            log.info("对话历史表未分区，跳过预建分区");
+            return 0;
+        }
+        ConversationPartition last = partitions.get(partitions.size() - 1);
+        if (!FUTURE_PARTITION.equals(last.getPartitionName()) || !MAXVALUE.equalsIgnoreCase(last.getLessThan())) {
+            log.warn("对话历史表最后一个分区不是 {} MAXVALUE，无法预建分区: {}", FUTURE_PARTITION, last.getPartitionName());
+            return 0;
+        }
+
+        // 覆盖当前周期和之后的 future-partitions 个周期
+        LocalDate target = next(periodStart(today), futurePartitions + 1);
+        List<ConversationPartition> created = new ArrayList<>();
+        LocalDate bound;
+        if (partitions.size() < 2) {
+            // 只有 p_future 时从当前周期开始，之前写入的记录都落在当前周期的分区中
+            LocalDate start = periodStart(today);
+            bound = next(start, 1);
+            created.add(new ConversationPartition(partitionName(start), String.valueOf(toDays(bound)), 0));
+        } else {
+            bound = upperBound(partitions.get(partitions.size() - 2));
+        }
+        while (bound.isBefore(target)) {
+            LocalDate start = bound;
+            bound = next(start, 1);
+            created.add(new ConversationPartition(partitionName(start), String.valueOf(toDays(bound)), 0));
+        }
+        if (created.isEmpty()) {
+            return 0;
+        }
+        if (last.getTableRows() > 0) {
+            log.warn("{} 分区中已有约 {} 条记录，拆分时需要移动数据", FUTURE_PARTITION, last.getTableRows());
+        }
+        agentConversationHistoryMapper.reorganizeFuturePartition(created);
+        log.info("对话历史表预建分区完成: {}", created.stream().map(ConversationPartition::getPartitionName).toList());
+        return created.size();
+    }
+
+    @Override
+    public long dropPartitionsBefore(LocalDateTime cutoffTime) {
+        LocalDate cutoffDate = cutoffTime.toLocalDate();
+        long droppedRows = 0;
+        for (ConversationPartition partition : agentConversationHistoryMapper.selectPartitions()) {
+            if (MAXVALUE.equalsIgnoreCase(partition.getLessThan())) {
+                break;
+            }
+            // 分区内的记录都早于上界，上界不晚于截止日期零点时整个分区已过期
+            if (upperBound(partition).isAfter(cutoffDate)) {
+                break;
+            }
+            String name = partition.getPartitionName();
+            if (!PARTITION_NAME_PATTERN.matcher(name).matches()) {
+                log.warn("分区名不合法，跳过删除: {}", name);
+                continue;
+            }
+            agentConversationHistoryMapper.dropPartition(name);
+            droppedRows += partition.getTableRows();
+            log.info("删除过期对话历史分区: {}, 估算记录数: {}", name, partition.getTableRows());
+        }
+        return droppedRows;
+    }
+
+    @Override
+    public long countBefore(LocalDateTime cutoffTime) {
+        long count = 0;
+        LocalDateTime lowerBound = null;
+        for (ConversationPartition partition : agentConversationHistoryMapper.selectPartitions()) {
+            if (MAXVALUE.equalsIgnoreCase(partition.getLessThan())) {
+                break;
+            }
+            LocalDateTime upper = upperBound(partition).atStartOfDay();
+            if (upper.isAfter(cutoffTime)) {
+                break;
+            }
+            count += partition.getTableRows();
+            lowerBound = upper;
+        }
+        // 截止时间所在的分区精确统计，只扫描该分区
+        return count + agentConversationHistoryMapper.countByCreateTimeRange(lowerBound, cutoffTime);
+    }
+
+    private LocalDate periodStart(LocalDate date) {
+        return isDaily() ? date : date.withDayOfMonth(1);
+    }
+
+    private LocalDate next(LocalDate date, int periods) {
+        return isDaily() ? date.plusDays(periods) : date.plusMonths(periods);
+    }
+
+    private String partitionName(LocalDate start) {
+        return (isDaily() ? DAY_NAME : MONTH_NAME).format(start);
+    }
+
+    private boolean isDaily() {
+        return "DAY".equalsIgnoreCase(granularity);
+    }
+
+    private static LocalDate upperBound(ConversationPartition partition) {
+        return LocalDate.ofEpochDay(Long.parseLong(partition.getLessThan().trim()) - TO_DAYS_EPOCH_OFFSET);
+    }
+
+    private static long toDays(LocalDate date) {
+        return date.toEpochDay() + TO_DAYS_EPOCH_OFFSET;
+    }
+}
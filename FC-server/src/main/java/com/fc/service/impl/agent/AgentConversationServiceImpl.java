@@ -23,6 +23,9 @@ public class AgentConversationServiceImpl implements AgentConversationService {
     @Autowired
     private AgentConversationHistoryMapper agentConversationHistoryMapper;
 
+    @Autowired
+    private ConversationLogWriter conversationLogWriter;
+
     @Override
     @Transactional
     public void saveConversation(AgentConversationHistory conversationHistory) {
@@ -40,6 +43,11 @@ public class AgentConversationServiceImpl implements AgentConversationService {
         }
     }
 
+    @Override
+    public void appendConversation(AgentConversationHistory conversationHistory) {
+        conversationLogWriter.append(conversationHistory);
+    }
+
     @Override
     public List<AgentConversationHistory> getConversationHistory(String sessionId) {
         try {
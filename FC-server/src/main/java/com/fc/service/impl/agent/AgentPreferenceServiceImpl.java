@@ -1,41 +1,118 @@
 package com.fc.service.impl.agent;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fc.agent.memory.PreferenceExtractor;
+import com.fc.agent.memory.PreferenceProfile;
+import com.fc.entity.AgentConversationHistory;
 import com.fc.entity.AgentUserPreferences;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
 import com.fc.mapper.agent.AgentUserPreferencesMapper;
 import com.fc.service.agent.AgentPreferenceService;
+import com.fc.vo.movie.ai.MovieSimpleVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * AI Agent用户偏好服务实现类
  * 
  * 负责管理AI Agent从用户对话中提取的偏好信息，包括电影类型偏好、评分范围偏好等
+ * 
+ * 偏好画像（PreferenceProfile）：
+ * - 缓存：画像缓存在本地，首次访问时从 agent_user_preferences 加载
+ * - 增量：距上次处理超过 refresh-interval-ms 时，只查询水位（消息ID）之后的用户消息，逐条累加到画像
+ * - 写回：有变化的画像记为脏数据，延迟 flush-delay-ms 合并后批量写回，不在请求线程上写库；
+ *   favorite_genres、preferred_rating_range 由画像派生，只在写回画像时更新
+ * - 排序：推荐服务通过 rankByProfile 按画像匹配度调整推荐结果的顺序
  */
 @Slf4j
 @Service
 public class AgentPreferenceServiceImpl implements AgentPreferenceService {
 
+    private static final ObjectMapper PROFILE_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final int FAVORITE_GENRE_COUNT = 5;
+
+    @Value("${agent.preference.profile.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${agent.preference.profile.cache-minutes:60}")
+    private int cacheMinutes;
+
+    @Value("${agent.preference.profile.refresh-interval-ms:30000}")
+    private long refreshIntervalMs;
+
+    @Value("${agent.preference.profile.batch-size:200}")
+    private int batchSize;
+
+    @Value("${agent.preference.profile.max-messages-per-refresh:1000}")
+    private int maxMessagesPerRefresh;
+
+    @Value("${agent.preference.profile.watermark-lookback:1000}")
+    private long watermarkLookback;
+
+    @Value("${agent.preference.profile.decay:0.95}")
+    private double decay;
+
+    @Value("${agent.preference.profile.flush-delay-ms:5000}")
+    private long flushDelayMs;
+
+    @Value("${agent.preference.profile.ranking-weight:0.3}")
+    private double rankingWeight;
+
     @Autowired
     private AgentUserPreferencesMapper agentUserPreferencesMapper;
 
-    @Override
-    @Transactional
-    public void saveOrUpdatePreferences(AgentUserPreferences userPreferences) {
-        try {
-            userPreferences.setCreateTime(LocalDateTime.now());
-            userPreferences.setUpdateTime(LocalDateTime.now());
-            
-            agentUserPreferencesMapper.insertOrUpdate(userPreferences);
-            log.info("保存或更新用户偏好成功，用户ID: {}", userPreferences.getUserId());
-        } catch (Exception e) {
-            log.error("保存或更新用户偏好失败，用户ID: {}, 错误: {}", 
-                    userPreferences.getUserId(), e.getMessage(), e);
-            throw new RuntimeException("保存或更新用户偏好失败", e);
-        }
+    @Autowired
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    @Autowired
+    private PreferenceExtractor preferenceExtractor;
+
+    @Autowired
+    @Qualifier("agentPreferenceScheduler")
+    private ThreadPoolTaskScheduler agentPreferenceScheduler;
+
+    private Cache<Long, PreferenceProfile> profileCache;
+    // 有变化、等待写回的用户
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    // 等待写回时已被淘汰的画像
+    private final ConcurrentHashMap<Long, PreferenceProfile> evictedProfiles = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        profileCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofMinutes(cacheMinutes))
+                // 待写回的画像被淘汰时暂存并立即写回
+                .removalListener((Long userId, PreferenceProfile profile, RemovalCause cause) -> {
+                    if (cause.wasEvicted() && userId != null && profile != null && dirtyUsers.contains(userId)) {
+                        evictedProfiles.put(userId, profile);
+                        scheduleFlush(0);
+                    }
+                })
+                .build();
     }
 
     @Override
@@ -79,73 +156,184 @@ public class AgentPreferenceServiceImpl implements AgentPreferenceService {
     }
 
     @Override
-    @Transactional
-    public void updateFavoriteGenres(Long userId, String favoriteGenres) {
+    public PreferenceProfile getProfile(Long userId) {
+        if (userId == null) {
+            return null;
+        }
         try {
-            AgentUserPreferences preferences = getPreferencesByUserId(userId);
-            if (preferences == null) {
-                preferences = AgentUserPreferences.builder()
-                        .userId(userId)
-                        .favoriteGenres(favoriteGenres)
-                        .createTime(LocalDateTime.now())
-                        .updateTime(LocalDateTime.now())
-                        .build();
-            } else {
-                preferences.setFavoriteGenres(favoriteGenres);
-                preferences.setUpdateTime(LocalDateTime.now());
+            PreferenceProfile profile = profileCache.get(userId, this::loadProfile);
+            synchronized (profile) {
+                if (System.currentTimeMillis() - profile.getRefreshedAt() >= refreshIntervalMs) {
+                    refreshProfile(userId, profile);
+                }
+                return profile.copy();
             }
-            
-            agentUserPreferencesMapper.insertOrUpdate(preferences);
-            log.info("更新用户喜欢的电影类型成功，用户ID: {}, 类型: {}", userId, favoriteGenres);
         } catch (Exception e) {
-            log.error("更新用户喜欢的电影类型失败，用户ID: {}, 错误: {}", userId, e.getMessage(), e);
-            throw new RuntimeException("更新用户喜欢的电影类型失败", e);
+            log.warn("获取用户偏好画像失败，用户ID: {}, 错误: {}", userId, e.getMessage());
+            return null;
         }
     }
 
     @Override
-    @Transactional
-    public void updatePreferredRatingRange(Long userId, String preferredRatingRange) {
+    public List<MovieSimpleVO> rankByProfile(Long userId, List<MovieSimpleVO> movies) {
+        if (movies == null || movies.size() < 2) {
+            return movies;
+        }
+        PreferenceProfile profile = getProfile(userId);
+        if (profile == null || profile.isEmpty()) {
+            return movies;
+        }
+        return profile.rank(movies, rankingWeight);
+    }
+
+    /**
+     * 从数据库加载偏好画像，没有记录时返回空画像（水位为0，之后从第一条消息开始处理）
+     */
+    private PreferenceProfile loadProfile(Long userId) {
+        PreferenceProfile evicted = evictedProfiles.remove(userId);
+        if (evicted != null) {
+            return evicted;
+        }
+        AgentUserPreferences preferences = agentUserPreferencesMapper.selectByUserId(userId);
+        if (preferences == null || preferences.getPreferenceProfile() == null) {
+            return new PreferenceProfile();
+        }
         try {
-            AgentUserPreferences preferences = getPreferencesByUserId(userId);
-            if (preferences == null) {
-                preferences = AgentUserPreferences.builder()
-                        .userId(userId)
-                        .preferredRatingRange(preferredRatingRange)
-                        .createTime(LocalDateTime.now())
-                        .updateTime(LocalDateTime.now())
-                        .build();
-            } else {
-                preferences.setPreferredRatingRange(preferredRatingRange);
-                preferences.setUpdateTime(LocalDateTime.now());
+            PreferenceProfile profile = PROFILE_MAPPER.readValue(preferences.getPreferenceProfile(), PreferenceProfile.class);
+            if (preferences.getProfileWatermark() != null) {
+                profile.setWatermark(Math.max(profile.getWatermark(), preferences.getProfileWatermark()));
             }
-            
-            agentUserPreferencesMapper.insertOrUpdate(preferences);
-            log.info("更新用户偏好评分范围成功，用户ID: {}, 范围: {}", userId, preferredRatingRange);
+            return profile;
         } catch (Exception e) {
-            log.error("更新用户偏好评分范围失败，用户ID: {}, 错误: {}", userId, e.getMessage(), e);
-            throw new RuntimeException("更新用户偏好评分范围失败", e);
+            // 画像损坏时从水位开始重新累积，不重复处理已处理过的消息
+            log.warn("解析用户偏好画像失败，重新累积，用户ID: {}, 错误: {}", userId, e.getMessage());
+            PreferenceProfile profile = new PreferenceProfile();
+            profile.setWatermark(preferences.getProfileWatermark() != null ? preferences.getProfileWatermark() : 0);
+            return profile;
+        }
+    }
+
+    /**
+     * 处理水位之后的用户消息（调用方持有画像的锁）
+     * 消息ID在插入时分配，并发写入时较小的ID可能晚于较大的ID提交，因此从水位往前回看 watermark-lookback 个ID，
+     * 跳过 recentIds 中已处理的消息；旧画像没有 recentIds 时直接从水位开始
+     */
+    private void refreshProfile(Long userId, PreferenceProfile profile) {
+        Set<Long> recentIds = profile.getRecentIds();
+        long cursor = recentIds.isEmpty() ? profile.getWatermark()
+                : Math.max(0, profile.getWatermark() - watermarkLookback);
+        int processed = 0;
+        while (processed < maxMessagesPerRefresh) {
+            List<AgentConversationHistory> messages = agentConversationHistoryMapper.selectUserMessagesAfterId(
+                    userId, cursor, batchSize);
+            for (AgentConversationHistory message : messages) {
+                cursor = message.getId();
+                if (processed >= maxMessagesPerRefresh) {
+                    break;
+                }
+                if (!recentIds.add(message.getId())) {
+                    continue;
+                }
+                profile.decay(decay);
+                preferenceExtractor.accumulate(profile, message.getMessageText(), 1.0);
+                profile.setWatermark(Math.max(profile.getWatermark(), message.getId()));
+                processed++;
+            }
+            if (messages.size() < batchSize) {
+                break;
+            }
+        }
+        long lookbackFloor = profile.getWatermark() - watermarkLookback;
+        recentIds.removeIf(id -> id <= lookbackFloor);
+        profile.setRefreshedAt(System.currentTimeMillis());
+        if (processed > 0) {
+            profile.setMessageCount(profile.getMessageCount() + processed);
+            dirtyUsers.add(userId);
+            scheduleFlush(flushDelayMs);
+            log.debug("增量更新用户偏好画像，用户ID: {}, 新消息数: {}, 水位: {}", userId, processed, profile.getWatermark());
+        }
+    }
+
+    /**
+     * 安排一次写回；已有待执行的写回时合并到那一次
+     */
+    private void scheduleFlush(long delayMs) {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            agentPreferenceScheduler.schedule(this::flushProfiles, Instant.now().plusMillis(delayMs));
+        } catch (TaskRejectedException e) {
+            flushScheduled.set(false);
+            log.warn("偏好画像写回任务提交失败，下次更新时重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 批量写回有变化的偏好画像，失败的用户保留为脏数据，下次写回时重试
+     */
+    private void flushProfiles() {
+        flushScheduled.set(false);
+        List<Long> userIds = new ArrayList<>(dirtyUsers);
+        if (userIds.isEmpty()) {
+            return;
+        }
+        dirtyUsers.removeAll(userIds);
+
+        List<AgentUserPreferences> batch = new ArrayList<>(userIds.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (Long userId : userIds) {
+            PreferenceProfile profile = profileCache.asMap().get(userId);
+            if (profile == null) {
+                profile = evictedProfiles.remove(userId);
+            }
+            if (profile == null) {
+                continue;
+            }
+            try {
+                synchronized (profile) {
+                    batch.add(AgentUserPreferences.builder()
+                            .userId(userId)
+                            .favoriteGenres(PROFILE_MAPPER.writeValueAsString(profile.topGenres(FAVORITE_GENRE_COUNT)))
+                            .preferredRatingRange(profile.topRating())
+                            .preferenceProfile(PROFILE_MAPPER.writeValueAsString(profile))
+                            .profileWatermark(profile.getWatermark())
+                            .createTime(now)
+                            .updateTime(now)
+                            .build());
+                }
+            } catch (Exception e) {
+                log.error("序列化用户偏好画像失败，用户ID: {}, 错误: {}", userId, e.getMessage());
+            }
         }
+
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<AgentUserPreferences> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            try {
+                agentUserPreferencesMapper.upsertProfiles(chunk);
+            } catch (Exception e) {
+                chunk.forEach(preferences -> dirtyUsers.add(preferences.getUserId()));
+                log.error("写回用户偏好画像失败，画像数: {}, 错误: {}", chunk.size(), e.getMessage());
+            }
+        }
+        log.debug("写回用户偏好画像完成，画像数: {}", batch.size());
+    }
+
+    /**
+     * 停机前写回所有有变化的偏好画像
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushProfiles();
     }
 
+    /**
+     * 只更新 disliked_movies，不读取、不覆盖由画像派生的列
+     */
     @Override
-    @Transactional
     public void updateDislikedMovies(Long userId, String dislikedMovies) {
         try {
-            AgentUserPreferences preferences = getPreferencesByUserId(userId);
-            if (preferences == null) {
-                preferences = AgentUserPreferences.builder()
-                        .userId(userId)
-                        .dislikedMovies(dislikedMovies)
-                        .createTime(LocalDateTime.now())
-                        .updateTime(LocalDateTime.now())
-                        .build();
-            } else {
-                preferences.setDislikedMovies(dislikedMovies);
-                preferences.setUpdateTime(LocalDateTime.now());
-            }
-            
-            agentUserPreferencesMapper.insertOrUpdate(preferences);
+            agentUserPreferencesMapper.upsertDislikedMovies(userId, dislikedMovies, LocalDateTime.now());
             log.info("更新用户不喜欢的电影成功，用户ID: {}, 电影: {}", userId, dislikedMovies);
         } catch (Exception e) {
             log.error("更新用户不喜欢的电影失败，用户ID: {}, 错误: {}", userId, e.getMessage(), e);
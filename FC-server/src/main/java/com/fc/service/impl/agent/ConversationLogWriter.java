@@ -0,0 +1,215 @@
+package com.fc.service.impl.agent;
+
+import com.fc.entity.AgentConversationHistory;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 对话历史异步批量写入（write-behind）
+ *
+ * - 追加：消息进入有界队列后立即返回，不在请求线程上插入数据库
+ * - 刷盘：单个后台线程按 batch-size 条或 flush-interval-ms 先到者，多行插入 agent_conversation_history
+ * - 顺序：所有消息都经过同一队列、由唯一的消费线程按入队顺序插入，同一会话的消息自增ID与追加顺序一致；create_time 在追加时确定
+ * - 背压：队列满时等待 offer-timeout-ms，仍放不下则记一次溢出并阻塞到消费线程腾出空间，不丢消息也不打乱顺序
+ * - 停机：先停止接收（之后的追加同步插入），消费线程写完队列后退出，超时未退出时由停机线程写完剩余消息
+ * 队列长度、溢出次数、阻塞耗时、刷盘耗时与失败数记录到 agent.conversation.log.* 指标
+ */
+@Component
+@Slf4j
+public class ConversationLogWriter {
+
+    @Autowired
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${agent.conversation.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${agent.conversation.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${agent.conversation.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${agent.conversation.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<AgentConversationHistory> queue;
+    private Thread flusher;
+    private volatile boolean running;
+    // 追加持读锁、停机持写锁，保证停止接收后不会再有消息进入队列
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private Counter overflowCounter;
+    private Timer backpressureTimer;
+    private Counter flushedCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("agent.conversation.log.queue", queue, BlockingQueue::size)
+                .description("等待写入的对话消息数")
+                .register(meterRegistry);
+        overflowCounter = Counter.builder("agent.conversation.log.overflow")
+                .description("队列满时需要阻塞等待的追加次数")
+                .register(meterRegistry);
+        backpressureTimer = Timer.builder("agent.conversation.log.backpressure")
+                .description("队列满时追加线程的阻塞耗时")
+                .register(meterRegistry);
+        flushedCounter = Counter.builder("agent.conversation.log.flushed")
+                .description("批量写入的对话消息数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("agent.conversation.log.failed")
+                .description("写入失败的对话消息数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("agent.conversation.log.flush")
+                .description("每批对话消息的写入耗时")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "conversation-log-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 追加一条对话消息
+     * @param message 对话消息（create_time 为空时取当前时间）
+     */
+    public void append(AgentConversationHistory message) {
+        if (message.getCreateTime() == null) {
+            message.setCreateTime(LocalDateTime.now());
+        }
+        if (message.getUpdateTime() == null) {
+            message.setUpdateTime(message.getCreateTime());
+        }
+
+        stateLock.readLock().lock();
+        try {
+            if (running) {
+                if (queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+                overflowCounter.increment();
+                log.warn("对话消息队列已满，等待写入线程腾出空间，会话ID: {}", message.getSessionId());
+                long start = System.nanoTime();
+                queue.put(message);
+                backpressureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return;
+            }
+        } catch (InterruptedException e) {
+            // 等待被中断时改为同步写入，保证不丢消息
+            Thread.currentThread().interrupt();
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        writeBatch(List.of(message));
+    }
+
+    /**
+     * 停止接收并写入队列中剩余的消息
+     */
+    @PreDestroy
+    public void shutdown() {
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 消费线程未在限时内退出时由当前线程接着写完
+        List<AgentConversationHistory> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            writeBatch(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+        }
+        log.info("对话消息写入线程已停止，停机时写入剩余消息 {} 条", remaining.size());
+    }
+
+    private void runFlusher() {
+        List<AgentConversationHistory> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AgentConversationHistory first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 凑满一批或等到刷盘间隔
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+                    AgentConversationHistory next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 不应被中断，写完手上的批次后退出，剩余消息由 shutdown 写入
+                Thread.currentThread().interrupt();
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+                return;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 多行插入一批消息，失败时逐条重试，仍失败的消息记录日志
+     */
+    private void writeBatch(List<AgentConversationHistory> batch) {
+        try {
+            flushTimer.record(() -> agentConversationHistoryMapper.insertBatch(batch));
+            flushedCounter.increment(batch.size());
+            return;
+        } catch (Exception e) {
+            log.warn("批量写入对话消息失败，改为逐条写入，消息数: {}, 错误: {}", batch.size(), e.getMessage());
+        }
+        for (AgentConversationHistory message : batch) {
+            try {
+                agentConversationHistoryMapper.insertBatch(List.of(message));
+                flushedCounter.increment();
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.error("写入对话消息失败，会话ID: {}, 用户ID: {}, 角色: {}, 错误: {}",
+                        message.getSessionId(), message.getUserId(), message.getMessageRole(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.fc.service.impl.agent;
+
+import com.fc.entity.Movie;
+import com.fc.mapper.api.MoviePublicMapper;
+import com.fc.utils.OllamaUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 电影向量批量构建流水线
+ *
+ * - 读：按 movie_id 游标分批读取电影表，不一次性加载全部电影
+ * - 跳过：按 模型 + 标题 + 简介 的哈希判断内容是否变化，未变化的电影不重新嵌入
+ * - 嵌入：每次请求嵌入 embed-batch-size 条文本，在有界线程池中并行执行；队列满时由读取线程执行，形成背压
+ * - 写：向量、内容哈希、元数据按批写入 Redis
+ * - 断点：按读取批次顺序推进检查点，重启后从最后一个全部成功的批次之后继续
+ */
+@Component
+@Slf4j
+public class MovieEmbeddingPipeline {
+
+    @Autowired
+    private MoviePublicMapper moviePublicMapper;
+
+    @Autowired
+    private OllamaUtil ollamaUtil;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${agent.vector.embedding.read-batch-size:200}")
+    private int readBatchSize;
+
+    @Value("${agent.vector.embedding.embed-batch-size:32}")
+    private int embedBatchSize;
+
+    @Value("${agent.vector.embedding.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${agent.vector.embedding.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${agent.vector.embedding.await-minutes:120}")
+    private int awaitMinutes;
+
+    private static final String MOVIE_VECTOR_MAP = "movie_vectors";
+    private static final String MOVIE_VECTOR_HASH_MAP = "movie_vector_hash";
+    private static final String MOVIE_METADATA_PREFIX = "movie:metadata:";
+    private static final String CHECKPOINT_KEY = "movie:vector:init:checkpoint";
+    private static final String LOCK_KEY = "lock:movie:vector:init";
+
+    /**
+     * 执行一次全量构建
+     * @return 新写入（内容有变化）的向量数，未获取到锁时返回-1
+     */
+    public int run() {
+        RLock lock = redissonClient.getLock(LOCK_KEY);
+        boolean isLocked = false;
+        try {
+            isLocked = lock.tryLock(0, awaitMinutes + 10L, TimeUnit.MINUTES);
+            if (!isLocked) {
+                log.info("电影向量构建任务正在其他实例执行，跳过本次执行");
+                return -1;
+            }
+            return doRun();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("电影向量构建任务被中断", e);
+            return 0;
+        } finally {
+            if (isLocked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 计算电影内容哈希（模型 + 标题 + 简介），任一变化都需要重新嵌入
+     */
+    public String contentHash(Movie movie) {
+        String content = ollamaUtil.getModel() + "\n" + movie.getTitle() + "\n"
+                + (movie.getIntro() != null ? movie.getIntro() : "");
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 记录单部电影已嵌入的内容哈希（增量更新电影向量后调用）
+     */
+    public void recordContentHash(Movie movie) {
+        RMap<Long, String> hashes = redissonClient.getMap(MOVIE_VECTOR_HASH_MAP);
+        hashes.fastPut(movie.getMovieId(), contentHash(movie));
+    }
+
+    /**
+     * 批量写入电影元数据（一次管道提交）
+     */
+    public void writeMetadata(List<Movie> movies) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Movie movie : movies) {
+                    Map<String, Object> metadata = new HashMap<>();
+                    metadata.put("title", movie.getTitle());
+                    metadata.put("avgRating", movie.getAvgRating());
+                    metadata.put("posterUrl", movie.getPosterUrl());
+                    metadata.put("releaseDate", movie.getReleaseDate());
+                    ops.opsForHash().putAll(MOVIE_METADATA_PREFIX + movie.getMovieId(), metadata);
+                }
+                return null;
+            }
+        });
+    }
+
+    private int doRun() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        RBucket<Long> checkpointBucket = redissonClient.getBucket(CHECKPOINT_KEY);
+        Long checkpoint = checkpointBucket.get();
+        long lastMovieId = checkpoint != null ? checkpoint : 0L;
+        if (lastMovieId > 0) {
+            log.info("从检查点继续构建电影向量: lastMovieId={}", lastMovieId);
+        }
+
+        RMap<Long, String> hashes = redissonClient.getMap(MOVIE_VECTOR_HASH_MAP);
+        RMap<Long, List<Double>> vectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
+        CheckpointTracker tracker = new CheckpointTracker(checkpointBucket);
+        AtomicInteger embedded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int scanned = 0;
+        int skipped = 0;
+        boolean timedOut = false;
+        int cancelled = 0;
+
+        // 队列有界 + 调用方执行：工作线程跟不上时读取线程自己执行嵌入，不会无限读入内存
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workerThreads, workerThreads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                namedThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            long seq = 0;
+            while (true) {
+                List<Movie> movies = moviePublicMapper.selectMoviesAfter(lastMovieId, readBatchSize);
+                if (movies.isEmpty()) {
+                    break;
+                }
+                scanned += movies.size();
+                lastMovieId = movies.get(movies.size() - 1).getMovieId();
+
+                // 1. 按内容哈希过滤未变化的电影
+                Set<Long> movieIds = new HashSet<>();
+                movies.forEach(movie -> movieIds.add(movie.getMovieId()));
+                Map<Long, String> storedHashes = hashes.getAll(movieIds);
+                List<Movie> changed = new ArrayList<>();
+                for (Movie movie : movies) {
+                    if (!contentHash(movie).equals(storedHashes.get(movie.getMovieId()))) {
+                        changed.add(movie);
+                    }
+                }
+                skipped += movies.size() - changed.size();
+
+                // 2. 按嵌入批大小切分后提交
+                int chunkCount = (changed.size() + embedBatchSize - 1) / embedBatchSize;
+                ReadBatch batch = tracker.register(seq++, lastMovieId, chunkCount);
+                for (int from = 0; from < changed.size(); from += embedBatchSize) {
+                    List<Movie> chunk = changed.subList(from, Math.min(from + embedBatchSize, changed.size()));
+                    executor.execute(new ChunkTask(chunk.size(), () -> {
+                        boolean success = false;
+                        try {
+                            embedAndWrite(chunk, vectors, hashes);
+                            embedded.addAndGet(chunk.size());
+                            success = true;
+                        } catch (Exception e) {
+                            failed.addAndGet(chunk.size());
+                            log.error("电影向量批次嵌入失败: movieIds={}..{}", chunk.get(0).getMovieId(),
+                                    chunk.get(chunk.size() - 1).getMovieId(), e);
+                        } finally {
+                            tracker.chunkDone(batch, success);
+                        }
+                    }));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            if (!executor.awaitTermination(awaitMinutes, TimeUnit.MINUTES)) {
+                timedOut = true;
+                // 被取消的批次不会调用 chunkDone，检查点停在它们之前，下次从检查点继续
+                for (Runnable task : executor.shutdownNow()) {
+                    cancelled += ((ChunkTask) task).size();
+                }
+                log.warn("电影向量构建任务等待超时，已取消 {} 部电影的嵌入", cancelled);
+            }
+        }
+
+        // 全部成功时清除检查点，下次从头扫描（依赖内容哈希跳过未变化的电影）；超时取消时保留检查点
+        if (!timedOut && failed.get() == 0 && !tracker.hasFailure()) {
+            checkpointBucket.delete();
+        }
+        log.info("电影向量构建完成: 扫描={}, 嵌入={}, 跳过={}, 失败={}, 超时取消={}, 耗时={}ms",
+                scanned, embedded.get(), skipped, failed.get(), cancelled, System.currentTimeMillis() - start);
+        return embedded.get();
+    }
+
+    /**
+     * 嵌入一批电影并写入向量、内容哈希和元数据（先写向量，再记录哈希）
+     */
+    private void embedAndWrite(List<Movie> movies, RMap<Long, List<Double>> vectors, RMap<Long, String> hashes) {
+        List<String> texts = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            texts.add(movie.getTitle() + " " + (movie.getIntro() != null ? movie.getIntro() : ""));
+        }
+        List<List<Double>> embeddings = ollamaUtil.generateVectors(texts);
+
+        Map<Long, List<Double>> vectorBatch = new HashMap<>();
+        Map<Long, String> hashBatch = new HashMap<>();
+        for (int i = 0; i < movies.size(); i++) {
+            Movie movie = movies.get(i);
+            vectorBatch.put(movie.getMovieId(), embeddings.get(i));
+            hashBatch.put(movie.getMovieId(), contentHash(movie));
+        }
+        vectors.putAll(vectorBatch);
+        hashes.putAll(hashBatch);
+        writeMetadata(movies);
+    }
+
+    private ThreadFactory namedThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "movie-embedding-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 嵌入子批次任务，记录电影数量，超时取消时用于统计未执行的电影
+     */
+    private static final class ChunkTask implements Runnable {
+        private final int size;
+        private final Runnable body;
+
+        ChunkTask(int size, Runnable body) {
+            this.size = size;
+            this.body = body;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+
+    /**
+     * 读取批次：所有嵌入子批次完成后才算完成
+     */
+    private static final class ReadBatch {
+        private final long seq;
+        private final long lastMovieId;
+        private final AtomicInteger pendingChunks;
+        private volatile boolean failed;
+
+        ReadBatch(long seq, long lastMovieId, int chunkCount) {
+            this.seq = seq;
+            this.lastMovieId = lastMovieId;
+            this.pendingChunks = new AtomicInteger(chunkCount);
+        }
+    }
+
+    /**
+     * 检查点推进：只有序号连续且全部成功的读取批次才推进检查点，出现失败后不再推进
+     */
+    private static final class CheckpointTracker {
+        private final RBucket<Long> bucket;
+        private final TreeMap<Long, ReadBatch> completed = new TreeMap<>();
+        private long nextSeq = 0;
+        private boolean failure = false;
+
+        CheckpointTracker(RBucket<Long> bucket) {
+            this.bucket = bucket;
+        }
+
+        ReadBatch register(long seq, long lastMovieId, int chunkCount) {
+            ReadBatch batch = new ReadBatch(seq, lastMovieId, chunkCount);
+            if (chunkCount == 0) {
+                complete(batch);
+            }
+            return batch;
+        }
+
+        void chunkDone(ReadBatch batch, boolean success) {
+            if (!success) {
+                batch.failed = true;
+            }
+            if (batch.pendingChunks.decrementAndGet() == 0) {
+                complete(batch);
+            }
+        }
+
+        synchronized boolean hasFailure() {
+            return failure;
+        }
+
+        private synchronized void complete(ReadBatch batch) {
+            if (batch.failed) {
+                failure = true;
+            }
+            if (failure) {
+                return;
+            }
+            completed.put(batch.seq, batch);
+            Long advancedTo = null;
+            while (!completed.isEmpty() && completed.firstKey() == nextSeq) {
+                advancedTo = completed.pollFirstEntry().getValue().lastMovieId;
+                nextSeq++;
+            }
+            if (advancedTo != null) {
+                bucket.set(advancedTo);
+            }
+        }
+    }
+}
@@ -1,23 +1,39 @@
 package com.fc.service.impl.agent;
 
+import com.fc.agent.vector.FlatVectorStore;
+import com.fc.agent.vector.HnswIndex;
+import com.fc.agent.vector.TopKSelector;
+import com.fc.agent.vector.VectorHit;
 import com.fc.entity.Movie;
-import com.fc.mapper.api.MoviePublicMapper;
 import com.fc.service.agent.MovieVectorService;
 import com.fc.utils.OllamaUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
 import org.redisson.api.RMap;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 电影向量服务实现类
  * 负责电影向量的存储、检索和相似度计算
+ *
+ * Redisson RMap movie_vectors 为共享的持久存储；相似度计算使用进程内 FlatVectorStore，
+ * 只由定时同步任务加载（启动后立即执行一次），之后通过 movie:vector:version 版本号检测其他实例的写入并重新加载；
+ * 请求路径只读取当前快照，不会触发加载，加载完成前相似度查询返回空结果
+ *
+ * Top-K 检索使用 HNSW 近似最近邻索引，索引快照按版本号持久化到本地磁盘，重启时版本一致则直接加载；
+ * 向量数少于 exact-scan-threshold 时直接精确扫描
  */
 @Service
 @Slf4j
@@ -30,127 +46,368 @@ public class MovieVectorServiceImpl implements MovieVectorService {
     private OllamaUtil ollamaUtil;
     
     @Autowired
-    private MoviePublicMapper moviePublicMapper;
+    private RedissonClient redissonClient;
     
     @Autowired
-    private RedissonClient redissonClient;
+    private MovieEmbeddingPipeline movieEmbeddingPipeline;
+    
+    @Value("${agent.vector.load-batch-size:500}")
+    private int loadBatchSize;
+    
+    @Value("${agent.vector.hnsw.m:16}")
+    private int hnswM;
+    
+    @Value("${agent.vector.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+    
+    @Value("${agent.vector.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+    
+    @Value("${agent.vector.hnsw.index-path:data/vector/movie-hnsw.idx}")
+    private String hnswIndexPath;
+    
+    @Value("${agent.vector.hnsw.exact-scan-threshold:2000}")
+    private int exactScanThreshold;
+    
+    @Value("${agent.vector.hnsw.max-deleted-ratio:0.2}")
+    private double maxDeletedRatio;
     
     private static final String MOVIE_VECTOR_PREFIX = "movie:vector:";
-    private static final String MOVIE_METADATA_PREFIX = "movie:metadata:";
+    private static final String MOVIE_VECTOR_MAP = "movie_vectors";
+    private static final String MOVIE_VECTOR_VERSION_KEY = "movie:vector:version";
+    
+    // 进程内向量存储快照及其对应的版本号
+    private volatile FlatVectorStore vectorStore;
+    private volatile HnswIndex hnswIndex;
+    private volatile long loadedVersion = -1;
+    private volatile boolean indexDirty = false;
     
     /**
      * 初始化电影向量库
+     * 由 MovieEmbeddingPipeline 分批读取、批量嵌入、并行写入，内容未变化的电影跳过，中断后可从检查点继续
      */
     public void initializeMovieVectors() {
         log.info("开始初始化电影向量库");
         
-        // 获取所有电影
-        List<Movie> allMovies = moviePublicMapper.getAllMovies();
+        int embedded = movieEmbeddingPipeline.run();
+        
+        // 有新写入时递增一次版本号，由同步任务重新加载本地存储
+        if (embedded > 0) {
+            versionCounter().incrementAndGet();
+        }
         
-        // 使用 Redisson 的 RMap 存储电影向量
-        RMap<Long, List<Double>> movieVectors = redissonClient.getMap("movie_vectors");
+        log.info("电影向量库初始化完成，本次写入 {} 部电影的向量", Math.max(embedded, 0));
+    }
+    
+    /**
+     * 新增或更新单部电影的向量
+     */
+    public void upsertMovieVector(Long movieId, List<Double> vector) {
+        RMap<Long, List<Double>> movieVectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
+        movieVectors.fastPut(movieId, vector);
+        long version = versionCounter().incrementAndGet();
         
-        for (Movie movie : allMovies) {
-            try {
-                // 生成电影向量（基于标题和简介）
-                String movieText = movie.getTitle() + " " + (movie.getIntro() != null ? movie.getIntro() : "");
-                List<Double> vector = ollamaUtil.generateVector(movieText);
-                
-                // 存储向量到 Redisson RMap
-                movieVectors.put(movie.getMovieId(), vector);
-                
-                // 存储电影元数据
-                storeMovieMetadata(movie);
-                
-                log.debug("电影向量初始化成功: movieId={}, title={}", movie.getMovieId(), movie.getTitle());
-                
-            } catch (Exception e) {
-                log.error("电影向量初始化失败: movieId={}, title={}", movie.getMovieId(), movie.getTitle(), e);
+        FlatVectorStore store = vectorStore;
+        if (store != null) {
+            float[] floats = FlatVectorStore.toFloatArray(vector);
+            if (store.upsert(movieId, floats)) {
+                HnswIndex index = hnswIndex;
+                if (index != null) {
+                    index.insert(movieId, floats);
+                    indexDirty = true;
+                }
+            } else {
+                log.warn("电影向量维度与向量库不一致，未写入本地存储: movieId={}, dimension={}, expected={}",
+                        movieId, vector.size(), store.dimension());
             }
+            advanceVersion(version);
         }
+    }
+    
+    /**
+     * 删除单部电影的向量
+     */
+    public void removeMovieVector(Long movieId) {
+        RMap<Long, List<Double>> movieVectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
+        movieVectors.fastRemove(movieId);
+        long version = versionCounter().incrementAndGet();
         
-        log.info("电影向量库初始化完成，共处理 {} 部电影", allMovies.size());
+        FlatVectorStore store = vectorStore;
+        if (store != null) {
+            store.remove(movieId);
+            HnswIndex index = hnswIndex;
+            if (index != null && index.remove(movieId)) {
+                indexDirty = true;
+            }
+            advanceVersion(version);
+        }
     }
     
     /**
-     * 存储电影向量（备用方法）
+     * 生成并写入单部电影的向量（管理端新增/修改电影后调用）
+     * 嵌入失败时直接抛出异常，不写入向量也不记录内容哈希，下次初始化向量库时会重新嵌入该电影
      */
-    private void storeMovieVector(Long movieId, List<Double> vector) {
-        String key = MOVIE_VECTOR_PREFIX + movieId;
-        redisTemplate.opsForValue().set(key, vector);
+    public void indexMovie(Movie movie) {
+        String movieText = movie.getTitle() + " " + (movie.getIntro() != null ? movie.getIntro() : "");
+        List<Double> vector = ollamaUtil.generateVectors(Collections.singletonList(movieText)).get(0);
+        upsertMovieVector(movie.getMovieId(), vector);
+        movieEmbeddingPipeline.recordContentHash(movie);
+        movieEmbeddingPipeline.writeMetadata(Collections.singletonList(movie));
+        log.info("电影向量已更新: movieId={}, title={}", movie.getMovieId(), movie.getTitle());
     }
     
     /**
-     * 存储电影元数据
+     * 检索与给定向量最相似的电影
      */
-    private void storeMovieMetadata(Movie movie) {
-        String key = MOVIE_METADATA_PREFIX + movie.getMovieId();
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("title", movie.getTitle());
-        metadata.put("avgRating", movie.getAvgRating());
-        metadata.put("posterUrl", movie.getPosterUrl());
-        metadata.put("releaseDate", movie.getReleaseDate());
+    public List<VectorHit> searchSimilarMovies(List<Double> vector, int topK) {
+        FlatVectorStore store = getVectorStore();
+        if (store == null || topK <= 0) {
+            return Collections.emptyList();
+        }
+        float[] query = FlatVectorStore.toFloatArray(vector);
+        if (query == null || query.length != store.dimension()) {
+            log.warn("查询向量无效或维度不一致: dimension={}, expected={}",
+                    query != null ? query.length : 0, store.dimension());
+            return Collections.emptyList();
+        }
         
-        redisTemplate.opsForHash().putAll(key, metadata);
+        HnswIndex index = hnswIndex;
+        if (index != null && index.size() >= exactScanThreshold) {
+            return index.search(query, topK, Math.max(hnswEfSearch, topK));
+        }
+        return exactSearch(store, query, topK);
     }
     
     /**
-     * 计算用户向量与所有电影的相似度
+     * 版本号变化时重新加载本地向量存储；索引中已删除节点过多时用有效向量重建索引
+     * 只由定时同步任务调用，加载期间请求路径继续使用旧快照
      */
-    public Map<Long, BigDecimal> calculateMovieSimilarity(List<Double> userVector) {
-        Map<Long, BigDecimal> similarityMap = new HashMap<>();
+    public void syncIfStale() {
+        if (vectorStore == null) {
+            // 首次加载
+            reloadVectorStore();
+            return;
+        }
+        long version = versionCounter().get();
+        if (version != loadedVersion) {
+            log.info("电影向量库版本变化，重新加载: local={}, remote={}", loadedVersion, version);
+            reloadVectorStore();
+            return;
+        }
+        HnswIndex index = hnswIndex;
+        if (index != null && index.deletedRatio() > maxDeletedRatio) {
+            log.info("HNSW索引已删除节点占比过高，重建索引: ratio={}", index.deletedRatio());
+            compactIndex();
+        }
+    }
+    
+    /**
+     * 将有变更的HNSW索引写入快照文件
+     */
+    public void persistIndex() {
+        HnswIndex index = hnswIndex;
+        if (index == null || !indexDirty) {
+            return;
+        }
+        indexDirty = false;
+        saveIndexSnapshot(index, loadedVersion);
+    }
+    
+    /**
+     * 精确扫描（向量数较少时使用，也是近似检索召回率的对照）
+     */
+    private List<VectorHit> exactSearch(FlatVectorStore store, float[] query, int topK) {
+        float[] normalized = FlatVectorStore.normalize(query);
+        if (normalized == null) {
+            return Collections.emptyList();
+        }
+        TopKSelector selector = new TopKSelector(topK);
+        store.scan(normalized, selector::offer);
+        selector.finish();
+        
+        long[] ids = selector.ids();
+        double[] scores = selector.scores();
+        List<VectorHit> hits = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            hits.add(new VectorHit(ids[i], (float) scores[i]));
+        }
+        return hits;
+    }
+    
+    /**
+     * 从 Redisson RMap 分批加载全部向量到新的本地存储，加载完成后整体替换
+     */
+    private synchronized void reloadVectorStore() {
+        long start = System.currentTimeMillis();
+        long version = versionCounter().get();
+        RMap<Long, List<Double>> movieVectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
         
-        // 获取所有电影向量
-        RMap<Long, List<Double>> movieVectors = redissonClient.getMap("movie_vectors");
+        // 快照版本与共享存储一致时直接加载索引，否则随向量一起重建
+        HnswIndex index = loadIndexSnapshot(version);
+        boolean rebuildIndex = index == null;
         
-        for (Map.Entry<Long, List<Double>> entry : movieVectors.entrySet()) {
-            try {
-                Long movieId = entry.getKey();
-                List<Double> movieVector = entry.getValue();
-                
-                // 计算余弦相似度
-                BigDecimal similarity = calculateCosineSimilarity(userVector, movieVector);
-                similarityMap.put(movieId, similarity);
-                
-            } catch (Exception e) {
-                log.error("计算电影相似度失败: movieId={}", entry.getKey(), e);
+        FlatVectorStore store = null;
+        int skipped = 0;
+        // entrySet(count) 基于 HSCAN 分批拉取，避免一次性读取整个哈希
+        for (Map.Entry<Long, List<Double>> entry : movieVectors.entrySet(loadBatchSize)) {
+            float[] vector = FlatVectorStore.toFloatArray(entry.getValue());
+            if (vector == null || vector.length == 0) {
+                skipped++;
+                continue;
+            }
+            if (store == null) {
+                store = new FlatVectorStore(vector.length, movieVectors.size());
+                if (rebuildIndex) {
+                    index = new HnswIndex(vector.length, hnswM, hnswEfConstruction, movieVectors.size());
+                }
+            }
+            if (!store.upsert(entry.getKey(), vector)) {
+                skipped++;
+            } else if (rebuildIndex) {
+                index.insert(entry.getKey(), vector);
             }
         }
         
-        return similarityMap;
+        if (store == null) {
+            log.warn("电影向量库为空，本地向量存储未加载");
+            return;
+        }
+        if (index.dimension() != store.dimension()) {
+            log.warn("HNSW索引快照维度与向量库不一致，放弃使用索引: index={}, store={}",
+                    index.dimension(), store.dimension());
+            index = null;
+        }
+        vectorStore = store;
+        hnswIndex = index;
+        loadedVersion = version;
+        indexDirty = false;
+        log.info("本地电影向量存储加载完成: 向量数={}, 维度={}, 跳过={}, 版本={}, 索引来源={}, 耗时={}ms",
+                store.size(), store.dimension(), skipped, version, rebuildIndex ? "重建" : "快照",
+                System.currentTimeMillis() - start);
+        
+        if (rebuildIndex && index != null) {
+            saveIndexSnapshot(index, version);
+        }
     }
     
     /**
-     * 计算余弦相似度
+     * 用本地存储中的有效向量重建不含删除节点的HNSW索引，整体替换后以新版本号保存快照
+     *
+     * 重建在锁外进行；重建期间版本号有变化（有向量写入）时放弃本次结果，由下一轮同步重新判断。
+     * 递增版本号会让其他实例重新加载，它们的索引也随之重建
      */
-    private BigDecimal calculateCosineSimilarity(List<Double> vectorA, List<Double> vectorB) {
-        if (vectorA == null || vectorB == null || vectorA.size() != vectorB.size()) {
-            return BigDecimal.ZERO;
+    private void compactIndex() {
+        FlatVectorStore store = vectorStore;
+        long version = loadedVersion;
+        if (store == null || versionCounter().get() != version) {
+            return;
         }
+        long start = System.currentTimeMillis();
+        HnswIndex index = new HnswIndex(store.dimension(), hnswM, hnswEfConstruction, store.size());
+        store.forEach(index::insert);
         
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        
-        for (int i = 0; i < vectorA.size(); i++) {
-            dotProduct += vectorA.get(i) * vectorB.get(i);
-            normA += Math.pow(vectorA.get(i), 2);
-            normB += Math.pow(vectorB.get(i), 2);
+        long newVersion;
+        synchronized (this) {
+            if (vectorStore != store || loadedVersion != version || versionCounter().get() != version) {
+                log.info("HNSW索引重建期间向量库有变化，放弃本次重建: version={}", version);
+                return;
+            }
+            hnswIndex = index;
+            indexDirty = false;
+            newVersion = versionCounter().incrementAndGet();
+            if (newVersion != version + 1) {
+                // 递增前恰有其他实例写入，保留旧版本号由同步任务重新加载
+                return;
+            }
+            loadedVersion = newVersion;
+        }
+        log.info("HNSW索引重建完成: 向量数={}, 版本={}, 耗时={}ms", index.size(), newVersion,
+                System.currentTimeMillis() - start);
+        saveIndexSnapshot(index, newVersion);
+    }
+    
+    private HnswIndex loadIndexSnapshot(long version) {
+        try {
+            return HnswIndex.load(indexPath(), version);
+        } catch (IOException e) {
+            log.warn("加载HNSW索引快照失败，将重建索引: path={}", hnswIndexPath, e);
+            return null;
+        }
+    }
+    
+    private void saveIndexSnapshot(HnswIndex index, long version) {
+        try {
+            index.save(indexPath(), version);
+            log.info("HNSW索引快照已保存: path={}, 版本={}, 向量数={}", hnswIndexPath, version, index.size());
+        } catch (IOException e) {
+            log.warn("保存HNSW索引快照失败: path={}", hnswIndexPath, e);
+        }
+    }
+    
+    private Path indexPath() {
+        return Paths.get(hnswIndexPath);
+    }
+    
+    /**
+     * 获取本地向量存储快照，未加载时返回 null（加载由同步任务负责，请求路径不阻塞）
+     */
+    private FlatVectorStore getVectorStore() {
+        FlatVectorStore store = vectorStore;
+        if (store == null) {
+            log.debug("本地电影向量存储尚未加载，等待同步任务完成首次加载");
+        }
+        return store;
+    }
+    
+    /**
+     * 本实例写入后推进本地版本号；版本号不连续说明期间有其他实例写入，保留旧值由同步任务重新加载
+     */
+    private synchronized void advanceVersion(long version) {
+        if (version == loadedVersion + 1) {
+            loadedVersion = version;
+        }
+    }
+    
+    private RAtomicLong versionCounter() {
+        return redissonClient.getAtomicLong(MOVIE_VECTOR_VERSION_KEY);
+    }
+    
+    /**
+     * 存储电影向量（备用方法）
+     */
+    private void storeMovieVector(Long movieId, List<Double> vector) {
+        String key = MOVIE_VECTOR_PREFIX + movieId;
+        redisTemplate.opsForValue().set(key, vector);
+    }
+    
+    /**
+     * 计算用户向量与所有电影的相似度
+     * 向量已预先归一化，相似度即点积
+     */
+    public Map<Long, BigDecimal> calculateMovieSimilarity(List<Double> userVector) {
+        FlatVectorStore store = getVectorStore();
+        if (store == null) {
+            return new HashMap<>();
         }
         
-        if (normA == 0 || normB == 0) {
-            return BigDecimal.ZERO;
+        float[] query = FlatVectorStore.normalize(FlatVectorStore.toFloatArray(userVector));
+        if (query == null || query.length != store.dimension()) {
+            log.warn("用户向量无效或维度不一致: dimension={}, expected={}",
+                    userVector != null ? userVector.size() : 0, store.dimension());
+            return new HashMap<>();
         }
         
-        double similarity = dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
-        return BigDecimal.valueOf(similarity).setScale(4, BigDecimal.ROUND_HALF_UP);
+        Map<Long, BigDecimal> similarityMap = new HashMap<>(store.size() * 4 / 3 + 1);
+        store.scan(query, (movieId, score) -> similarityMap.put(movieId,
+                BigDecimal.valueOf(score).setScale(4, RoundingMode.HALF_UP)));
+        return similarityMap;
     }
     
     /**
      * 根据电影ID获取向量
      */
     public List<Double> getMovieVector(Long movieId) {
-        RMap<Long, List<Double>> movieVectors = redissonClient.getMap("movie_vectors");
+        RMap<Long, List<Double>> movieVectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
         return movieVectors.get(movieId);
     }
     
@@ -158,7 +415,7 @@ public class MovieVectorServiceImpl implements MovieVectorService {
      * 获取所有电影向量
      */
     public Map<Long, List<Double>> getAllMovieVectors() {
-        RMap<Long, List<Double>> movieVectors = redissonClient.getMap("movie_vectors");
+        RMap<Long, List<Double>> movieVectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
         return movieVectors;
     }
     
@@ -166,7 +423,7 @@ public class MovieVectorServiceImpl implements MovieVectorService {
      * 检查电影向量库是否已初始化
      */
     public boolean isInitialized() {
-        RMap<Long, List<Double>> movieVectors = redissonClient.getMap("movie_vectors");
+        RMap<Long, List<Double>> movieVectors = redissonClient.getMap(MOVIE_VECTOR_MAP);
         return movieVectors != null && !movieVectors.isEmpty();
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.fc.service.impl.agent;
 
+import com.fc.agent.vector.VectorHit;
 import com.fc.context.BaseContext;
 import com.fc.exception.RecommendAlgorithmException;
 import com.fc.mapper.user.UserMovieRatingMapper;
+import com.fc.service.agent.AgentPreferenceService;
 import com.fc.service.agent.RagRecommendService;
 import com.fc.utils.OllamaUtil;
 import com.fc.utils.PromptManager;
@@ -10,17 +12,12 @@ import com.fc.vo.movie.ai.MovieRecommendVO;
 import com.fc.vo.movie.ai.MovieSimpleVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import java.util.HashMap;
-import java.util.Map;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +40,11 @@ public class RagRecommendServiceImpl implements RagRecommendService {
     @Autowired
     private PromptManager promptManager;
     
+    @Autowired
+    private AgentPreferenceService agentPreferenceService;
+    
+    private static final int RECOMMEND_TOP_K = 20;
+    
     /**
      * 基于自然语言描述推荐电影
      * @param description 电影描述
@@ -53,31 +55,31 @@ public class RagRecommendServiceImpl implements RagRecommendService {
         log.info("RAG推荐：userId={}, 描述长度={}", userId, description.length());
         
         try {
+            // 推荐理由只依赖用户描述，先异步发起生成，与向量检索并行
+            CompletableFuture<String> recommendReasonFuture = generateRecommendReason(description);
+            
             // 1. 调用Ollama API生成用户描述的向量
             List<Double> userVector = generateUserVector(description);
             
-            // 2. 使用向量服务计算与所有电影的相似度
-            Map<Long, BigDecimal> similarityMap = movieVectorServiceImpl.calculateMovieSimilarity(userVector);
-            
-            // 3. 排序并返回结果
-            List<Map.Entry<Long, BigDecimal>> sortedEntries = similarityMap.entrySet().stream()
-                    .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                    .limit(20)
-                    .collect(Collectors.toList());
+            // 2. 使用向量索引检索最相似的电影（已按相似度降序）
+            List<VectorHit> hits = movieVectorServiceImpl.searchSimilarMovies(userVector, RECOMMEND_TOP_K);
             
             // 批量查询电影信息
-            List<Long> recommendMovieIds = sortedEntries.stream()
-                    .map(Map.Entry::getKey)
+            List<Long> recommendMovieIds = hits.stream()
+                    .map(VectorHit::getId)
                     .collect(Collectors.toList());
             
             // 查询电影信息
             List<MovieSimpleVO> recommendMovies = userMovieRatingMapper.batchGetMovieInfo(recommendMovieIds);
             
-            // 生成推荐理由
-            String recommendReason = generateRecommendReason(description);
+            // 按用户偏好画像调整顺序
+            recommendMovies = agentPreferenceService.rankByProfile(userId, recommendMovies);
+            
+            // 等待推荐理由
+            String recommendReason = recommendReasonFuture.join();
             
             // 计算置信度
-            BigDecimal confidence = calculateConfidence(sortedEntries);
+            BigDecimal confidence = calculateConfidence(hits);
             
             log.info("RAG推荐完成：userId={}, 推荐电影数量={}", userId, recommendMovies.size());
             
@@ -105,14 +107,18 @@ public class RagRecommendServiceImpl implements RagRecommendService {
     }
     
     /**
-     * 生成推荐理由
+     * 异步生成推荐理由，调用失败时返回备用推荐理由
      * @param description 用户描述
      * @return 推荐理由
      */
-    private String generateRecommendReason(String description) {
+    private CompletableFuture<String> generateRecommendReason(String description) {
         // 使用Ollama API生成推荐理由
         String prompt = buildRecommendReasonPrompt(description);
-        return generateTextWithOllama(prompt);
+        return ollamaUtil.generateTextAsync(prompt)
+                .exceptionally(e -> {
+                    log.error("调用Ollama API生成推荐理由失败", e);
+                    return generateFallbackRecommendReason();
+                });
     }
     
     /**
@@ -145,40 +151,6 @@ public class RagRecommendServiceImpl implements RagRecommendService {
             """, description);
     }
     
-    /**
-     * 使用Ollama API生成文本
-     * @param prompt 提示词
-     * @return 生成的文本
-     */
-    private String generateTextWithOllama(String prompt) {
-        try {
-            // 使用Ollama的generate API生成文本
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "llama2");
-            requestBody.put("prompt", prompt);
-            requestBody.put("stream", false);
-            requestBody.put("options", Map.of("temperature", 0.7, "max_tokens", 500));
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            
-            String url = "http://localhost:11434/api/generate";
-            ResponseEntity<Map> response = new RestTemplate().postForEntity(url, entity, Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("response");
-            } else {
-                log.error("Ollama API调用失败: {}", response.getStatusCode());
-                return generateFallbackRecommendReason();
-            }
-        } catch (Exception e) {
-            log.error("调用Ollama API生成推荐理由失败", e);
-            return generateFallbackRecommendReason();
-        }
-    }
-    
     /**
      * 生成备用推荐理由
      * @return 备用推荐理由
@@ -189,21 +161,20 @@ public class RagRecommendServiceImpl implements RagRecommendService {
     
     /**
      * 计算推荐置信度
-     * @param sortedEntries 排序后的相似度条目
+     * @param hits 按相似度降序排列的检索结果
      * @return 置信度
      */
-    private BigDecimal calculateConfidence(List<Map.Entry<Long, BigDecimal>> sortedEntries) {
-        if (sortedEntries.isEmpty()) {
+    private BigDecimal calculateConfidence(List<VectorHit> hits) {
+        if (hits.isEmpty()) {
             return BigDecimal.ZERO;
         }
         
         // 取前5个相似度的平均值作为置信度
-        BigDecimal sum = sortedEntries.stream()
-                .limit(5)
-                .map(Map.Entry::getValue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        int count = Math.min(sortedEntries.size(), 5);
-        return sum.divide(BigDecimal.valueOf(count), 4, RoundingMode.HALF_UP);
+        int count = Math.min(hits.size(), 5);
+        double sum = 0.0;
+        for (int i = 0; i < count; i++) {
+            sum += hits.get(i).getScore();
+        }
+        return BigDecimal.valueOf(sum / count).setScale(4, RoundingMode.HALF_UP);
     }
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.fc.service.impl.api;
+
+import com.fc.dto.tag.MovieTagCountDTO;
+import com.fc.entity.CreativeTag;
+import com.fc.enums.PostTypeEnum;
+import com.fc.mapper.api.TagPublicMapper;
+import com.fc.service.api.MovieTagRankService;
+import com.fc.vo.tag.TagVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 电影热门标签排行服务实现
+ *
+ * 二创帖发帖、删帖、恢复时增量维护 hot:movie:tag:{movieId}，
+ * 定时任务按电影分批从数据库重算并整体替换，修正增量更新的偏差
+ */
+@Service
+@Slf4j
+public class MovieTagRankServiceImpl implements MovieTagRankService {
+
+    @Autowired
+    private TagPublicMapper tagPublicMapper;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${fc.tag.movie-rank.batch-size:200}")
+    private Integer batchSize;
+
+    // Redis key 前缀
+    private static final String MOVIE_TAG_RANK_KEY_PREFIX = "hot:movie:tag:";
+    private static final String MOVIE_TAG_RANK_TMP_KEY_PREFIX = "hot:movie:tag:tmp:";
+    private static final String MOVIE_TAG_RANK_INDEX_KEY = "hot:movie:tag:index";
+
+    private final Cache<Long, String> tagNameCache = Caffeine.newBuilder()
+            .maximumSize(100000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * 帖子发布或恢复后增加标签计数
+     */
+    @Override
+    public void onPostTagsAdded(Long movieId, Integer postType, List<Long> tagIds) {
+        if (PostTypeEnum.isCreative(postType)) {
+            incrementTags(movieId, tagIds, 1);
+        }
+    }
+
+    /**
+     * 帖子删除后减少标签计数
+     */
+    @Override
+    public void onPostTagsRemoved(Long movieId, Integer postType, List<Long> tagIds) {
+        if (PostTypeEnum.isCreative(postType)) {
+            incrementTags(movieId, tagIds, -1);
+        }
+    }
+
+    /**
+     * 获取电影的热门标签
+     */
+    @Override
+    public List<TagVO> getMovieHotTags(Long movieId, int limit) {
+        if (movieId == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(MOVIE_TAG_RANK_KEY_PREFIX + movieId, 0, limit - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // reverseRangeWithScores返回的集合保持score降序
+        LinkedHashMap<Long, Double> ranked = new LinkedHashMap<>();
+        for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+            ranked.put(Long.valueOf(String.valueOf(tuple.getValue())),
+                    tuple.getScore() != null ? tuple.getScore() : 0.0);
+        }
+
+        Map<Long, String> tagNames = tagNameCache.getAll(ranked.keySet(), missIds -> {
+            List<CreativeTag> tags = tagPublicMapper.getTagsByIds(new ArrayList<>(missIds));
+            return tags.stream().collect(Collectors.toMap(CreativeTag::getTagId, CreativeTag::getTagName));
+        });
+
+        return ranked.entrySet().stream()
+                .filter(entry -> tagNames.containsKey(entry.getKey()))
+                .map(entry -> TagVO.builder()
+                        .tagId(entry.getKey())
+                        .tagName(tagNames.get(entry.getKey()))
+                        .hotScore(entry.getValue())
+                        .usageCount(entry.getValue().intValue())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取电影下全部标签的使用次数
+     */
+    @Override
+    public Map<Long, Double> getMovieTagScores(Long movieId) {
+        try {
+            Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                    .rangeWithScores(MOVIE_TAG_RANK_KEY_PREFIX + movieId, 0, -1);
+            if (tuples == null || tuples.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<Long, Double> scores = new HashMap<>(tuples.size() * 2);
+            for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                scores.put(Long.valueOf(String.valueOf(tuple.getValue())), tuple.getScore());
+            }
+            return scores;
+        } catch (Exception e) {
+            log.error("从Redis获取电影标签排行失败: movieId={}", movieId, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 从数据库全量对账
+     * 按电影ID游标分批统计，写入临时key后RENAME整体替换；不再有标签的电影删除其排行
+     */
+    @Override
+    public int reconcile() {
+        long startTime = System.currentTimeMillis();
+        Set<Object> oldIndex = redisTemplate.opsForSet().members(MOVIE_TAG_RANK_INDEX_KEY);
+        Set<String> reconciledMovieIds = new HashSet<>();
+
+        long lastMovieId = 0L;
+        while (true) {
+            List<Long> movieIds = tagPublicMapper.selectMovieIdsWithPostsAfter(lastMovieId, batchSize);
+            if (movieIds.isEmpty()) {
+                break;
+            }
+            lastMovieId = movieIds.get(movieIds.size() - 1);
+
+            Map<Long, List<MovieTagCountDTO>> countsByMovie = tagPublicMapper.countMovieTagUsage(movieIds).stream()
+                    .collect(Collectors.groupingBy(MovieTagCountDTO::getMovieId));
+            writeMovieRanks(countsByMovie);
+            countsByMovie.keySet().forEach(movieId -> reconciledMovieIds.add(String.valueOf(movieId)));
+
+            if (movieIds.size() < batchSize) {
+                break;
+            }
+        }
+
+        // 删除已不再有标签的电影排行
+        if (oldIndex != null && !oldIndex.isEmpty()) {
+            List<String> staleKeys = new ArrayList<>();
+            List<Object> staleMembers = new ArrayList<>();
+            for (Object member : oldIndex) {
+                if (!reconciledMovieIds.contains(String.valueOf(member))) {
+                    staleKeys.add(MOVIE_TAG_RANK_KEY_PREFIX + member);
+                    staleMembers.add(member);
+                }
+            }
+            if (!staleKeys.isEmpty()) {
+                redisTemplate.delete(staleKeys);
+                redisTemplate.opsForSet().remove(MOVIE_TAG_RANK_INDEX_KEY, staleMembers.toArray());
+                log.info("清理无标签的电影排行: 数量={}", staleKeys.size());
+            }
+        }
+
+        log.info("电影热门标签排行对账完成: 电影数={}, 耗时={}ms",
+                reconciledMovieIds.size(), System.currentTimeMillis() - startTime);
+        return reconciledMovieIds.size();
+    }
+
+    /**
+     * 增量调整电影下标签计数，计数归零的标签从排行中移除
+     */
+    private void incrementTags(Long movieId, List<Long> tagIds, int delta) {
+        if (movieId == null || tagIds == null || tagIds.isEmpty()) {
+            return;
+        }
+
+        String key = MOVIE_TAG_RANK_KEY_PREFIX + movieId;
+        List<Long> distinctTagIds = tagIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Long tagId : distinctTagIds) {
+                    ops.opsForZSet().incrementScore(key, String.valueOf(tagId), delta);
+                }
+                if (delta < 0) {
+                    ops.opsForZSet().removeRangeByScore(key, Double.NEGATIVE_INFINITY, 0);
+                } else {
+                    ops.opsForSet().add(MOVIE_TAG_RANK_INDEX_KEY, String.valueOf(movieId));
+                }
+                return null;
+            }
+        });
+
+        log.debug("电影热门标签排行增量更新: movieId={}, tagIds={}, delta={}", movieId, distinctTagIds, delta);
+    }
+
+    /**
+     * 将一批电影的标签计数整体写入Redis
+     */
+    private void writeMovieRanks(Map<Long, List<MovieTagCountDTO>> countsByMovie) {
+        if (countsByMovie.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Map.Entry<Long, List<MovieTagCountDTO>> entry : countsByMovie.entrySet()) {
+                    Set<ZSetOperations.TypedTuple<Object>> tuples = entry.getValue().stream()
+                            .map(count -> new DefaultTypedTuple<Object>(
+                                    String.valueOf(count.getTagId()), count.getUsageCount().doubleValue()))
+                            .collect(Collectors.toSet());
+                    String tmpKey = MOVIE_TAG_RANK_TMP_KEY_PREFIX + entry.getKey();
+                    ops.delete(tmpKey);
+                    ops.opsForZSet().add(tmpKey, tuples);
+                    ops.rename(tmpKey, MOVIE_TAG_RANK_KEY_PREFIX + entry.getKey());
+                    ops.opsForSet().add(MOVIE_TAG_RANK_INDEX_KEY, String.valueOf(entry.getKey()));
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,400 @@
+package com.fc.service.impl.api;
+
+import com.fc.dto.post.PostHotStatDTO;
+import com.fc.entity.Post;
+import com.fc.mapper.api.PostPublicMapper;
+import com.fc.service.api.PostHotRankService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 帖子热度排行服务实现
+ *
+ * 热度公式（重力衰减）：
+ * score = (点赞 * likeWeight + 评论 * commentWeight + 收藏 * collectWeight + ln(1 + 浏览) * viewWeight + 1)
+ *         / (发布小时数 + 2) ^ gravity
+ *
+ * 存储结构：
+ * - hot:post:global、hot:post:global:type:{postType}
+ * - hot:post:movie:{movieId}、hot:post:movie:{movieId}:type:{postType}
+ * 互动事件只把帖子加入待重算集合 hot:post:dirty，由定时任务每隔几秒批量读取统计数据并重算；
+ * 由于分数随时间衰减，定时任务按同一时刻重算窗口内全部帖子，并记录该时刻（hot:post:scored-at），
+ * 发布和批量重算都按这一时刻计算，与全量重算的分数可比
+ */
+@Service
+@Slf4j
+public class PostHotRankServiceImpl implements PostHotRankService {
+
+    @Autowired
+    private PostPublicMapper postPublicMapper;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${fc.post.hot.gravity:1.5}")
+    private Double gravity;
+
+    @Value("${fc.post.hot.like-weight:1.0}")
+    private Double likeWeight;
+
+    @Value("${fc.post.hot.comment-weight:2.0}")
+    private Double commentWeight;
+
+    @Value("${fc.post.hot.collect-weight:3.0}")
+    private Double collectWeight;
+
+    @Value("${fc.post.hot.view-weight:0.5}")
+    private Double viewWeight;
+
+    @Value("${fc.post.hot.window-days:30}")
+    private Integer windowDays;
+
+    @Value("${fc.post.hot.global-max-size:2000}")
+    private Integer globalMaxSize;
+
+    @Value("${fc.post.hot.movie-max-size:500}")
+    private Integer movieMaxSize;
+
+    @Value("${fc.post.hot.batch-size:1000}")
+    private Integer batchSize;
+
+    // Redis key 前缀
+    private static final String GLOBAL_KEY = "hot:post:global";
+    private static final String MOVIE_KEY_PREFIX = "hot:post:movie:";
+    private static final String MOVIE_INDEX_KEY = "hot:post:movie:index";
+    private static final String TYPE_KEY_SEGMENT = ":type:";
+    private static final String TMP_KEY_SUFFIX = ":tmp";
+    private static final String DIRTY_KEY = "hot:post:dirty";
+    private static final String SCORED_AT_KEY = "hot:post:scored-at";
+    private static final int[] POST_TYPES = {1, 2, 3, 4};
+
+    /**
+     * 帖子发布后加入排行
+     */
+    @Override
+    public void onPostPublished(Post post) {
+        PostHotStatDTO stat = new PostHotStatDTO(post.getPostId(), post.getMovieId(), post.getPostType(),
+                0, 0, 0, 0, 0, post.getCreateTime());
+        writeScores(Collections.singletonList(stat), Collections.emptyList(), scoredAt());
+    }
+
+    /**
+     * 帖子互动数据变化后标记为待重算
+     */
+    @Override
+    public void markDirty(Long postId) {
+        redisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(postId));
+    }
+
+    /**
+     * 批量重算已标记的帖子：每批取出 batch-size 个，一次查询统计数据，一次管道写入
+     */
+    @Override
+    public int rescoreDirty() {
+        LocalDateTime scoredAt = scoredAt();
+        LocalDateTime windowStart = LocalDateTime.now().minusDays(windowDays);
+        int rescored = 0;
+        while (true) {
+            List<Object> members = redisTemplate.opsForSet().pop(DIRTY_KEY, batchSize);
+            if (members == null || members.isEmpty()) {
+                break;
+            }
+            List<Long> postIds = members.stream()
+                    .map(member -> Long.valueOf(String.valueOf(member)))
+                    .collect(Collectors.toList());
+
+            try {
+                List<PostHotStatDTO> active = new ArrayList<>();
+                List<PostHotStatDTO> removed = new ArrayList<>();
+                for (PostHotStatDTO stat : postPublicMapper.selectPostHotStats(postIds)) {
+                    boolean deleted = stat.getIsDeleted() != null && stat.getIsDeleted() == 1;
+                    (deleted || stat.getCreateTime().isBefore(windowStart) ? removed : active).add(stat);
+                }
+                writeScores(active, removed, scoredAt);
+            } catch (RuntimeException e) {
+                // 已从待重算集合中取出，查询或写入失败时放回，由下一轮重算
+                redisTemplate.opsForSet().add(DIRTY_KEY, members.toArray());
+                throw e;
+            }
+            rescored += postIds.size();
+
+            if (members.size() < batchSize) {
+                break;
+            }
+        }
+        if (rescored > 0) {
+            log.debug("待重算帖子热度更新完成: 帖子数={}", rescored);
+        }
+        return rescored;
+    }
+
+    /**
+     * 帖子删除后移出排行
+     */
+    @Override
+    public void removePost(Long postId, Long movieId, Integer postType) {
+        String member = String.valueOf(postId);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations<String, Object> zSetOps = (ZSetOperations<String, Object>) operations.opsForZSet();
+                for (String key : keysFor(movieId, postType)) {
+                    zSetOps.remove(key, member);
+                }
+                return null;
+            }
+        });
+        log.debug("帖子移出热度排行: postId={}", postId);
+    }
+
+    /**
+     * 按热度分页获取帖子ID
+     */
+    @Override
+    public List<Long> pageHotPostIds(Long movieId, Integer postType, int offset, int size) {
+        Set<Object> members = redisTemplate.opsForZSet()
+                .reverseRange(rankKey(movieId, postType), offset, offset + size - 1L);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // reverseRange返回的集合保持score降序
+        return members.stream()
+                .map(member -> Long.valueOf(String.valueOf(member)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 统计排行中的帖子数量
+     */
+    @Override
+    public long countHotPosts(Long movieId, Integer postType) {
+        Long count = redisTemplate.opsForZSet().zCard(rankKey(movieId, postType));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 按当前时间重算热度窗口内全部帖子的分数
+     * 结果写入临时key后RENAME整体替换，每个key只保留分数最高的若干帖子
+     */
+    @Override
+    public int rescoreAll() {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now.minusDays(windowDays);
+
+        Map<String, List<ZSetOperations.TypedTuple<Object>>> tuplesByKey = new HashMap<>();
+        Set<Long> movieIds = new HashSet<>();
+
+        long lastPostId = 0L;
+        int scannedPosts = 0;
+        while (true) {
+            List<PostHotStatDTO> stats = postPublicMapper.selectHotCandidatesAfter(since, lastPostId, batchSize);
+            if (stats.isEmpty()) {
+                break;
+            }
+            lastPostId = stats.get(stats.size() - 1).getPostId();
+            scannedPosts += stats.size();
+
+            for (PostHotStatDTO stat : stats) {
+                ZSetOperations.TypedTuple<Object> tuple =
+                        new DefaultTypedTuple<>(String.valueOf(stat.getPostId()), calculateScore(stat, now));
+                for (String key : keysFor(stat.getMovieId(), stat.getPostType())) {
+                    tuplesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(tuple);
+                }
+                movieIds.add(stat.getMovieId());
+            }
+
+            if (stats.size() < batchSize) {
+                break;
+            }
+        }
+
+        writeRankings(tuplesByKey);
+        removeStaleMovieRankings(movieIds);
+        redisTemplate.opsForValue().set(SCORED_AT_KEY, String.valueOf(
+                now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+
+        log.info("帖子热度排行重算完成: 帖子数={}, 电影数={}, 耗时={}ms",
+                scannedPosts, movieIds.size(), System.currentTimeMillis() - startTime);
+        return scannedPosts;
+    }
+
+    /**
+     * 计算帖子热度，全量重算和增量更新共用
+     * @param now 计算时刻，同一排行内的分数只有按同一时刻计算才可比
+     */
+    private double calculateScore(PostHotStatDTO stat, LocalDateTime now) {
+        double points = valueOf(stat.getLikeCount()) * likeWeight
+                + valueOf(stat.getCommentCount()) * commentWeight
+                + valueOf(stat.getCollectCount()) * collectWeight
+                + Math.log1p(valueOf(stat.getViewCount())) * viewWeight
+                + 1;
+        double ageHours = Math.max(0, Duration.between(stat.getCreateTime(), now).toMinutes() / 60.0);
+        return points / Math.pow(ageHours + 2, gravity);
+    }
+
+    private int valueOf(Integer count) {
+        return count != null ? Math.max(count, 0) : 0;
+    }
+
+    /**
+     * 最近一次全量重算的计算时刻，尚未全量重算时为当前时间
+     */
+    private LocalDateTime scoredAt() {
+        Object value = redisTemplate.opsForValue().get(SCORED_AT_KEY);
+        if (value == null) {
+            return LocalDateTime.now();
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(String.valueOf(value))),
+                ZoneId.systemDefault());
+    }
+
+    /**
+     * 在一次管道中写入帖子分数并裁剪超出容量的尾部，同时移出已删除或超出窗口的帖子
+     */
+    private void writeScores(List<PostHotStatDTO> active, List<PostHotStatDTO> removed, LocalDateTime scoredAt) {
+        if (active.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (PostHotStatDTO stat : active) {
+                    String member = String.valueOf(stat.getPostId());
+                    double score = calculateScore(stat, scoredAt);
+                    for (String key : keysFor(stat.getMovieId(), stat.getPostType())) {
+                        ops.opsForZSet().add(key, member, score);
+                        ops.opsForZSet().removeRange(key, 0, -(maxSizeOf(key) + 1L));
+                    }
+                    ops.opsForSet().add(MOVIE_INDEX_KEY, String.valueOf(stat.getMovieId()));
+                }
+                for (PostHotStatDTO stat : removed) {
+                    String member = String.valueOf(stat.getPostId());
+                    for (String key : keysFor(stat.getMovieId(), stat.getPostType())) {
+                        ops.opsForZSet().remove(key, member);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 批量整体替换排行
+     */
+    private void writeRankings(Map<String, List<ZSetOperations.TypedTuple<Object>>> tuplesByKey) {
+        List<String> keys = new ArrayList<>(tuplesByKey.keySet());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> chunk = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (String key : chunk) {
+                        Set<ZSetOperations.TypedTuple<Object>> top = tuplesByKey.get(key).stream()
+                                .sorted(Comparator.comparing(ZSetOperations.TypedTuple<Object>::getScore).reversed())
+                                .limit(maxSizeOf(key))
+                                .collect(Collectors.toSet());
+                        String tmpKey = key + TMP_KEY_SUFFIX;
+                        ops.delete(tmpKey);
+                        ops.opsForZSet().add(tmpKey, top);
+                        ops.rename(tmpKey, key);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        // 窗口内已无帖子的全站排行直接删除
+        List<String> emptyGlobalKeys = new ArrayList<>();
+        if (!tuplesByKey.containsKey(GLOBAL_KEY)) {
+            emptyGlobalKeys.add(GLOBAL_KEY);
+        }
+        for (int postType : POST_TYPES) {
+            String key = GLOBAL_KEY + TYPE_KEY_SEGMENT + postType;
+            if (!tuplesByKey.containsKey(key)) {
+                emptyGlobalKeys.add(key);
+            }
+        }
+        if (!emptyGlobalKeys.isEmpty()) {
+            redisTemplate.delete(emptyGlobalKeys);
+        }
+    }
+
+    /**
+     * 删除窗口内已无帖子的电影排行
+     */
+    private void removeStaleMovieRankings(Set<Long> activeMovieIds) {
+        Set<Object> indexed = redisTemplate.opsForSet().members(MOVIE_INDEX_KEY);
+        if (indexed == null || indexed.isEmpty()) {
+            return;
+        }
+
+        List<String> staleKeys = new ArrayList<>();
+        List<Object> staleMembers = new ArrayList<>();
+        for (Object member : indexed) {
+            Long movieId = Long.valueOf(String.valueOf(member));
+            if (!activeMovieIds.contains(movieId)) {
+                staleKeys.add(MOVIE_KEY_PREFIX + movieId);
+                for (int postType : POST_TYPES) {
+                    staleKeys.add(MOVIE_KEY_PREFIX + movieId + TYPE_KEY_SEGMENT + postType);
+                }
+                staleMembers.add(member);
+            }
+        }
+        if (!staleKeys.isEmpty()) {
+            redisTemplate.delete(staleKeys);
+            redisTemplate.opsForSet().remove(MOVIE_INDEX_KEY, staleMembers.toArray());
+            log.info("清理无热门帖子的电影排行: 电影数={}", staleMembers.size());
+        }
+    }
+
+    /**
+     * 帖子所属的全部排行key
+     */
+    private List<String> keysFor(Long movieId, Integer postType) {
+        List<String> keys = new ArrayList<>(4);
+        keys.add(GLOBAL_KEY);
+        if (postType != null) {
+            keys.add(GLOBAL_KEY + TYPE_KEY_SEGMENT + postType);
+        }
+        if (movieId != null) {
+            keys.add(MOVIE_KEY_PREFIX + movieId);
+            if (postType != null) {
+                keys.add(MOVIE_KEY_PREFIX + movieId + TYPE_KEY_SEGMENT + postType);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 查询条件对应的排行key
+     */
+    private String rankKey(Long movieId, Integer postType) {
+        String key = movieId != null ? MOVIE_KEY_PREFIX + movieId : GLOBAL_KEY;
+        return postType != null ? key + TYPE_KEY_SEGMENT + postType : key;
+    }
+
+    private int maxSizeOf(String key) {
+        return key.startsWith(MOVIE_KEY_PREFIX) ? movieMaxSize : globalMaxSize;
+    }
+}
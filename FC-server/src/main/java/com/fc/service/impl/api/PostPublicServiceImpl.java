@@ -14,6 +14,7 @@ import com.fc.mapper.api.PostPublicMapper;
 import com.fc.mapper.user.PostUserMapper;
 import com.fc.result.PageResult;
 import com.fc.service.api.CommentPublicService;
+import com.fc.service.api.PostHotRankService;
 import com.fc.service.api.PostPublicService;
 import com.fc.service.user.MovieUserService;
 import com.fc.service.user.PostStatService;
@@ -26,7 +27,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -51,6 +55,11 @@ public class PostPublicServiceImpl implements PostPublicService {
     @Autowired
     private CommentPublicService commentPublicService;
 
+    @Autowired
+    private PostHotRankService postHotRankService;
+
+    private static final String SORT_HOT = "hot";
+
     /**
      * 分页查询帖子列表（滚动分页）
      * @param pageQueryDTO 分页参数
@@ -72,9 +81,14 @@ public class PostPublicServiceImpl implements PostPublicService {
             }
         }
 
+        // 热度排序走Redis排行，不在MySQL中按计算表达式排序
+        if (SORT_HOT.equalsIgnoreCase(pageQueryDTO.getSort())) {
+            return pageQueryHotPosts(pageQueryDTO, size);
+        }
+
         // 查询帖子列表
         List<PostSearchVO> records = postPublicMapper.pageQueryPostsByCursor(
-                pageQueryDTO.getCursor(), size, movieId, postType, contentForm);
+                pageQueryDTO.getCursor(), pageQueryDTO.getCursorId(), size, movieId, postType, contentForm);
 
         // 为每个帖子设置标签信息
         records = records.stream()
@@ -89,6 +103,7 @@ public class PostPublicServiceImpl implements PostPublicService {
         if (!records.isEmpty()) {
             PostSearchVO lastRecord = records.get(records.size() - 1);
             pageResult.setNextCursor(lastRecord.getCreateTime());
+            pageResult.setNextCursorId(lastRecord.getPostId());
             pageResult.setHasNext(records.size() == size);
         } else {
             pageResult.setHasNext(false);
@@ -105,6 +120,43 @@ public class PostPublicServiceImpl implements PostPublicService {
         return pageResult;
     }
 
+    /**
+     * 按热度分页查询帖子
+     * 从热度排行按偏移量取出帖子ID，再按主键批量回表；内容形式在回表时过滤，因此单页可能少于size条
+     * @param pageQueryDTO 分页参数
+     * @param size 每页大小
+     * @return 分页结果
+     */
+    private PageResult pageQueryHotPosts(PostPageQueryDTO pageQueryDTO, int size) {
+        Long movieId = pageQueryDTO.getMovieId();
+        Integer postType = pageQueryDTO.getPostType();
+        int offset = pageQueryDTO.getOffset() != null ? Math.max(pageQueryDTO.getOffset(), 0) : 0;
+
+        List<Long> postIds = postHotRankService.pageHotPostIds(movieId, postType, offset, size);
+        long total = postHotRankService.countHotPosts(movieId, postType);
+
+        List<PostSearchVO> records = Collections.emptyList();
+        if (!postIds.isEmpty()) {
+            Map<Long, Integer> rankOrder = new HashMap<>();
+            for (int i = 0; i < postIds.size(); i++) {
+                rankOrder.put(postIds.get(i), i);
+            }
+            records = postPublicMapper.selectPostsByIds(postIds, pageQueryDTO.getContentForm()).stream()
+                    .sorted(Comparator.comparing(record -> rankOrder.get(record.getPostId())))
+                    .map(this::enrichPostWithTags)
+                    .collect(Collectors.toList());
+        }
+
+        int nextOffset = offset + postIds.size();
+
+        PageResult pageResult = new PageResult();
+        pageResult.setRecords(records);
+        pageResult.setHasNext(postIds.size() == size && nextOffset < total);
+        pageResult.setNextOffset(nextOffset);
+        pageResult.setTotal(offset == 0 ? total : -1);
+        return pageResult;
+    }
+
     /**
      * 检查深度讨论区权限（针对特定电影）
      * @param movieId 电影ID
@@ -196,7 +248,7 @@ public class PostPublicServiceImpl implements PostPublicService {
 
         // 查询帖子列表
         List<PostSearchVO> records = postPublicMapper.pageQueryPostsByUserId(
-                pageQueryDTO.getCursor(), size, userId);
+                pageQueryDTO.getCursor(), pageQueryDTO.getCursorId(), size, userId);
 
         // 为每个帖子设置标签信息
         records = records.stream()
@@ -211,6 +263,7 @@ public class PostPublicServiceImpl implements PostPublicService {
         if (!records.isEmpty()) {
             PostSearchVO lastRecord = records.get(records.size() - 1);
             pageResult.setNextCursor(lastRecord.getCreateTime());
+            pageResult.setNextCursorId(lastRecord.getPostId());
             pageResult.setHasNext(records.size() == size);
         } else {
             pageResult.setHasNext(false);
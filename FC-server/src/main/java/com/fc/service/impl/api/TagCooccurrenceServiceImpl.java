@@ -0,0 +1,380 @@
+package com.fc.service.impl.api;
+
+import com.fc.dto.tag.PostTagRelationDTO;
+import com.fc.entity.CreativeTag;
+import com.fc.mapper.api.TagPublicMapper;
+import com.fc.service.api.MovieTagRankService;
+import com.fc.service.api.TagCooccurrenceService;
+import com.fc.vo.tag.TagVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 标签共现图服务实现
+ *
+ * 存储结构：
+ * - Redis ZSET tag:cooccur:{tagId}，member为邻居标签ID，score为共现次数（重建时截断为Top-K）
+ * - 增量更新只在重建之间累加，每个key截断到最多 max-neighbors 个邻居并设置过期时间，
+ *   重建会用数据库结果覆盖，重建不再刷新的key到期自动删除
+ * - 电影维度的标签使用次数由MovieTagRankService维护，用于按电影加权
+ * - 本地Caffeine缓存邻居列表、电影标签分数和标签名称，查询路径不访问数据库
+ */
+@Service
+@Slf4j
+public class TagCooccurrenceServiceImpl implements TagCooccurrenceService {
+
+    @Autowired
+    private TagPublicMapper tagPublicMapper;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MovieTagRankService movieTagRankService;
+
+    @Value("${fc.tag.cooccurrence.top-k:20}")
+    private Integer topK;
+
+    @Value("${fc.tag.cooccurrence.batch-size:500}")
+    private Integer batchSize;
+
+    @Value("${fc.tag.cooccurrence.max-neighbors:100}")
+    private Integer maxNeighbors;
+
+    @Value("${fc.tag.cooccurrence.key-ttl-ms:10800000}")
+    private Long keyTtlMs;
+
+    // Redis key 前缀
+    private static final String COOCCUR_KEY_PREFIX = "tag:cooccur:";
+    private static final String COOCCUR_TMP_KEY_PREFIX = "tag:cooccur:tmp:";
+    private static final String COOCCUR_INDEX_KEY = "tag:cooccur:index";
+    // 单次查询最多参与计算的已选标签数量
+    private static final int MAX_INPUT_TAGS = 10;
+
+    // 本地缓存10分钟过期，其他实例的增量更新最迟10分钟可见
+    private final Cache<Long, TagNeighbors> neighborCache = Caffeine.newBuilder()
+            .maximumSize(50000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    private final Cache<Long, Map<Long, Double>> movieUsageCache = Caffeine.newBuilder()
+            .maximumSize(5000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    private final Cache<Long, String> tagNameCache = Caffeine.newBuilder()
+            .maximumSize(100000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * 查询相关标签
+     */
+    @Override
+    public List<TagVO> relatedTags(List<Long> tagIds, Long movieId, int limit) {
+        if (tagIds == null || tagIds.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> inputTagIds = tagIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .limit(MAX_INPUT_TAGS)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        // 合并各已选标签的邻居：每个已选标签的贡献按其最大共现次数归一化到[0,1]
+        Map<Long, Double> scores = new HashMap<>();
+        Map<Long, Integer> cooccurCounts = new HashMap<>();
+        for (Long tagId : inputTagIds) {
+            TagNeighbors neighbors = getNeighbors(tagId);
+            if (neighbors.size() == 0) {
+                continue;
+            }
+            double maxCount = neighbors.counts[0];
+            for (int i = 0; i < neighbors.size(); i++) {
+                long neighborId = neighbors.tagIds[i];
+                if (inputTagIds.contains(neighborId)) {
+                    continue;
+                }
+                scores.merge(neighborId, neighbors.counts[i] / maxCount, Double::sum);
+                cooccurCounts.merge(neighborId, (int) neighbors.counts[i], Integer::sum);
+            }
+        }
+
+        if (scores.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 按电影维度加权：该电影下使用越多的标签越靠前
+        if (movieId != null) {
+            Map<Long, Double> movieUsage = getMovieTagUsage(movieId);
+            if (!movieUsage.isEmpty()) {
+                scores.replaceAll((tagId, score) ->
+                        score * (1 + Math.log1p(movieUsage.getOrDefault(tagId, 0.0))));
+            }
+        }
+
+        List<Map.Entry<Long, Double>> topEntries = scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+
+        Map<Long, String> tagNames = getTagNames(topEntries.stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()));
+
+        return topEntries.stream()
+                .filter(entry -> tagNames.containsKey(entry.getKey()))
+                .map(entry -> TagVO.builder()
+                        .tagId(entry.getKey())
+                        .tagName(tagNames.get(entry.getKey()))
+                        .hotScore(Math.round(entry.getValue() * 1000) / 1000.0)
+                        .usageCount(cooccurCounts.get(entry.getKey()))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 帖子发布后增量更新共现图
+     */
+    @Override
+    public void recordPostTags(List<Long> tagIds) {
+        if (tagIds == null || tagIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> distinctTagIds = tagIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Long tagId : distinctTagIds) {
+                    String key = COOCCUR_KEY_PREFIX + tagId;
+                    for (Long otherTagId : distinctTagIds) {
+                        if (!tagId.equals(otherTagId)) {
+                            ops.opsForZSet().incrementScore(key, String.valueOf(otherTagId), 1);
+                        }
+                    }
+                    // 只保留共现次数最高的邻居，避免两次重建之间无限增长
+                    ops.opsForZSet().removeRange(key, 0, -(maxNeighbors + 1));
+                    ops.expire(key, keyTtlMs, TimeUnit.MILLISECONDS);
+                    // 登记到索引，重建时可清理已无共现关系的标签
+                    ops.opsForSet().add(COOCCUR_INDEX_KEY, String.valueOf(tagId));
+                }
+                return null;
+            }
+        });
+
+        // 本实例立即可见
+        neighborCache.invalidateAll(distinctTagIds);
+
+        log.debug("标签共现图增量更新完成: tagIds={}", distinctTagIds);
+    }
+
+    /**
+     * 全量重建共现图
+     * 按帖子ID游标分批扫描post_tag，在内存中累计稀疏共现计数，最终每个标签只保留Top-K邻居写入Redis
+     */
+    @Override
+    public int rebuild() {
+        long startTime = System.currentTimeMillis();
+
+        Map<Long, Map<Long, Integer>> pairCounts = new HashMap<>();
+
+        long lastPostId = 0L;
+        int scannedPosts = 0;
+        while (true) {
+            List<Long> postIds = tagPublicMapper.selectValidPostIdsAfter(lastPostId, batchSize);
+            if (postIds.isEmpty()) {
+                break;
+            }
+            lastPostId = postIds.get(postIds.size() - 1);
+            scannedPosts += postIds.size();
+
+            List<PostTagRelationDTO> relations = tagPublicMapper.selectPostTagRelations(postIds);
+
+            // 结果按post_id排序，同一帖子的标签连续出现
+            int start = 0;
+            while (start < relations.size()) {
+                Long postId = relations.get(start).getPostId();
+                int end = start;
+                while (end < relations.size() && postId.equals(relations.get(end).getPostId())) {
+                    end++;
+                }
+                accumulatePost(relations.subList(start, end), pairCounts);
+                start = end;
+            }
+
+            if (postIds.size() < batchSize) {
+                break;
+            }
+        }
+
+        writeNeighborsToRedis(pairCounts);
+
+        neighborCache.invalidateAll();
+
+        log.info("标签共现图重建完成: 扫描帖子={}, 标签数={}, 耗时={}ms",
+                scannedPosts, pairCounts.size(), System.currentTimeMillis() - startTime);
+        return pairCounts.size();
+    }
+
+    /**
+     * 累计单个帖子的标签共现次数
+     */
+    private void accumulatePost(List<PostTagRelationDTO> postRelations,
+                                Map<Long, Map<Long, Integer>> pairCounts) {
+        for (PostTagRelationDTO relation : postRelations) {
+            Long tagId = relation.getTagId();
+            for (PostTagRelationDTO other : postRelations) {
+                if (!tagId.equals(other.getTagId())) {
+                    pairCounts.computeIfAbsent(tagId, k -> new HashMap<>()).merge(other.getTagId(), 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将每个标签的Top-K邻居写入Redis
+     * 先写临时key再RENAME，保证读取方不会看到半写状态
+     */
+    private void writeNeighborsToRedis(Map<Long, Map<Long, Integer>> pairCounts) {
+        Set<Object> oldIndex = redisTemplate.opsForSet().members(COOCCUR_INDEX_KEY);
+
+        List<Long> tagIds = new ArrayList<>(pairCounts.keySet());
+        for (int from = 0; from < tagIds.size(); from += batchSize) {
+            List<Long> chunk = tagIds.subList(from, Math.min(from + batchSize, tagIds.size()));
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Long tagId : chunk) {
+                        Set<ZSetOperations.TypedTuple<Object>> tuples = pairCounts.get(tagId).entrySet().stream()
+                                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                                .limit(topK)
+                                .map(entry -> new DefaultTypedTuple<Object>(
+                                        String.valueOf(entry.getKey()), entry.getValue().doubleValue()))
+                                .collect(Collectors.toSet());
+                        String tmpKey = COOCCUR_TMP_KEY_PREFIX + tagId;
+                        ops.delete(tmpKey);
+                        ops.opsForZSet().add(tmpKey, tuples);
+                        ops.rename(tmpKey, COOCCUR_KEY_PREFIX + tagId);
+                        ops.expire(COOCCUR_KEY_PREFIX + tagId, keyTtlMs, TimeUnit.MILLISECONDS);
+                        ops.opsForSet().add(COOCCUR_INDEX_KEY, String.valueOf(tagId));
+                    }
+                    return null;
+                }
+            });
+        }
+
+        // 清理已不再有共现关系的标签
+        if (oldIndex != null && !oldIndex.isEmpty()) {
+            List<String> staleKeys = new ArrayList<>();
+            List<Object> staleMembers = new ArrayList<>();
+            for (Object member : oldIndex) {
+                Long tagId = Long.valueOf(String.valueOf(member));
+                if (!pairCounts.containsKey(tagId)) {
+                    staleKeys.add(COOCCUR_KEY_PREFIX + tagId);
+                    staleMembers.add(member);
+                }
+            }
+            if (!staleKeys.isEmpty()) {
+                redisTemplate.delete(staleKeys);
+                redisTemplate.opsForSet().remove(COOCCUR_INDEX_KEY, staleMembers.toArray());
+                log.info("清理过期的标签共现数据: 数量={}", staleKeys.size());
+            }
+        }
+    }
+
+    /**
+     * 获取标签的Top-K邻居（本地缓存 -> Redis）
+     */
+    private TagNeighbors getNeighbors(Long tagId) {
+        return neighborCache.get(tagId, id -> {
+            try {
+                Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                        .reverseRangeWithScores(COOCCUR_KEY_PREFIX + id, 0, topK - 1);
+                return TagNeighbors.of(tuples);
+            } catch (Exception e) {
+                log.error("从Redis获取标签共现邻居失败: tagId={}", id, e);
+                return TagNeighbors.EMPTY;
+            }
+        });
+    }
+
+    /**
+     * 获取电影维度的标签使用次数（本地缓存 -> MovieTagRankService）
+     */
+    private Map<Long, Double> getMovieTagUsage(Long movieId) {
+        return movieUsageCache.get(movieId, movieTagRankService::getMovieTagScores);
+    }
+
+    /**
+     * 批量获取标签名称（本地缓存 -> 数据库）
+     */
+    private Map<Long, String> getTagNames(List<Long> tagIds) {
+        if (tagIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return tagNameCache.getAll(tagIds, missIds -> {
+            List<CreativeTag> tags = tagPublicMapper.getTagsByIds(new ArrayList<>(missIds));
+            return tags.stream().collect(Collectors.toMap(CreativeTag::getTagId, CreativeTag::getTagName));
+        });
+    }
+
+    /**
+     * 单个标签的Top-K邻居，按共现次数降序存储在并行数组中
+     */
+    private static final class TagNeighbors {
+
+        private static final TagNeighbors EMPTY = new TagNeighbors(new long[0], new double[0]);
+
+        private final long[] tagIds;
+        private final double[] counts;
+
+        private TagNeighbors(long[] tagIds, double[] counts) {
+            this.tagIds = tagIds;
+            this.counts = counts;
+        }
+
+        private static TagNeighbors of(Set<ZSetOperations.TypedTuple<Object>> tuples) {
+            if (tuples == null || tuples.isEmpty()) {
+                return EMPTY;
+            }
+            long[] tagIds = new long[tuples.size()];
+            double[] counts = new double[tuples.size()];
+            int i = 0;
+            // reverseRangeWithScores返回的集合保持score降序
+            for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                tagIds[i] = Long.parseLong(String.valueOf(tuple.getValue()));
+                counts[i] = tuple.getScore() != null ? tuple.getScore() : 0;
+                i++;
+            }
+            return new TagNeighbors(tagIds, counts);
+        }
+
+        private int size() {
+            return tagIds.length;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.fc.entity.CreativeTag;
 import com.fc.mapper.api.TagPublicMapper;
 import com.fc.result.PageResult;
 import com.fc.service.api.HotService;
+import com.fc.service.api.MovieTagRankService;
+import com.fc.service.api.TagCooccurrenceService;
 import com.fc.service.api.TagPublicService;
 import com.fc.vo.tag.TagVO;
 import com.google.common.hash.BloomFilter;
@@ -28,6 +30,12 @@ public class TagPublicServiceImpl implements TagPublicService {
     @Autowired
     private BloomFilter<String> tagIdBloomFilter;
 
+    @Autowired
+    private TagCooccurrenceService tagCooccurrenceService;
+
+    @Autowired
+    private MovieTagRankService movieTagRankService;
+
     /**
      * 分页查询标签（适合无限滚动流）
      */
@@ -152,6 +160,28 @@ public class TagPublicServiceImpl implements TagPublicService {
         return tagPublicMapper.getHotTags(actualLimit);
     }
 
+    /**
+     * 获取电影的热门标签（Redis有序集合，按该电影下的使用次数排序）
+     */
+    @Override
+    public List<TagVO> getMovieHotTags(Long movieId, Integer limit) {
+        int actualLimit = limit != null ? limit : 5;
+        log.info("获取电影热门标签: movieId={}, limit={}", movieId, actualLimit);
+
+        return movieTagRankService.getMovieHotTags(movieId, actualLimit);
+    }
+
+    /**
+     * 获取相关标签（基于标签共现图）
+     */
+    @Override
+    public List<TagVO> relatedTags(List<Long> tagIds, Long movieId, Integer limit) {
+        int actualLimit = limit != null ? limit : 10;
+        log.info("获取相关标签: tagIds={}, movieId={}, limit={}", tagIds, movieId, actualLimit);
+
+        return tagCooccurrenceService.relatedTags(tagIds, movieId, actualLimit);
+    }
+
     /**
      * 构建TagVO对象
      */
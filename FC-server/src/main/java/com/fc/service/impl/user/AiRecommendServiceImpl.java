@@ -1,12 +1,15 @@
 package com.fc.service.impl.user;
 
+import com.fc.agent.vector.TopKSelector;
 import com.fc.service.impl.agent.RagRecommendServiceImpl;
 import com.fc.dto.movie.ai.MovieViewedDTO;
 import com.fc.exception.InvalidRatingException;
 import com.fc.exception.RecommendAlgorithmException;
 import com.fc.exception.UserNoViewingDataException;
 import com.fc.mapper.user.UserMovieRatingMapper;
+import com.fc.service.agent.AgentPreferenceService;
 import com.fc.service.user.AiRecommendService;
+import com.fc.service.user.MovieSimilarityService;
 import com.fc.vo.movie.ai.MovieRecommendVO;
 import com.fc.vo.movie.ai.MovieSimpleVO;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +24,9 @@ import java.util.stream.Collectors;
 
 /**
  * AI电影推荐服务实现
+ *
+ * 观影历史推荐基于物品的协同过滤：电影相似度矩阵由 MovieSimilarityJob 在后台预计算，
+ * 请求时只按用户看过电影的相似电影累加分数
  */
 @Service
 @Slf4j
@@ -44,6 +50,12 @@ public class AiRecommendServiceImpl implements AiRecommendService {
     @Autowired
     private RagRecommendServiceImpl ragRecommendServiceImpl;
     
+    @Autowired
+    private AgentPreferenceService agentPreferenceService;
+    
+    @Autowired
+    private MovieSimilarityService movieSimilarityService;
+    
     /**
      * 基于用户观影历史生成电影推荐
      * @param userId 用户ID
@@ -58,37 +70,29 @@ public class AiRecommendServiceImpl implements AiRecommendService {
         // 校验观影数据
         validateViewingData(viewedMovies);
         
-        // 计算电影相似度
-        Map<Long, BigDecimal> similarityMap = calculateMovieSimilarity(viewedMovies);
-        
-        // 过滤已观影电影
-        Set<Long> viewedMovieIds = viewedMovies.stream()
-                .map(MovieViewedDTO::getMovieId)
-                .collect(Collectors.toSet());
+        // 按电影相似度选出Top-K（已排除看过的电影）
+        TopKSelector selector = selectTopMovies(viewedMovies);
         
-        // 排序并获取推荐电影
-        List<Map.Entry<Long, BigDecimal>> sortedEntries = similarityMap.entrySet().stream()
-                .filter(entry -> !viewedMovieIds.contains(entry.getKey()))
-                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                .limit(maxRecommendNum)
-                .collect(Collectors.toList());
-        
-        if (sortedEntries.isEmpty()) {
+        if (selector.size() == 0) {
             throw new RecommendAlgorithmException("无法生成推荐结果");
         }
         
         // 批量查询电影信息
-        List<Long> recommendMovieIds = sortedEntries.stream()
-                .map(Map.Entry::getKey)
+        List<Long> recommendMovieIds = Arrays.stream(selector.ids())
+                .boxed()
                 .collect(Collectors.toList());
         
-        List<MovieSimpleVO> recommendMovies = userMovieRatingMapper.batchGetMovieInfo(recommendMovieIds);
+        List<MovieSimpleVO> recommendMovies = sortByIds(
+                userMovieRatingMapper.batchGetMovieInfo(recommendMovieIds), recommendMovieIds);
+        
+        // 按用户在AI助手对话中表现出的偏好调整顺序
+        recommendMovies = agentPreferenceService.rankByProfile(userId, recommendMovies);
         
         // 生成推荐理由
         String recommendReason = buildRecommendReason(recommendMovies, viewedMovies);
         
         // 计算置信度
-        BigDecimal confidence = calculateConfidence(sortedEntries);
+        BigDecimal confidence = calculateConfidence(selector.scores());
         
         log.info("推荐结果生成完成：userId={}, 推荐电影数量={}", userId, recommendMovies.size());
         
@@ -124,63 +128,45 @@ public class AiRecommendServiceImpl implements AiRecommendService {
             throw new UserNoViewingDataException("用户观影数据不足，至少需要" + minViewNum + "条观影记录");
         }
         
-        // 校验评分范围
+        // 校验评分范围（看过但未评分的记录评分为空）
         for (MovieViewedDTO viewedMovie : viewedMovies) {
             Integer rating = viewedMovie.getRating();
-            if (rating < 1 || rating > 5) {
+            if (rating != null && (rating < 1 || rating > 5)) {
                 throw new InvalidRatingException("评分超出有效范围，应为1-5分");
             }
         }
     }
     
     /**
-     * 计算电影相似度
+     * 按电影相似度矩阵为观影记录打分，只保留得分最高的 maxRecommendNum 部未观看电影
      */
-    public Map<Long, BigDecimal> calculateMovieSimilarity(List<MovieViewedDTO> viewedMovies) {
-        Map<Long, BigDecimal> similarityMap = new HashMap<>();
-        
-        // 获取所有电影ID
-        List<Long> allMovieIds = userMovieRatingMapper.getAllMovieIds();
-        
-        // 计算与每个电影的相似度
-        for (Long movieId : allMovieIds) {
-            BigDecimal similarity = calculateSimilarity(movieId, viewedMovies);
-            similarityMap.put(movieId, similarity);
+    public TopKSelector selectTopMovies(List<MovieViewedDTO> viewedMovies) {
+        TopKSelector selector = movieSimilarityService.recommend(viewedMovies, maxRecommendNum);
+        if (selector == null) {
+            throw new RecommendAlgorithmException("推荐模型尚未就绪，请稍后重试");
         }
-        
-        return similarityMap;
+        return selector;
     }
     
     /**
-     * 计算单个电影的相似度
+     * 批量查询的结果按推荐顺序排列
      */
-    private BigDecimal calculateSimilarity(Long targetMovieId, List<MovieViewedDTO> viewedMovies) {
-        // 简化的余弦相似度计算
-        // 实际项目中可能需要更复杂的算法，考虑电影类型、演员、导演等因素
-        int numerator = 0;
-        int denominator = 0;
-        
-        for (MovieViewedDTO viewedMovie : viewedMovies) {
-            // 这里使用简单的评分相似度计算
-            // 实际项目中应根据电影特征计算相似度
-            numerator += viewedMovie.getRating();
-            denominator += viewedMovie.getRating() * viewedMovie.getRating();
-        }
-        
-        if (denominator == 0) {
-            return BigDecimal.ZERO;
-        }
-        
-        double similarity = (double) numerator / Math.sqrt(denominator);
-        return BigDecimal.valueOf(similarity).setScale(3, RoundingMode.HALF_UP);
+    private List<MovieSimpleVO> sortByIds(List<MovieSimpleVO> movies, List<Long> orderedIds) {
+        Map<Long, MovieSimpleVO> movieById = movies.stream()
+                .collect(Collectors.toMap(MovieSimpleVO::getMovieId, movie -> movie, (a, b) -> a));
+        return orderedIds.stream()
+                .map(movieById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
     
     /**
      * 生成推荐理由
      */
     public String buildRecommendReason(List<MovieSimpleVO> recommendMovies, List<MovieViewedDTO> viewedMovies) {
-        // 找出用户评分最高的电影
+        // 找出用户评分最高的电影（看过但未评分的记录评分为 null，不参与比较）
         Optional<MovieViewedDTO> highestRatedMovie = viewedMovies.stream()
+                .filter(movie -> movie.getRating() != null)
                 .max(Comparator.comparing(MovieViewedDTO::getRating));
         
         if (!highestRatedMovie.isPresent()) {
@@ -195,22 +181,17 @@ public class AiRecommendServiceImpl implements AiRecommendService {
     /**
      * 计算置信度
      */
-    private BigDecimal calculateConfidence(List<Map.Entry<Long, BigDecimal>> sortedEntries) {
-        if (sortedEntries.isEmpty()) {
+    private BigDecimal calculateConfidence(double[] scores) {
+        if (scores.length == 0) {
             return BigDecimal.ZERO;
         }
         
         // 计算平均相似度作为置信度
-        BigDecimal totalSimilarity = sortedEntries.stream()
-                .map(Map.Entry::getValue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal confidence = totalSimilarity.divide(
-                BigDecimal.valueOf(sortedEntries.size()), 
-                4, 
-                RoundingMode.HALF_UP
-        );
+        double totalSimilarity = 0.0;
+        for (double score : scores) {
+            totalSimilarity += score;
+        }
         
-        return confidence;
+        return BigDecimal.valueOf(totalSimilarity / scores.length).setScale(4, RoundingMode.HALF_UP);
     }
 }
@@ -5,7 +5,9 @@ import com.fc.context.BaseContext;
 import com.fc.dto.ai.MovieCommentSummaryDTO;
 import com.fc.entity.AiRecord;
 import com.fc.entity.Movie;
+import com.fc.entity.Post;
 import com.fc.enums.PostTypeEnum;
+import com.fc.exception.AiServiceException;
 import com.fc.exception.MovieNotFoundException;
 import com.fc.mapper.admin.MovieAdminMapper;
 import com.fc.mapper.user.AiRecordMapper;
@@ -13,15 +15,32 @@ import com.fc.mapper.user.PostUserMapper;
 import com.fc.service.user.AiService;
 import com.fc.utils.OllamaUtil;
 import com.fc.vo.ai.MovieCommentSummaryVO;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.TypedJsonJacksonCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -39,44 +58,371 @@ public class AiServiceImpl implements AiService {
     @Autowired
     private OllamaUtil ollamaUtil;
 
+    @Autowired
+    private CommentSampleSelector commentSampleSelector;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    @Qualifier("aiSummaryExecutor")
+    private Executor aiSummaryExecutor;
+
     @Value("${ai.comment-analysis.sample-size:50}")
     private Integer sampleSize;
 
     @Value("${ai.summary.update-threshold:3}")
     private Integer defaultUpdateThreshold;
 
-    @Value("${ai.summary.cache-minutes:30}")
-    private Integer cacheMinutes;
+    @Value("${ai.summary.wait-seconds:120}")
+    private Long summaryWaitSeconds;
+
+    @Value("${ai.summary.lock-lease-seconds:180}")
+    private Long summaryLockLeaseSeconds;
+
+    @Value("${ai.summary.redis-cache-hours:24}")
+    private Long summaryCacheHours;
+
+    @Value("${ai.summary.refresh.max-jobs-per-run:20}")
+    private Integer refreshMaxJobsPerRun;
+
+    @Value("${ai.summary.refresh.max-concurrent-jobs:2}")
+    private Integer refreshMaxConcurrentJobs;
+
+    @Value("${ai.summary.refresh.new-sample-size:30}")
+    private Integer refreshNewSampleSize;
+
+    @Value("${ai.summary.refresh.await-minutes:20}")
+    private Long refreshAwaitMinutes;
+
+    private static final String SUMMARY_LOCK_PREFIX = "lock:ai:summary:";
+    private static final String SUMMARY_CACHE_PREFIX = "ai:summary:latest:";
+    // 待刷新的总结：movieId:postType -> 最近发帖的用户ID
+    private static final String SUMMARY_PENDING_KEY = "ai:summary:pending";
+    // 上次刷新以来的总结访问量：movieId:postType -> 访问次数
+    private static final String SUMMARY_TRAFFIC_KEY = "ai:summary:traffic";
+    private static final Codec AI_RECORD_CODEC = new TypedJsonJacksonCodec(AiRecord.class,
+            new ObjectMapper().registerModule(new JavaTimeModule())
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+
+    // 本实例内进行中的总结生成，key 为 movieId:postType
+    private final ConcurrentHashMap<String, CompletableFuture<AiRecord>> summaryFlights = new ConcurrentHashMap<>();
 
     /**
-     * 生成电影评论AI总结
+     * 获取电影评论AI总结
+     * 直接返回最近一次保存的总结，总结由后台任务按新增帖子刷新；只有强制刷新时才在请求中生成
+     * 同一 (movieId, postType) 的并发强制刷新共享一次生成，生成失败时返回备用总结（不落库）
      * @param summaryDTO
      * @return
      */
     @Override
-    @Transactional
     public MovieCommentSummaryVO generateMovieCommentSummary(MovieCommentSummaryDTO summaryDTO) {
         Long userId = BaseContext.getCurrentId();
+        SummaryPlan plan = planSummary(userId, summaryDTO, false);
+        if (plan.ready != null) {
+            return plan.ready;
+        }
+
+        try {
+            AiRecord aiRecord = generateSummaryShared(userId, plan, summaryDTO, null)
+                    .get(summaryWaitSeconds, TimeUnit.SECONDS);
+            return buildSummaryVO(aiRecord, plan.movie);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("等待AI总结生成时被中断: movieId={}, postType={}", plan.movieId, plan.postType);
+        } catch (Exception e) {
+            log.error("AI总结生成失败，使用备用总结: postType={}", plan.postType, e);
+        }
+        return buildFallbackSummaryVO(plan);
+    }
+
+    /**
+     * 流式生成电影评论AI总结
+     * 已有总结且非强制刷新时直接回调 onSummary；电影尚无总结或强制刷新时流式生成，逐段回调 onToken
+     * 生成完成后才写入 ai_record，中途失败不落库；推送失败（如客户端断开）只停止推送，生成照常完成并落库
+     * 已有相同总结正在生成时加入该次生成，只在结束时收到 onSummary
+     * @param summaryDTO
+     * @param listener
+     */
+    @Override
+    public void streamMovieCommentSummary(MovieCommentSummaryDTO summaryDTO, SummaryStreamListener listener) {
+        Long userId = BaseContext.getCurrentId();
+        SummaryPlan plan = planSummary(userId, summaryDTO, true);
+        if (plan.ready != null) {
+            listener.onSummary(plan.ready);
+            return;
+        }
+
+        // 发起者断开后只停止向其推送，生成继续进行，加入的请求仍能拿到结果
+        AtomicBoolean detached = new AtomicBoolean(false);
+        generateSummaryShared(userId, plan, summaryDTO, token -> sendToken(listener, token, detached))
+                .whenComplete((aiRecord, error) -> {
+                    if (error != null) {
+                        log.error("AI总结流式生成失败: movieId={}, postType={}", plan.movieId, plan.postType, error);
+                        listener.onError(generateFallbackSummary(plan.movie.getTitle(), plan.sampleCount, plan.postType));
+                        return;
+                    }
+                    listener.onSummary(buildSummaryVO(aiRecord, plan.movie));
+                });
+    }
+
+    /**
+     * 帖子发布后标记对应电影的AI总结待刷新（二创区不生成总结）
+     * @param movieId
+     * @param postType
+     * @param userId
+     */
+    @Override
+    public void onPostPublished(Long movieId, Integer postType, Long userId) {
+        if (!isSummarizable(postType)) {
+            return;
+        }
+        markPending(summaryKey(movieId, postType), userId);
+    }
+
+    /**
+     * 后台刷新待刷新的AI总结
+     * 1. 新增帖子数（当前帖子数 - 上次总结时的帖子数）达到阈值的总结才刷新
+     * 2. 按上次刷新以来的访问量降序，每轮最多刷新 max-jobs-per-run 个
+     * 3. 同时进行的模型调用不超过 max-concurrent-jobs 个
+     * 4. 已有总结时只取其后新增的评论，让模型在上一版总结基础上更新
+     * @return 成功刷新的总结数量
+     */
+    @Override
+    public int refreshPendingSummaries() {
+        RMap<String, Long> pending = redissonClient.getMap(SUMMARY_PENDING_KEY);
+        Map<String, Long> pendingEntries = pending.readAllMap();
+        if (pendingEntries.isEmpty()) {
+            return 0;
+        }
+
+        // 1. 筛选新增帖子数达到阈值的总结
+        RScoredSortedSet<String> traffic = redissonClient.getScoredSortedSet(SUMMARY_TRAFFIC_KEY);
+        List<RefreshCandidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : pendingEntries.entrySet()) {
+            String[] parts = entry.getKey().split(":");
+            RefreshCandidate candidate = new RefreshCandidate();
+            candidate.key = entry.getKey();
+            candidate.movieId = Long.valueOf(parts[0]);
+            candidate.postType = Integer.valueOf(parts[1]);
+            candidate.previous = getLatestSummary(candidate.movieId, candidate.postType);
+            candidate.postCount = getCurrentPostCount(candidate.movieId, candidate.postType);
+            candidate.threshold = candidate.previous != null && candidate.previous.getThreshold() != null
+                    ? candidate.previous.getThreshold() : defaultUpdateThreshold;
+            candidate.userId = candidate.previous != null ? candidate.previous.getUserId() : entry.getValue();
+
+            int basePostCount = candidate.previous != null ? candidate.previous.getPostCount() : 0;
+            int newPosts = candidate.postCount - basePostCount;
+            if (newPosts <= 0 || candidate.userId == null) {
+                // 没有新增帖子（例如帖子被删除），无需刷新
+                pending.fastRemove(candidate.key);
+                continue;
+            }
+            if (newPosts < candidate.threshold) {
+                continue;
+            }
+            Double score = traffic.getScore(candidate.key);
+            candidate.traffic = score != null ? score : 0;
+            candidates.add(candidate);
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        // 2. 按访问量排序
+        candidates.sort(Comparator.comparingDouble((RefreshCandidate c) -> c.traffic).reversed());
+        List<RefreshCandidate> selected = candidates.subList(0, Math.min(refreshMaxJobsPerRun, candidates.size()));
+        log.info("开始后台刷新AI总结: 待刷新={}, 本轮={}", candidates.size(), selected.size());
+
+        // 3. 限制并发提交
+        Semaphore permits = new Semaphore(refreshMaxConcurrentJobs);
+        AtomicInteger refreshed = new AtomicInteger();
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+        try {
+            for (RefreshCandidate candidate : selected) {
+                permits.acquire();
+                CompletableFuture<Void> job;
+                try {
+                    job = refreshSummary(candidate)
+                            .handle((aiRecord, error) -> {
+                                if (error != null) {
+                                    log.error("后台刷新AI总结失败: movieId={}, postType={}",
+                                            candidate.movieId, candidate.postType, error);
+                                } else if (aiRecord != null) {
+                                    refreshed.incrementAndGet();
+                                    traffic.remove(candidate.key);
+                                    // 生成期间又有新帖子时保留标记，下一轮继续刷新
+                                    if (candidate.postCount.equals(getCurrentPostCount(candidate.movieId, candidate.postType))) {
+                                        pending.fastRemove(candidate.key);
+                                    }
+                                }
+                                return null;
+                            });
+                } catch (Exception e) {
+                    log.error("提交AI总结刷新任务失败: movieId={}, postType={}", candidate.movieId, candidate.postType, e);
+                    job = CompletableFuture.completedFuture(null);
+                }
+                job.whenComplete((v, error) -> permits.release());
+                jobs.add(job);
+            }
+            CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[0]))
+                    .get(refreshAwaitMinutes, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("后台刷新AI总结被中断");
+        } catch (TimeoutException e) {
+            log.warn("后台刷新AI总结等待超时，未完成的任务将在后台继续执行");
+        } catch (ExecutionException e) {
+            log.error("后台刷新AI总结失败", e);
+        }
+        return refreshed.get();
+    }
+
+    /**
+     * 刷新单个总结：已有总结时增量更新，否则全量采样生成
+     * @param candidate
+     * @return 已保存的AI记录；没有可用评论时为null
+     */
+    private CompletableFuture<AiRecord> refreshSummary(RefreshCandidate candidate) {
+        Movie movie = movieAdminMapper.getByMovieId(candidate.movieId);
+        if (movie == null) {
+            redissonClient.getMap(SUMMARY_PENDING_KEY).fastRemove(candidate.key);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        SummaryPlan plan = new SummaryPlan();
+        plan.plannedAt = LocalDateTime.now();
+        plan.movieId = candidate.movieId;
+        plan.postType = candidate.postType;
+        plan.updateThreshold = candidate.threshold;
+        plan.movie = movie;
+        plan.currentPostCount = candidate.postCount;
+        plan.previousSummary = candidate.previous;
+
+        List<String> commentSamples = candidate.previous != null
+                ? getNewCommentSamples(candidate.movieId, candidate.postType, candidate.previous.getCreateTime())
+                : getCommentSamplesForAnalysis(candidate.movieId, sampleSize, candidate.postType);
+        if (commentSamples.isEmpty()) {
+            log.info("没有可用于刷新AI总结的评论: movieId={}, postType={}", candidate.movieId, candidate.postType);
+            return CompletableFuture.completedFuture(null);
+        }
+        plan.samplesText = String.join("\n", commentSamples);
+        plan.sampleCount = commentSamples.size();
+
+        MovieCommentSummaryDTO summaryDTO = new MovieCommentSummaryDTO();
+        summaryDTO.setMovieId(candidate.movieId);
+        summaryDTO.setPostType(candidate.postType);
+        log.info("后台刷新AI总结: movieId={}, postType={}, 模式={}, 评论数={}, 访问量={}",
+                candidate.movieId, candidate.postType, candidate.previous != null ? "增量" : "全量",
+                plan.sampleCount, candidate.traffic);
+        return generateSummaryShared(candidate.userId, plan, summaryDTO, null);
+    }
+
+    /**
+     * 单飞生成AI总结
+     * - 本实例内：同一 (movieId, postType) 的并发请求共享同一个 future
+     * - 集群内：生成者持有 Redisson 锁，其他实例的生成者等待锁释放后先检查是否已有新总结，有则直接使用
+     * 只有真正调用模型的请求会收到 onToken 回调
+     * @param userId
+     * @param plan
+     * @param summaryDTO
+     * @param onToken 为空时非流式生成
+     * @return 已保存的AI记录
+     */
+    private CompletableFuture<AiRecord> generateSummaryShared(Long userId, SummaryPlan plan,
+                                                              MovieCommentSummaryDTO summaryDTO,
+                                                              Consumer<String> onToken) {
+        String flightKey = summaryKey(plan.movieId, plan.postType);
+        CompletableFuture<AiRecord> flight = new CompletableFuture<>();
+        CompletableFuture<AiRecord> existing = summaryFlights.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            log.info("加入进行中的AI总结生成: movieId={}, postType={}", plan.movieId, plan.postType);
+            return existing;
+        }
+        flight.whenComplete((aiRecord, error) -> summaryFlights.remove(flightKey, flight));
+
+        // 锁在回调线程中释放，使用独立的锁持有者ID而不是线程ID
+        RLock lock = redissonClient.getLock(SUMMARY_LOCK_PREFIX + flightKey);
+        long lockOwner = ThreadLocalRandom.current().nextLong();
+        AtomicBoolean locked = new AtomicBoolean(false);
+        lock.tryLockAsync(summaryWaitSeconds, summaryLockLeaseSeconds, TimeUnit.SECONDS, lockOwner)
+                .toCompletableFuture()
+                .thenComposeAsync(acquired -> {
+                    if (!acquired) {
+                        throw new AiServiceException("等待其他实例生成AI总结超时");
+                    }
+                    locked.set(true);
+
+                    // 等锁期间其他实例可能已经生成了新总结
+                    AiRecord latest = getLatestSummary(plan.movieId, plan.postType);
+                    if (latest != null && !latest.getCreateTime().isBefore(plan.plannedAt)) {
+                        log.info("使用其他实例刚生成的AI总结: recordId={}, postType={}", latest.getRecordId(), plan.postType);
+                        return CompletableFuture.completedFuture(latest);
+                    }
+
+                    CompletableFuture<String> text;
+                    if (onToken != null) {
+                        text = ollamaUtil.streamMovieCommentSummary(plan.movie.getTitle(), plan.samplesText,
+                                summaryDTO.getSummaryStyle(), summaryDTO.getMaxLength(), onToken);
+                    } else if (plan.previousSummary != null) {
+                        text = ollamaUtil.updateMovieCommentSummaryAsync(plan.movie.getTitle(),
+                                plan.previousSummary.getContent(), plan.samplesText, plan.sampleCount,
+                                summaryDTO.getSummaryStyle(), summaryDTO.getMaxLength());
+                    } else {
+                        text = ollamaUtil.generateMovieCommentSummaryAsync(plan.movie.getTitle(), plan.samplesText,
+                                summaryDTO.getSummaryStyle(), summaryDTO.getMaxLength());
+                    }
+                    return text.thenApplyAsync(aiSummary -> saveSummaryRecord(userId, plan, aiSummary),
+                            aiSummaryExecutor);
+                }, aiSummaryExecutor)
+                .whenComplete((aiRecord, error) -> {
+                    if (locked.get()) {
+                        lock.unlockAsync(lockOwner);
+                    }
+                    if (error != null) {
+                        flight.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    } else {
+                        flight.complete(aiRecord);
+                    }
+                });
+        return flight;
+    }
+
+    /**
+     * 判断是否需要在请求中生成新总结：不需要时 plan.ready 为直接返回的结果，需要时携带评论样本
+     * @param userId
+     * @param summaryDTO
+     * @param generateIfMissing 电影尚无总结时是否在请求中生成（否则交给后台任务）
+     * @return
+     */
+    private SummaryPlan planSummary(Long userId, MovieCommentSummaryDTO summaryDTO, boolean generateIfMissing) {
+        SummaryPlan plan = new SummaryPlan();
+        plan.plannedAt = LocalDateTime.now();
         Long movieId = summaryDTO.getMovieId();
         Integer postType = summaryDTO.getPostType();
         Integer updateThreshold = summaryDTO.getUpdateThreshold() != null ?
                 summaryDTO.getUpdateThreshold() : defaultUpdateThreshold;
+        plan.movieId = movieId;
+        plan.postType = postType;
+        plan.updateThreshold = updateThreshold;
 
         log.info("智能生成电影评论AI总结: userId={}, movieId={}, postType={}, threshold={}",
                 userId, movieId, postType, updateThreshold);
 
-        // 1. 校验postType，仅允许1、2类型，其他类型直接返回提示
-        if (postType != null && (postType == 3 || postType == 4)) {
-            log.info("二创区帖子不生成AI总结: postType={}", postType);
+        // 1. 校验postType，仅允许1、2类型，其他类型直接返回提示（与 onPostPublished 使用同一判断）
+        if (!isSummarizable(postType)) {
+            log.info("该帖子类型不生成AI总结: postType={}", postType);
             Movie movie = movieAdminMapper.getByMovieId(movieId);
             if (movie == null) {
                 throw new MovieNotFoundException(MessageConstant.MOVIE_NOT_FOUND);
             }
-            return MovieCommentSummaryVO.builder()
+            plan.ready = MovieCommentSummaryVO.builder()
                     .movieId(movieId)
                     .movieTitle(movie.getTitle())
                     .createTime(LocalDateTime.now())
                     .build();
+            return plan;
         }
 
         // 2. 验证电影是否存在
@@ -84,33 +430,57 @@ public class AiServiceImpl implements AiService {
         if (movie == null) {
             throw new MovieNotFoundException(MessageConstant.MOVIE_NOT_FOUND);
         }
+        plan.movie = movie;
 
         // 3. 获取当前电影帖子数量
         Integer currentPostCount = getCurrentPostCount(movieId, postType);
+        plan.currentPostCount = currentPostCount;
 
         // 4. 检查帖子数量是否足够生成AI总结
         if (currentPostCount == 0 || currentPostCount < updateThreshold) {
             log.info("帖子数量不足，无法生成AI总结: movieId={}, postType={}, currentPostCount={}, threshold={}",
                     movieId, postType, currentPostCount, updateThreshold);
-            return buildInsufficientPostsSummary(movie, currentPostCount, updateThreshold, postType);
+            plan.ready = buildInsufficientPostsSummary(movie, currentPostCount, updateThreshold, postType);
+            return plan;
         }
 
-        // 5. 检查强制刷新标志
+        // 5. 记录访问量，后台刷新按访问量排序
+        String summaryKey = summaryKey(movieId, postType);
+        redissonClient.getScoredSortedSet(SUMMARY_TRAFFIC_KEY).addScoreAsync(summaryKey, 1);
+
+        // 6. 非强制刷新时直接返回最近的总结，新增帖子达到阈值时交给后台任务刷新
         if (Boolean.TRUE.equals(summaryDTO.getForceRefresh())) {
             log.info("强制刷新AI总结: movieId={}, postType={}", movieId, postType);
-            return generateNewSummary(userId, movieId, movie, summaryDTO, currentPostCount, updateThreshold, postType);
-        }
-
-        // 6. 检查是否有可用的现有总结
-        AiRecord cachedSummary = getAvailableSummary(movieId, currentPostCount, updateThreshold, postType);
-        if (cachedSummary != null) {
-            log.info("使用缓存的AI总结: recordId={}, postType={}, 当前帖子数={}, 缓存帖子数={}",
-                    cachedSummary.getRecordId(), postType, currentPostCount, cachedSummary.getPostCount());
-            return buildSummaryVO(cachedSummary, movie);
+        } else {
+            AiRecord latestSummary = getLatestSummary(movieId, postType);
+            if (latestSummary != null) {
+                if (currentPostCount - latestSummary.getPostCount() >= updateThreshold) {
+                    markPending(summaryKey, latestSummary.getUserId());
+                }
+                plan.ready = buildSummaryVO(latestSummary, movie);
+                return plan;
+            }
+            if (!generateIfMissing) {
+                log.info("电影暂无AI总结，交给后台任务生成: movieId={}, postType={}", movieId, postType);
+                markPending(summaryKey, userId);
+                plan.ready = buildGeneratingSummary(movie, currentPostCount, postType);
+                return plan;
+            }
         }
 
         // 7. 需要重新生成总结
-        return generateNewSummary(userId, movieId, movie, summaryDTO, currentPostCount, updateThreshold, postType);
+        log.info("生成新的AI总结: movieId={}, postType={}, 当前帖子数={}",
+                movieId, postType, currentPostCount);
+
+        // 获取评论样本进行分析
+        List<String> commentSamples = getCommentSamplesForAnalysis(movieId, sampleSize, postType);
+        if (commentSamples.isEmpty()) {
+            plan.ready = buildEmptySummary(movie, currentPostCount, postType);
+            return plan;
+        }
+        plan.samplesText = String.join("\n", commentSamples);
+        plan.sampleCount = commentSamples.size();
+        return plan;
     }
 
     /**
@@ -131,132 +501,176 @@ public class AiServiceImpl implements AiService {
     }
 
     /**
-     * 获取可用的AI总结（检查缓存条件）
-     * @param movieId
-     * @param currentPostCount
-     * @param updateThreshold
+     * 保存新的AI记录（更新版本号）
+     * @param userId
+     * @param plan
+     * @param aiSummary
      * @return
      */
-    private AiRecord getAvailableSummary(Long movieId, Integer currentPostCount, Integer updateThreshold, Integer postType) {
-        try {
-            // 查询最近的AI总结记录
-            AiRecord latestSummary = aiRecordMapper.getLatestMovieSummaryByPostType(movieId, postType);
-            if (latestSummary == null) {
-                return null;
-            }
-
-            // 检查时间窗口（30分钟内直接使用）
-            if (isWithinCacheTime(latestSummary.getCreateTime())) {
-                log.info("使用时间窗口内的AI总结");
-                return latestSummary;
-            }
+    private AiRecord saveSummaryRecord(Long userId, SummaryPlan plan, String aiSummary) {
+        AiRecord latestSummary = getLatestSummary(plan.movieId, plan.postType);
+        Integer newVersion = latestSummary != null ? latestSummary.getVersion() + 1 : 1;
 
-            // 如果当前帖子数不是阈值的倍数，且与上次生成时的帖子数相同，则使用缓存
-            boolean isThresholdMultiple = currentPostCount % updateThreshold == 0;
-            boolean postCountUnchanged = currentPostCount.equals(latestSummary.getPostCount());
+        AiRecord aiRecord = AiRecord.builder()
+                .userId(userId)
+                .movieId(plan.movieId)
+                .type(2) // 影评总结
+                .summaryType(1) // 电影评论总结
+                .content(aiSummary)
+                .postCount(plan.currentPostCount)
+                .version(newVersion)
+                .threshold(plan.updateThreshold)
+                .postType(plan.postType)
+                .createTime(LocalDateTime.now())
+                .build();
 
-            if (!isThresholdMultiple || postCountUnchanged) {
-                log.info("帖子总数{}不是阈值{}的倍数，使用现有总结: postType={}",
-                        currentPostCount, updateThreshold, postType);
-                return latestSummary;
-            }
+        aiRecordMapper.insert(aiRecord);
+        cacheLatestSummary(aiRecord);
 
-            return null;
+        log.info("新的AI总结生成成功: recordId={}, version={}, postCount={}, postType={}",
+                aiRecord.getRecordId(), newVersion, plan.currentPostCount, plan.postType);
+        return aiRecord;
+    }
 
-        } catch (Exception e) {
-            log.error("获取可用总结失败", e);
-            return null;
+    /**
+     * 推送一段总结文本；推送失败时标记为已分离，之后的片段不再推送
+     * 不向上游抛出异常：同一次生成可能有其他请求在等待结果，不能因为发起者断开而失败
+     * @param listener
+     * @param token
+     * @param detached
+     */
+    private void sendToken(SummaryStreamListener listener, String token, AtomicBoolean detached) {
+        if (detached.get()) {
+            return;
+        }
+        try {
+            listener.onToken(token);
+        } catch (RuntimeException e) {
+            if (detached.compareAndSet(false, true)) {
+                log.info("AI总结流推送失败，继续生成供其他请求使用: {}", e.getMessage());
+            }
         }
     }
 
     /**
-     * 检查是否在时间窗口内
-     * @param createTime
-     * @return
+     * 总结生成计划
      */
-    private boolean isWithinCacheTime(LocalDateTime createTime) {
-        return createTime.isAfter(LocalDateTime.now().minusMinutes(cacheMinutes));
+    private static class SummaryPlan {
+        private Long movieId;
+        private Integer postType;
+        private Integer updateThreshold;
+        private Movie movie;
+        private Integer currentPostCount;
+        private String samplesText;
+        private int sampleCount;
+        private LocalDateTime plannedAt;
+        // 增量更新时的上一版总结，samplesText 只包含其后的新增评论
+        private AiRecord previousSummary;
+        // 不需要生成新总结时直接返回的结果
+        private MovieCommentSummaryVO ready;
     }
 
     /**
-     * 生成新的AI总结
-     * @param userId
+     * 获取最新的AI总结：先读Redis缓存，未命中时查询数据库并回填
      * @param movieId
-     * @param movie
-     * @param summaryDTO
-     * @param currentPostCount
-     * @param updateThreshold
+     * @param postType
      * @return
      */
-    private MovieCommentSummaryVO generateNewSummary(Long userId, Long movieId, Movie movie,
-                                                     MovieCommentSummaryDTO summaryDTO,
-                                                     Integer currentPostCount, Integer updateThreshold,
-                                                     Integer postType) {
-        log.info("生成新的AI总结: movieId={}, postType={}, 当前帖子数={}",
-                movieId, postType, currentPostCount);
-
-        // 检查帖子数是否是阈值的倍数
-        if (currentPostCount % updateThreshold != 0) {
-            log.info("帖子总数{}不是阈值{}的倍数，不生成新总结: postType={}",
-                    currentPostCount, updateThreshold, postType);
-
-            // 返回最近的总结（如果有），否则返回提示
-            AiRecord latestSummary = aiRecordMapper.getLatestMovieSummaryByPostType(movieId, postType);
-            if (latestSummary != null) {
-                return buildSummaryVO(latestSummary, movie);
-            } else {
-                return buildInsufficientPostsSummary(movie, currentPostCount, updateThreshold, postType);
+    private AiRecord getLatestSummary(Long movieId, Integer postType) {
+        RBucket<AiRecord> bucket = latestSummaryBucket(movieId, postType);
+        try {
+            AiRecord cached = bucket.get();
+            if (cached != null) {
+                return cached;
             }
+        } catch (Exception e) {
+            log.warn("读取AI总结缓存失败: movieId={}, postType={}, error={}", movieId, postType, e.getMessage());
         }
 
-        // 1. 获取评论样本进行分析
-        List<String> commentSamples = getCommentSamplesForAnalysis(movieId, sampleSize, postType);
-        if (commentSamples.isEmpty()) {
-            return buildEmptySummary(movie, currentPostCount, postType);
+        AiRecord latest = aiRecordMapper.getLatestMovieSummaryByPostType(movieId, postType);
+        if (latest != null) {
+            cacheLatestSummary(latest);
         }
+        return latest;
+    }
 
-        String samplesText = String.join("\n", commentSamples);
-
-        // 2. 生成AI总结
-        String aiSummary;
+    /**
+     * 缓存最新的AI总结
+     * @param aiRecord
+     */
+    private void cacheLatestSummary(AiRecord aiRecord) {
         try {
-            aiSummary = ollamaUtil.generateMovieCommentSummary(
-                    movie.getTitle(), samplesText,
-                    summaryDTO.getSummaryStyle(), summaryDTO.getMaxLength());
+            latestSummaryBucket(aiRecord.getMovieId(), aiRecord.getPostType())
+                    .set(aiRecord, Duration.ofHours(summaryCacheHours));
         } catch (Exception e) {
-            log.error("AI总结生成失败，使用备用总结: postType={}", postType, e);
-            aiSummary = generateFallbackSummary(movie.getTitle(), commentSamples.size(), postType);
+            log.warn("写入AI总结缓存失败: recordId={}, error={}", aiRecord.getRecordId(), e.getMessage());
         }
+    }
 
+    private RBucket<AiRecord> latestSummaryBucket(Long movieId, Integer postType) {
+        return redissonClient.getBucket(SUMMARY_CACHE_PREFIX + summaryKey(movieId, postType), AI_RECORD_CODEC);
+    }
 
-        // 3. 保存新的AI记录（更新版本号）
-        AiRecord latestSummary = aiRecordMapper.getLatestMovieSummaryByPostType(movieId, postType);
-        Integer newVersion = latestSummary != null ? latestSummary.getVersion() + 1 : 1;
-
-        AiRecord aiRecord = AiRecord.builder()
-                .userId(userId)
-                .movieId(movieId)
-                .type(2) // 影评总结
-                .summaryType(1) // 电影评论总结
-                .content(aiSummary)
-                .postCount(currentPostCount)
-                .version(newVersion)
-                .threshold(updateThreshold)
-                .postType(postType)
-                .createTime(LocalDateTime.now())
-                .build();
+    private String summaryKey(Long movieId, Integer postType) {
+        return movieId + ":" + postType;
+    }
 
-        aiRecordMapper.insert(aiRecord);
+    /**
+     * 是否为该帖子类型生成AI总结：二创区不生成总结
+     * @param postType
+     * @return
+     */
+    private static boolean isSummarizable(Integer postType) {
+        return postType != null && !PostTypeEnum.isCreative(postType);
+    }
 
-        log.info("新的AI总结生成成功: recordId={}, version={}, postCount={}, postType={}",
-                aiRecord.getRecordId(), newVersion, currentPostCount, summaryDTO.getPostType());
+    /**
+     * 标记总结待刷新，已标记时保留原有的用户ID
+     * @param summaryKey
+     * @param userId
+     */
+    private void markPending(String summaryKey, Long userId) {
+        try {
+            RMap<String, Long> pending = redissonClient.getMap(SUMMARY_PENDING_KEY);
+            if (userId != null) {
+                pending.fastPutIfAbsent(summaryKey, userId);
+            }
+        } catch (Exception e) {
+            log.warn("标记AI总结待刷新失败: key={}, error={}", summaryKey, e.getMessage());
+        }
+    }
 
-        return buildSummaryVO(aiRecord, movie);
+    /**
+     * 后台刷新候选
+     */
+    private static class RefreshCandidate {
+        private String key;
+        private Long movieId;
+        private Integer postType;
+        private Long userId;
+        private Integer postCount;
+        private Integer threshold;
+        private AiRecord previous;
+        private double traffic;
     }
 
+    /**
+     * 生成失败时的备用总结（不落库）
+     * @param plan
+     * @return
+     */
+    private MovieCommentSummaryVO buildFallbackSummaryVO(SummaryPlan plan) {
+        return MovieCommentSummaryVO.builder()
+                .movieId(plan.movieId)
+                .movieTitle(plan.movie.getTitle())
+                .summaryContent(generateFallbackSummary(plan.movie.getTitle(), plan.sampleCount, plan.postType))
+                .summaryStyle(1)
+                .createTime(LocalDateTime.now())
+                .build();
+    }
 
     /**
-     * 获取电影的评论样本用于AI分析
+     * 获取电影的评论样本用于AI分析（从点赞数靠前的候选评论中去重、多样性采样并截断）
      * @param movieId
      * @param sampleSize
      * @param postType 帖子类型筛选
@@ -265,7 +679,9 @@ public class AiServiceImpl implements AiService {
     private List<String> getCommentSamplesForAnalysis(Long movieId, Integer sampleSize, Integer postType) {
         try {
             // 根据帖子类型构建查询条件
-            return postUserMapper.getCommentSamplesByPostType(movieId, sampleSize, postType);
+            List<Post> candidates = postUserMapper.getCommentCandidatesByPostType(movieId, postType,
+                    Math.max(sampleSize, commentSampleSelector.getCandidatePoolSize()));
+            return commentSampleSelector.select(candidates, sampleSize);
 
         } catch (Exception e) {
             log.error("获取评论样本失败: movieId={}", movieId, e);
@@ -273,6 +689,24 @@ public class AiServiceImpl implements AiService {
         }
     }
 
+    /**
+     * 获取上次总结之后新增的评论样本
+     * @param movieId
+     * @param postType
+     * @param since 上次总结的生成时间
+     * @return
+     */
+    private List<String> getNewCommentSamples(Long movieId, Integer postType, LocalDateTime since) {
+        try {
+            List<Post> candidates = postUserMapper.getCommentCandidatesSince(movieId, postType, since,
+                    Math.max(refreshNewSampleSize, commentSampleSelector.getCandidatePoolSize()));
+            return commentSampleSelector.select(candidates, refreshNewSampleSize);
+        } catch (Exception e) {
+            log.error("获取新增评论样本失败: movieId={}", movieId, e);
+            return new ArrayList<>();
+        }
+    }
+
     /**
      * 生成备用总结
      * @param movieTitle
@@ -330,6 +764,27 @@ public class AiServiceImpl implements AiService {
                 .build();
     }
 
+    /**
+     * 构建总结生成中的提示（电影尚无总结，已交给后台任务生成）
+     * @param movie
+     * @param postCount
+     * @param postType
+     * @return
+     */
+    private MovieCommentSummaryVO buildGeneratingSummary(Movie movie, Integer postCount, Integer postType) {
+        String message = String.format("电影《%s》的%s帖子AI总结正在生成中（当前共有%d条帖子），请稍后再来查看。",
+                movie.getTitle(), getPostTypeDescription(postType), postCount);
+
+        // 不存入数据库，直接构建VO返回
+        return MovieCommentSummaryVO.builder()
+                .movieId(movie.getMovieId())
+                .movieTitle(movie.getTitle())
+                .summaryContent(message)
+                .summaryStyle(1)
+                .createTime(LocalDateTime.now())
+                .build();
+    }
+
     /**
      * 构建空数据总结
      * @param movie
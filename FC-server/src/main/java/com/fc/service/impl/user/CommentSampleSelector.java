@@ -0,0 +1,208 @@
+package com.fc.service.impl.user;
+
+import com.fc.entity.Post;
+import com.fc.utils.EmbeddingCache;
+import com.fc.utils.OllamaUtil;
+import com.fc.utils.TokenUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * AI总结评论采样
+ *
+ * 从按点赞数排序的候选评论中选出有代表性的样本，控制提示词长度：
+ * - 截断：每条评论按估算 token 数截断到 per-post-max-tokens
+ * - 去重：规范化后完全相同，或向量余弦相似度不低于 duplicate-similarity 的评论只保留一条
+ * - 多样性：按 MMR（最大边际相关）依次选取，相关度为点赞数的对数归一化，与已选样本越相似扣分越多
+ * - 总预算：样本估算 token 总数不超过 total-max-tokens
+ * 评论向量经 OllamaUtil 生成并由向量缓存按内容复用；向量服务不可用时退化为按点赞数顺序选取
+ */
+@Component
+@Slf4j
+public class CommentSampleSelector {
+
+    @Autowired
+    private OllamaUtil ollamaUtil;
+
+    @Value("${ai.summary.sampling.candidate-pool-size:150}")
+    private int candidatePoolSize;
+
+    @Value("${ai.summary.sampling.per-post-max-tokens:160}")
+    private int perPostMaxTokens;
+
+    @Value("${ai.summary.sampling.total-max-tokens:3000}")
+    private int totalMaxTokens;
+
+    @Value("${ai.summary.sampling.duplicate-similarity:0.92}")
+    private double duplicateSimilarity;
+
+    @Value("${ai.summary.sampling.relevance-weight:0.6}")
+    private double relevanceWeight;
+
+    /**
+     * 每次采样从数据库读取的候选评论数
+     */
+    public int getCandidatePoolSize() {
+        return candidatePoolSize;
+    }
+
+    /**
+     * 从候选评论中选出样本
+     * @param candidates 候选评论（需包含 content、likeCount）
+     * @param maxSamples 最多选取的样本数
+     * @return 截断后的评论文本，按选取顺序排列
+     */
+    public List<String> select(List<Post> candidates, int maxSamples) {
+        // 1. 规范化、去除完全重复、截断
+        List<String> texts = new ArrayList<>();
+        List<Integer> likeList = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Post post : candidates) {
+            String normalized = EmbeddingCache.normalize(post.getContent());
+            if (normalized.isEmpty() || !seen.add(normalized)) {
+                continue;
+            }
+            texts.add(TokenUtil.truncate(normalized, perPostMaxTokens));
+            likeList.add(post.getLikeCount() != null ? post.getLikeCount() : 0);
+        }
+        if (texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int[] tokens = new int[texts.size()];
+        int[] likes = new int[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            tokens[i] = TokenUtil.estimateTokens(texts.get(i));
+            likes[i] = likeList.get(i);
+        }
+
+        // 2. 生成评论向量（截断后的文本），失败时不做语义去重和多样性选取
+        float[][] vectors = null;
+        if (texts.size() > 1) {
+            try {
+                vectors = embed(texts);
+            } catch (Exception e) {
+                log.warn("生成评论向量失败，按点赞数顺序采样: {}", e.getMessage());
+            }
+        }
+
+        // 3. MMR 选取
+        List<Integer> selected = selectIndexes(tokens, likes, vectors, maxSamples,
+                totalMaxTokens, duplicateSimilarity, relevanceWeight);
+        List<String> samples = new ArrayList<>(selected.size());
+        int usedTokens = 0;
+        for (int index : selected) {
+            samples.add(texts.get(index));
+            usedTokens += tokens[index];
+        }
+        log.info("评论采样完成: 候选={}, 去重后={}, 选中={}, 估算token={}",
+                candidates.size(), texts.size(), samples.size(), usedTokens);
+        return samples;
+    }
+
+    /**
+     * MMR 选取样本下标
+     * 每轮选择 relevanceWeight * 相关度 - (1 - relevanceWeight) * 与已选样本的最大相似度 最高的候选；
+     * 与新选样本相似度不低于 duplicateSimilarity 的候选视为重复直接淘汰，超出剩余 token 预算的候选同样淘汰。
+     * 分数相同时下标小者优先（候选已按点赞数、时间排序）
+     * @param tokens 每条候选的估算 token 数
+     * @param likes 每条候选的点赞数
+     * @param vectors 单位化的候选向量，为空时只按相关度选取
+     * @return 选中的下标，按选取顺序排列
+     */
+    static List<Integer> selectIndexes(int[] tokens, int[] likes, float[][] vectors, int maxSamples,
+                                       int totalMaxTokens, double duplicateSimilarity, double relevanceWeight) {
+        int n = tokens.length;
+        double maxLogLikes = 0;
+        for (int like : likes) {
+            maxLogLikes = Math.max(maxLogLikes, Math.log1p(Math.max(like, 0)));
+        }
+        double[] relevance = new double[n];
+        for (int i = 0; i < n; i++) {
+            relevance[i] = maxLogLikes > 0 ? Math.log1p(Math.max(likes[i], 0)) / maxLogLikes : 1.0;
+        }
+
+        double[] maxSimilarity = new double[n];
+        boolean[] removed = new boolean[n];
+        List<Integer> selected = new ArrayList<>();
+        int usedTokens = 0;
+        while (selected.size() < maxSamples) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (removed[i]) {
+                    continue;
+                }
+                if (usedTokens + tokens[i] > totalMaxTokens) {
+                    removed[i] = true;
+                    continue;
+                }
+                double score = vectors == null ? relevance[i]
+                        : relevanceWeight * relevance[i] - (1 - relevanceWeight) * maxSimilarity[i];
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            removed[best] = true;
+            selected.add(best);
+            usedTokens += tokens[best];
+
+            if (vectors != null) {
+                for (int i = 0; i < n; i++) {
+                    if (removed[i]) {
+                        continue;
+                    }
+                    double similarity = dot(vectors[best], vectors[i]);
+                    if (similarity >= duplicateSimilarity) {
+                        removed[i] = true;
+                    } else if (similarity > maxSimilarity[i]) {
+                        maxSimilarity[i] = similarity;
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 批量生成评论向量并单位化
+     */
+    private float[][] embed(List<String> texts) {
+        List<List<Double>> embeddings = ollamaUtil.generateVectors(texts);
+        float[][] vectors = new float[embeddings.size()][];
+        for (int i = 0; i < embeddings.size(); i++) {
+            List<Double> embedding = embeddings.get(i);
+            float[] vector = new float[embedding.size()];
+            double norm = 0;
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = embedding.get(j).floatValue();
+                norm += vector[j] * vector[j];
+            }
+            norm = Math.sqrt(norm);
+            if (norm > 0) {
+                for (int j = 0; j < vector.length; j++) {
+                    vector[j] /= norm;
+                }
+            }
+            vectors[i] = vector;
+        }
+        return vectors;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,209 @@
+package com.fc.service.impl.user;
+
+import com.fc.agent.vector.ItemSimilarityMatrix;
+import com.fc.agent.vector.TopKSelector;
+import com.fc.dto.movie.ai.MovieInteractionDTO;
+import com.fc.dto.movie.ai.MovieViewedDTO;
+import com.fc.mapper.user.UserMovieRatingMapper;
+import com.fc.service.user.MovieSimilarityService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+
+/**
+ * 电影相似度服务实现
+ *
+ * - 重建：分批读取 movie_rating 和 user_movie_relation，转换为交互权重（评分/5、已看过、想看），
+ *   在独立的 ForkJoinPool 中并行计算 Top-K 电影相似度矩阵（ItemSimilarityMatrix），
+ *   序列化后写入 Redis movie:item-sim:matrix 并递增 movie:item-sim:version
+ * - 同步：各实例由定时任务按版本号检测重建结果（启动后立即执行一次），加载到本地的基本类型数组中
+ * - 推荐：只访问本地矩阵，按用户看过电影的邻居累加分数，不扫描全部电影；矩阵尚未加载时返回 null，
+ *   不在请求线程中读取 Redis
+ */
+@Service
+@Slf4j
+public class MovieSimilarityServiceImpl implements MovieSimilarityService {
+
+    private static final String MATRIX_KEY = "movie:item-sim:matrix";
+    private static final String VERSION_KEY = "movie:item-sim:version";
+
+    @Value("${fc.ai.recommend.movie.item-cf.top-k:50}")
+    private int topK;
+
+    @Value("${fc.ai.recommend.movie.item-cf.shrink:10}")
+    private float shrink;
+
+    @Value("${fc.ai.recommend.movie.item-cf.max-items-per-user:500}")
+    private int maxItemsPerUser;
+
+    @Value("${fc.ai.recommend.movie.item-cf.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${fc.ai.recommend.movie.item-cf.parallelism:0}")
+    private int parallelism;
+
+    @Value("${fc.ai.recommend.movie.item-cf.viewed-weight:0.6}")
+    private float viewedWeight;
+
+    @Value("${fc.ai.recommend.movie.item-cf.want-weight:0.4}")
+    private float wantWeight;
+
+    @Autowired
+    private UserMovieRatingMapper userMovieRatingMapper;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    // 本地相似度矩阵及其对应的版本号
+    private volatile ItemSimilarityMatrix matrix;
+    private volatile long loadedVersion = -1;
+
+    @Override
+    public int rebuild() {
+        long start = System.currentTimeMillis();
+        Interactions interactions = new Interactions();
+        loadInteractions(userMovieRatingMapper::listRatingsAfterId, interactions);
+        loadInteractions(userMovieRatingMapper::listRelationsAfterId, interactions);
+        if (interactions.size == 0) {
+            log.info("没有评分和观影记录，跳过电影相似度矩阵重建");
+            return 0;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        ItemSimilarityMatrix built;
+        try {
+            built = ItemSimilarityMatrix.build(interactions.users, interactions.items, interactions.weights,
+                    interactions.size, topK, shrink, maxItemsPerUser, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        byte[] data = built.toBytes();
+        matrixBucket().set(data);
+        long version = versionCounter().incrementAndGet();
+        matrix = built;
+        loadedVersion = version;
+        log.info("电影相似度矩阵重建完成：交互数={}, 电影数={}, 相似电影对数={}, 大小={}KB, 版本={}, 耗时={}ms",
+                interactions.size, built.itemCount(), built.pairCount(), data.length / 1024, version,
+                System.currentTimeMillis() - start);
+        return built.itemCount();
+    }
+
+    @Override
+    public void syncIfStale() {
+        long version = versionCounter().get();
+        if (version == loadedVersion) {
+            return;
+        }
+        synchronized (this) {
+            if (version == loadedVersion) {
+                return;
+            }
+            byte[] data = matrixBucket().get();
+            ItemSimilarityMatrix loaded = data != null ? ItemSimilarityMatrix.fromBytes(data) : null;
+            if (loaded == null) {
+                if (data != null) {
+                    log.warn("电影相似度矩阵格式不正确，等待下次重建: 版本={}", version);
+                }
+                return;
+            }
+            matrix = loaded;
+            loadedVersion = version;
+            log.info("加载电影相似度矩阵：电影数={}, 相似电影对数={}, 版本={}", loaded.itemCount(), loaded.pairCount(), version);
+        }
+    }
+
+    @Override
+    public TopKSelector recommend(List<MovieViewedDTO> viewedMovies, int k) {
+        ItemSimilarityMatrix current = matrix;
+        if (current == null) {
+            return null;
+        }
+        long[] viewedIds = new long[viewedMovies.size()];
+        float[] weights = new float[viewedMovies.size()];
+        for (int i = 0; i < viewedMovies.size(); i++) {
+            MovieViewedDTO viewed = viewedMovies.get(i);
+            viewedIds[i] = viewed.getMovieId();
+            weights[i] = viewed.getRating() != null ? ratingWeight(viewed.getRating()) : viewedWeight;
+        }
+        return current.recommend(viewedIds, weights, k);
+    }
+
+    /**
+     * 按主键游标分批读取交互记录
+     */
+    private void loadInteractions(BiFunction<Long, Integer, List<MovieInteractionDTO>> batchLoader, Interactions interactions) {
+        long afterId = 0;
+        while (true) {
+            List<MovieInteractionDTO> batch = batchLoader.apply(afterId, batchSize);
+            for (MovieInteractionDTO interaction : batch) {
+                float weight = weightOf(interaction);
+                if (weight > 0) {
+                    interactions.add(interaction.getUserId(), interaction.getMovieId(), weight);
+                }
+            }
+            if (batch.size() < batchSize) {
+                return;
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private float weightOf(MovieInteractionDTO interaction) {
+        if (interaction.getRating() != null) {
+            return ratingWeight(interaction.getRating());
+        }
+        if (interaction.getRelationType() == null) {
+            return 0;
+        }
+        return interaction.getRelationType() == 2 ? viewedWeight : wantWeight;
+    }
+
+    /**
+     * 评分（1-5）转换为 0.2~1 的权重
+     */
+    private static float ratingWeight(Number rating) {
+        return Math.max(1, Math.min(5, rating.floatValue())) / 5;
+    }
+
+    private RBucket<byte[]> matrixBucket() {
+        return redissonClient.getBucket(MATRIX_KEY, ByteArrayCodec.INSTANCE);
+    }
+
+    private RAtomicLong versionCounter() {
+        return redissonClient.getAtomicLong(VERSION_KEY);
+    }
+
+    /**
+     * 交互记录的基本类型数组，容量不足时倍增
+     */
+    private static final class Interactions {
+        long[] users = new long[1024];
+        long[] items = new long[1024];
+        float[] weights = new float[1024];
+        int size;
+
+        void add(long userId, long movieId, float weight) {
+            if (size == users.length) {
+                int capacity = users.length * 2;
+                users = Arrays.copyOf(users, capacity);
+                items = Arrays.copyOf(items, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            users[size] = userId;
+            items[size] = movieId;
+            weights[size] = weight;
+            size++;
+        }
+    }
+}
@@ -16,9 +16,11 @@ import com.fc.mapper.user.MovieUserMapper;
 import com.fc.result.PageResult;
 import com.fc.service.user.MovieUserService;
 import com.fc.service.user.NotificationService;
+import com.fc.service.user.PostTimelineService;
 import com.fc.vo.movie.user.RatingVO;
 import com.fc.vo.movie.user.UserMovieRelationVO;
 import com.fc.vo.movie.user.UserRelationStatsVO;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.OptimisticLockingFailureException;
@@ -32,6 +34,7 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class MovieUserServiceImpl implements MovieUserService {
 
     @Autowired
@@ -46,6 +49,9 @@ public class MovieUserServiceImpl implements MovieUserService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private PostTimelineService postTimelineService;
+
     // 最大重试次数
     private static final int MAX_RETRY_COUNT = 5;
     // 重试间隔（毫秒）
@@ -101,6 +107,7 @@ public class MovieUserServiceImpl implements MovieUserService {
                 stats.getWatchedCount(),
                 stats.getWantToWatchCount()
         );
+        invalidateTimeline(userId);
 
         return buildUserMovieRelationVO(updatedRelation);
     }
@@ -121,6 +128,19 @@ public class MovieUserServiceImpl implements MovieUserService {
                 stats.getWatchedCount(),
                 stats.getWantToWatchCount()
         );
+        invalidateTimeline(userId);
+    }
+
+    /**
+     * 关注的电影变化后使个人时间线失效（失败不影响标记，时间线过期后也会重建）
+     * @param userId
+     */
+    private void invalidateTimeline(Long userId) {
+        try {
+            postTimelineService.invalidate(userId);
+        } catch (Exception e) {
+            log.warn("个人时间线失效失败: userId={}", userId, e);
+        }
     }
 
     /**
@@ -3,7 +3,9 @@ package com.fc.service.impl.user;
 import com.fc.enums.WebSocketMessageType;
 import com.fc.handler.NotificationWebSocketHandler;
 import com.fc.mapper.user.PostStatMapper;
+import com.fc.service.api.PostHotRankService;
 import com.fc.service.user.PostStatService;
+import com.fc.utils.TransactionUtil;
 import com.fc.vo.post.PostStatVO;
 import com.fc.vo.websocket.PostStatUpdateVO;
 import com.fc.vo.websocket.WebSocketMessage;
@@ -29,6 +31,9 @@ public class PostStatServiceImpl implements PostStatService {
     @Autowired
     private NotificationWebSocketHandler webSocketHandler;
 
+    @Autowired
+    private PostHotRankService postHotRankService;
+
     private static final String POST_STAT_KEY_PREFIX = "post:stat:";
     private static final long CACHE_EXPIRE_HOURS = 24;
 
@@ -46,6 +51,9 @@ public class PostStatServiceImpl implements PostStatService {
             // 更新缓存
             updateCache(postId, "viewCount");
 
+            // 更新热度排行
+            refreshHotRank(postId);
+
             // 广播更新
             broadcastPostStatUpdate(postId);
 
@@ -70,6 +78,9 @@ public class PostStatServiceImpl implements PostStatService {
             // 更新缓存
             updateCache(postId, "likeCount");
 
+            // 更新热度排行
+            refreshHotRank(postId);
+
             // 广播更新
             broadcastPostStatUpdate(postId);
 
@@ -94,6 +105,9 @@ public class PostStatServiceImpl implements PostStatService {
             // 更新缓存
             updateCache(postId, "commentCount");
 
+            // 更新热度排行
+            refreshHotRank(postId);
+
             // 广播更新
             broadcastPostStatUpdate(postId);
 
@@ -177,6 +191,20 @@ public class PostStatServiceImpl implements PostStatService {
         }
     }
 
+    /**
+     * 标记帖子热度待重算，事务提交后执行，避免重算任务读到提交前的统计（失败不影响统计更新，定时重算会修正）
+     * @param postId 帖子
+     */
+    private void refreshHotRank(Long postId) {
+        TransactionUtil.afterCommit(() -> {
+            try {
+                postHotRankService.markDirty(postId);
+            } catch (Exception e) {
+                log.error("更新帖子热度排行失败: postId={}", postId, e);
+            }
+        });
+    }
+
     /**
      * 更新缓存中的特定字段
      * @param postId 帖子
@@ -0,0 +1,351 @@
+package com.fc.service.impl.user;
+
+import com.fc.dto.post.TimelinePageQueryDTO;
+import com.fc.entity.Post;
+import com.fc.entity.UserMovieRelation;
+import com.fc.enums.PostTypeEnum;
+import com.fc.mapper.api.PostPublicMapper;
+import com.fc.mapper.user.MovieUserMapper;
+import com.fc.result.PageResult;
+import com.fc.service.user.PostTimelineService;
+import com.fc.vo.post.PostSearchVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 个人时间线服务实现
+ *
+ * 存储结构：timeline:user:{userId} 为有序集合，member为帖子ID，score为发帖时间戳（毫秒），
+ * 只保留最近 maxSize 条；另有一个 score=0 的哨兵成员"0"，表示时间线已完整构建。
+ *
+ * - 推：新帖在线程池中按用户ID游标分批查询受众，只推送给哨兵存在（近期活跃）的用户，
+ *   不活跃用户的时间线过期后在下次读取时从数据库重建
+ * - 拉：受众超过阈值的电影记入 timeline:pull:movies，不再推送，读取时从数据库按游标拉取后合并
+ * - 删除的帖子不主动从时间线移除，读取时按 is_deleted 过滤
+ */
+@Service
+@Slf4j
+public class PostTimelineServiceImpl implements PostTimelineService {
+
+    @Autowired
+    private MovieUserMapper movieUserMapper;
+
+    @Autowired
+    private PostPublicMapper postPublicMapper;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    @Qualifier("timelineFanoutExecutor")
+    private ThreadPoolTaskExecutor timelineFanoutExecutor;
+
+    @Value("${fc.timeline.max-size:500}")
+    private Integer maxSize;
+
+    @Value("${fc.timeline.ttl-days:7}")
+    private Integer ttlDays;
+
+    @Value("${fc.timeline.fanout.threshold:5000}")
+    private Integer fanoutThreshold;
+
+    @Value("${fc.timeline.fanout.batch-size:500}")
+    private Integer fanoutBatchSize;
+
+    // Redis key 前缀
+    private static final String TIMELINE_KEY_PREFIX = "timeline:user:";
+    private static final String TMP_KEY_SUFFIX = ":tmp";
+    private static final String PULL_MOVIES_KEY = "timeline:pull:movies";
+    private static final String SENTINEL_MEMBER = "0";
+
+    // 关系类型：1-想看，2-已看
+    private static final int RELATION_WANT = 1;
+    private static final int RELATION_WATCHED = 2;
+
+    /**
+     * 提交新帖扩散任务
+     */
+    @Override
+    public void fanOutAsync(Post post) {
+        Long postId = post.getPostId();
+        Long movieId = post.getMovieId();
+        Integer postType = post.getPostType();
+        LocalDateTime createTime = post.getCreateTime() != null ? post.getCreateTime() : LocalDateTime.now();
+
+        try {
+            timelineFanoutExecutor.execute(() -> {
+                try {
+                    fanOut(postId, movieId, postType, createTime);
+                } catch (Exception e) {
+                    log.error("帖子扩散失败: postId={}, movieId={}", postId, movieId, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // 扩散队列已满时放弃推送，受影响用户的时间线过期重建后会补齐
+            log.warn("扩散队列已满，跳过帖子扩散: postId={}, movieId={}", postId, movieId);
+        }
+    }
+
+    /**
+     * 分页获取个人时间线：推送部分 + 大电影拉取部分按创建时间归并
+     */
+    @Override
+    public PageResult getTimeline(Long userId, TimelinePageQueryDTO pageQueryDTO) {
+        int size = pageQueryDTO.getSize() != null && pageQueryDTO.getSize() > 0 ? pageQueryDTO.getSize() : 20;
+        LocalDateTime cursor = pageQueryDTO.getCursor();
+        Long cursorId = pageQueryDTO.getCursorId();
+
+        // 1. 按关系划分电影：已看优先于想看
+        Set<Long> watchedMovieIds = new HashSet<>();
+        Set<Long> wantMovieIds = new HashSet<>();
+        for (UserMovieRelation relation : movieUserMapper.listByUserIdAndType(userId, null)) {
+            if (relation.getRelationType() == RELATION_WATCHED) {
+                watchedMovieIds.add(relation.getMovieId());
+            } else {
+                wantMovieIds.add(relation.getMovieId());
+            }
+        }
+        wantMovieIds.removeAll(watchedMovieIds);
+
+        PageResult pageResult = new PageResult();
+        pageResult.setTotal(-1);
+        if (watchedMovieIds.isEmpty() && wantMovieIds.isEmpty()) {
+            pageResult.setRecords(Collections.emptyList());
+            pageResult.setHasNext(false);
+            return pageResult;
+        }
+
+        // 2. 拆分推模式与拉模式的电影
+        Set<Long> pullMovieIds = getPullMovieIds();
+        Set<Long> pullWatched = retain(watchedMovieIds, pullMovieIds, true);
+        Set<Long> pullWant = retain(wantMovieIds, pullMovieIds, true);
+        Set<Long> pushWatched = retain(watchedMovieIds, pullMovieIds, false);
+        Set<Long> pushWant = retain(wantMovieIds, pullMovieIds, false);
+
+        // 3. 推送部分：时间线不完整时先重建
+        String key = timelineKey(userId);
+        ensureTimeline(key, pushWant, pushWatched);
+
+        // 带cursorId时取到游标时间（含），再剔除同一时间戳下ID不小于cursorId的帖子
+        double cursorScore = cursor != null ? toScore(cursor) : Double.POSITIVE_INFINITY;
+        double maxScore = cursor != null && cursorId == null ? cursorScore - 1 : cursorScore;
+        Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                .reverseRangeByScoreWithScores(key, 1, maxScore, 0, size + 1L);
+        int pushedFetched = tuples != null ? tuples.size() : 0;
+        List<Long> pushedIds = new ArrayList<>();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                Long postId = Long.valueOf(String.valueOf(tuple.getValue()));
+                if (cursorId != null && tuple.getScore() != null && tuple.getScore() == cursorScore
+                        && postId >= cursorId) {
+                    continue;
+                }
+                pushedIds.add(postId);
+            }
+        }
+        List<PostSearchVO> pushed = pushedIds.isEmpty()
+                ? Collections.emptyList()
+                : postPublicMapper.selectPostsByIds(pushedIds, null);
+
+        // 4. 拉取部分：大电影直接按游标查库
+        List<PostSearchVO> pulled = pullWant.isEmpty() && pullWatched.isEmpty()
+                ? Collections.emptyList()
+                : postPublicMapper.selectTimelinePosts(pullWant, pullWatched, cursor, cursorId, size + 1);
+
+        // 5. 去重归并
+        Map<Long, PostSearchVO> merged = new HashMap<>();
+        pushed.forEach(vo -> merged.put(vo.getPostId(), vo));
+        pulled.forEach(vo -> merged.putIfAbsent(vo.getPostId(), vo));
+        List<PostSearchVO> sorted = merged.values().stream()
+                .sorted(Comparator.comparing(PostSearchVO::getCreateTime)
+                        .thenComparing(PostSearchVO::getPostId)
+                        .reversed())
+                .collect(Collectors.toList());
+        List<PostSearchVO> records = sorted.size() > size ? sorted.subList(0, size) : sorted;
+
+        pageResult.setRecords(records);
+        pageResult.setHasNext(pushedFetched > size || pulled.size() > size || sorted.size() > size);
+        if (!records.isEmpty()) {
+            PostSearchVO lastRecord = records.get(records.size() - 1);
+            pageResult.setNextCursor(lastRecord.getCreateTime());
+            pageResult.setNextCursorId(lastRecord.getPostId());
+        }
+
+        // 读取即续期，保持活跃用户处于推送范围内
+        redisTemplate.expire(key, Duration.ofDays(ttlDays));
+
+        log.info("个人时间线查询成功: userId={}, 推送={}, 拉取={}, 返回={}",
+                userId, pushed.size(), pulled.size(), records.size());
+        return pageResult;
+    }
+
+    /**
+     * 使时间线失效
+     */
+    @Override
+    public void invalidate(Long userId) {
+        redisTemplate.delete(timelineKey(userId));
+        log.debug("个人时间线已失效: userId={}", userId);
+    }
+
+    /**
+     * 执行扩散：大电影转为拉模式，否则分批推送到活跃用户的时间线
+     */
+    private void fanOut(Long postId, Long movieId, Integer postType, LocalDateTime createTime) {
+        long start = System.currentTimeMillis();
+
+        if (Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(PULL_MOVIES_KEY, String.valueOf(movieId)))) {
+            log.debug("电影为拉模式，跳过扩散: postId={}, movieId={}", postId, movieId);
+            return;
+        }
+
+        long audience = movieUserMapper.countMovieAudience(movieId, RELATION_WANT);
+        if (audience > fanoutThreshold) {
+            // 一旦转为拉模式不再切回，避免已有时间线缺失该电影的历史帖子
+            redisTemplate.opsForSet().add(PULL_MOVIES_KEY, String.valueOf(movieId));
+            log.info("电影受众超过阈值，转为拉模式: movieId={}, audience={}", movieId, audience);
+            return;
+        }
+
+        // 剧透帖子只推送给已看用户
+        int minRelationType = PostTypeEnum.isSpoiler(postType) ? RELATION_WATCHED : RELATION_WANT;
+        String member = String.valueOf(postId);
+        double score = toScore(createTime);
+
+        long lastUserId = 0L;
+        int pushedCount = 0;
+        while (true) {
+            List<Long> userIds = movieUserMapper.selectMovieAudienceAfter(movieId, minRelationType,
+                    lastUserId, fanoutBatchSize);
+            if (userIds.isEmpty()) {
+                break;
+            }
+            pushedCount += pushToActiveTimelines(userIds, member, score);
+            lastUserId = userIds.get(userIds.size() - 1);
+            if (userIds.size() < fanoutBatchSize) {
+                break;
+            }
+        }
+
+        log.info("帖子扩散完成: postId={}, movieId={}, 推送用户数={}, 耗时={}ms",
+                postId, movieId, pushedCount, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 推送到一批用户中时间线完整（哨兵存在）的用户
+     * @return 实际推送的用户数
+     */
+    @SuppressWarnings("unchecked")
+    private int pushToActiveTimelines(List<Long> userIds, String member, double score) {
+        List<String> keys = userIds.stream().map(this::timelineKey).collect(Collectors.toList());
+
+        List<Object> sentinels = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations<String, Object> zSetOps = (ZSetOperations<String, Object>) operations.opsForZSet();
+                for (String key : keys) {
+                    zSetOps.score(key, SENTINEL_MEMBER);
+                }
+                return null;
+            }
+        });
+
+        List<String> activeKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (sentinels.get(i) != null) {
+                activeKeys.add(keys.get(i));
+            }
+        }
+        if (activeKeys.isEmpty()) {
+            return 0;
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations<String, Object> zSetOps = (ZSetOperations<String, Object>) operations.opsForZSet();
+                for (String key : activeKeys) {
+                    zSetOps.add(key, member, score);
+                    // 排名0为哨兵，从排名1开始裁剪最旧的帖子
+                    zSetOps.removeRange(key, 1, -(maxSize + 2L));
+                }
+                return null;
+            }
+        });
+        return activeKeys.size();
+    }
+
+    /**
+     * 时间线缺少哨兵时从数据库重建（写临时key后RENAME替换）
+     */
+    @SuppressWarnings("unchecked")
+    private void ensureTimeline(String key, Set<Long> wantMovieIds, Set<Long> watchedMovieIds) {
+        if (redisTemplate.opsForZSet().score(key, SENTINEL_MEMBER) != null) {
+            return;
+        }
+
+        List<PostSearchVO> posts = wantMovieIds.isEmpty() && watchedMovieIds.isEmpty()
+                ? Collections.emptyList()
+                : postPublicMapper.selectTimelinePosts(wantMovieIds, watchedMovieIds, null, null, maxSize);
+
+        String tmpKey = key + TMP_KEY_SUFFIX;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.delete(tmpKey);
+                ops.opsForZSet().add(tmpKey, SENTINEL_MEMBER, 0);
+                for (PostSearchVO post : posts) {
+                    ops.opsForZSet().add(tmpKey, String.valueOf(post.getPostId()), toScore(post.getCreateTime()));
+                }
+                ops.rename(tmpKey, key);
+                ops.expire(key, Duration.ofDays(ttlDays));
+                return null;
+            }
+        });
+        log.info("重建个人时间线: key={}, 帖子数={}", key, posts.size());
+    }
+
+    private Set<Long> getPullMovieIds() {
+        Set<Object> members = redisTemplate.opsForSet().members(PULL_MOVIES_KEY);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return members.stream()
+                .map(member -> Long.valueOf(String.valueOf(member)))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * 取 movieIds 中属于（keep=true）或不属于（keep=false）pullMovieIds 的部分
+     */
+    private Set<Long> retain(Set<Long> movieIds, Set<Long> pullMovieIds, boolean keep) {
+        return movieIds.stream()
+                .filter(movieId -> pullMovieIds.contains(movieId) == keep)
+                .collect(Collectors.toSet());
+    }
+
+    private String timelineKey(Long userId) {
+        return TIMELINE_KEY_PREFIX + userId;
+    }
+
+    private double toScore(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
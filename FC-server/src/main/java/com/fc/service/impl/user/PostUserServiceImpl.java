@@ -11,12 +11,18 @@ import com.fc.mapper.admin.MovieAdminMapper;
 import com.fc.mapper.api.AccountMapper;
 import com.fc.mapper.user.PostUserMapper;
 import com.fc.result.PageResult;
+import com.fc.service.api.MovieTagRankService;
+import com.fc.service.api.PostHotRankService;
+import com.fc.service.api.TagCooccurrenceService;
 import com.fc.service.api.TagPublicService;
+import com.fc.service.user.AiService;
 import com.fc.service.user.MovieUserService;
 import com.fc.service.user.NotificationService;
 import com.fc.service.user.PostStatService;
+import com.fc.service.user.PostTimelineService;
 import com.fc.service.user.PostUserService;
 import com.fc.utils.FileSecurityValidator;
+import com.fc.utils.TransactionUtil;
 import com.fc.vo.post.*;
 import com.fc.vo.tag.TagVO;
 import lombok.extern.slf4j.Slf4j;
@@ -67,6 +73,21 @@ public class PostUserServiceImpl implements PostUserService {
     @Autowired
     private RedissonClient redissonClient;
 
+    @Autowired
+    private TagCooccurrenceService tagCooccurrenceService;
+
+    @Autowired
+    private MovieTagRankService movieTagRankService;
+
+    @Autowired
+    private PostHotRankService postHotRankService;
+
+    @Autowired
+    private PostTimelineService postTimelineService;
+
+    @Autowired
+    private AiService aiService;
+
     /**
      * 发布帖子
      * @param postPublishDTO 帖子发布信息
@@ -150,7 +171,40 @@ public class PostUserServiceImpl implements PostUserService {
                 log.info("图片插入成功: 数量={}", postImages.size());
             }
 
-            // 7. 构建返回结果
+            // 7. 事务提交后增量更新标签共现图、电影热门标签、帖子热度排行，异步扩散到个人时间线，并标记AI总结待刷新
+            // 均在提交后执行，避免事务回滚后Redis中残留不存在的帖子计数（失败不影响发帖，定时任务或时间线重建会修正）
+            Post publishedPost = post;
+            TransactionUtil.afterCommit(() -> {
+                if (finalTagIds != null && !finalTagIds.isEmpty()) {
+                    try {
+                        tagCooccurrenceService.recordPostTags(finalTagIds);
+                    } catch (Exception e) {
+                        log.warn("更新标签共现图失败: postId={}", publishedPost.getPostId(), e);
+                    }
+                    try {
+                        movieTagRankService.onPostTagsAdded(movieId, postType, finalTagIds);
+                    } catch (Exception e) {
+                        log.warn("更新电影热门标签失败: postId={}", publishedPost.getPostId(), e);
+                    }
+                }
+                try {
+                    postHotRankService.onPostPublished(publishedPost);
+                } catch (Exception e) {
+                    log.warn("加入帖子热度排行失败: postId={}", publishedPost.getPostId(), e);
+                }
+                try {
+                    postTimelineService.fanOutAsync(publishedPost);
+                } catch (Exception e) {
+                    log.warn("提交时间线扩散失败: postId={}", publishedPost.getPostId(), e);
+                }
+                try {
+                    aiService.onPostPublished(movieId, postType, userId);
+                } catch (Exception e) {
+                    log.warn("标记AI总结待刷新失败: postId={}", publishedPost.getPostId(), e);
+                }
+            });
+
+            // 8. 构建返回结果
             PostVO postVO = buildPostVO(post, user, movie);
             log.info("帖子发布事务完成: postId={}", post.getPostId());
 
@@ -461,10 +515,24 @@ public class PostUserServiceImpl implements PostUserService {
 
         // 更新帖子收藏数
         postUserMapper.updatePostCollectCount(postId, 1);
+        refreshHotRank(postId);
 
         log.info("帖子收藏成功: userId={}, postId={}", userId, postId);
     }
 
+    /**
+     * 收藏数变化后标记帖子热度待重算，事务提交后执行（失败不影响收藏操作）
+     */
+    private void refreshHotRank(Long postId) {
+        TransactionUtil.afterCommit(() -> {
+            try {
+                postHotRankService.markDirty(postId);
+            } catch (Exception e) {
+                log.warn("更新帖子热度排行失败: postId={}", postId, e);
+            }
+        });
+    }
+
     /**
      * 取消收藏帖子
      * @param userId 用户ID
@@ -493,6 +561,7 @@ public class PostUserServiceImpl implements PostUserService {
 
         // 更新帖子收藏数
         postUserMapper.updatePostCollectCount(postId, -1);
+        refreshHotRank(postId);
 
         log.info("帖子取消收藏成功: userId={}, postId={}", userId, postId);
     }
@@ -765,6 +834,29 @@ public class PostUserServiceImpl implements PostUserService {
         // 执行逻辑删除
         postUserMapper.logicalDeletePost(postId);
 
+        // 事务提交后扣减电影热门标签计数并移出热度排行，避免删除回滚后Redis计数已被扣减
+        try {
+            List<Long> tagIds = postUserMapper.getTagsByPostId(postId).stream()
+                    .map(TagVO::getTagId)
+                    .collect(Collectors.toList());
+            TransactionUtil.afterCommit(() -> {
+                try {
+                    movieTagRankService.onPostTagsRemoved(post.getMovieId(), post.getPostType(), tagIds);
+                } catch (Exception e) {
+                    log.warn("更新电影热门标签失败: postId={}", postId, e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("查询帖子标签失败，电影热门标签计数由定时对账修正: postId={}", postId, e);
+        }
+        TransactionUtil.afterCommit(() -> {
+            try {
+                postHotRankService.removePost(postId, post.getMovieId(), post.getPostType());
+            } catch (Exception e) {
+                log.warn("移出帖子热度排行失败: postId={}", postId, e);
+            }
+        });
+
         log.info("帖子删除成功: userId={}, postId={}", userId, postId);
     }
 
@@ -1013,4 +1105,4 @@ public class PostUserServiceImpl implements PostUserService {
     private String generateVideoFileName(String extension) {
         return "post-videos/" + UUID.randomUUID().toString().replace("-", "") + extension;
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,30 @@ public interface AiService {
      */
     MovieCommentSummaryVO generateMovieCommentSummary(MovieCommentSummaryDTO summaryDTO);
 
+    /**
+     * 流式生成电影评论AI总结，生成过程和结果通过 listener 推送
+     *
+     * @param summaryDTO
+     * @param listener
+     */
+    void streamMovieCommentSummary(MovieCommentSummaryDTO summaryDTO, SummaryStreamListener listener);
+
+    /**
+     * 帖子发布后标记对应电影的AI总结待刷新
+     *
+     * @param movieId
+     * @param postType
+     * @param userId 发帖用户，电影尚无总结时作为后台生成记录的归属用户
+     */
+    void onPostPublished(Long movieId, Integer postType, Long userId);
+
+    /**
+     * 后台刷新待刷新的AI总结：按访问量排序，限制并发的模型调用，只把上次总结之后的新增评论交给模型
+     *
+     * @return 成功刷新的总结数量
+     */
+    int refreshPendingSummaries();
+
     /**
      * 检查AI服务可用性
      *
@@ -23,4 +47,27 @@ public interface AiService {
      */
     boolean checkAiServiceAvailability();
 
+    /**
+     * 流式总结的推送回调（在模型回调线程中执行，不应阻塞）
+     */
+    interface SummaryStreamListener {
+
+        /**
+         * 收到一段总结文本
+         */
+        void onToken(String token);
+
+        /**
+         * 最终总结
+         */
+        void onSummary(MovieCommentSummaryVO summary);
+
+        /**
+         * 生成失败
+         *
+         * @param fallbackSummary 备用总结
+         */
+        void onError(String fallbackSummary);
+    }
+
 }
\ No newline at end of file
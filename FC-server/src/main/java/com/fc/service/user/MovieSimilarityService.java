@@ -0,0 +1,31 @@
+package com.fc.service.user;
+
+import com.fc.agent.vector.TopKSelector;
+import com.fc.dto.movie.ai.MovieViewedDTO;
+
+import java.util.List;
+
+/**
+ * 电影相似度服务接口（基于物品的协同过滤）
+ */
+public interface MovieSimilarityService {
+
+    /**
+     * 由评分和观影标记全量重建电影相似度矩阵，并发布给所有实例
+     * @return 矩阵中的电影数
+     */
+    int rebuild();
+
+    /**
+     * 检查相似度矩阵版本号，其他实例重建后重新加载
+     */
+    void syncIfStale();
+
+    /**
+     * 按用户的观影记录推荐电影
+     * @param viewedMovies 观影记录（评分为空表示看过但未评分）
+     * @param k 推荐数量
+     * @return 已排除看过电影、按分数降序的选择器；相似度矩阵尚未加载时返回 null
+     */
+    TopKSelector recommend(List<MovieViewedDTO> viewedMovies, int k);
+}
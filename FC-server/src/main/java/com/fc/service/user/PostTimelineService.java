@@ -0,0 +1,33 @@
+package com.fc.service.user;
+
+import com.fc.dto.post.TimelinePageQueryDTO;
+import com.fc.entity.Post;
+import com.fc.result.PageResult;
+
+/**
+ * 个人时间线服务
+ * 推模式：新帖异步推送到标记该电影"想看/已看"的用户时间线；
+ * 拉模式：受众过大的电影不推送，读取时间线时按需从数据库拉取合并
+ */
+public interface PostTimelineService {
+
+    /**
+     * 提交新帖扩散任务（异步执行，不阻塞发帖）
+     * @param post 已发布的帖子
+     */
+    void fanOutAsync(Post post);
+
+    /**
+     * 分页获取用户的个人时间线
+     * @param userId 用户ID
+     * @param pageQueryDTO 游标分页参数
+     * @return 分页结果
+     */
+    PageResult getTimeline(Long userId, TimelinePageQueryDTO pageQueryDTO);
+
+    /**
+     * 用户的电影关系变化后使其时间线失效，下次读取时重建
+     * @param userId 用户ID
+     */
+    void invalidate(Long userId);
+}
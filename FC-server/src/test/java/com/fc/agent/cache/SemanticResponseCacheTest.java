@@ -0,0 +1,146 @@
+package com.fc.agent.cache;
+
+import com.fc.agent.memory.SessionChatMemoryStore;
+import com.fc.utils.OllamaUtil;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * SemanticResponseCache 单元测试类
+ *
+ * 验证相似度阈值、只缓存会话第一轮、嵌入失败和个人化问题时跳过缓存
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SemanticResponseCacheTest {
+
+    private static final String MEMORY_ID = "1:session";
+
+    @Mock
+    private OllamaUtil ollamaUtil;
+
+    @Mock
+    private SessionChatMemoryStore sessionChatMemoryStore;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RAtomicLong catalogVersion;
+
+    private MeterRegistry meterRegistry;
+    private SemanticResponseCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SemanticResponseCache();
+        setField("enabled", true);
+        setField("similarityThreshold", 0.92);
+        setField("ttlMinutes", 60L);
+        setField("maxEntries", 100L);
+        setField("maxMessageChars", 200);
+        setField("ollamaUtil", ollamaUtil);
+        setField("sessionChatMemoryStore", sessionChatMemoryStore);
+        setField("redissonClient", redissonClient);
+        setField("meterRegistry", meterRegistry);
+        cache.init();
+
+        when(redissonClient.getAtomicLong(anyString())).thenReturn(catalogVersion);
+        when(catalogVersion.get()).thenReturn(1L);
+        when(sessionChatMemoryStore.getMessages(any())).thenReturn(new ArrayList<>());
+    }
+
+    @Test
+    void testLookup_ShouldHitOnlyAboveSimilarityThreshold() {
+        embed("推荐几部科幻电影", 1, 0, 0);
+        SemanticResponseCache.Lookup first = cache.lookup(MEMORY_ID, "推荐几部科幻电影");
+        assertThat(first.hit()).isFalse();
+        cache.put(first, "《星际穿越》《银翼杀手》", List.of(), 1_000_000L);
+
+        // 余弦相似度约0.995，命中
+        embed("推荐一些科幻片", 1, 0.1, 0);
+        SemanticResponseCache.Lookup similar = cache.lookup(MEMORY_ID, "推荐一些科幻片");
+        assertThat(similar.hit()).isTrue();
+        assertThat(similar.answer()).isEqualTo("《星际穿越》《银翼杀手》");
+        verify(sessionChatMemoryStore).updateMessages(eq(MEMORY_ID), anyList());
+
+        // 余弦相似度约0.894，低于阈值
+        embed("推荐几部爱情电影", 1, 0.5, 0);
+        assertThat(cache.lookup(MEMORY_ID, "推荐几部爱情电影").hit()).isFalse();
+
+        assertThat(meterRegistry.counter("agent.semantic-cache.hits").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("agent.semantic-cache.misses").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testLookup_ShouldBypassFollowUpTurns() {
+        when(sessionChatMemoryStore.getMessages(MEMORY_ID))
+                .thenReturn(List.of(UserMessage.from("推荐几部科幻电影"), AiMessage.from("《星际穿越》")));
+
+        SemanticResponseCache.Lookup lookup = cache.lookup(MEMORY_ID, "还有别的吗");
+
+        assertThat(lookup.hit()).isFalse();
+        verifyNoInteractions(ollamaUtil);
+        assertThat(meterRegistry.counter("agent.semantic-cache.bypass").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testLookup_ShouldBypassWhenEmbeddingFails() {
+        when(ollamaUtil.generateVectors(anyList())).thenThrow(new RuntimeException("Ollama不可用"));
+
+        SemanticResponseCache.Lookup lookup = cache.lookup(MEMORY_ID, "推荐几部科幻电影");
+        cache.put(lookup, "《星际穿越》", List.of(), 1_000_000L);
+
+        assertThat(lookup.hit()).isFalse();
+        assertThat(meterRegistry.counter("agent.semantic-cache.bypass").count()).isEqualTo(1.0);
+        // 跳过的查找结果不写入缓存
+        reset(ollamaUtil);
+        embed("推荐几部科幻电影", 1, 0, 0);
+        assertThat(cache.lookup(MEMORY_ID, "推荐几部科幻电影").hit()).isFalse();
+    }
+
+    @Test
+    void testLookupAndPut_ShouldSkipPersonalizedQuestionsAndTools() {
+        assertThat(cache.lookup(MEMORY_ID, "根据我的观影历史推荐").hit()).isFalse();
+        verifyNoInteractions(ollamaUtil);
+
+        embed("推荐几部科幻电影", 1, 0, 0);
+        SemanticResponseCache.Lookup lookup = cache.lookup(MEMORY_ID, "推荐几部科幻电影");
+        cache.put(lookup, "《星际穿越》", List.of("recommendByHistory"), 1_000_000L);
+
+        assertThat(cache.lookup(MEMORY_ID, "推荐几部科幻电影").hit()).isFalse();
+    }
+
+    private void embed(String message, double... vector) {
+        List<Double> values = new ArrayList<>();
+        for (double v : vector) {
+            values.add(v);
+        }
+        when(ollamaUtil.generateVectors(List.of(message))).thenReturn(List.of(values));
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        var field = SemanticResponseCache.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(cache, value);
+    }
+}
@@ -0,0 +1,78 @@
+package com.fc.agent.memory;
+
+import com.fc.utils.TokenUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * ConversationSummarizer 单元测试类
+ *
+ * 验证压缩触发条件、压缩边界和token估算
+ */
+class ConversationSummarizerTest {
+
+    private ConversationSummarizer summarizer;
+
+    @BeforeEach
+    void setUp() {
+        summarizer = new ConversationSummarizer();
+        ReflectionTestUtils.setField(summarizer, "enabled", true);
+        ReflectionTestUtils.setField(summarizer, "tokenBudget", 100);
+        ReflectionTestUtils.setField(summarizer, "keepRecentMessages", 4);
+        ReflectionTestUtils.setField(summarizer, "maxMessages", 20);
+    }
+
+    @Test
+    void testCompactableCount_ShouldNotCompactShortSession() {
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(SystemMessage.from("系统提示词"));
+        messages.add(UserMessage.from("推荐一部科幻片"));
+        messages.add(AiMessage.from("推荐《星际穿越》"));
+        messages.add(UserMessage.from("还有吗"));
+        messages.add(AiMessage.from("还有《降临》"));
+        messages.add(UserMessage.from("谢谢"));
+        messages.add(AiMessage.from("不客气"));
+
+        assertThat(summarizer.compactableCount(messages)).isZero();
+    }
+
+    @Test
+    void testCompactableCount_ShouldKeepWholeTurnWithToolResults() {
+        ToolExecutionRequest request = ToolExecutionRequest.builder().id("1").name("searchMovies").arguments("{}").build();
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(SystemMessage.from("系统提示词"));
+        messages.add(UserMessage.from("推荐一部科幻片"));
+        messages.add(AiMessage.from("推荐《星际穿越》"));
+        messages.add(UserMessage.from("查一下诺兰的电影"));
+        messages.add(AiMessage.from(List.of(request)));
+        messages.add(ToolExecutionResultMessage.from(request, "诺".repeat(200)));
+        messages.add(AiMessage.from("诺兰的电影有《盗梦空间》等"));
+
+        // 超出预算；保留最近3条时边界落在工具调用上，退回到该轮的用户消息
+        ReflectionTestUtils.setField(summarizer, "keepRecentMessages", 3);
+        assertThat(ConversationSummarizer.estimateTokens(messages)).isGreaterThan(100);
+        assertThat(summarizer.compactableCount(messages)).isEqualTo(2);
+    }
+
+    @Test
+    void testEstimateTokens_ShouldCountIdeographsAsOneToken() {
+        assertThat(TokenUtil.estimateTokens("科幻电影")).isEqualTo(4);
+        assertThat(TokenUtil.estimateTokens("great movie!")).isEqualTo(3);
+        assertThat(TokenUtil.estimateTokens(null)).isZero();
+        // 与评论采样使用同一估算，假名、韩文也按每字1个token
+        assertThat(TokenUtil.estimateTokens("こんにちは")).isEqualTo(5);
+        assertThat(ConversationSummarizer.estimateTokens(List.of(UserMessage.from("こんにちは")))).isEqualTo(5);
+    }
+}
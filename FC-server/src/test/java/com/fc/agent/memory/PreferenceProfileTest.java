@@ -0,0 +1,47 @@
+package com.fc.agent.memory;
+
+import com.fc.vo.movie.ai.MovieSimpleVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * PreferenceProfile 单元测试类
+ *
+ * 验证增量累加、衰减和按画像排序
+ */
+class PreferenceProfileTest {
+
+    private final PreferenceExtractor extractor = new PreferenceExtractor();
+
+    @Test
+    void testAccumulate_ShouldWeightRecentMessagesHigher() {
+        PreferenceProfile profile = new PreferenceProfile();
+        extractor.accumulate(profile, "想看科幻片", 1.0);
+        profile.decay(0.5);
+        assertThat(extractor.accumulate(profile, "来点高分的喜剧", 1.0)).isTrue();
+
+        assertThat(profile.topGenres(2)).containsExactly("喜剧", "科幻");
+        assertThat(profile.getGenres().get("科幻")).isEqualTo(0.5);
+        assertThat(profile.topRating()).isEqualTo("high");
+        assertThat(extractor.accumulate(profile, "你好", 1.0)).isFalse();
+    }
+
+    @Test
+    void testRank_ShouldMoveMatchingGenreForward() {
+        PreferenceProfile profile = new PreferenceProfile();
+        profile.addGenre("喜剧", 1.0);
+        MovieSimpleVO drama = MovieSimpleVO.builder().movieId(1L).genres("剧情").build();
+        MovieSimpleVO war = MovieSimpleVO.builder().movieId(2L).genres("战争").build();
+        MovieSimpleVO comedy = MovieSimpleVO.builder().movieId(3L).genres("剧情/喜剧").build();
+
+        // 名次得分 1、2/3、1/3，喜剧的类型匹配度为0.6，加上后排到第二
+        List<MovieSimpleVO> ranked = profile.rank(List.of(drama, war, comedy), 1.0);
+        assertThat(ranked).containsExactly(drama, comedy, war);
+
+        // 匹配度权重为0时保持原始顺序
+        assertThat(profile.rank(List.of(drama, war, comedy), 0)).containsExactly(drama, war, comedy);
+    }
+}
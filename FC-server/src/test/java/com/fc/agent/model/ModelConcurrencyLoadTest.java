@@ -0,0 +1,129 @@
+package com.fc.agent.model;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 模型并发隔离压测
+ *
+ * 对运行中的服务压满 /agent/chat，同时测量普通接口的延迟，验证模型请求受共享许可限制后不会拖慢其他接口。
+ * 需要真实的服务、数据库和 Ollama，默认不执行：
+ * mvn -pl FC-server test -Pbenchmark -Dload.base-url=http://localhost:8080 -Dload.token=xxx
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "load.base-url", matches = ".+")
+class ModelConcurrencyLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelConcurrencyLoadTest.class);
+
+    private static final String BASE_URL = System.getProperty("load.base-url");
+    private static final String TOKEN = System.getProperty("load.token", "");
+    private static final int CHAT_CONCURRENCY = Integer.getInteger("load.chat-concurrency", 50);
+    private static final int PROBE_REQUESTS = Integer.getInteger("load.probe-requests", 200);
+    private static final String PROBE_PATH = System.getProperty("load.probe-path", "/api/movies/page?size=20");
+    // 压测期间普通接口 p99 允许放大的倍数
+    private static final double MAX_P99_RATIO = Double.parseDouble(System.getProperty("load.max-p99-ratio", "3"));
+    // 基线过小时倍数没有意义，允许的最小绝对增量
+    private static final long MIN_P99_SLACK_MS = 50;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void testOtherEndpoints_ShouldKeepLatencyWhileChatSaturated() throws Exception {
+        List<Long> baseline = probe();
+        long baselineP50 = percentile(baseline, 50);
+        long baselineP99 = percentile(baseline, 99);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger chatOk = new AtomicInteger();
+        AtomicInteger chatRejected = new AtomicInteger();
+        ExecutorService chatPool = Executors.newFixedThreadPool(CHAT_CONCURRENCY);
+        for (int i = 0; i < CHAT_CONCURRENCY; i++) {
+            chatPool.submit(() -> {
+                while (running.get()) {
+                    try {
+                        HttpResponse<String> response = client.send(chatRequest(), HttpResponse.BodyHandlers.ofString());
+                        (response.statusCode() == 200 && response.body().contains("\"code\":1")
+                                ? chatOk : chatRejected).incrementAndGet();
+                    } catch (Exception e) {
+                        chatRejected.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        List<Long> loaded;
+        try {
+            // 等待模型许可和排队被占满
+            TimeUnit.SECONDS.sleep(5);
+            loaded = probe();
+        } finally {
+            running.set(false);
+            chatPool.shutdownNow();
+            chatPool.awaitTermination(2, TimeUnit.MINUTES);
+        }
+        long loadedP50 = percentile(loaded, 50);
+        long loadedP99 = percentile(loaded, 99);
+
+        log.info("基线 p50={}ms p99={}ms，压测 p50={}ms p99={}ms，chat 成功 {} 次，拒绝或失败 {} 次",
+                baselineP50, baselineP99, loadedP50, loadedP99, chatOk.get(), chatRejected.get());
+        assertThat(loadedP99)
+                .as("chat 压满时 %s 的 p99", PROBE_PATH)
+                .isLessThanOrEqualTo(Math.max((long) (baselineP99 * MAX_P99_RATIO), baselineP99 + MIN_P99_SLACK_MS));
+    }
+
+    private List<Long> probe() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + PROBE_PATH))
+                .header("token", TOKEN)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        List<Long> latencies = new ArrayList<>(PROBE_REQUESTS);
+        for (int i = 0; i < PROBE_REQUESTS; i++) {
+            long start = System.nanoTime();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            assertThat(response.statusCode()).as("%s 状态码", PROBE_PATH).isEqualTo(200);
+        }
+        return latencies;
+    }
+
+    private HttpRequest chatRequest() {
+        String message = URLEncoder.encode("推荐几部评分高的科幻电影", StandardCharsets.UTF_8);
+        return HttpRequest.newBuilder(URI.create(BASE_URL + "/agent/chat?message=" + message))
+                .header("token", TOKEN)
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static long percentile(List<Long> latencies, int percentile) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+}
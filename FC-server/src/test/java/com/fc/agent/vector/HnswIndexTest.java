@@ -0,0 +1,151 @@
+package com.fc.agent.vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * HnswIndex 单元测试类
+ *
+ * 以 FlatVectorStore 精确扫描为对照，验证近似检索的召回率、删除、重建和快照持久化
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 64;
+    private static final int VECTOR_COUNT = 5000;
+    private static final int QUERY_COUNT = 200;
+    private static final int TOP_K = 10;
+
+    @Test
+    void testSearch_ShouldReachHighRecallComparedWithExactScan() {
+        Random random = new Random(7);
+        FlatVectorStore store = new FlatVectorStore(DIMENSION, VECTOR_COUNT);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200, VECTOR_COUNT);
+        for (long id = 1; id <= VECTOR_COUNT; id++) {
+            float[] vector = randomVector(random);
+            store.upsert(id, vector);
+            index.insert(id, vector);
+        }
+
+        int matched = 0;
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            float[] query = randomVector(random);
+            Set<Long> expected = exactTopK(store, query, TOP_K);
+            List<VectorHit> hits = index.search(query, TOP_K, 128);
+
+            assertThat(hits).hasSize(TOP_K);
+            for (VectorHit hit : hits) {
+                if (expected.contains(hit.getId())) {
+                    matched++;
+                }
+            }
+        }
+
+        double recall = (double) matched / (QUERY_COUNT * TOP_K);
+        assertThat(recall).as("HNSW recall@%d", TOP_K).isGreaterThan(0.9);
+    }
+
+    @Test
+    void testRemoveAndUpdate_ShouldExcludeStaleNodes() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 16);
+        for (long id = 1; id <= 500; id++) {
+            index.insert(id, randomVector(random));
+        }
+        float[] target = randomVector(random);
+
+        index.insert(1L, target);
+        assertThat(index.search(target, 1, 32).get(0).getId()).isEqualTo(1L);
+        assertThat(index.size()).isEqualTo(500);
+
+        index.remove(1L);
+        assertThat(index.search(target, 5, 32)).extracting(VectorHit::getId).doesNotContain(1L);
+        assertThat(index.size()).isEqualTo(499);
+        assertThat(index.deletedRatio()).isGreaterThan(0.0);
+    }
+
+    @Test
+    void testRebuildFromStore_ShouldDropDeletedNodes() {
+        Random random = new Random(17);
+        FlatVectorStore store = new FlatVectorStore(DIMENSION, 16);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 16);
+        for (long id = 1; id <= 500; id++) {
+            float[] vector = randomVector(random);
+            store.upsert(id, vector);
+            index.insert(id, vector);
+        }
+        for (long id = 1; id <= 200; id++) {
+            store.remove(id);
+            index.remove(id);
+        }
+        assertThat(index.deletedRatio()).isGreaterThan(0.2);
+
+        HnswIndex rebuilt = new HnswIndex(DIMENSION, 8, 64, store.size());
+        store.forEach(rebuilt::insert);
+
+        assertThat(rebuilt.deletedRatio()).isZero();
+        assertThat(rebuilt.size()).isEqualTo(index.size());
+        float[] query = randomVector(random);
+        assertThat(rebuilt.search(query, TOP_K, 64)).extracting(VectorHit::getId)
+                .allMatch(id -> id > 200);
+    }
+
+    @Test
+    void testSaveAndLoad_ShouldRestoreSameResults(@TempDir Path tempDir) throws Exception {
+        Random random = new Random(13);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 16);
+        for (long id = 1; id <= 1000; id++) {
+            index.insert(id, randomVector(random));
+        }
+        index.remove(10L);
+        Path path = tempDir.resolve("movie-hnsw.idx");
+        index.save(path, 3L);
+
+        assertThat(HnswIndex.load(path, 4L)).isNull();
+        HnswIndex loaded = HnswIndex.load(path, 3L);
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.size()).isEqualTo(index.size());
+
+        float[] query = randomVector(random);
+        assertThat(loaded.search(query, TOP_K, 64)).extracting(VectorHit::getId)
+                .containsExactlyElementsOf(index.search(query, TOP_K, 64).stream().map(VectorHit::getId).toList());
+    }
+
+    private Set<Long> exactTopK(FlatVectorStore store, float[] query, int k) {
+        long[] ids = new long[k];
+        float[] scores = new float[k];
+        java.util.Arrays.fill(scores, -Float.MAX_VALUE);
+        store.scan(FlatVectorStore.normalize(query), (id, score) -> {
+            int worst = 0;
+            for (int i = 1; i < k; i++) {
+                if (scores[i] < scores[worst]) {
+                    worst = i;
+                }
+            }
+            if (score > scores[worst]) {
+                scores[worst] = score;
+                ids[worst] = id;
+            }
+        });
+        Set<Long> result = new HashSet<>();
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
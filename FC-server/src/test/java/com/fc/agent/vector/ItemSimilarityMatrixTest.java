@@ -0,0 +1,59 @@
+package com.fc.agent.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * ItemSimilarityMatrix 单元测试类
+ *
+ * 验证相似电影计算、打分排除和序列化
+ */
+class ItemSimilarityMatrixTest {
+
+    // 用户1、2都看过电影10和20，用户3看过电影20和30，用户4只看过电影40
+    private static final long[] USERS = {1, 1, 2, 2, 3, 3, 4, 1};
+    private static final long[] ITEMS = {10, 20, 10, 20, 20, 30, 40, 10};
+    private static final float[] WEIGHTS = {1f, 1f, 1f, 1f, 1f, 1f, 1f, 0.4f};
+
+    private ItemSimilarityMatrix build() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            return ItemSimilarityMatrix.build(USERS, ITEMS, WEIGHTS, USERS.length, 2, 0f, 10, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testBuild_ShouldRankNeighborsByCosineSimilarity() {
+        ItemSimilarityMatrix matrix = build();
+
+        assertThat(matrix.itemCount()).isEqualTo(4);
+        // 重复交互取最大权重；10和20的共同用户最多
+        assertThat(matrix.neighborsOf(20)).containsExactly(10L, 30L);
+        assertThat(matrix.neighborsOf(10)).containsExactly(20L);
+        assertThat(matrix.neighborsOf(40)).isEmpty();
+    }
+
+    @Test
+    void testRecommend_ShouldExcludeViewedMovies() {
+        TopKSelector selector = build().recommend(new long[]{10, 20}, new float[]{1f, 1f}, 5);
+
+        assertThat(selector.ids()).containsExactly(30L);
+        assertThat(selector.scores()[0]).isBetween(0.0, 1.0);
+    }
+
+    @Test
+    void testToBytes_ShouldRoundTrip() {
+        ItemSimilarityMatrix matrix = build();
+        ItemSimilarityMatrix copy = ItemSimilarityMatrix.fromBytes(matrix.toBytes());
+
+        assertThat(copy).isNotNull();
+        assertThat(copy.pairCount()).isEqualTo(matrix.pairCount());
+        assertThat(copy.neighborsOf(20)).containsExactly(matrix.neighborsOf(20));
+        assertThat(ItemSimilarityMatrix.fromBytes(new byte[]{1, 2, 3})).isNull();
+    }
+}
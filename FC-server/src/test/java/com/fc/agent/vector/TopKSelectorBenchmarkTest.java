@@ -0,0 +1,87 @@
+package com.fc.agent.vector;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * TopKSelector 基准测试
+ *
+ * 对比10k/100k/1M候选下 TopKSelector 与"构建Map + 全量排序 + limit"的耗时，默认不执行：
+ * mvn -pl FC-server test -Pbenchmark -Dtest=TopKSelectorBenchmarkTest
+ */
+@Tag("benchmark")
+class TopKSelectorBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TopKSelectorBenchmarkTest.class);
+
+    private static final int TOP_K = 20;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 5;
+
+    @Test
+    void testSelect_BenchmarkAgainstFullSort() {
+        Random random = new Random(17);
+        for (int candidateCount : new int[]{10_000, 100_000, 1_000_000}) {
+            long[] ids = new long[candidateCount];
+            double[] scores = new double[candidateCount];
+            for (int i = 0; i < candidateCount; i++) {
+                ids[i] = i + 1;
+                scores[i] = random.nextDouble();
+            }
+            Set<Long> excluded = new HashSet<>(Arrays.asList(1L, 2L, 3L));
+
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                selectTopK(ids, scores, excluded);
+                fullSortTopK(ids, scores, excluded);
+            }
+
+            long selectorNanos = Long.MAX_VALUE;
+            long fullSortNanos = Long.MAX_VALUE;
+            long[] selected = null;
+            List<Long> expected = null;
+            for (int round = 0; round < MEASURE_ROUNDS; round++) {
+                long start = System.nanoTime();
+                selected = selectTopK(ids, scores, excluded);
+                selectorNanos = Math.min(selectorNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                expected = fullSortTopK(ids, scores, excluded);
+                fullSortNanos = Math.min(fullSortNanos, System.nanoTime() - start);
+            }
+
+            log.info("候选数={}, TopKSelector={}ms, 全量排序={}ms", candidateCount,
+                    String.format("%.2f", selectorNanos / 1e6), String.format("%.2f", fullSortNanos / 1e6));
+            assertThat(Arrays.stream(selected).boxed().collect(Collectors.toList())).isEqualTo(expected);
+            assertThat(selectorNanos).as("候选数=%d 时 TopKSelector 耗时", candidateCount).isLessThan(fullSortNanos);
+        }
+    }
+
+    private long[] selectTopK(long[] ids, double[] scores, Set<Long> excluded) {
+        TopKSelector selector = new TopKSelector(TOP_K).exclude(excluded);
+        for (int i = 0; i < ids.length; i++) {
+            selector.offer(ids[i], scores[i]);
+        }
+        return selector.finish().ids();
+    }
+
+    private List<Long> fullSortTopK(long[] ids, double[] scores, Set<Long> excluded) {
+        Map<Long, Double> scoreMap = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            scoreMap.put(ids[i], scores[i]);
+        }
+        return scoreMap.entrySet().stream()
+                .filter(entry -> !excluded.contains(entry.getKey()))
+                .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(TOP_K)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
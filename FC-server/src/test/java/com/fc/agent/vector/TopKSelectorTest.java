@@ -0,0 +1,71 @@
+package com.fc.agent.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * TopKSelector 单元测试类
+ *
+ * 以"构建Map + 全量排序 + limit"为对照验证结果一致；耗时对比见 TopKSelectorBenchmarkTest
+ */
+class TopKSelectorTest {
+
+    @Test
+    void testSelect_ShouldMatchFullSortWithExclusionsAndTies() {
+        Random random = new Random(5);
+        int candidateCount = 10_000;
+        long[] ids = new long[candidateCount];
+        double[] scores = new double[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            ids[i] = i + 1;
+            // 量化分数以制造大量并列
+            scores[i] = Math.floor(random.nextDouble() * 100) / 100;
+        }
+        Set<Long> excluded = new HashSet<>(Arrays.asList(3L, 7L, 42L, 9999L));
+
+        TopKSelector selector = new TopKSelector(20).exclude(excluded);
+        for (int i = 0; i < candidateCount; i++) {
+            selector.offer(ids[i], scores[i]);
+        }
+        selector.finish();
+
+        List<Long> expected = fullSortTopK(ids, scores, excluded, 20);
+        assertThat(Arrays.stream(selector.ids()).boxed().collect(Collectors.toList())).isEqualTo(expected);
+        double[] selectedScores = selector.scores();
+        for (int i = 1; i < selectedScores.length; i++) {
+            assertThat(selectedScores[i]).isLessThanOrEqualTo(selectedScores[i - 1]);
+        }
+    }
+
+    @Test
+    void testSelect_WithFewerCandidatesThanK_ShouldReturnAllSorted() {
+        TopKSelector selector = new TopKSelector(10);
+        selector.offer(1L, 0.2);
+        selector.offer(2L, 0.9);
+        selector.offer(3L, Double.NaN);
+        selector.offer(4L, 0.5);
+        selector.finish();
+
+        assertThat(selector.ids()).containsExactly(2L, 4L, 1L);
+        assertThat(selector.scores()).containsExactly(0.9, 0.5, 0.2);
+        assertThatThrownBy(() -> selector.offer(5L, 1.0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private List<Long> fullSortTopK(long[] ids, double[] scores, Set<Long> excluded, int k) {
+        Map<Long, Double> scoreMap = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            scoreMap.put(ids[i], scores[i]);
+        }
+        return scoreMap.entrySet().stream()
+                .filter(entry -> !excluded.contains(entry.getKey()))
+                .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,10 +1,12 @@
 package com.fc.service.impl.agent;
 
+import com.fc.agent.config.AgentCleanupConfig;
 import com.fc.dto.agent.CleanupResult;
 import com.fc.dto.agent.CleanupStats;
 import com.fc.entity.AgentConversationHistory;
 import com.fc.enums.CleanupStrategyEnum;
 import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import com.fc.service.agent.AgentConversationPartitionService;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
@@ -37,6 +39,9 @@ class AgentConversationCleanupServiceImplTest {
     @Mock
     private AgentConversationHistoryMapper agentConversationHistoryMapper;
 
+    @Mock
+    private AgentConversationPartitionService agentConversationPartitionService;
+
     @InjectMocks
     private AgentConversationCleanupServiceImpl cleanupService;
 
@@ -57,6 +62,16 @@ class AgentConversationCleanupServiceImplTest {
             registryField.setAccessible(true);
             registryField.set(cleanupService, meterRegistry);
             
+            AgentCleanupConfig cleanupConfig = AgentCleanupConfig.getDefault();
+            cleanupConfig.setBatchPauseMs(0);
+            var configField = AgentConversationCleanupServiceImpl.class.getDeclaredField("agentCleanupConfig");
+            configField.setAccessible(true);
+            configField.set(cleanupService, cleanupConfig);
+            
+            var partitionField = AgentConversationCleanupServiceImpl.class.getDeclaredField("agentConversationPartitionService");
+            partitionField.setAccessible(true);
+            partitionField.set(cleanupService, agentConversationPartitionService);
+            
             // 调用初始化方法
             var initMethod = AgentConversationCleanupServiceImpl.class.getDeclaredMethod("initMonitoring");
             initMethod.setAccessible(true);
@@ -75,7 +90,8 @@ class AgentConversationCleanupServiceImplTest {
 
         // 模拟Mapper行为 - 使用any()匹配时间参数
         when(agentConversationHistoryMapper.countByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
-        when(agentConversationHistoryMapper.deleteByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
+        when(agentConversationHistoryMapper.selectCleanupChunkEndId(any(LocalDateTime.class), anyLong(), anyInt())).thenReturn(100L, (Long) null);
+        when(agentConversationHistoryMapper.deleteByIdRangeAndCreateTimeBefore(eq(0L), eq(100L), any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
 
         // 执行测试
         CleanupResult result = cleanupService.cleanupByTime(retentionDays);
@@ -89,7 +105,31 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法调用 - 使用any()匹配时间参数
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
-        verify(agentConversationHistoryMapper, times(1)).deleteByCreateTimeBefore(any(LocalDateTime.class));
+        verify(agentConversationHistoryMapper, times(1)).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testCleanupByTime_WithManyRecords_ShouldDeleteInPrimaryKeyChunks() {
+        // 准备测试数据：两批，每批1000条
+        when(agentConversationHistoryMapper.countByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(2000);
+        when(agentConversationHistoryMapper.selectCleanupChunkEndId(any(LocalDateTime.class), anyLong(), eq(1000)))
+            .thenReturn(1500L, 2600L, null);
+        when(agentConversationHistoryMapper.deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any(LocalDateTime.class)))
+            .thenReturn(1000);
+
+        // 执行测试
+        CleanupResult result = cleanupService.cleanupByTime(30);
+
+        // 验证结果：按主键区间依次删除，下一批从上一批的ID上界之后开始
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getAffectedRows()).isEqualTo(2000);
+        verify(agentConversationHistoryMapper).selectCleanupChunkEndId(any(LocalDateTime.class), eq(0L), eq(1000));
+        verify(agentConversationHistoryMapper).selectCleanupChunkEndId(any(LocalDateTime.class), eq(1500L), eq(1000));
+        verify(agentConversationHistoryMapper).selectCleanupChunkEndId(any(LocalDateTime.class), eq(2600L), eq(1000));
+        verify(agentConversationHistoryMapper).deleteByIdRangeAndCreateTimeBefore(eq(0L), eq(1500L), any(LocalDateTime.class));
+        verify(agentConversationHistoryMapper).deleteByIdRangeAndCreateTimeBefore(eq(1500L), eq(2600L), any(LocalDateTime.class));
+        assertThat(meterRegistry.find("agent.cleanup.records").counter().count()).isEqualTo(2000.0);
+        assertThat(meterRegistry.find("agent.cleanup.pending").gauge().value()).isZero();
     }
 
     @Test
@@ -110,7 +150,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法调用
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
-        verify(agentConversationHistoryMapper, never()).deleteByCreateTimeBefore(any());
+        verify(agentConversationHistoryMapper, never()).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any());
     }
 
     @Test
@@ -129,7 +169,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法没有被调用
         verify(agentConversationHistoryMapper, never()).countByCreateTimeBefore(any());
-        verify(agentConversationHistoryMapper, never()).deleteByCreateTimeBefore(any());
+        verify(agentConversationHistoryMapper, never()).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any());
     }
 
     @Test
@@ -144,7 +184,8 @@ class AgentConversationCleanupServiceImplTest {
         when(agentConversationHistoryMapper.countByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(totalCount);
         when(agentConversationHistoryMapper.selectByCreateTimeBefore(any(LocalDateTime.class), anyInt()))
             .thenReturn(List.of(createMockHistory(cutoffTime)));
-        when(agentConversationHistoryMapper.deleteByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
+        when(agentConversationHistoryMapper.selectCleanupChunkEndId(any(LocalDateTime.class), anyLong(), anyInt())).thenReturn(100L, (Long) null);
+        when(agentConversationHistoryMapper.deleteByIdRangeAndCreateTimeBefore(eq(0L), eq(100L), any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
 
         // 执行测试
         CleanupResult result = cleanupService.cleanupByCount(retentionCount);
@@ -158,7 +199,7 @@ class AgentConversationCleanupServiceImplTest {
         // 验证方法调用
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
         verify(agentConversationHistoryMapper, times(1)).selectByCreateTimeBefore(any(LocalDateTime.class), anyInt());
-        verify(agentConversationHistoryMapper, times(1)).deleteByCreateTimeBefore(any(LocalDateTime.class));
+        verify(agentConversationHistoryMapper, times(1)).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any(LocalDateTime.class));
     }
 
     /**
@@ -189,7 +230,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法调用
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
-        verify(agentConversationHistoryMapper, never()).deleteByCreateTimeBefore(any());
+        verify(agentConversationHistoryMapper, never()).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any());
     }
 
     @Test
@@ -208,7 +249,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法没有被调用
         verify(agentConversationHistoryMapper, never()).countByCreateTimeBefore(any());
-        verify(agentConversationHistoryMapper, never()).deleteByCreateTimeBefore(any());
+        verify(agentConversationHistoryMapper, never()).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any());
     }
 
     @Test
@@ -218,7 +259,8 @@ class AgentConversationCleanupServiceImplTest {
 
         // 模拟Mapper行为
         when(agentConversationHistoryMapper.countByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
-        when(agentConversationHistoryMapper.deleteByCreateTimeBefore(any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
+        when(agentConversationHistoryMapper.selectCleanupChunkEndId(any(LocalDateTime.class), anyLong(), anyInt())).thenReturn(100L, (Long) null);
+        when(agentConversationHistoryMapper.deleteByIdRangeAndCreateTimeBefore(eq(0L), eq(100L), any(LocalDateTime.class))).thenReturn(expectedAffectedRows);
 
         // 执行测试
         CleanupResult result = cleanupService.executeAutoCleanup();
@@ -231,7 +273,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法调用
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
-        verify(agentConversationHistoryMapper, times(1)).deleteByCreateTimeBefore(any(LocalDateTime.class));
+        verify(agentConversationHistoryMapper, times(1)).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any(LocalDateTime.class));
     }
 
     @Test
@@ -267,7 +309,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法调用
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
-        verify(agentConversationHistoryMapper, never()).deleteByCreateTimeBefore(any());
+        verify(agentConversationHistoryMapper, never()).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any());
     }
 
     @Test
@@ -289,7 +331,7 @@ class AgentConversationCleanupServiceImplTest {
 
         // 验证方法调用
         verify(agentConversationHistoryMapper, times(1)).countByCreateTimeBefore(any(LocalDateTime.class));
-        verify(agentConversationHistoryMapper, never()).deleteByCreateTimeBefore(any());
+        verify(agentConversationHistoryMapper, never()).deleteByIdRangeAndCreateTimeBefore(anyLong(), anyLong(), any());
     }
 
     @Test
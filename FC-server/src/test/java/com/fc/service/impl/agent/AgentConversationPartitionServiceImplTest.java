@@ -0,0 +1,144 @@
+package com.fc.service.impl.agent;
+
+import com.fc.dto.agent.ConversationPartition;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AgentConversationPartitionServiceImpl 单元测试类
+ *
+ * 验证分区上界与 MySQL TO_DAYS 的换算、预建分区的范围，以及按截止时间删除哪些分区
+ */
+@ExtendWith(MockitoExtension.class)
+class AgentConversationPartitionServiceImplTest {
+
+    // MySQL 文档示例：TO_DAYS('2007-10-07') = 733321
+    private static final String TO_DAYS_2007_10_07 = "733321";
+    private static final String TO_DAYS_2026_09_01 = "740225";
+    private static final String TO_DAYS_2026_10_01 = "740255";
+    private static final String TO_DAYS_2026_11_01 = "740286";
+
+    @Mock
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    private AgentConversationPartitionServiceImpl partitionService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        partitionService = new AgentConversationPartitionServiceImpl();
+        setField(partitionService, "agentConversationHistoryMapper", agentConversationHistoryMapper);
+        setField(partitionService, "granularity", "MONTH");
+        setField(partitionService, "futurePartitions", 3);
+    }
+
+    @Test
+    void testDropPartitionsBefore_ShouldDropOnlyPartitionsWhoseUpperBoundIsNotAfterCutoffDate() {
+        when(agentConversationHistoryMapper.selectPartitions()).thenReturn(List.of(
+                partition("p202608", TO_DAYS_2026_09_01, 100),
+                partition("p202609", TO_DAYS_2026_10_01, 200),
+                partition("p202610", TO_DAYS_2026_11_01, 300),
+                partition("p_future", "MAXVALUE", 0)));
+
+        long dropped = partitionService.dropPartitionsBefore(LocalDateTime.of(2026, 10, 1, 0, 0));
+
+        assertThat(dropped).isEqualTo(300);
+        verify(agentConversationHistoryMapper).dropPartition("p202608");
+        verify(agentConversationHistoryMapper).dropPartition("p202609");
+        verify(agentConversationHistoryMapper, never()).dropPartition("p202610");
+        verify(agentConversationHistoryMapper, never()).dropPartition("p_future");
+    }
+
+    @Test
+    void testDropPartitionsBefore_ShouldKeepPartitionSpanningCutoff() {
+        when(agentConversationHistoryMapper.selectPartitions()).thenReturn(List.of(
+                partition("p202608", TO_DAYS_2026_09_01, 100),
+                partition("p202609", TO_DAYS_2026_10_01, 200),
+                partition("p_future", "MAXVALUE", 0)));
+
+        // 9月的分区中还有晚于截止时间的记录，整个分区保留
+        long dropped = partitionService.dropPartitionsBefore(LocalDateTime.of(2026, 9, 30, 23, 0));
+
+        assertThat(dropped).isEqualTo(100);
+        verify(agentConversationHistoryMapper).dropPartition("p202608");
+        verify(agentConversationHistoryMapper, never()).dropPartition("p202609");
+    }
+
+    @Test
+    void testDropPartitionsBefore_ShouldSkipIllegalPartitionName() {
+        when(agentConversationHistoryMapper.selectPartitions()).thenReturn(List.of(
+                partition("p2007; DROP TABLE x", TO_DAYS_2007_10_07, 10),
+                partition("p_future", "MAXVALUE", 0)));
+
+        assertThat(partitionService.dropPartitionsBefore(LocalDateTime.of(2026, 10, 1, 0, 0))).isZero();
+        verify(agentConversationHistoryMapper, never()).dropPartition(anyString());
+    }
+
+    @Test
+    void testEnsureFuturePartitions_ShouldCreateCurrentAndFuturePeriodsFromEmptyTable() {
+        when(agentConversationHistoryMapper.selectPartitions()).thenReturn(List.of(
+                partition("p_future", "MAXVALUE", 0)));
+
+        int created = partitionService.ensureFuturePartitions(LocalDate.of(2026, 9, 15));
+
+        assertThat(created).isEqualTo(4);
+        List<ConversationPartition> partitions = captureReorganized();
+        assertThat(partitions).extracting(ConversationPartition::getPartitionName)
+                .containsExactly("p202609", "p202610", "p202611", "p202612");
+        assertThat(partitions.get(0).getLessThan()).isEqualTo(TO_DAYS_2026_10_01);
+        assertThat(partitions.get(1).getLessThan()).isEqualTo(TO_DAYS_2026_11_01);
+    }
+
+    @Test
+    void testEnsureFuturePartitions_ShouldContinueFromLastBound() {
+        when(agentConversationHistoryMapper.selectPartitions()).thenReturn(List.of(
+                partition("p202609", TO_DAYS_2026_10_01, 0),
+                partition("p202610", TO_DAYS_2026_11_01, 0),
+                partition("p_future", "MAXVALUE", 0)));
+
+        int created = partitionService.ensureFuturePartitions(LocalDate.of(2026, 10, 19));
+
+        assertThat(created).isEqualTo(3);
+        assertThat(captureReorganized()).extracting(ConversationPartition::getPartitionName)
+                .containsExactly("p202611", "p202612", "p202701");
+    }
+
+    @Test
+    void testEnsureFuturePartitions_ShouldDoNothingWhenAlreadyCovered() {
+        when(agentConversationHistoryMapper.selectPartitions()).thenReturn(List.of(
+                partition("p202701", "740378", 0),
+                partition("p_future", "MAXVALUE", 0)));
+
+        assertThat(partitionService.ensureFuturePartitions(LocalDate.of(2026, 10, 19))).isZero();
+        verify(agentConversationHistoryMapper, never()).reorganizeFuturePartition(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ConversationPartition> captureReorganized() {
+        ArgumentCaptor<List<ConversationPartition>> captor = ArgumentCaptor.forClass(List.class);
+        verify(agentConversationHistoryMapper).reorganizeFuturePartition(captor.capture());
+        return captor.getValue();
+    }
+
+    private ConversationPartition partition(String name, String lessThan, long rows) {
+        return new ConversationPartition(name, lessThan, rows);
+    }
+
+    private void setField(Object target, String name, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
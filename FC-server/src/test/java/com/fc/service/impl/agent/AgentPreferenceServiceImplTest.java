@@ -0,0 +1,109 @@
+package com.fc.service.impl.agent;
+
+import com.fc.agent.memory.PreferenceExtractor;
+import com.fc.agent.memory.PreferenceProfile;
+import com.fc.entity.AgentConversationHistory;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import com.fc.mapper.agent.AgentUserPreferencesMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AgentPreferenceServiceImpl 单元测试类
+ *
+ * 验证增量处理偏好画像时会回看水位之前的消息，补上晚于更大ID提交的消息，且不重复累加已处理的消息
+ */
+@ExtendWith(MockitoExtension.class)
+class AgentPreferenceServiceImplTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Mock
+    private AgentUserPreferencesMapper agentUserPreferencesMapper;
+
+    @Mock
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    @Mock
+    private PreferenceExtractor preferenceExtractor;
+
+    @Mock
+    private ThreadPoolTaskScheduler agentPreferenceScheduler;
+
+    private AgentPreferenceServiceImpl agentPreferenceService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        agentPreferenceService = new AgentPreferenceServiceImpl();
+        setField(agentPreferenceService, "agentUserPreferencesMapper", agentUserPreferencesMapper);
+        setField(agentPreferenceService, "agentConversationHistoryMapper", agentConversationHistoryMapper);
+        setField(agentPreferenceService, "preferenceExtractor", preferenceExtractor);
+        setField(agentPreferenceService, "agentPreferenceScheduler", agentPreferenceScheduler);
+        setField(agentPreferenceService, "cacheSize", 100);
+        setField(agentPreferenceService, "cacheMinutes", 60);
+        setField(agentPreferenceService, "refreshIntervalMs", 0L);
+        setField(agentPreferenceService, "batchSize", 200);
+        setField(agentPreferenceService, "maxMessagesPerRefresh", 1000);
+        setField(agentPreferenceService, "watermarkLookback", 1000L);
+        setField(agentPreferenceService, "decay", 0.95);
+        setField(agentPreferenceService, "flushDelayMs", 5000L);
+        agentPreferenceService.init();
+    }
+
+    @Test
+    void testGetProfile_ShouldPickUpLateCommittedMessageBelowWatermark() {
+        when(agentConversationHistoryMapper.selectUserMessagesAfterId(eq(USER_ID), anyLong(), anyInt()))
+                .thenReturn(List.of(message(10L), message(12L)))
+                // ID为11的消息晚于12提交
+                .thenReturn(List.of(message(10L), message(11L), message(12L)));
+
+        agentPreferenceService.getProfile(USER_ID);
+        PreferenceProfile profile = agentPreferenceService.getProfile(USER_ID);
+
+        assertThat(profile.getWatermark()).isEqualTo(12L);
+        assertThat(profile.getMessageCount()).isEqualTo(3);
+        assertThat(profile.getRecentIds()).containsExactlyInAnyOrder(10L, 11L, 12L);
+        verify(preferenceExtractor).accumulate(any(PreferenceProfile.class), eq("m10"), anyDouble());
+        verify(preferenceExtractor).accumulate(any(PreferenceProfile.class), eq("m11"), anyDouble());
+        verify(preferenceExtractor).accumulate(any(PreferenceProfile.class), eq("m12"), anyDouble());
+        // 第一次从水位开始查询，第二次从水位往前回看
+        verify(agentConversationHistoryMapper, times(2)).selectUserMessagesAfterId(eq(USER_ID), eq(0L), anyInt());
+    }
+
+    @Test
+    void testGetProfile_ShouldDropIdsBelowLookbackWindow() throws Exception {
+        setField(agentPreferenceService, "watermarkLookback", 5L);
+        when(agentConversationHistoryMapper.selectUserMessagesAfterId(eq(USER_ID), anyLong(), anyInt()))
+                .thenReturn(List.of(message(1L), message(20L)));
+
+        PreferenceProfile profile = agentPreferenceService.getProfile(USER_ID);
+
+        assertThat(profile.getWatermark()).isEqualTo(20L);
+        assertThat(profile.getRecentIds()).containsExactly(20L);
+    }
+
+    private AgentConversationHistory message(Long id) {
+        return AgentConversationHistory.builder()
+                .id(id)
+                .userId(USER_ID)
+                .messageText("m" + id)
+                .messageRole("user")
+                .build();
+    }
+
+    private void setField(Object target, String name, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,144 @@
+package com.fc.service.impl.agent;
+
+import com.fc.entity.AgentConversationHistory;
+import com.fc.mapper.agent.AgentConversationHistoryMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ConversationLogWriter 单元测试类
+ *
+ * 验证消息按批次多行插入、停机时写完队列中的剩余消息，以及批量插入失败后逐条重试
+ */
+@ExtendWith(MockitoExtension.class)
+class ConversationLogWriterTest {
+
+    @Mock
+    private AgentConversationHistoryMapper agentConversationHistoryMapper;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // 每次插入调用收到的消息（写入线程会复用批次列表，这里保存副本）
+    private final List<List<String>> insertedBatches = Collections.synchronizedList(new ArrayList<>());
+
+    private ConversationLogWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void testAppend_ShouldInsertFullBatchWithoutWaitingForInterval() throws Exception {
+        recordInserts();
+        writer = startWriter(3, 1000L);
+
+        for (int i = 1; i <= 3; i++) {
+            writer.append(message(i));
+        }
+
+        // 凑满一批后立即写入，不等刷盘间隔
+        verify(agentConversationHistoryMapper, timeout(5000)).insertBatch(anyList());
+        assertThat(insertedBatches).containsExactly(List.of("m1", "m2", "m3"));
+    }
+
+    @Test
+    void testShutdown_ShouldFlushRemainingMessagesInOrder() throws Exception {
+        recordInserts();
+        writer = startWriter(2, 100L);
+
+        for (int i = 1; i <= 5; i++) {
+            writer.append(message(i));
+        }
+        writer.shutdown();
+
+        assertThat(insertedBatches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        assertThat(insertedBatches.stream().flatMap(List::stream))
+                .containsExactly("m1", "m2", "m3", "m4", "m5");
+
+        // 停机后的追加改为同步写入
+        writer.append(message(6));
+        assertThat(insertedBatches.get(insertedBatches.size() - 1)).containsExactly("m6");
+        writer = null;
+    }
+
+    @Test
+    void testWriteBatch_ShouldRetryEachMessageWhenBatchInsertFails() throws Exception {
+        doAnswer(invocation -> {
+            List<AgentConversationHistory> batch = invocation.getArgument(0);
+            if (batch.size() > 1) {
+                throw new RuntimeException("batch insert failed");
+            }
+            if ("m2".equals(batch.get(0).getMessageText())) {
+                throw new RuntimeException("bad row");
+            }
+            insertedBatches.add(texts(batch));
+            return null;
+        }).when(agentConversationHistoryMapper).insertBatch(anyList());
+        writer = startWriter(3, 1000L);
+
+        for (int i = 1; i <= 3; i++) {
+            writer.append(message(i));
+        }
+
+        // 1 次批量插入 + 3 次逐条重试
+        verify(agentConversationHistoryMapper, timeout(5000).times(4)).insertBatch(anyList());
+        assertThat(insertedBatches).containsExactly(List.of("m1"), List.of("m3"));
+        assertThat(meterRegistry.counter("agent.conversation.log.flushed").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("agent.conversation.log.failed").count()).isEqualTo(1);
+    }
+
+    private void recordInserts() {
+        doAnswer(invocation -> {
+            List<AgentConversationHistory> batch = invocation.getArgument(0);
+            insertedBatches.add(texts(batch));
+            return null;
+        }).when(agentConversationHistoryMapper).insertBatch(anyList());
+    }
+
+    private ConversationLogWriter startWriter(int batchSize, long flushIntervalMs) throws Exception {
+        ConversationLogWriter logWriter = new ConversationLogWriter();
+        setField(logWriter, "agentConversationHistoryMapper", agentConversationHistoryMapper);
+        setField(logWriter, "meterRegistry", meterRegistry);
+        setField(logWriter, "capacity", 100);
+        setField(logWriter, "batchSize", batchSize);
+        setField(logWriter, "flushIntervalMs", flushIntervalMs);
+        setField(logWriter, "offerTimeoutMs", 50L);
+        logWriter.start();
+        return logWriter;
+    }
+
+    private static List<String> texts(List<AgentConversationHistory> batch) {
+        return batch.stream().map(AgentConversationHistory::getMessageText).toList();
+    }
+
+    private AgentConversationHistory message(int index) {
+        return AgentConversationHistory.builder()
+                .sessionId("session-1")
+                .userId(1L)
+                .messageText("m" + index)
+                .messageRole("user")
+                .build();
+    }
+
+    private void setField(Object target, String name, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.fc.service.impl.user;
+
+import com.fc.dto.movie.ai.MovieViewedDTO;
+import com.fc.exception.RecommendAlgorithmException;
+import com.fc.vo.movie.ai.MovieSimpleVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RedissonClient;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * AiRecommendServiceImpl 单元测试类
+ *
+ * 验证看过但未评分的观影记录不影响推荐理由生成，以及相似度矩阵未加载时请求不会同步读取 Redis
+ */
+@ExtendWith(MockitoExtension.class)
+class AiRecommendServiceImplTest {
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    private AiRecommendServiceImpl aiRecommendService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MovieSimilarityServiceImpl movieSimilarityService = new MovieSimilarityServiceImpl();
+        setField(movieSimilarityService, "redissonClient", redissonClient);
+
+        aiRecommendService = new AiRecommendServiceImpl();
+        setField(aiRecommendService, "movieSimilarityService", movieSimilarityService);
+        setField(aiRecommendService, "maxRecommendNum", 20);
+    }
+
+    @Test
+    void testBuildRecommendReason_ShouldIgnoreUnratedMovies() {
+        List<MovieViewedDTO> viewedMovies = List.of(viewed(1L, 4), viewed(2L, null), viewed(3L, 2));
+
+        String reason = aiRecommendService.buildRecommendReason(List.of(new MovieSimpleVO()), viewedMovies);
+
+        assertThat(reason).contains("1部相似风格的电影");
+    }
+
+    @Test
+    void testBuildRecommendReason_ShouldFallBackWhenNothingRated() {
+        List<MovieViewedDTO> viewedMovies = List.of(viewed(1L, null), viewed(2L, null));
+
+        String reason = aiRecommendService.buildRecommendReason(List.of(new MovieSimpleVO()), viewedMovies);
+
+        assertThat(reason).isEqualTo("根据您的观影历史，为您推荐以下电影");
+    }
+
+    @Test
+    void testSelectTopMovies_ShouldFailFastBeforeMatrixIsLoaded() {
+        List<MovieViewedDTO> viewedMovies = List.of(viewed(1L, 5), viewed(2L, null), viewed(3L, 3));
+
+        assertThatThrownBy(() -> aiRecommendService.selectTopMovies(viewedMovies))
+                .isInstanceOf(RecommendAlgorithmException.class);
+        // 矩阵只由同步任务加载，请求线程不访问 Redis
+        verifyNoInteractions(redissonClient);
+    }
+
+    private MovieViewedDTO viewed(Long movieId, Integer rating) {
+        MovieViewedDTO viewed = new MovieViewedDTO();
+        viewed.setMovieId(movieId);
+        viewed.setRating(rating);
+        return viewed;
+    }
+
+    private void setField(Object target, String name, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,69 @@
+package com.fc.service.impl.user;
+
+import com.fc.utils.TokenUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * CommentSampleSelector 单元测试类
+ *
+ * 验证近似重复淘汰、多样性选取、token 预算和截断逻辑
+ */
+class CommentSampleSelectorTest {
+
+    @Test
+    void testSelectIndexes_ShouldDropNearDuplicatesAndPreferDiversity() {
+        int[] tokens = {10, 10, 10, 10};
+        int[] likes = {100, 90, 80, 20};
+        float[][] vectors = {
+                unit(1, 0, 0),
+                unit(1, 0.01f, 0),   // 与0几乎相同
+                unit(0.8f, 0.6f, 0), // 与0较相似
+                unit(0, 0, 1)        // 与其他完全不同
+        };
+
+        List<Integer> selected = CommentSampleSelector.selectIndexes(tokens, likes, vectors, 3,
+                1000, 0.92, 0.6);
+
+        assertThat(selected).doesNotContain(1);
+        assertThat(selected.get(0)).isEqualTo(0);
+        // 点赞少但内容不同的评论排在相似评论之前
+        assertThat(selected).containsExactly(0, 3, 2);
+    }
+
+    @Test
+    void testSelectIndexes_ShouldRespectTokenBudgetWithoutVectors() {
+        int[] tokens = {60, 50, 30, 20};
+        int[] likes = {10, 9, 8, 7};
+
+        List<Integer> selected = CommentSampleSelector.selectIndexes(tokens, likes, null, 10,
+                100, 0.92, 0.6);
+
+        // 60 + 30 超出后跳过50，继续选择能放下的短评论
+        assertThat(selected).containsExactly(0, 2);
+    }
+
+    @Test
+    void testTruncate_ShouldCutByEstimatedTokens() {
+        String chinese = "这部电影的剧情非常精彩";
+        assertThat(TokenUtil.estimateTokens(chinese)).isEqualTo(11);
+        assertThat(TokenUtil.truncate(chinese, 4)).isEqualTo("这部电影…");
+        assertThat(TokenUtil.truncate(chinese, 20)).isEqualTo(chinese);
+        assertThat(TokenUtil.estimateTokens("great movie!")).isEqualTo(3);
+    }
+
+    private static float[] unit(float... values) {
+        double norm = 0;
+        for (float v : values) {
+            norm += v * v;
+        }
+        float[] vector = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            vector[i] = (float) (values[i] / Math.sqrt(norm));
+        }
+        return vector;
+    }
+}
@@ -361,4 +361,26 @@ USE FilmComment_DB;
 ALTER TABLE post ADD COLUMN comment_count INT NOT NULL DEFAULT 0 COMMENT '帖子评论数';
 
 USE FilmComment_DB;
-ALTER TABLE post_like CHANGE id like_id BIGINT AUTO_INCREMENT;
\ No newline at end of file
+ALTER TABLE post_like CHANGE id like_id BIGINT AUTO_INCREMENT;
+
+USE FilmComment_DB;
+CREATE INDEX idx_movie_user_relation ON user_movie_relation(movie_id, user_id, relation_type);
+
+USE FilmComment_DB;
+-- 列表页内容摘要：存储生成列，写入时由MySQL计算（格式与 PostUserServiceImpl.truncateContent 一致），
+-- 与其他列一起存放在行内，列表查询只读该列，不再读取行外存储的 content
+ALTER TABLE post ADD COLUMN content_summary VARCHAR(103)
+    GENERATED ALWAYS AS (CASE WHEN CHAR_LENGTH(content) > 100 THEN CONCAT(LEFT(content, 100), '...') ELSE content END) STORED
+    COMMENT '列表页内容摘要（超过100字符截断并追加...）';
+-- 帖子列表复合索引：按访问模式覆盖 等值过滤列 + (create_time, post_id) 排序，避免filesort
+CREATE INDEX idx_post_feed ON post(is_deleted, create_time, post_id);
+CREATE INDEX idx_post_movie_feed ON post(movie_id, is_deleted, create_time, post_id);
+-- idx_post_movie_type_feed 同时支撑电影热门标签对账（movie_id 范围/IN + post_type IN (3, 4) + is_deleted）
+CREATE INDEX idx_post_movie_type_feed ON post(movie_id, post_type, is_deleted, create_time, post_id);
+CREATE INDEX idx_post_type_feed ON post(post_type, is_deleted, create_time, post_id);
+CREATE INDEX idx_post_user_feed ON post(user_id, is_deleted, create_time, post_id);
+-- 以下单列索引已是上面复合索引的前缀，删除以减少写入开销（外键改由复合索引支撑）
+DROP INDEX idx_user_id ON post;
+DROP INDEX idx_movie_id ON post;
+DROP INDEX idx_post_type ON post;
+DROP INDEX idx_is_deleted ON post;
@@ -0,0 +1,30 @@
+USE FilmComment_DB;
+
+-- AI Agent对话历史表改为按月时间分区
+-- 过期数据由清理任务整分区 DROP，不再逐行 DELETE；后续分区由 AgentConversationPartitionJob 从 p_future 拆分预建
+-- 注意：
+-- 1. 分区表不支持外键，删除到 users 的外键（对话历史随清理任务过期删除）
+-- 2. 分区表的主键必须包含分区列，主键改为 (id, create_time)，id 仍自增
+-- 3. ALTER 会重建整表，请在低峰期执行；下面的起始分区按已有数据的最早月份调整，
+--    早于第一个分区上界的数据都落在第一个分区中
+
+ALTER TABLE agent_conversation_history DROP FOREIGN KEY fk_agent_conversation_user;
+
+ALTER TABLE agent_conversation_history
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, create_time);
+
+ALTER TABLE agent_conversation_history
+    PARTITION BY RANGE (TO_DAYS(create_time)) (
+        PARTITION p202609 VALUES LESS THAN (TO_DAYS('2026-10-01')),
+        PARTITION p202610 VALUES LESS THAN (TO_DAYS('2026-11-01')),
+        PARTITION p202611 VALUES LESS THAN (TO_DAYS('2026-12-01')),
+        PARTITION p202612 VALUES LESS THAN (TO_DAYS('2027-01-01')),
+        PARTITION p202701 VALUES LESS THAN (TO_DAYS('2027-02-01')),
+        PARTITION p_future VALUES LESS THAN MAXVALUE
+    );
+
+-- 查看分区
+SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS
+FROM information_schema.PARTITIONS
+WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'agent_conversation_history';
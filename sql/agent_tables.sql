@@ -2,7 +2,7 @@ USE FilmComment_DB;
 
 -- 1. 用户对话历史表（存储Agent对话上下文）
 CREATE TABLE IF NOT EXISTS agent_conversation_history (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+    id BIGINT AUTO_INCREMENT COMMENT '主键ID',
     session_id VARCHAR(64) NOT NULL COMMENT '会话ID',
     user_id BIGINT NOT NULL COMMENT '用户ID',
     message_text TEXT NOT NULL COMMENT '消息内容',
@@ -12,8 +12,12 @@ CREATE TABLE IF NOT EXISTS agent_conversation_history (
     INDEX idx_session_user (session_id, user_id) COMMENT '会话-用户复合索引',
     INDEX idx_user_time (user_id, create_time DESC) COMMENT '用户-时间索引（优化查询）',
     INDEX idx_session_time (session_id, create_time DESC) COMMENT '会话-时间索引（优化查询）',
-    CONSTRAINT fk_agent_conversation_user FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI Agent对话历史表';
+    -- 分区表的主键必须包含分区列，且不支持外键
+    PRIMARY KEY (id, create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI Agent对话历史表（按月分区，过期分区由清理任务删除，当前及后续分区由 AgentConversationPartitionJob 在启动时创建）'
+PARTITION BY RANGE (TO_DAYS(create_time)) (
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
 
 -- 2. 用户偏好表（存储AI提取的用户偏好）
 CREATE TABLE IF NOT EXISTS agent_user_preferences (
@@ -22,6 +26,8 @@ CREATE TABLE IF NOT EXISTS agent_user_preferences (
     favorite_genres JSON COMMENT '喜欢的电影类型',
     preferred_rating_range VARCHAR(20) COMMENT '偏好评分范围',
     disliked_movies JSON COMMENT '不喜欢的电影',
+    preference_profile JSON COMMENT '偏好画像（类型/评分/年份/人物权重）',
+    profile_watermark BIGINT NOT NULL DEFAULT 0 COMMENT '偏好画像已处理到的对话消息ID',
     create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_user_id (user_id) COMMENT '用户ID索引',
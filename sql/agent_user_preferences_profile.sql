@@ -0,0 +1,8 @@
+USE FilmComment_DB;
+
+-- AI Agent用户偏好表增加偏好画像
+-- 偏好画像由对话中的用户消息增量提取（只处理 profile_watermark 之后的消息），缓存在应用中并异步写回
+
+ALTER TABLE agent_user_preferences
+    ADD COLUMN preference_profile JSON COMMENT '偏好画像（类型/评分/年份/人物权重）' AFTER disliked_movies,
+    ADD COLUMN profile_watermark BIGINT NOT NULL DEFAULT 0 COMMENT '偏好画像已处理到的对话消息ID' AFTER preference_profile;
@@ -0,0 +1,80 @@
+-- 帖子列表查询基准脚本
+-- 用法：在独立的测试库中执行，需先执行 FC_DB.sql 末尾添加 content_summary 生成列的语句。
+-- 先生成数据，在执行 FC_DB.sql 末尾的复合索引迁移前后各跑一次第2步的 EXPLAIN ANALYZE，
+-- 再用 mysqlslap 对同一条列表查询压测并比较 p99，例如：
+--   mysqlslap --concurrency=32 --iterations=5 --number-of-queries=20000 --create-schema=FilmComment_DB \
+--     --query="SELECT post_id FROM post WHERE is_deleted = 0 AND movie_id = 1 ORDER BY create_time DESC, post_id DESC LIMIT 20"
+USE FilmComment_DB;
+
+-- 1. 生成数据（默认1000万行，按需调整 @rows；外键要求 users/movie 中已有数据）
+SET @rows = 10000000;
+SET SESSION cte_max_recursion_depth = 100000000;
+
+CREATE TEMPORARY TABLE bench_user AS
+SELECT user_id, ROW_NUMBER() OVER (ORDER BY user_id) - 1 AS idx FROM users;
+CREATE TEMPORARY TABLE bench_movie AS
+SELECT movie_id, ROW_NUMBER() OVER (ORDER BY movie_id) - 1 AS idx FROM movie;
+SET @user_count = (SELECT COUNT(*) FROM bench_user);
+SET @movie_count = (SELECT COUNT(*) FROM bench_movie);
+
+INSERT INTO post (user_id, movie_id, title, content, post_type, content_form, create_time, update_time)
+WITH RECURSIVE seq(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < @rows)
+SELECT u.user_id,
+       m.movie_id,
+       CONCAT('bench-', seq.n),
+       REPEAT('内容', 500),
+       1 + (seq.n % 4),
+       1 + (seq.n % 2),
+       NOW() - INTERVAL (seq.n % 31536000) SECOND,
+       NOW()
+FROM seq
+JOIN bench_user u ON u.idx = seq.n % @user_count
+JOIN bench_movie m ON m.idx = seq.n % @movie_count;
+
+ANALYZE TABLE post;
+
+-- 2. 列表查询（与 PostPublicMapper.pageQueryPostsByCursor 一致），添加索引前后分别执行
+SET @cursor = NOW() - INTERVAL 7 DAY;
+SET @cursor_id = 5000000;
+SET @movie_id = (SELECT MIN(movie_id) FROM movie);
+
+EXPLAIN ANALYZE
+SELECT p.post_id, p.user_id, p.movie_id, p.title, p.content_summary,
+       p.post_type, p.content_form, p.view_count, p.like_count, p.collect_count, p.comment_count, p.create_time
+FROM post p
+WHERE p.is_deleted = 0
+  AND (p.create_time < @cursor OR (p.create_time = @cursor AND p.post_id < @cursor_id))
+ORDER BY p.create_time DESC, p.post_id DESC
+LIMIT 20;
+
+EXPLAIN ANALYZE
+SELECT p.post_id, p.user_id, p.movie_id, p.title, p.content_summary,
+       p.post_type, p.content_form, p.view_count, p.like_count, p.collect_count, p.comment_count, p.create_time
+FROM post p
+WHERE p.is_deleted = 0 AND p.movie_id = @movie_id
+  AND (p.create_time < @cursor OR (p.create_time = @cursor AND p.post_id < @cursor_id))
+ORDER BY p.create_time DESC, p.post_id DESC
+LIMIT 20;
+
+EXPLAIN ANALYZE
+SELECT p.post_id, p.user_id, p.movie_id, p.title, p.content_summary,
+       p.post_type, p.content_form, p.view_count, p.like_count, p.collect_count, p.comment_count, p.create_time
+FROM post p
+WHERE p.is_deleted = 0 AND p.movie_id = @movie_id AND p.post_type = 1
+  AND (p.create_time < @cursor OR (p.create_time = @cursor AND p.post_id < @cursor_id))
+ORDER BY p.create_time DESC, p.post_id DESC
+LIMIT 20;
+
+-- 预览列对比：同一查询改为从 content 实时截断，会读取每行的行外content，与上面读取 content_summary 列的耗时对比
+EXPLAIN ANALYZE
+SELECT p.post_id, p.user_id, p.movie_id, p.title,
+       CASE WHEN CHAR_LENGTH(p.content) > 100 THEN CONCAT(LEFT(p.content, 100), '...') ELSE p.content END AS content_summary,
+       p.post_type, p.content_form, p.view_count, p.like_count, p.collect_count, p.comment_count, p.create_time
+FROM post p
+WHERE p.is_deleted = 0 AND p.movie_id = @movie_id AND p.post_type = 1
+  AND (p.create_time < @cursor OR (p.create_time = @cursor AND p.post_id < @cursor_id))
+ORDER BY p.create_time DESC, p.post_id DESC
+LIMIT 20;
+
+-- 3. 清理
+-- DELETE FROM post WHERE title LIKE 'bench-%';